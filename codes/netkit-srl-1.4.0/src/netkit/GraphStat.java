@@ -18,6 +18,7 @@ import netkit.graph.Type;
 import netkit.graph.io.DotGraph;
 import netkit.graph.io.NetkitGraph;
 import netkit.graph.io.PajekGraph;
+import netkit.util.DistanceStore;
 import netkit.util.GraphMetrics;
 import netkit.util.ApproximateCentralities;
 import netkit.util.HistogramDiscrete;
@@ -35,9 +36,13 @@ public class GraphStat {
   private Classification pajekColor = null; // using pajekNT and pajekColor, create this classification object
   private boolean pruneSingletons = false;
   private boolean cluster = false;
+  private ModularityClusterer.Method clusterMethod = ModularityClusterer.Method.CNM;
   private boolean centrality = true;
   private boolean alphaCentrality = false;
   private boolean pagerank = false;
+  private int pivots = 0;
+  private DistanceStore.Storage distanceStorage = DistanceStore.Storage.Auto;
+  private File distanceDir = null;
   private boolean degreeStat = true;
   private boolean coefficients = true;
   private boolean calcAssort = true;
@@ -65,7 +70,7 @@ public class GraphStat {
       metrics.calcClusterProgress();
       ModularityClusterer mc = metrics.getClusterer();
       if(mc.percentDone()!=1.0D) {
-        logger.info("Performing clustering of graph (community detection) - O(N^3)");
+        logger.info("Performing clustering of graph (community detection) using "+mc.getMethod()+((mc.getMethod()==ModularityClusterer.Method.CNM)?" - O(N^3)":""));
         mc.startClustering();
       }
     }
@@ -221,7 +226,7 @@ public class GraphStat {
     globalPrint.println("graph-density,"+density);
     
     if(coefficients) {
-      logger.info("Computing clustering coefficients, number triangles and non-triangle paths of length 2 - O(N^3)");
+      logger.info("Computing clustering coefficients, number triangles and non-triangle paths of length 2 - O(E*sqrt(E))");
       final int path2 = metrics.getNumPath2();
       final int triangle = metrics.getNumtriangles();
       final double clusterCoeff = metrics.getGlobalClusterCoeff();
@@ -529,6 +534,11 @@ public class GraphStat {
     }
     logger.info("[GraphStat] pruned to running on graph with "+graph.numNodes()+" nodes and "+graph.numEdges()+" edges");
    
+    if(pivots > 0)
+      graph.getMetrics().setCentralityPivots(pivots);
+    graph.getMetrics().setDistanceStorage(distanceStorage, distanceDir);
+    graph.getMetrics().setClusterMethod(clusterMethod);
+
     if(pajekColorStr != null)
       setPajekColor(graph);
     
@@ -586,6 +596,17 @@ public class GraphStat {
     logger.info("Will"+(c?"":" NOT")+" apply and save results of modularity clustering (community detection).");
   }
   
+  public ModularityClusterer.Method getClusterMethod() { return clusterMethod; }
+  public void setClusterMethod(final String method) {
+    clusterMethod = null;
+    for(ModularityClusterer.Method m : ModularityClusterer.Method.values())
+      if(m.name().equalsIgnoreCase(method))
+        clusterMethod = m;
+    if(clusterMethod == null)
+      throw new IllegalArgumentException("Unknown cluster method '"+method+"'");
+    logger.info("Will cluster the graph using "+clusterMethod);
+  }
+  
   public boolean getCalcAssort() { return calcAssort; }
   public void setCalcAssort(final boolean a) {
     calcAssort = a;
@@ -610,6 +631,26 @@ public class GraphStat {
     logger.info("Will"+(p?"":" NOT")+" compute approximate pagerank centrality metrics.");
   }
   
+  public int getCentralityPivots() { return pivots; }
+  public void setCentralityPivots(final int k) {
+    pivots = k;
+    logger.info("Will compute "+((k>0)?"approximate centrality metrics from "+k+" pivots.":"exact centrality metrics."));
+  }
+  
+  public DistanceStore.Storage getDistanceStorage() { return distanceStorage; }
+  public void setDistanceStorage(final String storage) {
+    final int idx = storage.indexOf(':');
+    final String type = (idx == -1) ? storage : storage.substring(0,idx);
+    distanceStorage = null;
+    for(DistanceStore.Storage s : DistanceStore.Storage.values())
+      if(s.name().equalsIgnoreCase(type))
+        distanceStorage = s;
+    if(distanceStorage == null)
+      throw new IllegalArgumentException("Unknown distance storage '"+type+"'");
+    distanceDir = (idx == -1) ? null : new File(storage.substring(idx+1));
+    logger.info("Will keep pairwise distances using "+distanceStorage+((distanceDir==null)?"":" in "+distanceDir));
+  }
+  
   public boolean getDoCoefficients() { return coefficients; }
   public void setDoCoefficients(final boolean c) {
     coefficients = c;
@@ -729,8 +770,27 @@ public class GraphStat {
         logger.info("Set log output to "+filename);
       } else if (p.startsWith("alpha")) {
         setDoAlphaCentralities(true);
+      } else if (p.startsWith("clusterm")) {
+        idx++;
+        if(idx == argv.length)
+          usage("No value specified for "+p);
+        try {
+          setClusterMethod(argv[idx]);
+        } catch(Exception ex) {
+          usage(ex.getMessage());
+        }
+        setDoClustering(true);
       } else if (p.startsWith("c")) {
         setDoClustering(true);
+      } else if (p.startsWith("dist")) {
+        idx++;
+        if(idx == argv.length)
+          usage("No value specified for "+p);
+        try {
+          setDistanceStorage(argv[idx]);
+        } catch(Exception ex) {
+          usage(ex.getMessage());
+        }
       } else if (p.startsWith("noa")) {
         setCalcAssort(false);
       } else if (p.startsWith("noce")) {
@@ -770,6 +830,15 @@ public class GraphStat {
         }
       } else if (p.startsWith("page")) {
 	setDoPagerank(true);
+      } else if (p.startsWith("pivot")) {
+        idx++;
+        if(idx == argv.length)
+          usage("No value specified for "+p);
+        try {
+          setCentralityPivots(Integer.parseInt(argv[idx]));
+        } catch(Exception ex) {
+          usage(ex.getMessage());
+        }
       } else if (p.startsWith("prune")) {
         setPruneSingletons(true);
       } else if (p.startsWith("savea")) {
@@ -811,6 +880,15 @@ public class GraphStat {
         setNodeOutput(argv[idx]);
       } else if (p.startsWith("savepa")) {
         setSavePajek(true);
+      } else if (p.startsWith("t")) {
+        idx++;
+        if(idx == argv.length)
+          usage("No value specified for "+p);
+        try {
+          NetKitEnv.setNumThreads(Integer.parseInt(argv[idx]));
+        } catch(Exception ex) {
+          usage(ex.getMessage());
+        }
       } else {
         usage("Option "+p+" not recognized");
       }
@@ -844,13 +922,24 @@ public class GraphStat {
       System.out.println();
       System.out.println("GRAPH STAT OPTIONS");
       System.out.println("  -cluster             Compute clusters using a community detection algorithm.");
+      System.out.println("  -clustermethod <m>   Which community detection algorithm to cluster with:");
+      System.out.println("                         cnm        greedy modularity merging, O(N^3) (default)");
+      System.out.println("                         louvain    multi-level modularity, for large graphs");
       System.out.println("  -noassort            Do not compute assortativity statistics.");
       System.out.println("  -nocentrality        Do not compute centralities (as this is expensive).");
+      System.out.println("  -distances <type>    How to keep pairwise distances when computing centralities:");
+      System.out.println("                         auto       memory if it fits, otherwise recompute (default)");
+      System.out.println("                         memory     keep the numNodes^2 distance matrix in memory");
+      System.out.println("                         recompute  keep no matrix, recompute distances when needed");
+      System.out.println("                         disk[:dir] keep the matrix in a memory-mapped temporary file");
       System.out.println("  -alphacentrality     Compute approximate alpha centralities.");
       System.out.println("  -pagegrank           Compute approximate pagerank centralities.");
-      System.out.println("  -nocoeff             Do not compute cluster coefficients (as this is expensive).");
+      System.out.println("  -pivots <k>          Approximate betweenness and closeness centralities using");
+      System.out.println("                         shortest paths from k randomly sampled pivot nodes.");
+      System.out.println("  -nocoeff             Do not compute cluster coefficients.");
       System.out.println("  -nodegree            Do not compute degree statistics.");
       System.out.println("  -pruneSingletons     Remove singleton nodes before doing any computations"); 
+      System.out.println("  -threads <n>         Number of threads to use for centralities (default: number of processors)");
       System.out.println();
       System.out.println("OUTPUT OPTIONS");
       System.out.println("  -output (file|-)     Output graph statistics to the given file.");
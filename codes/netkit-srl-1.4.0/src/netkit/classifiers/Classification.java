@@ -48,6 +48,7 @@ public final class Classification implements Iterable<Node>
 
     private int[] classification;
     private int size;
+    private int modCount = 0;
     private double[] priors = null;
     private int majorityClass = -1;
     private final AttributeCategorical attribute;
@@ -145,7 +146,10 @@ public final class Classification implements Iterable<Node>
     private void add(Node node, int clsValue) {
         checkType(node);
         if(classification[node.getIndex()] == -1)
+        {
             size++;
+            modCount++;
+        }
         classification[node.getIndex()] = clsValue;
     }
 
@@ -153,6 +157,7 @@ public final class Classification implements Iterable<Node>
         checkType(node);
         classification[node.getIndex()] = -1;
         size--;
+        modCount++;
     }
 
     public Classification clone() {
@@ -167,6 +172,7 @@ public final class Classification implements Iterable<Node>
     public void clear() {
         Arrays.fill(classification,-1);
         size = 0;
+        modCount++;
     }
 
     public void set(Node node, int clsValue) {
@@ -189,6 +195,14 @@ public final class Classification implements Iterable<Node>
         return size;
     }
 
+    /**
+     * @return a count which changes whenever nodes are added to or removed
+     * from this classification, but not when the class of a node changes.
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
     public AttributeCategorical getAttribute() {
     	return attribute;
     }
@@ -70,4 +70,6 @@ public interface Classifier extends Configurable {
     public void setNofityListeners(boolean notify);
     public void notifyListeners(Node node, double[] estimate);
     public void notifyListeners(Node node, int classification);
+    public void notifyListeners(Node[] nodes, int from, int to, double[] estimates, boolean[] estimated);
+    public boolean hasListeners();
 }
@@ -0,0 +1,51 @@
+/**
+ * ClassifierBlockListener.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.classifiers;
+
+import netkit.graph.Node;
+
+/**
+ * A ClassifierListener that is told about a whole block of estimates at once, rather
+ * than getting a callback per node, when a relational classifier estimates a block of
+ * nodes.  Single node estimates are still passed to the <code>estimate(Node,double[])</code>
+ * method.
+ *
+ * @see netkit.classifiers.relational.NetworkClassifier#estimateBlock(Node[], int, int, Estimate, double[], boolean[])
+ */
+public interface ClassifierBlockListener extends ClassifierListener
+{
+    /**
+     * The estimates of <code>nodes[i]</code> are at <code>estimates[(i-from)*numClasses]</code>,
+     * and are only valid if <code>estimated[i-from]</code> is true.  The arrays are reused by
+     * the classifier and must not be kept or modified.
+     *
+     * @param nodes The nodes that were estimated
+     * @param from The index of the first node in the block (inclusive)
+     * @param to The index of the last node in the block (exclusive)
+     * @param estimates The class estimates of the nodes in the block
+     * @param estimated Whether the classifier estimated each node or abstained
+     */
+    public void estimate(Node[] nodes, int from, int to, double[] estimates, boolean[] estimated);
+}
@@ -35,8 +35,7 @@ import netkit.util.VectorMath;
 import netkit.util.NetKitEnv;
 
 import java.util.ArrayList;
-import java.util.Set;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 /**
@@ -50,7 +49,13 @@ import java.util.logging.Logger;
 public abstract class ClassifierImp implements Classifier {
     public final Logger logger = NetKitEnv.getLogger(this);
 
-    private transient Set<ClassifierListener> listeners = new HashSet<ClassifierListener>();
+    private static final ClassifierListener[] NO_LISTENERS = new ClassifierListener[0];
+    private static final ClassifierBlockListener[] NO_BLOCK_LISTENERS = new ClassifierBlockListener[0];
+
+    // The listeners are copied on write, such that notifying them is a plain array loop,
+    // which does nothing if no-one listens.  blockListeners are also in listeners.
+    private transient volatile ClassifierListener[] listeners = NO_LISTENERS;
+    private transient volatile ClassifierBlockListener[] blockListeners = NO_BLOCK_LISTENERS;
     private boolean notify=true;
     protected double[] tmpVector = null;
 
@@ -165,14 +170,30 @@ public abstract class ClassifierImp implements Classifier {
 
 
 
-    public final void addListener(ClassifierListener cl) {
-    	listeners.add(cl);
+    public final synchronized void addListener(ClassifierListener cl) {
+        if(cl == null || Arrays.asList(listeners).contains(cl))
+            return;
+        listeners = Arrays.copyOf(listeners, listeners.length+1);
+        listeners[listeners.length-1] = cl;
+        if(cl instanceof ClassifierBlockListener)
+        {
+            ClassifierBlockListener[] bl = Arrays.copyOf(blockListeners, blockListeners.length+1);
+            bl[bl.length-1] = (ClassifierBlockListener)cl;
+            blockListeners = bl;
+        }
     }
-    public final void clearListeners() {
-    	listeners.clear();
+    public final synchronized void clearListeners() {
+        listeners = NO_LISTENERS;
+        blockListeners = NO_BLOCK_LISTENERS;
     }
-    public final void removeListener(ClassifierListener cl) {
-    	listeners.remove(cl);
+    public final synchronized void removeListener(ClassifierListener cl) {
+        ArrayList<ClassifierListener> l = new ArrayList<ClassifierListener>(Arrays.asList(listeners));
+        if(!l.remove(cl))
+            return;
+        listeners = l.toArray(NO_LISTENERS);
+        ArrayList<ClassifierBlockListener> bl = new ArrayList<ClassifierBlockListener>(Arrays.asList(blockListeners));
+        bl.remove(cl);
+        blockListeners = bl.toArray(NO_BLOCK_LISTENERS);
     }
 
     public final boolean getNofifyListeners() {
@@ -181,16 +202,58 @@ public abstract class ClassifierImp implements Classifier {
     public final void setNofityListeners(boolean notify) {
     	this.notify = notify;
     }
+
+    /**
+     * @return whether any listener would be notified of an estimate
+     */
+    public final boolean hasListeners() {
+        return notify && listeners.length > 0;
+    }
+
     public final void notifyListeners(Node node, double[] estimate) {
         if(!notify)
             return;
-	for (ClassifierListener cl : listeners)
-            cl.estimate(node,estimate);
+        final ClassifierListener[] cls = listeners;
+        for (int i=0;i<cls.length;i++)
+            cls[i].estimate(node,estimate);
     }
     public final void notifyListeners(Node node, int classification) {
         if(!notify)
             return;
-	for (ClassifierListener cl : listeners)
-            cl.classify(node,classification);
+        final ClassifierListener[] cls = listeners;
+        for (int i=0;i<cls.length;i++)
+            cls[i].classify(node,classification);
+    }
+
+    /**
+     * Notify the listeners of the estimates of a block of nodes.  ClassifierBlockListeners are
+     * told about the whole block at once, while other listeners are notified one node at a time.
+     *
+     * @param nodes The nodes that were estimated
+     * @param from The index of the first node in the block (inclusive)
+     * @param to The index of the last node in the block (exclusive)
+     * @param estimates The class estimates of the nodes in the block, at <code>(i-from)*attribute.size()</code>
+     * @param estimated Whether each node in the block was estimated
+     *
+     * @see netkit.classifiers.ClassifierBlockListener
+     */
+    public final void notifyListeners(Node[] nodes, int from, int to, double[] estimates, boolean[] estimated) {
+        if(!notify)
+            return;
+        final ClassifierListener[] cls = listeners;
+        final ClassifierBlockListener[] bls = blockListeners;
+        for (int i=0;i<bls.length;i++)
+            bls[i].estimate(nodes,from,to,estimates,estimated);
+        if(cls.length == bls.length)
+            return;
+        final int numClasses = attribute.size();
+        final double[] estimate = new double[numClasses];
+        for (int n=from;n<to;n++)
+        {
+            System.arraycopy(estimates, (n-from)*numClasses, estimate, 0, numClasses);
+            for (int i=0;i<cls.length;i++)
+                if(!(cls[i] instanceof ClassifierBlockListener))
+                    cls[i].estimate(nodes[n],estimate);
+        }
     }
 }
@@ -43,6 +43,7 @@ import netkit.graph.Graph;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.logging.Logger;
 
 public final class Estimate implements Iterable<Node>
@@ -161,6 +162,22 @@ public final class Estimate implements Iterable<Node>
         add(node,estimate);
     }
 
+    // set the estimate of the node to estimate[offset] through estimate[offset+attribute.size()-1]
+    public void estimate(Node node, double[] estimate, int offset) {
+        checkType(node);
+        final int numClasses = attribute.size();
+        if(offset < 0 || offset+numClasses > estimate.length)
+            throw new IllegalArgumentException("distribution at offset "+offset+" does not fit in array of size "+estimate.length);
+        double[] e = estimates[node.getIndex()];
+        if(e == null)
+        {
+            size++;
+            e = new double[numClasses];
+            estimates[node.getIndex()] = e;
+        }
+        System.arraycopy(estimate,offset,e,0,numClasses);
+    }
+
     public void classify(Node node, int clsVal) {
         add(node, clsVal);
     }
@@ -188,6 +205,10 @@ public final class Estimate implements Iterable<Node>
         double[] e = getEstimate(node);
         return ((e == null) ? -1 : VectorMath.sampleIdx(e));
     }
+    public int sampleEstimateIdx(Node node, Random random) {
+        double[] e = getEstimate(node);
+        return ((e == null) ? -1 : VectorMath.sampleIdx(e,random));
+    }
 
     public void normalize(Node node) {
         double[] e = getEstimate(node);
@@ -166,10 +166,11 @@ public class NetworkLearner {
         {
             ConfusionMatrix cm = new ConfusionMatrix(initialPrior, split.getView().getTruth());
             logger.fine("Prior accuracy="+cm.getAccuracy());
-            for(int i=0;i<view.getAttribute().size();i++)
+            if(logger.isLoggable(Level.FINE))
             {
-                ROC roc = new ROC(initialPrior,split.getView().getTruth(),i);
-                logger.fine("initial-prior AUC-"+split.getView().getAttribute().getToken(i)+ ": "+roc.getAUC());
+                double[] auc = AUC.getAUCs(initialPrior,split.getView().getTruth());
+                for(int i=0;i<view.getAttribute().size();i++)
+                    logger.fine("initial-prior AUC-"+split.getView().getAttribute().getToken(i)+ ": "+auc[i]);
             }
         }
         return initialPrior;
@@ -322,10 +323,11 @@ public class NetworkLearner {
         double acc = cm.getAccuracy();
         logger.info("Active Learning Accuracy-" + it + ": " + acc);
         
-        for(int i=0;i<view.getAttribute().size();i++)
+        if(logger.isLoggable(Level.FINE))
         {
-          ROC roc = new ROC(testSetPred,truth,i);
-          logger.fine("Active Learning AUC-"+view.getAttribute().getToken(i)+"-"+ it + ": "+roc.getAUC());
+          double[] auc = AUC.getAUCs(testSetPred,truth);
+          for(int i=0;i<view.getAttribute().size();i++)
+            logger.fine("Active Learning AUC-"+view.getAttribute().getToken(i)+"-"+ it + ": "+auc[i]);
         }
 
         newLabels = false;
@@ -394,11 +396,15 @@ public class NetworkLearner {
     }
 
     public void saveIterationPredictions(String stem, PrintEstimateWriter pe, boolean append, Node[] eval, String header) {
+      saveIterationPredictions(stem,pe,append,eval,header,false);
+    }
+
+    public void saveIterationPredictions(String stem, PrintEstimateWriter pe, boolean append, Node[] eval, String header, boolean binary) {
       if(nc == null || lc == null || ic == null)
           throw new IllegalArgumentException("Could not instantiate the NetworkLearner LC="+lc+" RC="+nc+" CI="+ic);
       if(stem == null)
           stem = lc.getShortName()+nc.getShortName()+ic.getShortName();
-      ic.savePredictions(stem,pe,true,eval,header);
+      ic.savePredictions(stem,pe,true,eval,header,binary);
     }
 
     public void saveIterationsInPajek(String pajekFile) {
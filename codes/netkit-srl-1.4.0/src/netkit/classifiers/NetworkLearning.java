@@ -72,6 +72,8 @@ public class NetworkLearning implements Configurable {
   private DataView dataView = null;
   private AttributeCategorical attribute = null;
   private long rndSeed = -1;
+  // the mixing matrices of the labels of the last split, updated for the next one
+  private MixingMatrices splitMixing = null;
 
   public static final String RC_PREFIX = "rclassifier";
   public static final String LC_PREFIX = "lclassifier";
@@ -630,8 +632,23 @@ public class NetworkLearning implements Configurable {
       for (EdgeCreator ec : weightsByEC.keySet())
         weightsByEdgeType.put(ec.getEdgeType(), weightsByEC.get(ec));
       
+      // the same labels the edge creators were scored by
+      if(useTrueAssort) {
+        labels = split.getView().getTruth();
+      } else {
+        labels = new Classification(graph, split.getView().getNodeType(), split.getView().getAttribute());
+        labels.clear();
+        for (Node node : split.getTrainSet())
+          if (!node.isMissing(split.getView().clsIdx))
+            labels.set(node, node.getValue(split.getView().clsIdx));
+      }
+      if (splitMixing == null || splitMixing.graph != graph || splitMixing.graphVersion != graph.getVersion()
+          || !splitMixing.nodeType.equals(labels.getNodeType()) || splitMixing.attribute != labels.getAttribute())
+        splitMixing = graph.getMetrics().getMixingMatrices(labels.getNodeType(), labels.getAttribute());
+      final MixingMatrices mm = splitMixing;
+      mm.setKnown(labels);
       for (EdgeType et : graph.getEdgeTypes()) {
-        double[] assort = GraphMetrics.calculateNodeBasedAssortativityCoeff(labels, et);
+        double[] assort = mm.getNodeBasedAssortativity(et);
         
         if (assort[1] > minAS) {
           weightsByEdgeType.put(et, assort[1]);
@@ -717,14 +734,15 @@ public class NetworkLearning implements Configurable {
     ConfusionMatrix cfFinal = new ConfusionMatrix(attribute);
 
     boolean hasTruth = false;
+    boolean saveItPredict = params.getBoolean("saveitpredict") || params.getBoolean("saveitbinary");
 
     for (int ki = 0; ki < splits.length; ki++) {
       logger.info("Running validation run " + (ki + 1) + " of " + splits.length);
-      if (params.getBoolean("saveitpredict"))
-        learner.saveIterationPredictions(params.get("output"), pe, true, splits[ki].getTestSet(), "#" + ki);
+      if (saveItPredict)
+        learner.saveIterationPredictions(params.get("output"), pe, true, splits[ki].getTestSet(), "#" + ki, params.getBoolean("saveitbinary"));
 
       if(params.containsKey("savepajek") &&
-          (params.getBoolean("saveitpredict") || params.getBoolean("showitacc")))
+          (saveItPredict || params.getBoolean("showitacc")))
           learner.saveIterationsInPajek(params.get("savepajek")+"-"+ki+"-time.paj");
       
       Estimate predictions = runInference(splits[ki]);
@@ -735,10 +753,8 @@ public class NetworkLearning implements Configurable {
       logger.info("Outputting predictions for run " + (ki + 1) + " of " + splits.length);
       outPredict.println("#" + ki);
       pe.setOutput(outPredict);
-      for (Node node : predictions)
-        pe.println(node, predictions, outTruth);
+      pe.printAll(predictions, predictions, outTruth);
       logger.info("Done!");
-      outPredict.flush();
       
       if (params.getBoolean("showassort")) {
         double[] a = gm.calculateEdgeBasedAssortativityCoeff(view.getNodeType(), attribute);
@@ -787,16 +803,16 @@ public class NetworkLearning implements Configurable {
 
       if (splits[ki].hasTruth()
           && (params.getBoolean("saveroc") || params.getBoolean("showauc"))) {
+        double[] splitAUC = AUC.getAUCs(predictions, view.getTruth(), params.getInt("aucbins", 0));
         for (int i = 0; i < view.getAttribute().size(); i++) {
-          ROC roc = new ROC(predictions, view.getTruth(), i);
-          auc[i][ki] = roc.getAUC();
+          auc[i][ki] = splitAUC[i];
           StringBuilder sb = new StringBuilder();
           sb.append("AUC-" + view.getAttribute().getToken(i) + "-"
-              + (ki + 1) + ": " + roc.getAUC());
+              + (ki + 1) + ": " + splitAUC[i]);
           if (params.getBoolean("saveroc")) {
             File f = new File(params.get("output", "roc") + "-"
                 + view.getAttribute().getToken(i) + "-" + ki + ".roc");
-            roc.save(f);
+            new ROC(predictions, view.getTruth(), i).save(f);
             sb.append(" (save as " + f.getName() + ")");
           }
           sb.append(NetKitEnv.newline);
@@ -954,6 +970,7 @@ public class NetworkLearning implements Configurable {
         logger.info("Set log output to "+filename);
       } else if (p.equals("gda")
           || p.equals("saveitpredict")
+          || p.equals("saveitbinary")
           || p.equals("saveroc")
           || p.equals("showauc")
           || p.equals("showitacc")
@@ -1006,6 +1023,8 @@ public class NetworkLearning implements Configurable {
           logger.info("Will read input as GDA format.");
         if (p.equals("saveitpredict"))
           logger.info("Will save predictions after each iteration.");
+        if (p.equals("saveitbinary"))
+          logger.info("Will save predictions after each iteration in binary format.");
         if (p.equals("weightedgesbyassort"))
           logger.info("Will reweight edges by their assortativity.");
         if (p.equals("mergeedges"))
@@ -1026,6 +1045,8 @@ public class NetworkLearning implements Configurable {
           logger.info("Will show accuracy for each inference iteration.");
       } else if (p.equals("sample")) {
         idx = setDouble(argv,idx,p,0.0D);
+      } else if (p.equals("aucbins")) {
+        idx = setInt(argv,idx,p,0);
       } else if (p.equals("depth")) {
         idx = setInt(argv,idx,p,0);
       } else if (p.equals("seedsize")) {
@@ -1160,24 +1181,26 @@ public class NetworkLearning implements Configurable {
     NetKitEnv.logTime("after setupExperiment");
 
     if (params.getBoolean("showassort")) {
-      double[] a = GraphMetrics.calculateEdgeBasedAssortativityCoeff(dataView.getTruth());
+      // all edge types in one pass
+      final Classification truth = dataView.getTruth();
+      final MixingMatrices mm = graph.getMetrics().getMixingMatrices(truth.getNodeType(), truth.getAttribute());
+      mm.setKnown(truth);
+      double[] a = mm.getEdgeBasedAssortativity(null);
       System.out.println("EdgeBasedAssortCoeff-Normal-Truth: " + a[0]);
       System.out.println("EdgeBasedAssortCoeff-Weighted-Truth: " + a[1]);
       for (String et : graph.getEdgeTypeNames()) {
-        a = GraphMetrics.calculateEdgeBasedAssortativityCoeff(dataView.getTruth(), graph
-            .getEdgeType(et));
+        a = mm.getEdgeBasedAssortativity(graph.getEdgeType(et));
         System.out.println("EdgeBasedAssortCoeff-Normal-Truth[edge=" + et
             + "]: " + a[0]);
         System.out.println("EdgeBasedAssortCoeff-Weighted-Truth[edge=" + et
             + "]: " + a[1]);
       }
 
-      a = GraphMetrics.calculateNodeBasedAssortativityCoeff(dataView.getTruth());
+      a = mm.getNodeBasedAssortativity(null);
       System.out.println("NodeBasedAssortCoeff-Normal-Truth: " + a[0]);
       System.out.println("NodeBasedAssortCoeff-Weighted-Truth: " + a[1]);
       for (String et : graph.getEdgeTypeNames()) {
-        a = GraphMetrics.calculateNodeBasedAssortativityCoeff(dataView.getTruth(), graph
-            .getEdgeType(et));
+        a = mm.getNodeBasedAssortativity(graph.getEdgeType(et));
         System.out.println("NodeBasedAssortCoeff-Normal-Truth[edge=" + et
             + "]: " + a[0]);
         System.out.println("NodeBasedAssortCoeff-Weighted-Truth[edge=" + et
@@ -1280,6 +1303,8 @@ public class NetworkLearning implements Configurable {
       System.out.println("OUTPUT OPTIONS");
       System.out.println("  -showItAcc        Show, for each inference iteration, its accuracy.");
       System.out.println("  -showAUC          Show AUCs, one per class.");
+      System.out.println("  -aucBins #        Approximate AUCs by counting the scores into this many bins.");
+      System.out.println("                      Faster on very large test sets.  default: 0 (exact AUCs)");
       System.out.println("  -saveROC          Save ROC curves after final iteration, one per class.");
       System.out.println("  -showAssort       Show assortativity coefficients.");
       System.out.println("  -output <file>    Where to send output estimates.");
@@ -1290,6 +1315,8 @@ public class NetworkLearning implements Configurable {
       System.out.println("                      create new .rn and .arff files (prefix+###.rn and prefix+###.arff)");
       System.out.println("  -saveItPredict    Save the predictions after each iteration.");
       System.out.println("                    This is storage intensive, especially for Gibbs Sampling.");
+      System.out.println("  -saveItBinary     Like -saveItPredict, but save the predictions of each iteration as");
+      System.out.println("                    binary records of float scores (<output>.#.predict.bin).");
       System.out.println("  -savePajek <prefix> In addition to normal prediction output, save the predictions");
       System.out.println("                    as a Pajek graph to <prefix>-[run#].net.   If '-showItAcc' or '-saveItPredict'");
       System.out.println("                    are turned on, save the inferences as a time graph in pajek format under");
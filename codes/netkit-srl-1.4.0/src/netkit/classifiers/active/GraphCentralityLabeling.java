@@ -52,6 +52,13 @@ import java.util.logging.Level;
  * <li><code>clusterRank</code> --- name of the class (full class name or stem if in the <code>netkit.classifiers.active.graphfunctions</code> package)
  * <li><code>nodesPerCluster</code> --- keep the topk list in each cluster and return those as well (first topk from first cluster, then iteratively through the next clusters).  default topk=1
  * </ul>  
+ * <p>
+ * The centrality metrics and the clustering are shared through the graph's {@link GraphMetrics}
+ * and are only recomputed if the graph changes.  For large graphs, the <code>pivots</code>
+ * configuration variable approximates betweenness and closeness centrality from shortest paths
+ * out of the given number of randomly sampled pivot nodes (default 0 = exact), and the
+ * <code>clustermethod</code> configuration variable picks how the graph is clustered
+ * (<code>CNM</code> or <code>Louvain</code>, default CNM).
  * 
  * @author sofmac
  * 
@@ -75,6 +82,8 @@ public class GraphCentralityLabeling extends PickLabelStrategyImp {
   private ScoringFunction sf = null; // scoring function to identify/rank nodes
   private ScoringFunction cr = null; // cluster ranking function to rank clusters
   private double nodesPerCluster = 1;
+  private int pivots = 0;
+  private ModularityClusterer.Method clusterMethod = ModularityClusterer.Method.CNM;
 
   private class CandidateNode extends LabelNode {
     public final Cluster cluster;
@@ -169,6 +178,8 @@ public class GraphCentralityLabeling extends PickLabelStrategyImp {
     def.set("metric",WeightedBetweenness.class.getName());
     def.set("cluster",false);
     def.set("nodesPerCluster",1);
+    def.set("pivots",0);
+    def.set("clustermethod",ModularityClusterer.Method.CNM.name());
     return def;
   }
 
@@ -177,6 +188,14 @@ public class GraphCentralityLabeling extends PickLabelStrategyImp {
     super.configure(config);
     nodesPerCluster = config.getDouble("nodespercluster",1);
     cluster = config.getBoolean("cluster",false);
+    pivots = config.getInt("pivots",0);
+    String method = config.get("clustermethod",ModularityClusterer.Method.CNM.name());
+    clusterMethod = null;
+    for(ModularityClusterer.Method m : ModularityClusterer.Method.values())
+      if(m.name().equalsIgnoreCase(method))
+        clusterMethod = m;
+    if(clusterMethod == null)
+      throw new IllegalArgumentException("Unknown clustermethod '"+method+"'");
     String metric = config.get("metric",WeightedBetweenness.class.getName());
     String rank = config.get("clusterrank",null);
         
@@ -200,6 +219,8 @@ public class GraphCentralityLabeling extends PickLabelStrategyImp {
     logger.config(getName()+": cluster="+cluster);
     logger.config(getName()+": nodespercluster="+nodesPerCluster);
     logger.config(getName()+": clusterrank="+rank);
+    logger.config(getName()+": pivots="+pivots);
+    logger.config(getName()+": clustermethod="+clusterMethod);
   }
   
   public GraphMetrics getMetrics() { return gm; }
@@ -210,7 +231,9 @@ public class GraphCentralityLabeling extends PickLabelStrategyImp {
   public void initialize(NetworkLearner nl, DataSplit split) {
     super.initialize(nl,split);
     graph = split.getView().getGraph();
-    gm = graph.getMetrics();
+    gm = graph.getMetrics(pivots);
+    if(cluster)
+      gm.setClusterMethod(clusterMethod);
     truth = split.getView().getTruth();
     labels = truth.clone();
     labels.clear();
@@ -234,8 +257,10 @@ public class GraphCentralityLabeling extends PickLabelStrategyImp {
 
     if(cluster)
     {
-      mod = new ModularityClusterer(graph);
-      mod.startClustering();
+      // share the clustering across strategies; it only changes with the graph
+      mod = gm.getClusterer();
+      if(mod.percentDone()!=1.0D)
+        mod.startClustering();
       //printStat("init - state [3a]");
       bfsLevel=1;
 
@@ -0,0 +1,109 @@
+/**
+ * LabelDistanceScoringFunction.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.active.graphfunctions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import netkit.classifiers.active.GraphCentralityLabeling;
+import netkit.graph.Node;
+import netkit.util.ModularityClusterer.Cluster;
+
+/**
+ * Scores a node by its average distance to the currently labeled nodes.
+ * The distance sums are kept per node and only the distances to labels
+ * which are new since the node was last scored are added, such that each
+ * node/label distance is looked up at most once as nodes get labeled.
+ */
+public abstract class LabelDistanceScoringFunction extends ReverseScoringFunction {
+  private List<Node> seenLabels = null;
+  private boolean[] isSeenLabel = null;
+  private double[] distSum = null;
+  private int[] numSeen = null;
+  private int labelsModCount = -1;
+
+  /**
+   * @return the distance from the given node to the given labeled node.
+   */
+  protected abstract double distance(Node n, Node label);
+
+  @Override
+  public void initialize(GraphCentralityLabeling graphLabeler)
+  {
+    super.initialize(graphLabeler);
+    seenLabels = new ArrayList<Node>();
+    isSeenLabel = new boolean[(int)gm.getNumNodes()];
+    distSum = new double[isSeenLabel.length];
+    numSeen = new int[isSeenLabel.length];
+    labelsModCount = -1;
+  }
+
+  /**
+   * Bring the list of seen labels up to date with the current labels.
+   */
+  private void syncLabels() {
+    if(labels.getModCount() == labelsModCount)
+      return;
+    labelsModCount = labels.getModCount();
+    for(Node t : seenLabels)
+    {
+      if(labels.isUnknown(t))
+      {
+        // labels were removed; start over
+        seenLabels.clear();
+        Arrays.fill(isSeenLabel, false);
+        Arrays.fill(distSum, 0);
+        Arrays.fill(numSeen, 0);
+        break;
+      }
+    }
+    for(Node t : labels)
+    {
+      int idx = gm.getNodeIndex(t);
+      if(!isSeenLabel[idx])
+      {
+        isSeenLabel[idx] = true;
+        seenLabels.add(t);
+      }
+    }
+  }
+
+  @Override
+  public boolean clusterBased() { return true; }
+
+  @Override
+  public double score(Cluster c, Node n) {
+    syncLabels();
+    int idx = gm.getNodeIndex(n);
+    for(int i=numSeen[idx];i<seenLabels.size();i++)
+      distSum[idx] += distance(n,seenLabels.get(i));
+    numSeen[idx] = seenLabels.size();
+    return distSum[idx]/(double)labels.size();
+  }
+
+  @Override
+  public double update(Cluster c, double currentScore, Node n, Node[] newPicks) {
+    return score(c,n);
+  }
+
+  @Override
+  public boolean updateable() { return true; }
+}
@@ -0,0 +1,180 @@
+/**
+ * AggregationContext.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.aggregators;
+
+import netkit.graph.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The AggregationContext holds the graph that aggregators work on and the SharedNodeInfo
+ * statistics they share.  A classifier creates one context for the graph it is run on and
+ * gives it to its aggregators, such that classifiers on different graphs do not interfere
+ * with each other.
+ * <P>
+ * The SharedNodeInfo instances are kept per thread: each thread that aggregates through
+ * this context gets its own statistics buffers, so that aggregators may be evaluated for
+ * different nodes in several threads at once.
+ *
+ * @see netkit.classifiers.aggregators.AggregatorImp#setContext(AggregationContext)
+ * @see netkit.classifiers.aggregators.SharedNodeInfo
+ */
+public final class AggregationContext {
+    // Key to find the slot of the SharedNodeInfo for a nodetype, edgetype and attribute
+    private final static class SNIKey {
+        public final String nodeType;
+        public final String edgeType;
+        public final int attribIdx;
+        public SNIKey(final String nt, final String et, final int attribIdx) {
+            this.nodeType = nt;
+            this.edgeType = ((et == null) ? "__null" : et);
+            this.attribIdx = attribIdx;
+        }
+        public boolean equals(Object o) {
+            if(o instanceof SNIKey) {
+                SNIKey s = (SNIKey)o;
+                return(nodeType.equals(s.nodeType) && edgeType.equals(s.edgeType) && attribIdx == s.attribIdx);
+            }
+            return false;
+        }
+        public int hashCode() {
+            return (nodeType.hashCode()*31 + edgeType.hashCode())*31 + attribIdx;
+        }
+    }
+
+    private final Graph graph;
+
+    // Every distinct nodetype/edgetype/attribute combination gets a slot, which is the
+    // index of its SharedNodeInfo in the per-thread arrays
+    private final Map<SNIKey,Integer> slots = new HashMap<SNIKey,Integer>();
+    private final List<SNIKey> slotKeys = new ArrayList<SNIKey>();
+
+    private final ThreadLocal<SharedNodeInfo[]> info = new ThreadLocal<SharedNodeInfo[]>() {
+        protected SharedNodeInfo[] initialValue() {
+            return new SharedNodeInfo[0];
+        }
+    };
+
+    /**
+     * Create a context for aggregating over the given graph.
+     * @param graph The graph being aggregated over
+     */
+    public AggregationContext(final Graph graph) {
+        if(graph == null)
+            throw new IllegalArgumentException("null graph not allowed!");
+        this.graph = graph;
+    }
+
+    /**
+     * @return the graph being aggregated over
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param nodeType The node type which has the attribute
+     * @param attrib The attribute to look up
+     * @return the index of the given attribute in the nodes of the given node type
+     */
+    public int getAttributeIndex(final String nodeType, final Attribute attrib) {
+        return graph.getAttributes(nodeType).getAttributeIndex(attrib.getName());
+    }
+
+    /**
+     * Helper function to get the node type at the other end of the given edgeType
+     * @param edgeType The edgetype whose destination node type is requested
+     * @return the node type at the other end of the given edgeType
+     */
+    public String getDestinationNodeType(final String edgeType) {
+        return ( (edgeType == null) ? null : graph.getEdgeType(edgeType).getDestType() );
+    }
+
+    /**
+     * Get the slot of the SharedNodeInfo for a given node type, attribute and edge type.
+     * The slot can be kept and passed to <code>getInfo(int)</code> to avoid looking it
+     * up again.
+     *
+     * @param nodeType The node type of the neighbor nodes that will be aggregated over
+     * @param attribIdx What is the attribute index of the attribute to be aggregated over.
+     * @param edgeType  What is the edge that is used to get from the source node to the neighbors
+     * @return the slot of the SharedNodeInfo for the given node type, attribute and edge type.
+     *
+     * @see netkit.classifiers.aggregators.SharedNodeInfo#getInfo(String, int, EdgeType)
+     */
+    public synchronized int getSlot(final String nodeType, final int attribIdx, final EdgeType edgeType) {
+        SNIKey key = new SNIKey(nodeType, ((edgeType == null) ? null : edgeType.getName()), attribIdx);
+        Integer slot = slots.get(key);
+        if(slot == null)
+        {
+            slot = slotKeys.size();
+            slots.put(key,slot);
+            slotKeys.add(key);
+        }
+        return slot;
+    }
+
+    private synchronized SNIKey getSlotKey(final int slot) {
+        return slotKeys.get(slot);
+    }
+
+    /**
+     * Get the calling thread's SharedNodeInfo instance for the given slot.
+     *
+     * @param slot A slot returned by <code>getSlot</code>
+     * @return the calling thread's SharedNodeInfo instance for the given slot.
+     */
+    public SharedNodeInfo getInfo(final int slot) {
+        SharedNodeInfo[] list = info.get();
+        if(slot >= list.length)
+        {
+            list = java.util.Arrays.copyOf(list, slot+1);
+            info.set(list);
+        }
+        SharedNodeInfo sni = list[slot];
+        if(sni == null)
+        {
+            SNIKey key = getSlotKey(slot);
+            String edgeType = ( (key.edgeType.equals("__null")) ? null : key.edgeType );
+            sni = new SharedNodeInfo(graph, key.nodeType, edgeType, key.attribIdx);
+            list[slot] = sni;
+        }
+        return sni;
+    }
+
+    /**
+     * Get the calling thread's SharedNodeInfo instance for a given node type, attribute and edge type.
+     *
+     * @param nodeType The node type of the neighbor nodes that will be aggregated over
+     * @param attribIdx What is the attribute index of the attribute to be aggregated over.
+     * @param edgeType  What is the edge that is used to get from the source node to the neighbors
+     * @return A SharedNodeInfo instance that works for a given nodetype, attribute index and edgetype.
+     */
+    public SharedNodeInfo getInfo(final String nodeType, final int attribIdx, final EdgeType edgeType) {
+        return getInfo(getSlot(nodeType, attribIdx, edgeType));
+    }
+}
@@ -0,0 +1,423 @@
+/**
+ * AggregationPlan.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.aggregators;
+
+import netkit.graph.*;
+import netkit.util.HistogramDiscrete;
+import netkit.util.VectorMath;
+import netkit.classifiers.Estimate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The AggregationPlan computes the values of a list of aggregators for a node in a single
+ * pass over the node's edges.  The aggregators are grouped by the edge type they follow and,
+ * within an edge type, by the attribute they aggregate over.  The statistics needed by all
+ * aggregators on the same edge type and attribute (the weighted value counts, the histogram,
+ * and the min, max and mean) are then gathered together as the edges are visited, after
+ * which each aggregator reads its value off these statistics.
+ * <P>
+ * The values are the same as those of calling <code>getValue(node,prior)</code> on each of the
+ * aggregators in turn.  Count, Ratio, Exist, Mode, Mean, Min and Max are evaluated by the plan;
+ * any other aggregator is asked for its value directly.  Histograms over discrete attributes are
+ * still built by HistogramDiscrete, but from the edges gathered in the same pass.
+ * <P>
+ * Each thread that evaluates a plan gets its own buffers for the statistics, so a plan may
+ * be evaluated for different nodes in several threads at once.
+ *
+ * @see netkit.classifiers.aggregators.SharedNodeInfo
+ */
+public final class AggregationPlan {
+    // What each aggregator reads off the statistics of its attribute
+    private static enum Op { Count, Ratio, Exist, Mode, Mean, Min, Max, Constant, Delegate };
+
+    // The statistics of one attribute of the neighbors along one edge type
+    private static final class AttributeStat {
+        final int attribIdx;
+        final Attribute attribute;
+        final Type type;
+
+        // CATEGORICAL
+        final double[] count;
+        double sum;
+
+        // DISCRETE
+        HistogramDiscrete histogram;
+
+        // DISCRETE and CONTINUOUS
+        double min;
+        double max;
+        double mean;
+        double total;
+        double num;
+
+        AttributeStat(final int attribIdx, final Attribute attribute) {
+            this.attribIdx = attribIdx;
+            this.attribute = attribute;
+            this.type = attribute.getType();
+            this.count = ( (type == Type.CATEGORICAL) ? new double[((AttributeCategorical)attribute).size()] : null );
+        }
+
+        void reset() {
+            switch(type)
+            {
+            case CATEGORICAL:
+                java.util.Arrays.fill(count,0);
+                sum = 0;
+                break;
+            case CONTINUOUS:
+                min = Double.MAX_VALUE;
+                max = Double.MIN_VALUE;
+                mean = Double.NaN;
+                total = 0;
+                num = 0;
+                break;
+            }
+        }
+
+        void add(final Node dest, final double wt, final Estimate prior) {
+            switch(type)
+            {
+            case CATEGORICAL:
+                if(dest.isMissing(attribIdx))
+                {
+                    if(prior == null)
+                        return;
+                    double[] d = prior.getEstimate(dest);
+                    if(d==null)
+                        return;
+                    for(int v=0;v<d.length;v++)
+                        count[v] += wt*d[v];
+                }
+                else
+                {
+                    count[(int)dest.getValue(attribIdx)] += wt;
+                }
+                break;
+            case CONTINUOUS:
+                if(!dest.isMissing(attribIdx))
+                {
+                    double value = dest.getValue(attribIdx);
+                    num++;
+                    if(num==1)
+                    {
+                        min = value;
+                        max = value;
+                    }
+                    else if(value < min)
+                        min = value;
+                    else if(value > max)
+                        max = value;
+                    total += value;
+                }
+                break;
+            }
+        }
+
+        void finish(final Edge[] edges) {
+            switch(type)
+            {
+            case CATEGORICAL:
+                sum = VectorMath.sum(count);
+                break;
+            case DISCRETE:
+                try
+                {
+                    histogram = new HistogramDiscrete(edges, (AttributeDiscrete)attribute, 1);
+                    max = histogram.getMaxValue();
+                    min = histogram.getMinValue();
+                    mean = histogram.getMeanValue();
+                }
+                catch(Exception e)
+                {
+                    // This happens if the were no data points
+                    histogram = null;
+                    min = Double.MIN_VALUE;
+                    max = Double.MAX_VALUE;
+                    mean = Double.NaN;
+                }
+                break;
+            case CONTINUOUS:
+                if(num>0)
+                    mean = total / num;
+                break;
+            }
+        }
+
+        double getCount(final int value) {
+            switch(type)
+            {
+            case CATEGORICAL:
+                return count[value];
+            case DISCRETE:
+                return ( (histogram==null) ? 0 : histogram.getCount(value) );
+            default:
+                return 0;
+            }
+        }
+
+        double getTotalCount() {
+            return ( (type == Type.CATEGORICAL) ? sum : histogram.getTotalCount() );
+        }
+
+        double getMode() {
+            switch(type)
+            {
+            case CATEGORICAL:
+                return VectorMath.getMaxIdx(count);
+            case DISCRETE:
+                return ( (histogram==null) ? Double.NaN : histogram.getMode() );
+            default:
+                return 0;
+            }
+        }
+    }
+
+    // All the statistics gathered along one edge type
+    private static final class EdgeGroup {
+        final String edgeType;
+        final List<AttributeStat> stats = new ArrayList<AttributeStat>();
+        AttributeStat[] streamed; // the statistics which are updated edge by edge
+        boolean needEdges = false; // whether a histogram needs the edges of this group
+        final List<Edge> edges = new ArrayList<Edge>();
+
+        EdgeGroup(final String edgeType) {
+            this.edgeType = edgeType;
+        }
+
+        AttributeStat getStat(final int attribIdx, final Attribute attribute) {
+            for(AttributeStat stat : stats)
+                if(stat.attribIdx == attribIdx)
+                    return stat;
+            AttributeStat stat = new AttributeStat(attribIdx, attribute);
+            stats.add(stat);
+            return stat;
+        }
+    }
+
+    // How to get the value of one aggregator
+    private static final class Slot {
+        final Op op;
+        final AttributeStat stat;
+        final int intValue;
+        final Aggregator aggregator;
+
+        Slot(final Op op, final AttributeStat stat, final int intValue, final Aggregator aggregator) {
+            this.op = op;
+            this.stat = stat;
+            this.intValue = intValue;
+            this.aggregator = aggregator;
+        }
+    }
+
+    // The compiled plan together with the statistics buffers of one thread
+    private static final class Buffers {
+        final EdgeGroup[] groups;
+        final Slot[] slots;
+
+        Buffers(final Graph graph, final List<Aggregator> aggregators) {
+            List<EdgeGroup> groupList = new ArrayList<EdgeGroup>();
+            slots = new Slot[aggregators.size()];
+            int i = 0;
+            for(Aggregator agg : aggregators)
+            {
+                Op op = getOp(agg);
+                if(op == Op.Delegate)
+                {
+                    slots[i++] = new Slot(op, null, 0, agg);
+                    continue;
+                }
+
+                EdgeType et = agg.getEdgeType();
+                EdgeGroup group = null;
+                for(EdgeGroup g : groupList)
+                    if(g.edgeType.equals(et.getName()))
+                        group = g;
+                if(group == null)
+                {
+                    group = new EdgeGroup(et.getName());
+                    groupList.add(group);
+                }
+
+                Attribute attrib = agg.getAttribute();
+                int attribIdx = graph.getAttributes(et.getDestType()).getAttributeIndex(attrib.getName());
+                AttributeStat stat = group.getStat(attribIdx, attrib);
+                if((op == Op.Count || op == Op.Ratio || op == Op.Exist) &&
+                   stat.type != Type.CATEGORICAL && stat.type != Type.DISCRETE)
+                    op = Op.Constant;
+                int intValue = ( (agg instanceof AggregatorByValue) ? (int)((AggregatorByValue)agg).getAttributeValue() : 0 );
+                slots[i++] = new Slot(op, stat, intValue, agg);
+            }
+
+            groups = groupList.toArray(new EdgeGroup[groupList.size()]);
+            for(EdgeGroup group : groups)
+            {
+                List<AttributeStat> streamed = new ArrayList<AttributeStat>();
+                for(AttributeStat stat : group.stats)
+                {
+                    if(stat.type == Type.DISCRETE)
+                        group.needEdges = true;
+                    else
+                        streamed.add(stat);
+                }
+                group.streamed = streamed.toArray(new AttributeStat[streamed.size()]);
+            }
+        }
+    }
+
+    private final Graph graph;
+    private final List<Aggregator> aggregators;
+    private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+        protected Buffers initialValue() {
+            return new Buffers(graph, aggregators);
+        }
+    };
+
+    /**
+     * Compile a plan for the given aggregators.
+     *
+     * @param context The context of the graph whose nodes will be aggregated over
+     * @param aggregators The aggregators to evaluate, in the order in which their values are wanted
+     */
+    public AggregationPlan(final AggregationContext context, final List<Aggregator> aggregators) {
+        this.graph = context.getGraph();
+        this.aggregators = new ArrayList<Aggregator>(aggregators);
+        buffers.get();
+    }
+
+    private static Op getOp(final Aggregator agg) {
+        if(agg.getEdgeType() == null)
+            return Op.Delegate;
+        if(agg instanceof Count)
+            return Op.Count;
+        if(agg instanceof Ratio)
+            return Op.Ratio;
+        if(agg instanceof Exist)
+            return Op.Exist;
+        if(agg instanceof Mode)
+            return Op.Mode;
+        if(agg instanceof Mean)
+            return Op.Mean;
+        if(agg instanceof Min)
+            return Op.Min;
+        if(agg instanceof Max)
+            return Op.Max;
+        return Op.Delegate;
+    }
+
+    /**
+     * @return the number of values filled in by this plan
+     */
+    public int size() {
+        return aggregators.size();
+    }
+
+    /**
+     * Aggregate around the given node and put the value of the i'th aggregator at
+     * <code>vector[offset+i]</code>.
+     *
+     * @param node The node around which to aggregate
+     * @param prior The current class estimates of the unknown nodes, or null
+     * @param vector The array to fill in
+     * @param offset Where in the array to put the value of the first aggregator
+     */
+    public void evaluate(final Node node, final Estimate prior, final double[] vector, final int offset) {
+        final Buffers b = buffers.get();
+        final EdgeGroup[] groups = b.groups;
+        final Slot[] slots = b.slots;
+        for(EdgeGroup group : groups)
+        {
+            for(AttributeStat stat : group.stats)
+                stat.reset();
+            group.edges.clear();
+        }
+
+        for(Edge e : node.getEdges())
+        {
+            String et = e.getEdgeType().getName();
+            for(EdgeGroup group : groups)
+            {
+                if(!group.edgeType.equals(et))
+                    continue;
+                Node dest = e.getDest();
+                double wt = e.getWeight();
+                for(AttributeStat stat : group.streamed)
+                    stat.add(dest, wt, prior);
+                if(group.needEdges)
+                    group.edges.add(e);
+                break;
+            }
+        }
+
+        for(EdgeGroup group : groups)
+        {
+            Edge[] edges = ( group.needEdges ? group.edges.toArray(new Edge[group.edges.size()]) : null );
+            for(AttributeStat stat : group.stats)
+                stat.finish(edges);
+        }
+
+        for(int i=0;i<slots.length;i++)
+        {
+            Slot slot = slots[i];
+            AttributeStat stat = slot.stat;
+            double value = 0;
+            switch(slot.op)
+            {
+            case Count:
+                value = stat.getCount(slot.intValue);
+                break;
+            case Ratio:
+                value = stat.getCount(slot.intValue);
+                if(!Double.isNaN(value) && value > 0)
+                    value /= stat.getTotalCount();
+                break;
+            case Exist:
+                value = stat.getCount(slot.intValue);
+                if(!Double.isNaN(value))
+                    value = ((value>0) ? 1.0 : 0.0);
+                break;
+            case Mode:
+                value = stat.getMode();
+                break;
+            case Mean:
+                value = stat.mean;
+                break;
+            case Min:
+                value = stat.min;
+                break;
+            case Max:
+                value = stat.max;
+                break;
+            case Constant:
+                value = 0;
+                break;
+            case Delegate:
+                value = slot.aggregator.getValue(node,prior);
+                break;
+            }
+            vector[offset+i] = value;
+        }
+    }
+}
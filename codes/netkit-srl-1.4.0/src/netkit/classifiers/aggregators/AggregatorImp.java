@@ -47,8 +47,19 @@ public abstract class AggregatorImp implements Aggregator {
     // The final immutable name of this virtual attribute
     protected final String name;
 
-    // This is a cache for aggregated values across a nodes in the graph such that we don't need to recompute every time.  Memory intensive.
-    protected SharedNodeInfo aggregateCache = null;
+    // The context that holds the graph and the cached aggregated values.  If null, then the default context is used.
+    protected AggregationContext context = null;
+
+    // The slot of the cached aggregated values in the context, looked up on first use
+    private static final class InfoSlot {
+        final AggregationContext context;
+        final int slot;
+        InfoSlot(final AggregationContext context, final int slot) {
+            this.context = context;
+            this.slot = slot;
+        }
+    }
+    private volatile InfoSlot infoSlot = null;
 
     // This is a pointer to the attribute object that is being aggregated on
     protected final Attribute attribute;
@@ -131,6 +142,28 @@ public abstract class AggregatorImp implements Aggregator {
         return name;
     }
 
+    /**
+     * Set the context that this aggregator gets its graph and cached aggregated values from.
+     * Aggregators without a context use the default context set up by
+     * <code>SharedNodeInfo.initialize(Graph)</code>.
+     *
+     * @param context The context to aggregate in, or null for the default context
+     *
+     * @see netkit.classifiers.aggregators.SharedNodeInfo#initialize(netkit.graph.Graph)
+     */
+    public void setContext(final AggregationContext context) {
+        this.context = context;
+        this.attribIdx = -1;
+        this.infoSlot = null;
+    }
+
+    /**
+     * @return the context that this aggregator aggregates in
+     */
+    protected final AggregationContext getContext() {
+        return ( (context == null) ? SharedNodeInfo.getDefaultContext() : context );
+    }
+
     /**
      * Get the index of the attribute in the instance vector array--we need to go through a node to
      * get at this information.  This information tells us where in the instance vector array
@@ -142,7 +175,7 @@ public abstract class AggregatorImp implements Aggregator {
     protected final int getAttributeIndex(final String nodeType) {
     	
         if(attribIdx == -1)
-            attribIdx = SharedNodeInfo.getAttributeIndex(nodeType,attribute);
+            attribIdx = getContext().getAttributeIndex(nodeType,attribute);
         return attribIdx;
     }
 
@@ -171,18 +204,21 @@ public abstract class AggregatorImp implements Aggregator {
 
     /**
      * This is cached aggregation information about the node as is relevant to the relationship that
-     * this aggregator uses.
+     * this aggregator uses.  Each thread gets its own instance.
      *
      * @param node The node whose cached aggregated information is needed.
      * @return
      */
     protected final SharedNodeInfo getNodeInfo(final Node node) {
-        if(aggregateCache == null)
+        final AggregationContext ctx = getContext();
+        InfoSlot info = infoSlot;
+        if(info == null || info.context != ctx)
         {
             String nodeType = ( edgeType == null ) ? node.getType() : edgeType.getDestType();
-            aggregateCache = SharedNodeInfo.getInfo(nodeType, getAttributeIndex(nodeType), edgeType);
+            info = new InfoSlot(ctx, ctx.getSlot(nodeType, getAttributeIndex(nodeType), edgeType));
+            infoSlot = info;
         }
-        return aggregateCache;
+        return ctx.getInfo(info.slot);
     }
 
     /**
@@ -45,6 +45,11 @@ public final class Ratio extends AggregatorByValueImp {
         this.count = new Count(edgeType, attribute, value);
     }
 
+    public void setContext(AggregationContext context) {
+        super.setContext(context);
+        count.setContext(context);
+    }
+
     public double getValue(Node n, Estimate prior) {
         double value = count.getValue(n,prior);
         if(!Double.isNaN(value) && value > 0)
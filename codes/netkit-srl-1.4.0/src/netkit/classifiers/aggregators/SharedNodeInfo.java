@@ -29,9 +29,6 @@ import netkit.util.HistogramDiscrete;
 import netkit.util.VectorMath;
 import netkit.classifiers.Estimate;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * The SharedNodeInfo class is used to cache aggregation statistics for a given node such that
  * multiple aggregators can use the same statistics without having to calculate them more than
@@ -40,65 +37,43 @@ import java.util.Map;
  * Currently, it is assumed that aggregators for a specific node is called in a succession
  * before aggregation for a different node in the graph is done.  Therefore, I only cache things
  * as long is we are aggregating on the same node.  This saves a lot of memory.
+ * <P>
+ * Instances are owned by an AggregationContext, which keeps a separate instance per thread.
  *
  * @author Sofus A. Macskassy (sofmac@gmail.com)
  */
 public final class SharedNodeInfo {
-    // Key into the static lookup table to get cached SharedNodeInfo instances
-    // These are keyed on nodetype and edgetype, so that is what this key uses
-    private final static class SNIKey {
-        public final String nodeType;
-        public final String edgeType;
-        private int hash = -1;
-        public SNIKey(final String nt, final String et) {
-            this.nodeType = nt;
-            this.edgeType = ((et == null) ? "__null" : et);
-        }
-        public boolean equals(Object o) {
-            if(o instanceof SNIKey) {
-                SNIKey s = (SNIKey)o;
-                return(nodeType.equals(s.nodeType) && edgeType.equals(s.edgeType));
-            }
-            return false;
-        }
-        public int hashCode() {
-            if(hash == -1)
-                hash = ("NodeType:"+nodeType+"-EdgeType:"+edgeType).hashCode();
-            return hash;
-        }
-    }
-
-    // lookup table to find a sharednode.  Currently I have one static node per nodetype per
-    // attribute
-    private static Map<SNIKey,SharedNodeInfo[]> info = new HashMap<SNIKey,SharedNodeInfo[]>();
-
-    // The graph that is currently being used for aggregation.  I need this for certain lookups
-    // when I create the sharednodeinfo classes.
-    private static Graph g = null;
-
-    // What was the last node info (array) that was asked for?  It is very likely that we will
-    // want another SharedNodeInfo using the same nodetype and edgetype (but possibly a different
-    // attribute).  This is just for quick lookup
-    private static SNIKey lastKey = null;
-    private static SharedNodeInfo[] lastArr = null;
+    // The context used by aggregators which have not been given a context of their own
+    private static AggregationContext defaultContext = null;
 
     /**
      * Assume that we will be doing aggregation over this particular graph
-     * until further notice
+     * until further notice.  This sets up the default context, which is used
+     * by aggregators that have not been given an AggregationContext.
      * @param g The graph being aggregated over
+     * @see netkit.classifiers.aggregators.AggregatorImp#setContext(AggregationContext)
      */
     public static void initialize(Graph g) {
-        SharedNodeInfo.g = g;
+        defaultContext = new AggregationContext(g);
     }
-    
-    public static int getAttributeIndex(final String nodeType, final Attribute attrib) {
-        if(g == null)
+
+    /**
+     * @return the context set up by the last call to <code>initialize</code>
+     */
+    public static AggregationContext getDefaultContext() {
+        AggregationContext context = defaultContext;
+        if(context == null)
             throw new IllegalStateException("SharedNode has not been initialized with a graph.");
-        return g.getAttributes(nodeType).getAttributeIndex(attrib.getName());
+        return context;
+    }
+
+    public static int getAttributeIndex(final String nodeType, final Attribute attrib) {
+        return getDefaultContext().getAttributeIndex(nodeType,attrib);
     }
 
     /**
-     * Get a SharedNodeInfo instance for a given node type, attribute and edge type.
+     * Get a SharedNodeInfo instance for a given node type, attribute and edge type
+     * from the default context.
      *
      * @param nodeType The node type of the neighbor nodes that will be aggregated over
      *                 (for example, if I want to create an aggregate result on node X of type XType
@@ -109,39 +84,10 @@ public final class SharedNodeInfo {
      *                  destination node (YType).  This is used to get the neighbors of a given
      *                  source node when computing the aggregation statistics.
      * @return A SharedNodeInfo instance that works for a given nodetype, attribute index and edgetype.
+     * @see netkit.classifiers.aggregators.AggregationContext#getInfo(String, int, EdgeType)
      */
     public static SharedNodeInfo getInfo(final String nodeType, final int attribIdx, EdgeType edgeType) {
-        if(g == null)
-            throw new IllegalStateException("SharedNode has not been initialized with a graph.");
-
-        /** This first looks up the array of all cached information about a given nodetype and edgetype.
-         * This is an array of sharednodeinfos across all attributes on that nodetype and we instantiate
-         * only those that are needed.  We first look up to see if we got this array on the last query
-         * to speed that up (this is admittedly a sille optimization, but that's how I am sometimes).
-         */
-        SNIKey key = new SNIKey(nodeType, edgeType.getName());
-        SharedNodeInfo[] list = null;
-        if(key.equals(lastKey))
-            list = lastArr;
-        else
-        {
-            list = info.get(key);
-            if(list == null)
-            {
-                list = new SharedNodeInfo[g.getAttributes(nodeType).attributeCount()];
-                java.util.Arrays.fill(list,null);
-                info.put(key,list);
-            }
-            lastKey = key;
-            lastArr = list;
-        }
-        SharedNodeInfo sni = list[attribIdx];
-        if(sni == null)
-        {
-            sni = new SharedNodeInfo(nodeType, edgeType.getName(), attribIdx);
-            list[attribIdx] = sni;
-        }
-        return sni;
+        return getDefaultContext().getInfo(nodeType,attribIdx,edgeType);
     }
 
     /**
@@ -150,9 +96,7 @@ public final class SharedNodeInfo {
      * @return the node type at the other end of the given edgeType
      */
     public static String getDestinationNodeType(final String edgeType) {
-        if(g == null)
-            throw new IllegalStateException("SharedNode has not been initialized with a graph.");
-        return ( (edgeType == null) ? null : g.getEdgeType(edgeType).getDestType() );
+        return getDefaultContext().getDestinationNodeType(edgeType);
     }
 
     // specific information about the attribute that will be aggregated over
@@ -172,13 +116,14 @@ public final class SharedNodeInfo {
     private Edge[] edges = null;
 
     /**
-     * Constructor that can only be called by the 'getInfo' method.
+     * Constructor that can only be called by the AggregationContext.
+     * @param g The graph being aggregated over
      * @param nodeType The nodeType which is used to get neighbors of a specified node
      * @param edgeType The edgeType which is used to get neighbors of a specified edge
      * @param attribIdx
-     * @see netkit.classifiers.aggregators.SharedNodeInfo#getInfo(String, int, EdgeType)
+     * @see netkit.classifiers.aggregators.AggregationContext#getInfo(int)
      */
-    private SharedNodeInfo(final String nodeType, final String edgeType, final int attribIdx) {
+    SharedNodeInfo(final Graph g, final String nodeType, final String edgeType, final int attribIdx) {
         this.edgeType = edgeType;
         this.attribIdx = attribIdx;
         this.nodeType = nodeType;
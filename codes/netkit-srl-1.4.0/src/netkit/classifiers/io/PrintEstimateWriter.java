@@ -27,15 +27,31 @@ package netkit.classifiers.io;
 import netkit.graph.Node;
 import netkit.graph.AttributeCategorical;
 import netkit.util.NetKitEnv;
+import netkit.util.ParallelUtil;
 import netkit.classifiers.Estimate;
 import netkit.classifiers.Classification;
 
 import java.io.PrintWriter;
 import java.io.PrintStream;
 import java.io.OutputStream;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -70,22 +86,48 @@ import java.util.logging.Logger;
  * Where class1 through classK are the possible labels for the class attribute, in the order that they were specified
  * in the schema file or the order in which they were observed in the data
  *
+ * <P>
+ * The format string is compiled once into its print segments, which are bound to the
+ * class attribute of the estimates before printing, and lines are formatted into a
+ * reusable buffer which is handed to the output in large chunks.  Besides text, the
+ * estimates can be written as a binary record (see
+ * {@link #printBinary(OutputStream, String, Node[], Estimate)}), and
+ * {@link #printAsync(File, boolean, String, Node[], Estimate, Classification, boolean)}
+ * writes a copy of the estimates in a background thread, such that inference can go on
+ * while the predictions of an iteration are being saved.
+ *
  * @author Sofus A. Macskassy (sofmac@gmail.com)
  */
 public class PrintEstimateWriter
 {
     private final Logger logger = NetKitEnv.getLogger(this);
 
-    // The name of the label and index into the score array of the predicted label for the node
-    // whose information is currently being printed
-    private String predNm = null;
-    private int    predIdx = -1;
+    /** Marks the start of a binary record ("NKPE") */
+    public static final int BINARY_MAGIC = 0x4E4B5045;
+    /** The version of the binary record format */
+    public static final int BINARY_VERSION = 1;
+
+    // The number of characters or bytes to collect before handing them to the output
+    private static final int BUFFER_SIZE = 1<<16;
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    // A single daemon thread, shared by all writers, for the asynchronous writes
+    private static ExecutorService writer = null;
 
     // The source format string, the output printwriter and the resulting list of printsegments
     private String format = null;
     private PrintWriter pw;
     private List<PrintSegment> segments = new ArrayList<PrintSegment>();
 
+    // The print segments bound to the attribute of the most recently printed estimates,
+    // and the buffer and line which are reused for printing
+    private Binding binding = null;
+    private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE+1024);
+    private final Line line = new Line();
+
+    // The asynchronous write in progress, if any
+    private Future<?> pending = null;
+
     public PrintEstimateWriter(PrintWriter pw, String format) {
         setOutput(pw);
         setOutputFormat(format);
@@ -100,106 +142,192 @@ public class PrintEstimateWriter
         this(new PrintWriter(ps,true));
     }
 
-    // defines the PrintSegment interface, which is just one print method that all
-    // PrintSegments must implement
+    // The values of the line being printed: the node ID, the scores of the node, which
+    // are p[off] through p[off+K-1] (p is null if the node has no estimate), and the index
+    // of the predicted and the true label (-1 if not known).
+    private static final class Line {
+        private String[] tokens;
+        private String id;
+        private double[] p;
+        private int off;
+        private int pred;
+        private int lbl;
+
+        private double score(int vIdx) {
+            return ( (p==null||vIdx<0||vIdx>=tokens.length) ? -1 : p[off+vIdx]);
+        }
+        private String token(int vIdx) {
+            return ( (vIdx<0) ? "UNKNOWN" : tokens[vIdx]);
+        }
+        private void set(Node node, Estimate e, Classification known) {
+            id   = node.getName();
+            p    = e.getEstimate(node);
+            off  = 0;
+            pred = e.getClassification(node);
+            lbl  = ( (known == null) ? -1 : known.getClassValue(node));
+        }
+    }
+
+    // defines the PrintSegment interface.  A segment is bound to the class attribute
+    // before printing, which resolves the token names it refers to.
     private interface PrintSegment {
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known);
+        public PrintSegment bind(AttributeCategorical attr);
+        public void print(StringBuilder sb, Line line);
     }
-    private class PrintConstant implements PrintSegment {
-        private String c;
+    private static final class PrintConstant implements PrintSegment {
+        private final String c;
         public PrintConstant(String s) {
             this.c = s.intern();
         }
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known) {
-            logger.finer("PrintConstant() - print("+c+")");
-            pw.print(c);
+        public PrintSegment bind(AttributeCategorical attr) {
+            return this;
+        }
+        public void print(StringBuilder sb, Line line) {
+            sb.append(c);
         }
     }
-    private class PrintNodeID implements PrintSegment {
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known) {
-            logger.finer("PrintNodeID() - print("+node.getName()+")");
-            pw.print(node.getName());
+    private static final class PrintNodeID implements PrintSegment {
+        public PrintSegment bind(AttributeCategorical attr) {
+            return this;
+        }
+        public void print(StringBuilder sb, Line line) {
+            sb.append(line.id);
         }
     }
-    private class PrintClass implements PrintSegment {
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known) {
-            int lbl = ( (known == null) ? -1 : known.getClassValue(node));
-            String cls = ((lbl==-1) ? "UNKNOWN" : e.getAttribute().getToken(lbl));
-            pw.print(cls);
-            logger.finer("PrintClass() - print("+cls+")");
+    private static final class PrintClass implements PrintSegment {
+        public PrintSegment bind(AttributeCategorical attr) {
+            return this;
+        }
+        public void print(StringBuilder sb, Line line) {
+            sb.append(line.token(line.lbl));
         }
     }
-    private class PrintScore implements PrintSegment {
-        private String vName;
+    private final class PrintScore implements PrintSegment {
+        private final String vName;
+        private final int vIdx;
         public PrintScore(String name) {
+            this(name,-1);
+        }
+        private PrintScore(String name, int vIdx) {
             this.vName = name.intern();
+            this.vIdx  = vIdx;
         }
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known) {
-            double[] p = e.getEstimate(node);
-            double s = -1;
-            int vIdx = -1;
-            if(p!=null)
-            {
-                vIdx = e.getAttribute().getValue(vName);
-                s = ( (vIdx<0||vIdx>=p.length) ? -1 : p[vIdx]);
-            }
-            pw.print(s);
-            logger.finer("PrintScore() - print["+vName+","+vIdx+"]("+s+")");
+        public PrintSegment bind(AttributeCategorical attr) {
+            return new PrintScore(vName,getValue(attr,vName));
+        }
+        public void print(StringBuilder sb, Line line) {
+            sb.append(line.score(vIdx));
         }
     }
-    private class PrintEstimate implements PrintSegment {
-        private String vName;
+    private final class PrintEstimate implements PrintSegment {
+        private final String vName;
+        private final int vIdx;
         public PrintEstimate(String name) {
+            this(name,-1);
+        }
+        private PrintEstimate(String name, int vIdx) {
             this.vName = name.intern();
+            this.vIdx  = vIdx;
+        }
+        public PrintSegment bind(AttributeCategorical attr) {
+            return new PrintEstimate(vName,getValue(attr,vName));
         }
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known) {
-            if(vName.equals(e.getAttribute().getToken(predIdx)))
+        public void print(StringBuilder sb, Line line) {
+            if(vIdx >= 0 && vIdx == line.pred)
                 return;
-
-            double[] p = e.getEstimate(node);
-            double s = -1;
-            int vIdx = -1;
-            if(p!=null)
+            sb.append(vName).append(':').append(line.score(vIdx));
+        }
+    }
+    private static final class PrintPrediction implements PrintSegment {
+        public PrintSegment bind(AttributeCategorical attr) {
+            return this;
+        }
+        public void print(StringBuilder sb, Line line) {
+            sb.append(line.token(line.pred)).append(':').append(line.score(line.pred));
+        }
+    }
+    private static final class PrintPredictionClass implements PrintSegment {
+        public PrintSegment bind(AttributeCategorical attr) {
+            return this;
+        }
+        public void print(StringBuilder sb, Line line) {
+            sb.append(line.token(line.pred));
+        }
+    }
+    private static final class PrintPredictionScore implements PrintSegment {
+        public PrintSegment bind(AttributeCategorical attr) {
+            return this;
+        }
+        public void print(StringBuilder sb, Line line) {
+            sb.append(line.score(line.pred));
+        }
+    }
+    // the default output of all estimates as 'token:score', or 'token:-1' for
+    // nodes without an estimate
+    private static final class PrintEstimates implements PrintSegment {
+        public PrintSegment bind(AttributeCategorical attr) {
+            return this;
+        }
+        public void print(StringBuilder sb, Line line) {
+            for(int c=0;c<line.tokens.length;c++)
             {
-                try
-                {
-                    vIdx = e.getAttribute().getValue(vName);
-                }
-                catch(NullPointerException npe)
-                {
-                    logger.severe("Class name "+vName+" is not known");
-                }
-                s = ( (vIdx<0||vIdx>=p.length) ? -1 : p[vIdx]);
+                sb.append(' ').append(line.tokens[c]).append(':');
+                if(line.p == null)
+                    sb.append(-1);
+                else
+                    sb.append(line.p[line.off+c]);
             }
-            pw.print(vName);
-            pw.print(":");
-            pw.print(s);
         }
     }
-    private class PrintPrediction implements PrintSegment {
-        PrintPredictionClass pc = new PrintPredictionClass();
-        PrintPredictionScore ps = new PrintPredictionScore();
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known) {
-            pc.print(pw,node,e,known);
-            pw.print(":");
-            ps.print(pw,node,e,known);
-            logger.finer("PrintPrediction() - print()");
+
+    // The print segments bound to a class attribute, along with its tokens
+    private static final class Binding {
+        private final AttributeCategorical attr;
+        private final String[] tokens;
+        private final PrintSegment[] segments;
+        private Binding(AttributeCategorical attr, PrintSegment[] segments) {
+            this.attr = attr;
+            this.tokens = attr.getTokens();
+            this.segments = segments;
+        }
+        private void print(StringBuilder sb, Line line) {
+            for(PrintSegment segment : segments)
+                segment.print(sb,line);
         }
     }
-    private class PrintPredictionClass implements PrintSegment {
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known) {
-            pw.print(predNm);
-            logger.finer("PrintPredictionClass() - print["+predNm+","+predIdx+"]");
+
+    private int getValue(AttributeCategorical attr, String vName) {
+        try
+        {
+            return attr.getValue(vName);
+        }
+        catch(NullPointerException npe)
+        {
+            logger.severe("Class name "+vName+" is not known");
+            return -1;
         }
     }
-    private class PrintPredictionScore implements PrintSegment {
-        public void print(PrintWriter pw, Node node, Estimate e, Classification known)
+
+    /**
+     * Get the print segments bound to the given attribute.  The binding
+     * is kept until the output format or the attribute changes.
+     */
+    private Binding bind(AttributeCategorical attr) {
+        if(binding != null && binding.attr == attr && binding.tokens.length == attr.size())
+            return binding;
+        PrintSegment[] bound;
+        if(segments.size()>0)
         {
-            double[] p = e.getEstimate(node);
-            double s = ( (predIdx<0) ? -1 : p[predIdx]);
-            pw.print(s);
-            logger.finer("PrintPredictionScore() - print["+e.getAttribute().getToken(predIdx)+","+predIdx+"]("+s+")");
+            bound = new PrintSegment[segments.size()];
+            for(int i=0;i<bound.length;i++)
+                bound[i] = segments.get(i).bind(attr);
         }
+        else
+        {
+            bound = new PrintSegment[]{ new PrintNodeID(), new PrintEstimates() };
+        }
+        binding = new Binding(attr,bound);
+        return binding;
     }
 
     /**
@@ -266,44 +394,58 @@ public class PrintEstimateWriter
      * @param known The true labels
      */
     public void print(Node node, Estimate e, Classification known) {
-        predIdx = e.getClassification(node);
-        predNm  = e.getAttribute().getToken(predIdx);
-        if(segments.size()>0)
-        {
-            for(PrintSegment segment: segments)
-                segment.print(pw,node,e,known);
-        }
-        else
+        buffer.setLength(0);
+        format(buffer,node,e,known);
+        pw.append(buffer);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Print an estimate line for each of the given nodes.  This gives the same output as
+     * calling println on each node, but the lines are formatted into a buffer which is
+     * written out in large chunks, and the output is flushed once at the end.
+     *
+     * @param nodes The nodes whose estimates to print
+     * @param e The current estimates
+     * @param known The true labels, or null if not known
+     */
+    public void printAll(Iterable<Node> nodes, Estimate e, Classification known) {
+        final Binding b = bind(e.getAttribute());
+        line.tokens = b.tokens;
+        buffer.setLength(0);
+        for(Node node : nodes)
         {
-            pw.print(node.getName());
-            double[] p = e.getEstimate(node);
-            AttributeCategorical attr = e.getAttribute();
-            if(p!=null)
-            {
-                for(int c=0;c<p.length;c++)
-                {
-                    pw.print(" ");
-                    pw.print(attr.getToken(c));
-                    pw.print(":");
-                    pw.print(p[c]);
-                }
-            }
-            else
+            line.set(node,e,known);
+            b.print(buffer,line);
+            buffer.append(NEWLINE);
+            if(buffer.length() >= BUFFER_SIZE)
             {
-                for(String s : attr.getTokens())
-                {
-                    pw.print(" ");
-                    pw.print(s);
-                    pw.print(":-1");
-                }
+                pw.append(buffer);
+                buffer.setLength(0);
             }
         }
+        pw.append(buffer);
+        buffer.setLength(0);
+        pw.flush();
+    }
+    /**
+     * @see netkit.classifiers.io.PrintEstimateWriter#printAll(java.lang.Iterable, netkit.classifiers.Estimate, netkit.classifiers.Classification)
+     */
+    public void printAll(Node[] nodes, Estimate e, Classification known) {
+        printAll(Arrays.asList(nodes),e,known);
+    }
+
+    // format the estimate of the given node into the given buffer
+    private void format(StringBuilder sb, Node node, Estimate e, Classification known) {
+        final Binding b = bind(e.getAttribute());
+        line.tokens = b.tokens;
+        line.set(node,e,known);
+        b.print(sb,line);
     }
 
     /**
-     * The equivalent of a print, where the output has been set to a string to be returned.
-     * This temporarily resets the output to a StringWriter and prints to there, then resets
-     * the output back to the original stream.
+     * The equivalent of a print, where the output is returned as a string rather than
+     * sent to the output stream.
      *
      * @param node The node whose estimate needs to be written
      * @param e The current estimates
@@ -312,18 +454,13 @@ public class PrintEstimateWriter
      * @see netkit.classifiers.io.PrintEstimateWriter#print(netkit.graph.Node, netkit.classifiers.Estimate, netkit.classifiers.Classification)
      */
     public String toString(Node node, Estimate e, Classification known) {
-        PrintWriter ow = this.pw;
-        StringWriter sw = new StringWriter(80);
-        setOutput(new PrintWriter(sw));
-        print(node,e,known);
-        sw.flush();
-        setOutput(ow);
-        return sw.toString();
+        StringBuilder sb = new StringBuilder(80);
+        format(sb,node,e,known);
+        return sb.toString();
     }
     /**
-     * The equivalent of a print, where the output has been set to a string to be returned.
-     * This temporarily resets the output to a StringWriter and prints to there, then resets
-     * the output back to the original stream.
+     * The equivalent of a print, where the output is returned as a string rather than
+     * sent to the output stream.
      *
      * @param node The node whose estimate needs to be written
      * @param e The current estimates
@@ -334,6 +471,269 @@ public class PrintEstimateWriter
         return toString(node,e,null);
     }
 
+    // A copy of the estimates of a list of nodes, as a flat row-major matrix
+    private static final class Snapshot {
+        private final String header;
+        private final String[] tokens;
+        private final String[] ids;
+        private final double[] scores;
+        private final boolean[] estimated;
+        private final int[] pred;
+        private final int[] lbl;
+
+        private Snapshot(String header, Node[] nodes, Estimate e, Classification known) {
+            final int k = e.getAttribute().size();
+            this.header    = header;
+            this.tokens    = e.getAttribute().getTokens();
+            this.ids       = new String[nodes.length];
+            this.scores    = new double[nodes.length*k];
+            this.estimated = new boolean[nodes.length];
+            this.pred      = new int[nodes.length];
+            this.lbl       = new int[nodes.length];
+            for(int i=0;i<nodes.length;i++)
+            {
+                final Node node = nodes[i];
+                final double[] p = e.getEstimate(node);
+                ids[i] = node.getName();
+                if(p != null)
+                {
+                    System.arraycopy(p,0,scores,i*k,Math.min(k,p.length));
+                    estimated[i] = true;
+                }
+                pred[i] = e.getClassification(node);
+                lbl[i]  = ( (known == null) ? -1 : known.getClassValue(node));
+            }
+        }
+
+        private void setLine(Line line, int i) {
+            line.tokens = tokens;
+            line.id     = ids[i];
+            line.p      = (estimated[i] ? scores : null);
+            line.off    = i*tokens.length;
+            line.pred   = pred[i];
+            line.lbl    = lbl[i];
+        }
+
+        private void writeText(Writer out, Binding b) throws IOException {
+            final StringBuilder sb = new StringBuilder(BUFFER_SIZE+1024);
+            final Line line = new Line();
+            if(header != null)
+                sb.append(header).append(NEWLINE);
+            for(int i=0;i<ids.length;i++)
+            {
+                setLine(line,i);
+                b.print(sb,line);
+                sb.append(NEWLINE);
+                if(sb.length() >= BUFFER_SIZE)
+                {
+                    out.append(sb);
+                    sb.setLength(0);
+                }
+            }
+            out.append(sb);
+            out.flush();
+        }
+
+        private void writeBinary(OutputStream os) throws IOException {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os,BUFFER_SIZE));
+            final int k = tokens.length;
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeUTF(header == null ? "" : header);
+            out.writeInt(ids.length);
+            out.writeInt(k);
+            for(String token : tokens)
+                out.writeUTF(token);
+            for(String id : ids)
+                out.writeUTF(id);
+            final ByteBuffer bb = ByteBuffer.allocate(BUFFER_SIZE);
+            for(int i=0;i<ids.length;i++)
+            {
+                if(bb.remaining() < 4*k)
+                {
+                    out.write(bb.array(),0,bb.position());
+                    bb.clear();
+                }
+                for(int c=0;c<k;c++)
+                    bb.putFloat(estimated[i] ? (float)scores[i*k+c] : Float.NaN);
+            }
+            out.write(bb.array(),0,bb.position());
+            out.flush();
+        }
+    }
+
+    /**
+     * Write the estimates of the given nodes as one binary record: the magic number
+     * and version, the header, the number of nodes N and of classes K, the K class
+     * tokens, the N node IDs and then an NxK row-major matrix of float scores.  Nodes
+     * without an estimate have NaN scores.  Records can be appended to one another and
+     * are read back by {@link #readBinary(InputStream)}.
+     *
+     * @param os Where to write the record
+     * @param header A header for the record, such as the run number
+     * @param nodes The nodes whose estimates to write
+     * @param e The current estimates
+     * @throws IOException If writing to the stream fails
+     */
+    public void printBinary(OutputStream os, String header, Node[] nodes, Estimate e) throws IOException {
+        new Snapshot(header,nodes,e,null).writeBinary(os);
+    }
+
+    /**
+     * One binary record of estimates, as written by printBinary.
+     */
+    public static final class BinaryEstimates {
+        public final String header;
+        public final String[] tokens;
+        public final String[] nodes;
+        public final float[] scores;
+
+        private BinaryEstimates(String header, String[] tokens, String[] nodes, float[] scores) {
+            this.header = header;
+            this.tokens = tokens;
+            this.nodes = nodes;
+            this.scores = scores;
+        }
+        /**
+         * @return the score of class cls for the node at the given row, NaN if the node had no estimate
+         */
+        public float getScore(int row, int cls) {
+            return scores[row*tokens.length+cls];
+        }
+    }
+
+    /**
+     * Read the next binary record from the given stream.
+     *
+     * @param is The stream to read from
+     * @return The record, or null at the end of the stream
+     * @throws IOException If reading fails or the stream does not hold a record
+     */
+    public static BinaryEstimates readBinary(InputStream is) throws IOException {
+        final DataInputStream in = ( (is instanceof DataInputStream) ? (DataInputStream)is : new DataInputStream(is));
+        final int magic;
+        try
+        {
+            magic = in.readInt();
+        }
+        catch(EOFException eof)
+        {
+            return null;
+        }
+        if(magic != BINARY_MAGIC)
+            throw new IOException("Not a binary estimate record (magic="+Integer.toHexString(magic)+")");
+        final int version = in.readInt();
+        if(version != BINARY_VERSION)
+            throw new IOException("Unsupported binary estimate version "+version);
+        final String header = in.readUTF();
+        final String[] nodes = new String[in.readInt()];
+        final String[] tokens = new String[in.readInt()];
+        for(int c=0;c<tokens.length;c++)
+            tokens[c] = in.readUTF();
+        for(int i=0;i<nodes.length;i++)
+            nodes[i] = in.readUTF();
+        final float[] scores = new float[nodes.length*tokens.length];
+        final byte[] buf = new byte[BUFFER_SIZE];
+        for(int off=0;off<scores.length;)
+        {
+            final int n = Math.min(scores.length-off,BUFFER_SIZE/4);
+            in.readFully(buf,0,4*n);
+            ByteBuffer.wrap(buf,0,4*n).asFloatBuffer().get(scores,off,n);
+            off += n;
+        }
+        return new BinaryEstimates(header,tokens,nodes,scores);
+    }
+
+    private static synchronized ExecutorService getWriter() {
+        if(writer == null)
+            writer = ParallelUtil.newDaemonPool(1);
+        return writer;
+    }
+
+    /**
+     * Write the estimates of the given nodes to the given file in a background thread,
+     * either as text lines (preceded by the header line, if any) in the output format or
+     * as a binary record.  The estimates and true labels are copied before this returns,
+     * so they may change while the file is being written.  At most one write per writer is
+     * in progress: this first waits for the previous one to finish.  If a write fails,
+     * the next call to this or to awaitPending throws.
+     *
+     * @param file The file to write to
+     * @param append Whether to append to the file
+     * @param header A header line, or null for none
+     * @param nodes The nodes whose estimates to write
+     * @param e The current estimates
+     * @param known The true labels, or null if not known
+     * @param binary Whether to write a binary record rather than text
+     * @see netkit.classifiers.io.PrintEstimateWriter#awaitPending()
+     */
+    public void printAsync(final File file,
+                           final boolean append,
+                           String header,
+                           Node[] nodes,
+                           Estimate e,
+                           Classification known,
+                           final boolean binary) {
+        awaitPending();
+        final Snapshot s = new Snapshot(header,nodes,e,known);
+        final Binding b = (binary ? null : bind(e.getAttribute()));
+        pending = getWriter().submit(new Callable<Boolean>() {
+            public Boolean call() throws IOException {
+                if(binary)
+                {
+                    OutputStream os = new FileOutputStream(file,append);
+                    try
+                    {
+                        s.writeBinary(os);
+                    }
+                    finally
+                    {
+                        os.close();
+                    }
+                }
+                else
+                {
+                    Writer out = new FileWriter(file,append);
+                    try
+                    {
+                        s.writeText(out,b);
+                    }
+                    finally
+                    {
+                        out.close();
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Wait for the asynchronous write in progress, if any, to finish.
+     *
+     * @throws RuntimeException If the write failed, with the IOException as its cause
+     */
+    public void awaitPending() {
+        if(pending == null)
+            return;
+        try
+        {
+            pending.get();
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException ee)
+        {
+            throw new RuntimeException("Failed to write estimates",ee.getCause());
+        }
+        finally
+        {
+            pending = null;
+        }
+    }
+
     /**
      * Adds a PrintSegment to the output based on the current offset into
      * the output format string.  It is assumed that the very next 'token'
@@ -425,6 +825,7 @@ public class PrintEstimateWriter
      */
     public void setOutputFormat(String f) {
         segments.clear();
+        binding = null;
         if(f==null)
         {
             format = null;
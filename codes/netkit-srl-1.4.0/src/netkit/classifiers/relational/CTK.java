@@ -0,0 +1,122 @@
+/**
+ * CTK.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.util.*;
+
+/**
+ * The commute-time kernel from Fouss et al. (2012), as in the CTK.m
+ * baseline.  With P the transition matrix of a random walk that teleports
+ * to a uniformly random node with probability 1-eta, and L = I - P, this
+ * computes F = ((L - 11'/n)<SUP>-1</SUP> + 11'/n)Y.
+ * <P>
+ * The inverse is never built.  Writing P as the sparse row-normalized
+ * adjacency Q plus its rank-one teleports, L - 11'/n = (I - eta*Q) - uv',
+ * where u = (eta*d + (2-eta)1)/n, v = 1 and d marks the nodes without
+ * out-edges.  Every class is then solved by Sherman-Morrison, where the
+ * systems of I - eta*Q are solved by fixed point iteration, which converges
+ * at the rate eta.
+ *
+ * <B>Reference:</B>
+ * <UL>
+ * <LI> Fouss, F., Francoisse, K., Yen, L., Pirotte, A., & Saerens, M. (2012).<BR>
+ *      An experimental investigation of kernels on graphs for collaborative
+ *      recommendation and semisupervised classification.<BR>
+ *      Neural Networks, 31:53-72.
+ * </UL>
+ *
+ * Parameters:
+ * <UL>
+ * <LI> eta: the probability of following an edge (default 0.01)
+ * </UL>
+ * This does not use collective inference.  It uses only known labels and the graph.
+ */
+public class CTK extends SparseTransducer
+{
+	private double eta = 0.01;
+	private TeleportingWalk walk = null;
+	private double[] z = null; // (I - eta*Q)^-1 u
+	private double denominator = 1; // 1 - v'z
+
+	public String getShortName() {
+		return "CTK";
+	}
+	public String getName() {
+		return "Commute-time Kernel";
+	}
+	public String getDescription() {
+		return "See reference: Fouss, F., Francoisse, K., Yen, L., Pirotte, A., and Saerens, M. (2012), \"An experimental investigation of kernels on graphs for collaborative recommendation and semisupervised classification,\" Neural Networks, 31:53-72.";
+	}
+
+	public Configuration getDefaultConfiguration() {
+		Configuration conf = super.getDefaultConfiguration();
+		conf.set("eta",0.01);
+		return conf;
+	}
+
+	public void configure(Configuration config) {
+		super.configure(config);
+		eta = config.getDouble("eta",0.01);
+		logger.config(" configure: eta="+eta);
+	}
+
+	protected boolean isSymmetric() {
+		return false;
+	}
+
+	protected void prepare(CSRGraph g) {
+		walk = new TeleportingWalk(g,eta);
+		final int n = walk.numNodes;
+		final double[] u = new double[n];
+		for(int i=0;i<n;i++)
+			u[i] = ((walk.dangling[i] ? eta : 0) + 2 - eta)/n;
+		z = new double[n];
+		final int iter = solver.iterate(newOperator(1),u,z,1);
+		denominator = 1 - VectorMath.sum(z);
+		logger.fine(getName()+" rank-one correction took "+iter+" iterations (1-v'z="+denominator+")");
+	}
+
+	/**
+	 * @return the operator eta*Q
+	 */
+	protected BlockSolver.Operator newOperator(int numColumns) {
+		return new BlockSolver.Operator() {
+			public void apply(double[] X, double[] result, int numColumns) {
+				walk.multiplyEdges(X,result,numColumns);
+				VectorMath.multiply(result,eta);
+			}
+		};
+	}
+
+	/**
+	 * Solve (L - 11'/n)X = B by Sherman-Morrison and add 11'B/n.
+	 */
+	protected int solve(BlockSolver.Operator op, double[] B, double[] X, int numColumns) {
+		final int iter = solver.iterate(op,B,X,numColumns);
+		final double[] scale = BlockSolver.columnSums(X,numColumns);
+		VectorMath.divide(scale,denominator);
+		final double[] mean = BlockSolver.columnSums(B,numColumns);
+		VectorMath.divide(mean,walk.numNodes);
+		for(int i=0;i<walk.numNodes;i++)
+			for(int c=0;c<numColumns;c++)
+				X[i*numColumns+c] += scale[c]*z[i] + mean[c];
+		return iter;
+	}
+}
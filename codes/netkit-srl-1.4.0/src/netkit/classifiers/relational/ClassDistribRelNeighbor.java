@@ -25,11 +25,17 @@
 package netkit.classifiers.relational;
 
 import netkit.util.*;
+import netkit.graph.EdgeType;
 import netkit.graph.Graph;
 import netkit.graph.Node;
 import netkit.classifiers.DataSplit;
+import netkit.classifiers.aggregators.Aggregator;
+import netkit.classifiers.aggregators.AggregatorByValue;
+import netkit.classifiers.aggregators.Count;
+import netkit.classifiers.aggregators.Ratio;
 
 import java.util.Arrays;
+import java.util.logging.Level;
 
 /**
  * The Class Distributional Relational Neighbor (ClassDistributRelNeighbor) classifier
@@ -58,6 +64,15 @@ public final class ClassDistribRelNeighbor extends NetworkClassifierImp
     // the distance metric to use
     private DistanceMeasure dist = null;
 
+    // If all aggregators are counts or ratios of the class attribute, then the vector
+    // of a node is read off the class counts of the KnownNeighborCache: aggregator i
+    // reads countIdx[i] in the counts of block countBlock[i].  countIdx is null otherwise.
+    private int[] countIdx = null;
+    private int[] countBlock = null;
+    private boolean[] countRatio = null;
+    private double[] tmpCounts = null;
+    private double[] tmpSums = null;
+
     /**
      * Get the detault configuration of using a cosine distance function, and aggregating
      * only on the class attribute using the ratio aggregator.  This is in addition to any
@@ -131,6 +146,7 @@ public final class ClassDistribRelNeighbor extends NetworkClassifierImp
      */
     public void induceModel(Graph graph, DataSplit split) {
         super.induceModel(graph,split);
+        compileClassCounts();
 
         classVectors = new double[attribute.size()][tmpVector.length];
         for(int i=0;i<attribute.size();i++)
@@ -162,6 +178,75 @@ public final class ClassDistribRelNeighbor extends NetworkClassifierImp
         }
     }
 
+    /**
+     * Counts the known neighbors per edge type, such that the class counts and ratios
+     * can be read off the cache.
+     *
+     * @see NetworkClassifierImp#buildKnownNeighbors()
+     */
+    protected KnownNeighborCache buildKnownNeighbors() {
+        return new KnownNeighborCache(graph, nodeType, clsIdx, attribute.size(), graph.getEdgeTypes(nodeType,nodeType), true);
+    }
+
+    // Find out whether the vectors can be read off the KnownNeighborCache
+    private void compileClassCounts() {
+        countIdx = null;
+        if(useIntrinsic || aggregators.isEmpty() || tmpVector.length != aggregators.size())
+            return;
+
+        EdgeType[] edgeTypes = graph.getEdgeTypes(nodeType,nodeType);
+        int[] idx = new int[aggregators.size()];
+        int[] block = new int[aggregators.size()];
+        boolean[] ratio = new boolean[aggregators.size()];
+        for(int i=0;i<idx.length;i++)
+        {
+            Aggregator agg = aggregators.get(i);
+            if(agg.getAttribute() != attribute || !(agg instanceof Count || agg instanceof Ratio))
+                return;
+            block[i] = -1;
+            for(int b=0;b<edgeTypes.length;b++)
+                if(edgeTypes[b].getName().equals(agg.getEdgeType().getName()))
+                    block[i] = b;
+            if(block[i] == -1)
+                return;
+            idx[i] = block[i]*attribute.size() + (int)((AggregatorByValue)agg).getAttributeValue();
+            ratio[i] = (agg instanceof Ratio);
+        }
+        countIdx = idx;
+        countBlock = block;
+        countRatio = ratio;
+        tmpCounts = new double[edgeTypes.length*attribute.size()];
+        tmpSums = new double[edgeTypes.length];
+    }
+
+    // Same as makeVector, but only visits the unknown neighbors if the aggregators
+    // can be read off the KnownNeighborCache
+    private void makeClassVector(Node node, double[] vector) {
+        if(countIdx == null)
+        {
+            makeVector(node,vector);
+            return;
+        }
+        KnownNeighborCache cache = getKnownNeighbors();
+        Arrays.fill(tmpCounts,0);
+        cache.addKnownCounts(node,tmpCounts,0);
+        cache.addUnknownEstimates(node,prior,tmpCounts,0);
+        int numClasses = attribute.size();
+        for(int b=0;b<tmpSums.length;b++)
+        {
+            tmpSums[b] = 0;
+            for(int c=0;c<numClasses;c++)
+                tmpSums[b] += tmpCounts[b*numClasses+c];
+        }
+        for(int i=0;i<countIdx.length;i++)
+        {
+            double value = tmpCounts[countIdx[i]];
+            if(countRatio[i] && value > 0)
+                value /= tmpSums[countBlock[i]];
+            vector[i] = value;
+        }
+    }
+
     /**
      * Estimate how near this node's neighborhood is to each of the class vectors using
      * a user-specified distance function (cosine by default) and normalize to produce
@@ -175,36 +260,59 @@ public final class ClassDistribRelNeighbor extends NetworkClassifierImp
      * @see NetworkClassifierImp#makeVector(netkit.graph.Node, double[])
      */
     public boolean doEstimate(Node node, double[] result) {
-        makeVector(node,tmpVector);
+        estimateInto(node,result,0);
+        return true;
+    }
+
+    /**
+     * Estimates all nodes of the block straight into the result array.
+     *
+     * @see NetworkClassifierImp#doEstimateBlock(netkit.graph.Node[], int, int, double[], boolean[])
+     */
+    protected int doEstimateBlock(Node[] nodes, int from, int to, double[] result, boolean[] estimated) {
+        final int numClasses = classPrior.length;
+        for(int i=from;i<to;i++)
+        {
+            estimateInto(nodes[i],result,(i-from)*numClasses);
+            estimated[i-from] = true;
+        }
+        return to-from;
+    }
+
+    // Put the estimate of the node at result[offset] through result[offset+numClasses-1]
+    private void estimateInto(Node node, double[] result, int offset) {
+        final int numClasses = classPrior.length;
+        makeClassVector(node,tmpVector);
         if(Double.isNaN(tmpVector[0]) || VectorMath.sum(tmpVector) == 0)
         {
             logger.warning("cdRN-node-"+node.getIndex()+"("+node+") - empty cvCount - using classPrior");
-            System.arraycopy(classPrior,0,result,0,classPrior.length);
+            System.arraycopy(classPrior,0,result,offset,numClasses);
         }
         else
         {
             for(int c=0;c<classVectors.length;c++)
             {
                 if(classVectors[c] == null)
-                    result[c] = 0;
+                    result[offset+c] = 0;
                 else
                 {
                 	for(int i=0;i<tmpVector.length;i++) {
                     	if(Double.isNaN(tmpVector[i]) || Double.isInfinite(tmpVector[i]))
                     		tmpVector[i] = 0;
                     }
-                    result[c] = dist.distance(classVectors[c],tmpVector);
-                    if(Double.isNaN(result[c]) || Double.isInfinite(result[c]))
+                    double d = dist.distance(classVectors[c],tmpVector);
+                    if(Double.isNaN(d) || Double.isInfinite(d))
                     {
                         logger.warning("class["+c+"] - estimate is NaN/infinite? - clsV="+ArrayUtil.asString(classVectors[c])+" cmpV="+ArrayUtil.asString(tmpVector)+"]");
-                        result[c] = 0.0;
+                        d = 0.0;
                     }
+                    result[offset+c] = d;
                 }
             }
-            VectorMath.normalize(result);
+            VectorMath.normalize(result,offset,numClasses);
         }
-        logger.finer(" estimate="+ArrayUtil.asString(result));
-        return true;
+        if(logger.isLoggable(Level.FINER))
+            logger.finer(" estimate="+ArrayUtil.asString(Arrays.copyOfRange(result,offset,offset+numClasses)));
     }
     
     
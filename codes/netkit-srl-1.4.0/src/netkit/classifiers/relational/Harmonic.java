@@ -96,6 +96,26 @@ public class Harmonic extends NetworkClassifierImp
 		return false;
 	}
 
+	/**
+	 * Copies the predictions computed in the induceModel call straight into the result array.
+	 * @see NetworkClassifierImp#doEstimateBlock(netkit.graph.Node[], int, int, double[], boolean[])
+	 */
+	protected int doEstimateBlock(Node[] nodes, int from, int to, double[] result, boolean[] estimated) {
+		final int numClasses = attribute.size();
+		int num = 0;
+		for(int i=from;i<to;i++)
+		{
+			double[] val = predictions.getEstimate(nodes[i]);
+			estimated[i-from] = (val != null);
+			if(val != null)
+			{
+				System.arraycopy(val, 0, result, (i-from)*numClasses, numClasses);
+				num++;
+			}
+		}
+		return num;
+	}
+
 
 
 	public double getERM(Node n) {
@@ -0,0 +1,129 @@
+/**
+ * IterativeTransducer.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.util.*;
+
+/**
+ * The base of the transducers from Mantrach et al. (2011) that, instead of
+ * solving their linear system, run a fixed number of steps of
+ * <BR>
+ * F = alpha*A*F + Y
+ * <BR>
+ * starting from F = Y, where A is a sparse operator over the graph, as in
+ * the aNRL.m and bNRWR.m baselines.  The result is the truncated series
+ * (I + alpha*A + ... + (alpha*A)<SUP>t</SUP>)Y, so the number of steps is a
+ * parameter of the model rather than a limit on a solve, and the scores
+ * after t steps are a prefix of those after any larger number of steps.
+ * {@link ParameterSweep} uses this to cross-validate alpha and the number of
+ * steps together.
+ * <P>
+ * Parameters:
+ * <UL>
+ * <LI> alpha: the probability that the walk continues (default 0.9)
+ * <LI> maxiterations: the number of steps (default 20)
+ * </UL>
+ * The tolerance is not used.
+ * This does not use collective inference.  It uses only known labels and the graph.
+ */
+public abstract class IterativeTransducer extends SparseTransducer
+{
+	protected double alpha = 0.9;
+
+	public Configuration getDefaultConfiguration() {
+		Configuration conf = super.getDefaultConfiguration();
+		conf.set("alpha",0.9);
+		conf.set("maxiterations",20);
+		return conf;
+	}
+
+	public void configure(Configuration config) {
+		super.configure(config);
+		alpha = config.getDouble("alpha",0.9);
+		maxIterations = config.getInt("maxiterations",20);
+		logger.config(" configure: alpha="+alpha);
+		logger.config(" configure: maxiterations="+maxIterations);
+	}
+
+	protected boolean isSymmetric() {
+		return false;
+	}
+
+	/**
+	 * Set result = A*X for a panel of the given number of columns, for the
+	 * adjacency given in the last prepare call.  The product is split over
+	 * the shared pool of threads if parallel is true, and run in the calling
+	 * thread otherwise.
+	 */
+	protected abstract void multiply(double[] X, double[] result, int numColumns, boolean parallel);
+
+	/**
+	 * @return the factor to scale every row of the scores by once all steps
+	 * are done, or null to leave them as they are.  The factors must be
+	 * positive, so they never change which class scores highest.
+	 */
+	protected double[] getRowScale() {
+		return null;
+	}
+
+	/**
+	 * Set result = alpha*A*X + B for a panel of the given number of columns.
+	 */
+	final void step(double alpha, double[] X, double[] B, double[] result, int numColumns, boolean parallel) {
+		multiply(X,result,numColumns,parallel);
+		for(int i=0;i<result.length;i++)
+			result[i] = alpha*result[i] + B[i];
+	}
+
+	/**
+	 * @return the operator alpha*A
+	 */
+	protected BlockSolver.Operator newOperator(int numColumns) {
+		return new BlockSolver.Operator() {
+			public void apply(double[] X, double[] result, int numColumns) {
+				multiply(X,result,numColumns,true);
+				VectorMath.multiply(result,alpha);
+			}
+		};
+	}
+
+	/**
+	 * Run maxIterations steps from X = B and scale the rows of the result.
+	 * @return the number of steps
+	 */
+	protected int solve(BlockSolver.Operator op, double[] B, double[] X, int numColumns) {
+		double[] curr = B.clone();
+		double[] next = new double[B.length];
+		for(int t=0;t<maxIterations;t++)
+		{
+			step(alpha,curr,B,next,numColumns,true);
+			final double[] tmp = curr;
+			curr = next;
+			next = tmp;
+		}
+		final double[] scale = getRowScale();
+		if(scale != null)
+			for(int i=0;i<scale.length;i++)
+				for(int c=0;c<numColumns;c++)
+					curr[i*numColumns+c] *= scale[i];
+		System.arraycopy(curr,0,X,0,X.length);
+		return maxIterations;
+	}
+}
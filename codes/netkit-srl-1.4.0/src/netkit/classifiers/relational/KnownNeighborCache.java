@@ -0,0 +1,207 @@
+/**
+ * KnownNeighborCache.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.relational;
+
+import netkit.graph.Edge;
+import netkit.graph.EdgeType;
+import netkit.graph.Graph;
+import netkit.graph.Node;
+import netkit.classifiers.Estimate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The KnownNeighborCache splits the neighborhood of every node of a node type into
+ * the neighbors whose class label is known and those whose label is not.  The known
+ * neighbors do not change during collective inference, so they are summarized once
+ * as a weighted class count per node.  The edges to unknown neighbors are kept in
+ * compressed sparse row (CSR) format: the unknown edges of node <code>i</code> are
+ * found at positions <code>offsets[i]</code> (inclusive) to <code>offsets[i+1]</code>
+ * (exclusive) in the <code>dests</code>, <code>weights</code> and <code>blocks</code>
+ * arrays.  An inference iteration then only needs to visit the unknown neighbors.
+ * <P>
+ * The edges can either be counted together, or in a separate block per edge type.
+ * Known class counts are kept at <code>known[(i*numBlocks+block)*numClasses+class]</code>.
+ * <P>
+ * The cache is a snapshot of which class labels are known at the time it is built.
+ * It must therefore be built after the known labels of a split have been applied
+ * and be thrown away when they change.  The arrays are exposed for speed and must
+ * not be modified.
+ */
+public final class KnownNeighborCache {
+    public final int numNodes;
+    public final int numClasses;
+    public final int numBlocks;
+
+    /** known[(i*numBlocks+block)*numClasses+c] = weight of the known neighbors of node i in class c */
+    public final double[] known;
+
+    public final int[] offsets;
+    public final Node[] dests;
+    public final double[] weights;
+    public final int[] blocks;
+
+    // edge type name -> block, null if all edges are counted in block 0
+    private final Map<String,Integer> edgeTypeToBlock;
+
+    /**
+     * Build the cache over the nodes of the given node type.
+     *
+     * @param graph The graph
+     * @param nodeType The node type whose neighborhoods are cached
+     * @param clsIdx The index of the class attribute
+     * @param numClasses The number of class values
+     * @param edgeTypes The edge types to follow, or null to follow all edges
+     * @param byEdgeType Whether each of the given edge types gets its own block of class counts
+     */
+    public KnownNeighborCache(final Graph graph,
+                              final String nodeType,
+                              final int clsIdx,
+                              final int numClasses,
+                              final EdgeType[] edgeTypes,
+                              final boolean byEdgeType) {
+        if(byEdgeType && edgeTypes == null)
+            throw new IllegalArgumentException("edge types must be given to count by edge type");
+        this.numNodes = graph.numNodes(nodeType);
+        this.numClasses = numClasses;
+
+        if(edgeTypes == null)
+        {
+            edgeTypeToBlock = null;
+            numBlocks = 1;
+        }
+        else
+        {
+            edgeTypeToBlock = new HashMap<String,Integer>();
+            for(int i=0;i<edgeTypes.length;i++)
+                edgeTypeToBlock.put(edgeTypes[i].getName(), (byEdgeType ? i : 0));
+            numBlocks = (byEdgeType ? Math.max(1,edgeTypes.length) : 1);
+        }
+
+        known = new double[numNodes*numBlocks*numClasses];
+        offsets = new int[numNodes+1];
+
+        Node[] nodes = new Node[numNodes];
+        for(Node node : graph.getNodes(nodeType))
+            nodes[node.getIndex()] = node;
+
+        // first pass: count the known labels and the unknown edges
+        for(int i=0;i<numNodes;i++)
+        {
+            int numUnknown = 0;
+            for(Edge e : nodes[i].getEdges())
+            {
+                int block = getBlock(e.getEdgeType());
+                if(block == -1)
+                    continue;
+                Node dest = e.getDest();
+                if(dest.isMissing(clsIdx))
+                    numUnknown++;
+                else
+                    known[(i*numBlocks+block)*numClasses + (int)dest.getValue(clsIdx)] += e.getWeight();
+            }
+            offsets[i+1] = offsets[i] + numUnknown;
+        }
+
+        // second pass: fill in the unknown edges
+        int numUnknown = offsets[numNodes];
+        dests = new Node[numUnknown];
+        weights = new double[numUnknown];
+        blocks = new int[numUnknown];
+        for(int i=0;i<numNodes;i++)
+        {
+            int pos = offsets[i];
+            for(Edge e : nodes[i].getEdges())
+            {
+                int block = getBlock(e.getEdgeType());
+                if(block == -1 || !e.getDest().isMissing(clsIdx))
+                    continue;
+                dests[pos] = e.getDest();
+                weights[pos] = e.getWeight();
+                blocks[pos] = block;
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * @param edgeType An edge type
+     * @return the block in which edges of the given type are counted, or -1 if they are not followed
+     */
+    public int getBlock(final EdgeType edgeType) {
+        if(edgeTypeToBlock == null)
+            return 0;
+        Integer block = edgeTypeToBlock.get(edgeType.getName());
+        return ( (block == null) ? -1 : block );
+    }
+
+    /**
+     * @return the total number of edges to unknown neighbors
+     */
+    public int numUnknownEdges() {
+        return offsets[numNodes];
+    }
+
+    /**
+     * Add the weighted class counts of the known neighbors of the given node to
+     * <code>result[offset]</code> through <code>result[offset+numBlocks*numClasses-1]</code>.
+     *
+     * @param node The node whose known neighbors to count
+     * @param result The array to add the counts to
+     * @param offset Where in the array to add the counts of the first block
+     */
+    public void addKnownCounts(final Node node, final double[] result, final int offset) {
+        final int len = numBlocks*numClasses;
+        final int start = node.getIndex()*len;
+        for(int k=0;k<len;k++)
+            result[offset+k] += known[start+k];
+    }
+
+    /**
+     * Add the current class estimates of the unknown neighbors of the given node,
+     * weighted by the edge weights, to the same positions as <code>addKnownCounts</code>.
+     * Neighbors without an estimate are ignored.
+     *
+     * @param node The node whose unknown neighbors to count
+     * @param prior The current estimates of the unknown nodes
+     * @param result The array to add the counts to
+     * @param offset Where in the array to add the counts of the first block
+     */
+    public void addUnknownEstimates(final Node node, final Estimate prior, final double[] result, final int offset) {
+        if(prior == null)
+            return;
+        final int end = offsets[node.getIndex()+1];
+        for(int k=offsets[node.getIndex()];k<end;k++)
+        {
+            double[] d = prior.getEstimate(dests[k]);
+            if(d == null)
+                continue;
+            final double w = weights[k];
+            final int base = offset + blocks[k]*numClasses;
+            for(int v=0;v<d.length;v++)
+                result[base+v] += w*d[v];
+        }
+    }
+}
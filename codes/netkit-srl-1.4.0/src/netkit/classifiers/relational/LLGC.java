@@ -0,0 +1,102 @@
+/**
+ * LLGC.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.util.*;
+
+/**
+ * Learning with Local and Global Consistency from Zhou et al. (2004), over
+ * the directed graph as in the LLGC.m baseline.  It solves
+ * (I - alpha*S)F = Y, where S = D<SUP>-1/2</SUP>WD<SUP>-1/2</SUP> and D holds
+ * the in-degrees.  As S is not symmetric on a directed graph, the systems are
+ * solved by BiCGSTAB.
+ *
+ * <B>Reference:</B>
+ * <UL>
+ * <LI> Zhou, D., Bousquet, O., Lal, T.N., Weston, J., & Scholkopf, B. (2004).<BR>
+ *      Learning with local and global consistency.<BR>
+ *      Advances in Neural Information Processing Systems (NIPS).
+ * </UL>
+ *
+ * Parameters:
+ * <UL>
+ * <LI> alpha: the absorbing rate (default 0.99)
+ * </UL>
+ * This does not use collective inference.  It uses only known labels and the graph.
+ */
+public class LLGC extends SparseTransducer
+{
+	private double alpha = 0.99;
+	private CSRGraph graph = null;
+	private double[] weights = null;
+
+	public String getShortName() {
+		return "LLGC";
+	}
+	public String getName() {
+		return "Learning with Local and Global Consistency";
+	}
+	public String getDescription() {
+		return "See reference: Zhou, D., Bousquet, O., Lal, T.N., Weston, J., and Scholkopf, B. (2004), \"Learning with local and global consistency,\" Advances in Neural Information Processing Systems (NIPS).";
+	}
+
+	public Configuration getDefaultConfiguration() {
+		Configuration conf = super.getDefaultConfiguration();
+		conf.set("alpha",0.99);
+		return conf;
+	}
+
+	public void configure(Configuration config) {
+		super.configure(config);
+		alpha = config.getDouble("alpha",0.99);
+		logger.config(" configure: alpha="+alpha);
+	}
+
+	protected boolean isSymmetric() {
+		return false;
+	}
+
+	/**
+	 * Scales every edge weight w(i,j) by 1/sqrt(d(i)d(j)), where d is the
+	 * in-degree, and nodes without in-edges are left unscaled.
+	 */
+	protected void prepare(CSRGraph g) {
+		graph = g;
+		final double[] inv = new double[g.numNodes];
+		for(int k=0;k<g.numEdges;k++)
+			inv[g.targets[k]] += g.weights[k];
+		for(int i=0;i<inv.length;i++)
+			inv[i] = ( (inv[i] > 0) ? 1.0/Math.sqrt(inv[i]) : 1 );
+		weights = new double[g.numEdges];
+		for(int i=0;i<g.numNodes;i++)
+			for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+				weights[k] = g.weights[k]*inv[i]*inv[g.targets[k]];
+	}
+
+	protected BlockSolver.Operator newOperator(int numColumns) {
+		return new BlockSolver.Operator() {
+			public void apply(double[] X, double[] result, int numColumns) {
+				BlockSolver.multiply(graph,weights,X,numColumns,result);
+				for(int i=0;i<X.length;i++)
+					result[i] = X[i] - alpha*result[i];
+			}
+		};
+	}
+}
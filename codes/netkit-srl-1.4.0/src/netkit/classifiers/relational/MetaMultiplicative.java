@@ -39,9 +39,6 @@ import netkit.util.VectorMath;
  * @author Sofus A. Macskassy (sofmac@gmail.com)
  */
 public final class MetaMultiplicative extends NetworkMetaClassifier {
-    // temporary vector to multiply predictions from each classifier into
-    private double[] tmpVector;
-
     // a place to cache the estimates of the nonrelational classifiers since they will not change over time
     private Estimate localEstimate = null;
 
@@ -77,7 +74,6 @@ public final class MetaMultiplicative extends NetworkMetaClassifier {
      */
     public void induceModel(Graph graph, DataSplit split) {
         super.induceModel(graph, split);
-        tmpVector = new double[classPrior.length];
         localEstimate = new Estimate(graph, split.getView().getNodeType(), split.getView().getAttribute());
     }
 
@@ -96,15 +92,13 @@ public final class MetaMultiplicative extends NetworkMetaClassifier {
         // node.  If so, reuse their cached response, otherwise get their predictions
         // and cache them.  We cache the results because it may be timeconsuming for
         // some classifiers to generate their predictions.
+        estimateMembers(node, e == null);
         if(e == null)
         {
             System.arraycopy(classPrior,0,result,0,classPrior.length);
-            for(Classifier lc : lclassifiers)
-            {
-                lc.estimate(node, tmpVector);
-                for(int i=0;i<classPrior.length;i++)
-                    result[i] *= tmpVector[i];
-            }
+            for(int j=0;j<lclassifiers.size();j++)
+                if(lcEstimated[j])
+                    multiply(result, lcResults[j]);
             localEstimate.estimate(node, result);
         }
         else
@@ -112,16 +106,62 @@ public final class MetaMultiplicative extends NetworkMetaClassifier {
             System.arraycopy(e,0,result,0,e.length);
         }
 
-        for(NetworkClassifier nc : rclassifiers)
-        {
-            nc.estimate(node, this.prior, tmpVector, false);
-            for(int i=0;i<classPrior.length;i++)
-                result[i] *= tmpVector[i];
-        }
+        for(int j=0;j<rclassifiers.size();j++)
+            if(rcEstimated[j])
+                multiply(result, rcResults[j]);
         VectorMath.normalize(result);
         return true;
     }
     
+    /**
+     * Get the estimates of the underlying classifiers for the whole block, running each classifier over
+     * the block as one task, and then combine them node by node as <code>doEstimate</code> does.
+     *
+     * @see NetworkClassifierImp#doEstimateBlock(netkit.graph.Node[], int, int, double[], boolean[])
+     */
+    protected int doEstimateBlock(Node[] nodes, int from, int to, double[] result, boolean[] estimated) {
+        final int numClasses = attribute.size();
+        final boolean[] local = new boolean[to-from];
+        for(int i=from;i<to;i++)
+            local[i-from] = (localEstimate.getEstimate(nodes[i]) == null);
+        estimateMembersBlock(nodes, from, to, local);
+
+        for(int i=from;i<to;i++)
+        {
+            final int offset = (i-from)*numClasses;
+            if(local[i-from])
+            {
+                System.arraycopy(classPrior,0,result,offset,numClasses);
+                for(int j=0;j<lclassifiers.size();j++)
+                    if(lcBlockEstimated[j][i-from])
+                        multiply(result, offset, lcBlock[j], offset, numClasses);
+                localEstimate.estimate(nodes[i], result, offset);
+            }
+            else
+            {
+                System.arraycopy(localEstimate.getEstimate(nodes[i]),0,result,offset,numClasses);
+            }
+
+            for(int j=0;j<rclassifiers.size();j++)
+                if(rcBlockEstimated[j][i-from])
+                    multiply(result, offset, rcBlock[j], offset, numClasses);
+            VectorMath.normalize(result, offset, numClasses);
+            estimated[i-from] = true;
+        }
+        return to-from;
+    }
+
+    // result[i] *= estimate[i]
+    private static void multiply(double[] result, double[] estimate) {
+        multiply(result, 0, estimate, 0, result.length);
+    }
+
+    // result[offset+i] *= estimate[eOffset+i] for i < length
+    private static void multiply(double[] result, int offset, double[] estimate, int eOffset, int length) {
+        for(int i=0;i<length;i++)
+            result[offset+i] *= estimate[eOffset+i];
+    }
+    
     public String toString() {
     	StringBuffer sb = new StringBuffer();
     	sb.append(getName()+" (Relational Classifier)").append(NetKitEnv.newline);
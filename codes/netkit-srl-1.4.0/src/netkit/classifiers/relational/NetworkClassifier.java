@@ -96,4 +96,26 @@ public interface NetworkClassifier extends Classifier
      * @return Whether the classifier abstained or inferred class probabilities
      */
     public boolean estimate(Node node, Estimate prior, Estimate result, boolean updatePrior);
+
+    /**
+     * Estimate the probabilities that each node in a block of nodes belongs to any given class,
+     * all using the same prior.  This is the same as calling
+     * <code>estimate(nodes[i],prior,double[],false)</code> for each node in the block, but
+     * lets a classifier amortize the per-call overhead over the whole block.  The prior is
+     * not updated.
+     * <p>
+     * The estimates of <code>nodes[i]</code> are put in <code>result[(i-from)*numClasses]</code>
+     * through <code>result[(i-from+1)*numClasses-1]</code>, where numClasses is the number of
+     * class values.
+     *
+     * @param nodes The nodes to estimate.
+     * @param from The index of the first node in the block (inclusive).
+     * @param to The index of the last node in the block (exclusive).
+     * @param prior The current class estimates of all initially unknown nodes.
+     * @param result The array that is filled in with class estimates of the nodes in the block.
+     * @param estimated The array whose entry <code>i-from</code> is set to whether the classifier
+     *                  inferred class probabilities for <code>nodes[i]</code> or abstained.
+     * @return The number of nodes in the block whose class probabilities were inferred.
+     */
+    public int estimateBlock(Node[] nodes, int from, int to, Estimate prior, double[] result, boolean[] estimated);
 }
@@ -25,8 +25,11 @@
 package netkit.classifiers.relational;
 
 import netkit.classifiers.*;
+import netkit.classifiers.aggregators.AggregationContext;
+import netkit.classifiers.aggregators.AggregationPlan;
 import netkit.classifiers.aggregators.Aggregator;
 import netkit.classifiers.aggregators.AggregatorFactory;
+import netkit.classifiers.aggregators.AggregatorImp;
 import netkit.graph.*;
 import netkit.util.Configuration;
 import netkit.util.VectorMath;
@@ -149,6 +152,30 @@ public abstract class NetworkClassifierImp
      */
     protected List<Aggregator> dynamicAggregators = new ArrayList<Aggregator>();
 
+    /**
+     * This is the compiled form of the <code>aggregators</code> list, which computes the
+     * values of all aggregators for a node in a single pass over its edges.  It is
+     * compiled by <code>induceModel</code> and used by <code>makeVector</code>.
+     *
+     * @see netkit.classifiers.aggregators.AggregationPlan
+     */
+    protected AggregationPlan aggregationPlan = null;
+
+    /**
+     * The context for the graph that the model was induced on, which holds the
+     * (per-thread) statistics shared by the aggregators.  This replaces the JVM-wide
+     * default context in SharedNodeInfo for the aggregators of this classifier.
+     *
+     * @see netkit.classifiers.aggregators.AggregationContext
+     */
+    protected AggregationContext aggregationContext = null;
+
+    /**
+     * The known class counts and unknown neighbors of every node, built on first use by
+     * <code>getKnownNeighbors</code> and thrown away whenever the classifier is reset.
+     */
+    private volatile KnownNeighborCache knownNeighbors = null;
+
     /**
      * This is the final estimation method that will be called and the only estimation
      * method that sub-classes should implement.
@@ -159,6 +186,36 @@ public abstract class NetworkClassifierImp
      */
     protected abstract boolean doEstimate(Node node, double[] result);
 
+    /**
+     * Estimate the class labels of a block of nodes, putting the estimates of
+     * <code>nodes[i]</code> at <code>result[(i-from)*attribute.size()]</code>.  This
+     * calls <code>doEstimate</code> for each node in the block.  Sub-classes that can
+     * write their estimates straight into the block should override this method.
+     *
+     * @param nodes The nodes whose class labels need to be estimated
+     * @param from The index of the first node in the block (inclusive)
+     * @param to The index of the last node in the block (exclusive)
+     * @param result The array to be filled with estimations for the class labels of the block
+     * @param estimated The array to be filled with whether the classifier estimated each node
+     * @return the number of nodes whose class labels were estimated
+     *
+     * @see NetworkClassifierImp#estimateBlock(netkit.graph.Node[], int, int, netkit.classifiers.Estimate, double[], boolean[])
+     */
+    protected int doEstimateBlock(Node[] nodes, int from, int to, double[] result, boolean[] estimated) {
+        final int numClasses = attribute.size();
+        int num = 0;
+        for(int i=from;i<to;i++)
+        {
+            estimated[i-from] = doEstimate(nodes[i], tmpResult);
+            if(estimated[i-from])
+            {
+                System.arraycopy(tmpResult, 0, result, (i-from)*numClasses, numClasses);
+                num++;
+            }
+        }
+        return num;
+    }
+
     /**
      * Method to tell this object whether to include the class attribute when
      * creating the internal instance representation for relational learning.  If
@@ -377,10 +434,18 @@ public abstract class NetworkClassifierImp
     public void induceModel(Graph graph, DataSplit split) {
         super.induceModel(graph, split);
         aggregators.clear();
+        aggregationPlan = null;
         Node[] trainingSet = split.getTrainSet();
         if(trainingSet == null || trainingSet.length == 0)
             return;
+        aggregationContext = new AggregationContext(graph);
         generateAggregators();
+        for(Aggregator agg : aggregators)
+        {
+            if(agg instanceof AggregatorImp)
+                ((AggregatorImp)agg).setContext(aggregationContext);
+        }
+        aggregationPlan = new AggregationPlan(aggregationContext, aggregators);
 
         int numAttrib = aggregators.size();
         if(useIntrinsic)
@@ -439,11 +504,8 @@ public abstract class NetworkClassifierImp
             offset++;
         }
 
-        for(Aggregator a : aggregators)
-        {
-            vector[offset] = a.getValue(node,prior);
-            offset++;
-        }
+        if(aggregationPlan != null)
+            aggregationPlan.evaluate(node,prior,vector,offset);
     }
 
     /**
@@ -457,6 +519,54 @@ public abstract class NetworkClassifierImp
      */
     public void initializeRun(Estimate currPrior, Node[] unknowns) { }
 
+    /**
+     * Resets internal variables, including the cached neighborhoods.
+     * @see netkit.classifiers.ClassifierImp#reset()
+     */
+    public void reset() {
+        super.reset();
+        knownNeighbors = null;
+    }
+
+    /**
+     * Get the known class counts and unknown neighbors of all nodes of the node type
+     * being classified.  The labels that are known during collective inference are only
+     * applied after <code>induceModel</code> has been called, so the cache is built the
+     * first time it is asked for and kept until the classifier is reset (which happens
+     * at the start of <code>induceModel</code>).
+     *
+     * @return the KnownNeighborCache of the current split
+     *
+     * @see NetworkClassifierImp#buildKnownNeighbors()
+     */
+    protected final KnownNeighborCache getKnownNeighbors() {
+        KnownNeighborCache cache = knownNeighbors;
+        if(cache == null)
+        {
+            synchronized(this)
+            {
+                cache = knownNeighbors;
+                if(cache == null)
+                {
+                    cache = buildKnownNeighbors();
+                    knownNeighbors = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Build the KnownNeighborCache returned by <code>getKnownNeighbors</code>.  By default
+     * this counts all edges between nodes of the node type being classified together.
+     * Subclasses that look at other edges should override this.
+     *
+     * @return a new KnownNeighborCache
+     */
+    protected KnownNeighborCache buildKnownNeighbors() {
+        return new KnownNeighborCache(graph, nodeType, clsIdx, attribute.size(), graph.getEdgeTypes(nodeType,nodeType), false);
+    }
+
     /**
      * Classify a given node into one of the given classes.  It may use the class estimations
      * of other nodes and may update the prior of the given node.
@@ -583,4 +693,36 @@ public abstract class NetworkClassifierImp
         notifyListeners(node,result);
         return e;
     }
+
+    /**
+     * Estimate the probabilities that each node in a block of nodes belongs to any given class.
+     * <p>
+     * This method is final and sets the prior object before it calls
+     * <code>doEstimateBlock(Node[],int,int,double[],boolean[])</code> to do the actual estimates.
+     * It also notifies any listeners that the labels of the nodes in the block have been estimated,
+     * telling ClassifierBlockListeners about the whole block in one call.
+     *
+     * @param nodes The nodes to estimate.
+     * @param from The index of the first node in the block (inclusive).
+     * @param to The index of the last node in the block (exclusive).
+     * @param prior The current class estimates of all initially unknown nodes.
+     * @param result The array that is filled in with class estimates of the nodes in the block.
+     * @param estimated The array that is filled in with whether the classifier estimated each node.
+     * @return The number of nodes in the block whose class probabilities were inferred.
+     *
+     * @see NetworkClassifierImp#doEstimateBlock(netkit.graph.Node[], int, int, double[], boolean[])
+     * @see netkit.classifiers.ClassifierImp#notifyListeners(netkit.graph.Node[], int, int, double[], boolean[])
+     */
+    public final int estimateBlock(Node[] nodes, int from, int to, Estimate prior, double[] result, boolean[] estimated) {
+        final int numClasses = attribute.size();
+        if(from < 0 || to > nodes.length || from > to)
+            throw new IllegalArgumentException("invalid block ["+from+","+to+") of "+nodes.length+" nodes");
+        if(result.length < (to-from)*numClasses || estimated.length < to-from)
+            throw new IllegalArgumentException("result arrays are too small for a block of "+(to-from)+" nodes");
+        this.prior = prior;
+        int num = doEstimateBlock(nodes, from, to, result, estimated);
+        if(hasListeners())
+            notifyListeners(nodes, from, to, result, estimated);
+        return num;
+    }
 }
@@ -29,9 +29,17 @@ import netkit.classifiers.Classifier;
  import netkit.classifiers.DataSplit;
 import netkit.util.Configuration;
 import netkit.util.ArrayUtil;
+import netkit.util.NetKitEnv;
+import netkit.util.ParallelUtil;
+import netkit.util.RandomStreams;
 import netkit.graph.Graph;
+import netkit.graph.Node;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Abstract class for combining multiple relational and non-relational classifiers.  It configures itsel
@@ -46,7 +54,20 @@ import java.util.ArrayList;
  * <UL>
  * <LI>NetworkLearning.LC_PREFIX: what non-relational classifiers to use.  default=naivebayes (see <code>lclassifier.properties</code>)
  * <LI>NetworkLearning.RC_PREFIX: what relational classifiers to use.  default=naivebayes (see <code>rclassifier.properties</code>)
+ * <LI>parallel: whether to induce the classifiers, and evaluate them over blocks of nodes,
+ *     concurrently, using up to NetKitEnv.getNumThreads() threads.  default=true if there is
+ *     more than one thread to use
  * </UL>
+ * <P>
+ * Subclasses get the estimates of all classifiers for a node by calling <code>estimateMembers</code>,
+ * which runs the classifiers one after the other in the calling thread and leaves their estimates
+ * in <code>rcResults</code> and <code>lcResults</code>.  A single estimate takes too little time to
+ * be worth handing to another thread, so the classifiers are only run side by side over a block of
+ * nodes, by <code>estimateMembersBlock</code>, which leaves their estimates in <code>rcBlock</code>
+ * and <code>lcBlock</code>.  Each classifier only writes to its own result buffer, and the classifiers
+ * are separate objects, so they share no scratch state.  Each classifier also draws its random
+ * tie-breaks from its own stream (see <code>RandomStreams</code>), so the estimates are the same
+ * whether or not the classifiers are run concurrently.
  *
  * @author Sofus A. Macskassy (sofmac@gmail.com)
  *
@@ -67,6 +88,56 @@ public abstract class NetworkMetaClassifier extends NetworkClassifierImp {
      */
     protected ArrayList<Classifier> lclassifiers = null;
 
+    /**
+     * The estimates made by the relational classifiers in the last call to <code>estimateMembers</code>,
+     * and whether each of them made an estimate (rather than abstaining).
+     */
+    protected double[][] rcResults = null;
+    protected boolean[] rcEstimated = null;
+
+    /**
+     * The estimates made by the non-relational classifiers in the last call to <code>estimateMembers</code>
+     * that asked for them, and whether each of them made an estimate (rather than abstaining).
+     */
+    protected double[][] lcResults = null;
+    protected boolean[] lcEstimated = null;
+
+    /**
+     * The estimates made by the relational classifiers in the last call to <code>estimateMembersBlock</code>,
+     * laid out as in <code>estimateBlock</code>, and whether each of them estimated each node of the block.
+     */
+    protected double[][] rcBlock = null;
+    protected boolean[][] rcBlockEstimated = null;
+
+    /**
+     * The estimates made by the non-relational classifiers in the last call to <code>estimateMembersBlock</code>,
+     * for the nodes that they were asked to estimate, and whether each of them estimated each of those nodes.
+     */
+    protected double[][] lcBlock = null;
+    protected boolean[][] lcBlockEstimated = null;
+
+    // whether to run the classifiers concurrently
+    private boolean parallel = (NetKitEnv.getNumThreads() > 1);
+
+    // the threads that run the classifiers; null if they are run in the calling thread
+    private ExecutorService pool = null;
+
+    // the random streams of the relational and then the non-relational classifiers
+    private Random[] memberRandom = null;
+
+    // the number of models induced so far, which tells the streams of each model apart
+    private int numInduced = 0;
+
+    // the block being estimated by the tasks below, and the nodes of it the non-relational classifiers estimate
+    private Node[] blockNodes = null;
+    private int blockFrom = 0;
+    private int blockTo = 0;
+    private boolean[] blockLocal = null;
+
+    // tasks that estimate the current block, one per relational classifier and one per classifier
+    private List<Callable<Boolean>> rcTasks = null;
+    private List<Callable<Boolean>> allTasks = null;
+
 
     /**
      * Get the detault configuration of using a naive Bayes classifier both as the single non-relational and the
@@ -80,6 +151,7 @@ public abstract class NetworkMetaClassifier extends NetworkClassifierImp {
         Configuration dCfg = super.getDefaultConfiguration();
         dCfg.set(NetworkLearning.LC_PREFIX,"naivebayes");
         dCfg.set(NetworkLearning.RC_PREFIX,"naivebayes");
+        dCfg.set("parallel",(NetKitEnv.getNumThreads() > 1));
         return dCfg;
     }
 
@@ -128,6 +200,9 @@ public abstract class NetworkMetaClassifier extends NetworkClassifierImp {
         }
 
         classifierNames = "RC["+rcs+"] LC["+lcs+"]";
+
+        parallel = config.getBoolean("parallel",(NetKitEnv.getNumThreads() > 1));
+        logger.config("  configure: parallel="+parallel);
     }
 
     /**
@@ -139,18 +214,202 @@ public abstract class NetworkMetaClassifier extends NetworkClassifierImp {
      *
      * @see NetworkClassifierImp#induceModel(netkit.graph.Graph, netkit.classifiers.DataSplit)
      */
-    public void induceModel(Graph graph, DataSplit split) {
+    public void induceModel(final Graph graph, final DataSplit split) {
         super.induceModel(graph, split);
-        for(NetworkClassifier nc : rclassifiers)
+
+        if(pool != null)
+            pool.shutdownNow();
+        int numThreads = ( parallel ? ParallelUtil.getNumThreads(rclassifiers.size()+lclassifiers.size()) : 1 );
+        pool = ( (numThreads > 1) ? ParallelUtil.newDaemonPool(numThreads) : null );
+
+        List<Classifier> members = new ArrayList<Classifier>(rclassifiers);
+        members.addAll(lclassifiers);
+        memberRandom = new Random[members.size()];
+        for(int i=0;i<memberRandom.length;i++)
+            memberRandom[i] = RandomStreams.get("meta", numInduced, i);
+        numInduced++;
+
+        List<Callable<Boolean>> induceTasks = new ArrayList<Callable<Boolean>>();
+        for(int i=0;i<members.size();i++)
         {
-            logger.fine("Inducing "+nc.getName());
-            nc.induceModel(graph, split);
+            final int idx = i;
+            final Classifier c = members.get(i);
+            induceTasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    logger.fine("Inducing "+c.getName());
+                    Random old = RandomStreams.bind(memberRandom[idx]);
+                    try
+                    {
+                        c.induceModel(graph, split);
+                    }
+                    finally
+                    {
+                        RandomStreams.bind(old);
+                    }
+                    return true;
+                }
+            });
         }
-        for(Classifier lc : lclassifiers)
+        invokeAll(induceTasks);
+
+        int numClasses = split.getView().getAttribute().size();
+        rcResults = new double[rclassifiers.size()][numClasses];
+        rcEstimated = new boolean[rclassifiers.size()];
+        lcResults = new double[lclassifiers.size()][numClasses];
+        lcEstimated = new boolean[lclassifiers.size()];
+        rcBlock = new double[rclassifiers.size()][0];
+        rcBlockEstimated = new boolean[rclassifiers.size()][0];
+        lcBlock = new double[lclassifiers.size()][0];
+        lcBlockEstimated = new boolean[lclassifiers.size()][0];
+
+        rcTasks = new ArrayList<Callable<Boolean>>();
+        for(int i=0;i<rclassifiers.size();i++)
         {
-            logger.fine("Inducing "+lc.getName());
-            lc.induceModel(graph, split);
+            final int idx = i;
+            final NetworkClassifier nc = rclassifiers.get(i);
+            rcTasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    Random old = RandomStreams.bind(memberRandom[idx]);
+                    try
+                    {
+                        nc.estimateBlock(blockNodes, blockFrom, blockTo, prior, rcBlock[idx], rcBlockEstimated[idx]);
+                    }
+                    finally
+                    {
+                        RandomStreams.bind(old);
+                    }
+                    return true;
+                }
+            });
         }
+        allTasks = new ArrayList<Callable<Boolean>>(rcTasks);
+        for(int i=0;i<lclassifiers.size();i++)
+        {
+            final int idx = i;
+            final Classifier lc = lclassifiers.get(i);
+            allTasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    final int numClasses = lcResults[idx].length;
+                    Random old = RandomStreams.bind(memberRandom[rclassifiers.size()+idx]);
+                    try
+                    {
+                        for(int j=blockFrom;j<blockTo;j++)
+                        {
+                            lcBlockEstimated[idx][j-blockFrom] = false;
+                            if(blockLocal[j-blockFrom] && lc.estimate(blockNodes[j], lcResults[idx]))
+                            {
+                                System.arraycopy(lcResults[idx], 0, lcBlock[idx], (j-blockFrom)*numClasses, numClasses);
+                                lcBlockEstimated[idx][j-blockFrom] = true;
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        RandomStreams.bind(old);
+                    }
+                    return true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the estimates of the relational classifiers, and optionally the non-relational classifiers,
+     * for the given node using the current priors.  The classifiers are run one after the other in the
+     * calling thread.  When this returns, <code>rcResults[i]</code> holds the estimate of the i'th
+     * relational classifier if <code>rcEstimated[i]</code> is true, and likewise for the non-relational
+     * classifiers if they were asked for.
+     *
+     * @param node The node to estimate
+     * @param local Whether to also get the estimates of the non-relational classifiers
+     */
+    protected final void estimateMembers(final Node node, final boolean local) {
+        for(int i=0;i<rclassifiers.size();i++)
+        {
+            Random old = RandomStreams.bind(memberRandom[i]);
+            try
+            {
+                rcEstimated[i] = rclassifiers.get(i).estimate(node, prior, rcResults[i], false);
+            }
+            finally
+            {
+                RandomStreams.bind(old);
+            }
+        }
+        if(!local)
+            return;
+        for(int i=0;i<lclassifiers.size();i++)
+        {
+            Random old = RandomStreams.bind(memberRandom[rclassifiers.size()+i]);
+            try
+            {
+                lcEstimated[i] = lclassifiers.get(i).estimate(node, lcResults[i]);
+            }
+            finally
+            {
+                RandomStreams.bind(old);
+            }
+        }
+    }
+
+    /**
+     * Get the estimates of the relational classifiers for a block of nodes using the current priors,
+     * and the estimates of the non-relational classifiers for the nodes of the block that need them.
+     * The classifiers are run concurrently, one task per classifier for the whole block, if the
+     * 'parallel' property is true.  When this returns, the estimate of <code>nodes[j]</code> by the
+     * i'th relational classifier is at <code>rcBlock[i][(j-from)*numClasses]</code> if
+     * <code>rcBlockEstimated[i][j-from]</code> is true, and likewise for the non-relational classifiers.
+     *
+     * @param nodes The nodes to estimate
+     * @param from The index of the first node in the block (inclusive)
+     * @param to The index of the last node in the block (exclusive)
+     * @param local Whether to also get the estimates of the non-relational classifiers for
+     *              <code>nodes[j]</code>, at <code>local[j-from]</code>, or null if none are needed
+     */
+    protected final void estimateMembersBlock(final Node[] nodes, final int from, final int to, final boolean[] local) {
+        final int size = to-from;
+        final int numClasses = attribute.size();
+        boolean anyLocal = false;
+        if(local != null)
+            for(int j=0;j<size;j++)
+                anyLocal |= local[j];
+        for(int i=0;i<rcBlock.length;i++)
+        {
+            if(rcBlock[i].length < size*numClasses)
+            {
+                rcBlock[i] = new double[size*numClasses];
+                rcBlockEstimated[i] = new boolean[size];
+            }
+        }
+        if(anyLocal)
+        {
+            for(int i=0;i<lcBlock.length;i++)
+            {
+                if(lcBlock[i].length < size*numClasses)
+                {
+                    lcBlock[i] = new double[size*numClasses];
+                    lcBlockEstimated[i] = new boolean[size];
+                }
+            }
+        }
+        blockNodes = nodes;
+        blockFrom = from;
+        blockTo = to;
+        blockLocal = local;
+        try
+        {
+            invokeAll(anyLocal ? allTasks : rcTasks);
+        }
+        finally
+        {
+            blockNodes = null;
+            blockLocal = null;
+        }
+    }
+
+    private void invokeAll(final List<Callable<Boolean>> tasks) {
+        if(!ParallelUtil.invokeAll(pool, tasks))
+            throw new RuntimeException(getShortName()+": interrupted while running its classifiers");
     }
 
     /**
@@ -30,6 +30,7 @@ import netkit.graph.Edge;
 import netkit.classifiers.DataSplit;
 import netkit.util.ArrayUtil;
 import netkit.util.NetKitEnv;
+import netkit.util.RandomStreams;
 import netkit.util.VectorMath;
 import netkit.util.Configuration;
 
@@ -80,14 +81,21 @@ public final class NetworkOnlyBayes extends NetworkClassifierImp {
     // count[j][i] = how many times is class j a neighbor of class i === P(i|j)
     private double[][] count;
 
-    // knownProbl[j][i] = the probability estimates based on neighbors whose class is known
+    // logPrior[i] = log(P(i)) and logCount[j][i] = log(count[j][i]), such that the
+    // estimates can be computed by summing log-likelihoods rather than multiplying
+    // probabilities, which underflows on nodes with many neighbors
+    private double[] logPrior;
+    private double[][] logCount;
+
+    // knownProbl[j][i] = the (log) probability estimates based on neighbors whose class is known
     private double[][] knownProb = null;
 
     // Randomly sub-samplededges
     private Edge[] sampledEdges = null;
 
-    // The random object to sub-sample edges
+    // The random object to sub-sample edges, and how many models have been induced
     private Random edgePicker = null;
+    private int numInduced = 0;
 
     /**
      * @return &quot;NetworkOnlyBayes&quot;
@@ -139,7 +147,7 @@ public final class NetworkOnlyBayes extends NetworkClassifierImp {
         if(numS>0)
         {
             sampledEdges = new Edge[numS];
-            edgePicker = new Random();
+            edgePicker = RandomStreams.get("nobayes");
         }
     }
 
@@ -162,6 +170,10 @@ public final class NetworkOnlyBayes extends NetworkClassifierImp {
      */
     public void induceModel(Graph graph, DataSplit split) {
         super.induceModel(graph,split);
+        // restart the edge sampling, such that each model samples the same edges given the seed
+        if(sampledEdges != null)
+            edgePicker = RandomStreams.get("nobayes", numInduced);
+        numInduced++;
 
         knownProb = new double[graph.numNodes()][];
         Arrays.fill(knownProb, null);
@@ -201,6 +213,17 @@ public final class NetworkOnlyBayes extends NetworkClassifierImp {
         for(int i=0;i<count.length;i++)
             VectorMath.normalize(count[i]);
 
+        logPrior = new double[this.prior.length];
+        for(int i=0;i<logPrior.length;i++)
+            logPrior[i] = Math.log(this.prior[i]);
+        logCount = new double[count.length][];
+        for(int i=0;i<count.length;i++)
+        {
+            logCount[i] = new double[count[i].length];
+            for(int j=0;j<count[i].length;j++)
+                logCount[i][j] = Math.log(count[i][j]);
+        }
+
         if(logger.isLoggable(Level.FINER))
             logger.finer(ArrayUtil.asString(count));
     }
@@ -210,6 +233,8 @@ public final class NetworkOnlyBayes extends NetworkClassifierImp {
         Edge[] edges = node.getEdges();
         if(sampledEdges != null && sampledEdges.length < edges.length)
         {
+            // the array is shared by everyone reading the edges of the node, so do not shuffle it
+            edges = edges.clone();
             int num = edges.length;
             for(int i=0;i<sampledEdges.length;i++)
             {
@@ -223,127 +248,177 @@ public final class NetworkOnlyBayes extends NetworkClassifierImp {
         return edges;
     }
 
-    // Get class estimates based on nodes whose neighbors have known labels.  Cache this so that we do
-    // not need to recompute
-    private void applyKnownNeighborEstimates(Node node, double[] estimation) {
-        Edge[] edges = getNeighbors(node);
+    /**
+     * Counts the known neighbors along all edges, as does <code>getNeighbors</code>.
+     *
+     * @see NetworkClassifierImp#buildKnownNeighbors()
+     */
+    protected KnownNeighborCache buildKnownNeighbors() {
+        return new KnownNeighborCache(graph, nodeType, clsIdx, attribute.size(), null, false);
+    }
+
+    // Get the log of the class estimates based on nodes whose neighbors have known labels.  Cache this so
+    // that we do not need to recompute.  The estimates are put at estimation[offset] onwards.
+    private void applyKnownNeighborEstimates(Node node, double[] estimation, int offset) {
         double[] known = knownProb[node.getIndex()];
         if(known == null || sampledEdges != null)
         {
-            known = new double[estimation.length];
-            knownProb[node.getIndex()] = known;
-            System.arraycopy(this.prior,0,known,0,this.prior.length);
-	        for (Edge e : edges)
+            known = new double[logPrior.length];
+            System.arraycopy(logPrior,0,known,0,logPrior.length);
+            if(sampledEdges == null)
             {
-                if(e.getDest().isMissing(clsIdx))
-                    continue;
-                int nIdx = (int)e.getDest().getValue(clsIdx);
-                for(int cA=0;cA<known.length;cA++)
+                // the weighted class counts of the known neighbors are cached, and
+                // sum_e w(e)*log(count[c][cA]) over the edges to class c is (sum_e w(e))*log(count[c][cA])
+                KnownNeighborCache cache = getKnownNeighbors();
+                int start = node.getIndex()*cache.numClasses;
+                for(int nIdx=0;nIdx<cache.numClasses;nIdx++)
+                {
+                    double w = cache.known[start+nIdx];
+                    if(w != 0)
+                        addWeighted(known, 0, logCount[nIdx], w);
+                }
+            }
+            else
+            {
+                for (Edge e : getNeighbors(node))
                 {
-                    double pa = known[cA];
-                    known[cA]*=Math.pow(count[nIdx][cA],e.getWeight());
-                    if(Double.isNaN(known[cA])||Double.isInfinite(known[cA]))
-                    {
-                        final StringBuilder cV = new StringBuilder();
-                        cV.append(count[0][cA]);
-                        for(int i=1;i<known.length;i++) cV.append(',').append(count[i][cA]);
-                        throw new RuntimeException("class["+cA+"] - estimate is NaN/Infinite? - eV="+ArrayUtil.asString(known)+" prevScore="+pa+" weight="+e.getWeight()+" cV=["+cV+"]");
-                    }
+                    if(e.getDest().isMissing(clsIdx))
+                        continue;
+                    addWeighted(known, 0, logCount[(int)e.getDest().getValue(clsIdx)], e.getWeight());
                 }
             }
+            knownProb[node.getIndex()] = known;
         }
-        System.arraycopy(known,0,estimation,0,estimation.length);
+        System.arraycopy(known,0,estimation,offset,known.length);
     }
 
-    // Apply VITERBI to compute class estimates based on neighbors whose labels are not known (but estimated)
-    private void finalizeEstimate(Node node,double[] estimation) {
-        Edge[] edges = getNeighbors(node);
+    // v[offset+i] += w*x[i]
+    private static void addWeighted(double[] v, int offset, double[] x, double w) {
+        for(int i=0;i<x.length;i++)
+            v[offset+i] += w*x[i];
+    }
 
+    // Apply VITERBI to compute class estimates based on neighbors whose labels are not known (but estimated).
+    // The estimation at estimation[offset] onwards comes in as log-likelihoods and goes out as a normalized distribution.
+    private void finalizeEstimate(Node node,double[] estimation,int offset) {
+        final int numClasses = logPrior.length;
+        final int end = offset+numClasses;
         // Do the viterbi algorithm...
         // P(c_a|N_e) =  P(c_a)
         //     for(e_n in N_e)
         //          tmp = w(e->e_n)*P(c_a|N_e)*sum(c in C) [ P(label(e_n)=c) * P(c_a|label(e_n)) ]
         //          P(c_a|N_e) *= tmp
+        // which is done as a sum of log(tmp) followed by a single normalization
 
         StringBuilder nV = null;
         if(logger.isLoggable(Level.FINEST)) nV = new StringBuilder();
-	    for (final Edge e : edges)
+        if(sampledEdges == null)
         {
-            if(!e.getDest().isMissing(clsIdx))
-                continue;
-
-            if(logger.isLoggable(Level.FINEST)) nV.append(e.getDest().getIndex()).append('(').append(e.getDest().getName()).append(")=");
-            double[] d = super.prior.getEstimate(e.getDest());
-            if(d == null)
-            {
-                if(logger.isLoggable(Level.FINEST)) nV.append("null ");
-                continue;
-            }
-            if(logger.isLoggable(Level.FINEST))
+            // only the unknown neighbors need to be visited
+            KnownNeighborCache cache = getKnownNeighbors();
+            int last = cache.offsets[node.getIndex()+1];
+            for(int k=cache.offsets[node.getIndex()];k<last;k++)
+                applyNeighborEstimate(cache.dests[k], cache.weights[k], estimation, offset, nV);
+        }
+        else
+        {
+            for (final Edge e : getNeighbors(node))
             {
-                nV.append('<').append(d[0]);
-                for(int i=1;i<d.length;i++)
-                    nV.append(',').append(d[i]);
-                nV.append("> ");
+                if(!e.getDest().isMissing(clsIdx))
+                    continue;
+                applyNeighborEstimate(e.getDest(), e.getWeight(), estimation, offset, nV);
             }
+        }
+        if(logger.isLoggable(Level.FINEST)) logger.finest("NoBayes estimate node-"+node.getIndex()+"("+node.getName()+") log="+ArrayUtil.asString(Arrays.copyOfRange(estimation,offset,end)));
 
-            int idx = VectorMath.getMaxIdx(d);
-            if(d[idx] == 1.0)
-            {
-                // neighbor is classified - apply straight bayes
-                for(int cA=0;cA<estimation.length;cA++)
-                {
-                    double pa = estimation[cA];
-                    estimation[cA]*=Math.pow(count[idx][cA],e.getWeight());
-                    if(Double.isNaN(estimation[cA])||Double.isInfinite(estimation[cA]))
-                    {
-                        final StringBuilder cV = new StringBuilder();
-                        cV.append(count[0][cA]);
-                        for(int i=1;i<estimation.length;i++) cV.append(',').append(count[i][cA]);
-                        throw new RuntimeException("class["+cA+"] - estimate is NaN/Infinite? - eV="+ArrayUtil.asString(estimation)+" prevScore="+pa+" weight="+e.getWeight()+" dV("+e.getDest().getIndex()+")="+ArrayUtil.asString(d)+" cV=["+cV+"]");
-                    }
-                }
-            }
-            else
-            {
-                // neighbor is estimated --- do viterbi
-                for(int cA=0;cA<estimation.length;cA++)
-                {
-                    double sum = 0;
-                    for(int cB=0;cB<estimation.length;cB++)
-                    {
-                        sum += ((d[cB]<EPSILON)?EPSILON : d[cB])*Math.pow(count[cB][cA],e.getWeight());
-                    }
-                    double pa = estimation[cA];
-                    estimation[cA] *= sum;
-                    if(Double.isNaN(estimation[cA])||Double.isInfinite(estimation[cA]))
-                    {
-                        final StringBuilder cV = new StringBuilder();
-                        cV.append(count[0][cA]);
-                        for(int i=1;i<estimation.length;i++) cV.append(',').append(count[i][cA]);
-                        throw new RuntimeException("class["+cA+"] - estimate is NaN/Infinite? - eV="+ArrayUtil.asString(estimation)+" prevScore="+pa+" weight="+e.getWeight()+" sum="+sum+" dV("+e.getDest().getIndex()+")="+ArrayUtil.asString(d)+" cV=["+cV+"]");
-                    }
-                }
-            }
+        // log-sum-exp normalization
+        double max = Double.NEGATIVE_INFINITY;
+        for(int cA=offset;cA<end;cA++)
+            if(estimation[cA] > max)
+                max = estimation[cA];
+        double sum = 0;
+        for(int cA=offset;cA<end;cA++)
+        {
+            estimation[cA] = Math.exp(estimation[cA]-max);
+            sum += estimation[cA];
         }
-        if(logger.isLoggable(Level.FINEST)) logger.finest("NoBayes estimate node-"+node.getIndex()+"("+node.getName()+") raw="+ArrayUtil.asString(estimation));
-        VectorMath.normalize(estimation);
-        if(logger.isLoggable(Level.FINEST)) logger.finest(" normalized="+ArrayUtil.asString(estimation)+" ) neighbors="+nV);
-        for(int cA=0;cA<estimation.length;cA++)
+        for(int cA=offset;cA<end;cA++)
+            estimation[cA] /= sum;
+
+        if(logger.isLoggable(Level.FINEST)) logger.finest(" normalized="+ArrayUtil.asString(Arrays.copyOfRange(estimation,offset,end))+" ) neighbors="+nV);
+        for(int cA=0;cA<numClasses;cA++)
         {
-            if(Double.isNaN(estimation[cA])||Double.isInfinite(estimation[cA]))
+            if(Double.isNaN(estimation[offset+cA])||Double.isInfinite(estimation[offset+cA]))
             {
                 final StringBuilder eV = new StringBuilder();
-                eV.append(estimation[0]);
-                for(int i=1;i<estimation.length;i++) eV.append(',').append(estimation[i]);
+                eV.append(estimation[offset]);
+                for(int i=1;i<numClasses;i++) eV.append(',').append(estimation[offset+i]);
                 final StringBuilder cV = new StringBuilder();
                 cV.append(count[0][cA]);
-                for(int i=1;i<estimation.length;i++) cV.append(',').append(count[i][cA]);
+                for(int i=1;i<numClasses;i++) cV.append(',').append(count[i][cA]);
                 throw new RuntimeException("class["+cA+"] - estimate is NaN/Infinite? - eV=["+eV+"] cV=["+cV+"]");
             }
         }
     }
 
+    // Add the log-likelihood of one neighbor whose label is not known
+    private void applyNeighborEstimate(Node dest, double weight, double[] estimation, int offset, StringBuilder nV) {
+        if(logger.isLoggable(Level.FINEST)) nV.append(dest.getIndex()).append('(').append(dest.getName()).append(")=");
+        double[] d = super.prior.getEstimate(dest);
+        if(d == null)
+        {
+            if(logger.isLoggable(Level.FINEST)) nV.append("null ");
+            return;
+        }
+        if(logger.isLoggable(Level.FINEST))
+        {
+            nV.append('<').append(d[0]);
+            for(int i=1;i<d.length;i++)
+                nV.append(',').append(d[i]);
+            nV.append("> ");
+        }
+
+        int idx = VectorMath.getMaxIdx(d);
+        if(d[idx] == 1.0)
+        {
+            // neighbor is classified - apply straight bayes
+            addWeighted(estimation, offset, logCount[idx], weight);
+        }
+        else if(weight == 1.0)
+        {
+            // neighbor is estimated --- do viterbi
+            for(int cA=0;cA<d.length;cA++)
+            {
+                double sum = 0;
+                for(int cB=0;cB<d.length;cB++)
+                    sum += ((d[cB]<EPSILON)?EPSILON : d[cB])*count[cB][cA];
+                estimation[offset+cA] += Math.log(sum);
+            }
+        }
+        else
+        {
+            // neighbor is estimated --- do viterbi, using log-sum-exp over
+            // log(d[cB]) + weight*log(count[cB][cA]) to avoid underflow
+            final double[] logD = new double[d.length];
+            for(int cB=0;cB<logD.length;cB++)
+                logD[cB] = Math.log((d[cB]<EPSILON)?EPSILON : d[cB]);
+            for(int cA=0;cA<d.length;cA++)
+            {
+                double max = Double.NEGATIVE_INFINITY;
+                for(int cB=0;cB<d.length;cB++)
+                {
+                    double l = logD[cB] + weight*logCount[cB][cA];
+                    if(l > max)
+                        max = l;
+                }
+                double sum = 0;
+                for(int cB=0;cB<d.length;cB++)
+                    sum += Math.exp(logD[cB] + weight*logCount[cB][cA] - max);
+                estimation[offset+cA] += max + Math.log(sum);
+            }
+        }
+    }
+
     /**
      * compute class estimates.
      * @param node The node to estimate class probabilities for
@@ -352,10 +427,26 @@ public final class NetworkOnlyBayes extends NetworkClassifierImp {
      * @return true
      */
     public boolean doEstimate(Node node, double[] estimation) {
-        applyKnownNeighborEstimates(node, estimation);
-        finalizeEstimate(node, estimation);
+        applyKnownNeighborEstimates(node, estimation, 0);
+        finalizeEstimate(node, estimation, 0);
         return true;
     }
+
+    /**
+     * Estimates all nodes of the block straight into the result array.
+     *
+     * @see NetworkClassifierImp#doEstimateBlock(netkit.graph.Node[], int, int, double[], boolean[])
+     */
+    protected int doEstimateBlock(Node[] nodes, int from, int to, double[] result, boolean[] estimated) {
+        final int numClasses = logPrior.length;
+        for(int i=from;i<to;i++)
+        {
+            applyKnownNeighborEstimates(nodes[i], result, (i-from)*numClasses);
+            finalizeEstimate(nodes[i], result, (i-from)*numClasses);
+            estimated[i-from] = true;
+        }
+        return to-from;
+    }
     
     
     public String toString() {
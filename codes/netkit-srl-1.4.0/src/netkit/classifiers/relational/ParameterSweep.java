@@ -0,0 +1,260 @@
+/**
+ * ParameterSweep.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.classifiers.Classification;
+import netkit.classifiers.DataSplit;
+import netkit.graph.*;
+import netkit.util.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+
+/**
+ * Cross-validates alpha and the number of steps of an
+ * {@link IterativeTransducer} by grid search, as the aNRL_cv.m and
+ * bNRWR_cv.m baselines do.  The known nodes of a split are divided at
+ * random into folds of equal size, and the accuracy of a setting is the
+ * accuracy on the nodes of a fold, from the labels of all other known
+ * nodes, averaged over the folds.
+ * <P>
+ * The grid is not run one setting and fold at a time.  The scores after t
+ * steps are a prefix of the scores after any larger number of steps, so
+ * every alpha runs one sequence of steps up to the largest number in the
+ * grid and takes the accuracies of all numbers of steps along the way.  The
+ * folds only change which labels are known, so they are all stepped
+ * together as columns of one panel, and every step reads the graph once for
+ * all folds and classes.  The operator is set up once and shared by all
+ * alphas, which are run in parallel.  The steps of an alpha then multiply in
+ * their own thread, so that no pool of threads runs inside another, unless
+ * the alphas are run one after the other.
+ * <P>
+ * This is used from code only; there is no command line option for it.
+ * <P>
+ * As in the baselines, a node is predicted as the class with the highest
+ * score, the first one if tied.  The row scaling of the transducer does not
+ * change the highest score and so is not applied.
+ */
+public final class ParameterSweep
+{
+	private static final Logger logger = NetKitEnv.getLogger(ParameterSweep.class.getName());
+
+	private final IterativeTransducer transducer;
+	private final double[] alphas;
+	private final int[] iterations;
+	private final int numFolds;
+	private double[][] accuracy = null;
+	private Node[][] folds = null;
+	private int bestAlpha = -1;
+	private int bestIterations = -1;
+
+	/**
+	 * @param transducer the transducer to tune, whose other parameters are
+	 * used as configured
+	 * @param alphas the values of alpha to try
+	 * @param iterations the numbers of steps to try
+	 * @param numFolds the number of folds
+	 */
+	public ParameterSweep(IterativeTransducer transducer, double[] alphas, int[] iterations, int numFolds) {
+		if(alphas.length == 0 || iterations.length == 0)
+			throw new IllegalArgumentException("The grid has no settings");
+		for(int t : iterations)
+			if(t < 0)
+				throw new IllegalArgumentException("Negative number of steps: "+t);
+		this.transducer = transducer;
+		this.alphas = alphas.clone();
+		this.iterations = iterations.clone();
+		this.numFolds = numFolds;
+	}
+
+	/**
+	 * Run the grid over the known nodes of the given split.
+	 *
+	 * @param graph The graph to run over
+	 * @param split The split whose training set is divided into folds
+	 * @param seed The seed of the random division into folds
+	 * @return the accuracies, as accuracy[alpha][iterations] in the order the
+	 * values were given
+	 */
+	public double[][] run(Graph graph, DataSplit split, long seed) {
+		final String nodeType = split.getView().getNodeType();
+		final CSRGraph csr = new CSRGraph(graph, new String[]{nodeType});
+		transducer.prepare(csr);
+
+		final Classification truth = split.getView().getTruth();
+		final int numClasses = split.getView().getAttribute().size();
+		final Node[] known = split.getTrainSet().clone();
+		Collections.shuffle(Arrays.asList(known),new Random(seed));
+		final int numSplits = Math.max(1,Math.min(numFolds,known.length));
+		folds = new Node[numSplits][];
+		for(int f=0;f<numSplits;f++)
+			folds[f] = new Node[(known.length-f+numSplits-1)/numSplits];
+		for(int i=0;i<known.length;i++)
+			folds[i%numSplits][i/numSplits] = known[i];
+		final int numColumns = numSplits*numClasses;
+
+		// the fold of every known node and the test nodes of every fold
+		final int[] fold = new int[csr.numNodes];
+		Arrays.fill(fold,-1);
+		final int[][] test = new int[numSplits][];
+		final int[][] label = new int[numSplits][];
+		for(int f=0;f<numSplits;f++)
+		{
+			test[f] = new int[folds[f].length];
+			label[f] = new int[folds[f].length];
+			for(int i=0;i<test[f].length;i++)
+			{
+				final Node n = folds[f][i];
+				test[f][i] = n.getIndex();
+				label[f][i] = truth.getClassValue(n);
+				fold[n.getIndex()] = f;
+			}
+		}
+
+		// the known labels of all folds as one panel, where column
+		// f*numClasses+c holds class c of fold f
+		final double[] Y = new double[csr.numNodes*numColumns];
+		for(Node n : split.getTrainSet())
+		{
+			final int c = truth.getClassValue(n);
+			for(int f=0;f<numSplits;f++)
+				if(fold[n.getIndex()] != f)
+					Y[n.getIndex()*numColumns+f*numClasses+c] = 1;
+		}
+
+		int maxSteps = 0;
+		for(int t : iterations)
+			maxSteps = Math.max(maxSteps,t);
+
+		final int lastStep = maxSteps;
+
+		accuracy = new double[alphas.length][iterations.length];
+		final int numThreads = ParallelUtil.getNumThreads(alphas.length);
+		final boolean parallelSteps = (numThreads == 1);
+		final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(numThreads);
+		for(int t=0;t<numThreads;t++)
+		{
+			final int first = t;
+			final int stride = numThreads;
+			tasks.add(new Callable<Boolean>() {
+				public Boolean call() {
+					double[] curr = new double[Y.length];
+					double[] next = new double[Y.length];
+					for(int a=first;a<alphas.length;a+=stride)
+					{
+						System.arraycopy(Y,0,curr,0,Y.length);
+						for(int step=0;;step++)
+						{
+							double acc = -1;
+							for(int k=0;k<iterations.length;k++)
+								if(iterations[k] == step)
+								{
+									if(acc < 0)
+										acc = getAccuracy(curr,numColumns,numClasses,test,label);
+									accuracy[a][k] = acc;
+								}
+							if(step == lastStep)
+								break;
+							transducer.step(alphas[a],curr,Y,next,numColumns,parallelSteps);
+							final double[] tmp = curr;
+							curr = next;
+							next = tmp;
+						}
+					}
+					return true;
+				}
+			});
+		}
+		ParallelUtil.invokeAll(tasks);
+
+		// the first best setting in the order of the baselines
+		double best = -1;
+		for(int k=0;k<iterations.length;k++)
+			for(int a=0;a<alphas.length;a++)
+			{
+				logger.fine("ParameterSweep: "+transducer.getShortName()+" alpha="+alphas[a]+" iterations="+iterations[k]+" accuracy="+accuracy[a][k]);
+				if(accuracy[a][k] > best)
+				{
+					best = accuracy[a][k];
+					bestAlpha = a;
+					bestIterations = k;
+				}
+			}
+		logger.info("ParameterSweep: "+transducer.getShortName()+" best alpha="+getBestAlpha()+" iterations="+getBestIterations()+" accuracy="+best+" over "+numSplits+" folds");
+		return accuracy;
+	}
+
+	/**
+	 * @return the accuracy averaged over the folds, where a node counts as
+	 * correct if its true class has the first highest score in its fold
+	 */
+	private static double getAccuracy(double[] X, int numColumns, int numClasses, int[][] test, int[][] label) {
+		double sum = 0;
+		for(int f=0;f<test.length;f++)
+		{
+			int correct = 0;
+			for(int i=0;i<test[f].length;i++)
+			{
+				final int row = test[f][i]*numColumns+f*numClasses;
+				int max = 0;
+				for(int c=1;c<numClasses;c++)
+					if(X[row+c] > X[row+max])
+						max = c;
+				if(max == label[f][i])
+					correct++;
+			}
+			sum += ( (test[f].length > 0) ? (double)correct/(double)test[f].length : 0 );
+		}
+		return sum/test.length;
+	}
+
+	/**
+	 * @return the accuracies of the last run, as accuracy[alpha][iterations]
+	 */
+	public double[][] getAccuracy() {
+		return accuracy;
+	}
+
+	/**
+	 * @return the known nodes of every fold of the last run
+	 */
+	public Node[][] getFolds() {
+		return folds;
+	}
+
+	/**
+	 * @return the alpha of the best setting of the last run
+	 */
+	public double getBestAlpha() {
+		return alphas[bestAlpha];
+	}
+
+	/**
+	 * @return the number of steps of the best setting of the last run
+	 */
+	public int getBestIterations() {
+		return iterations[bestIterations];
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * RCTK.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.util.*;
+
+import java.util.Arrays;
+
+/**
+ * The regularized commute-time kernel from Fouss et al. (2012), as in the
+ * RCTK.m baseline.  With P the transition matrix of a random walk that
+ * teleports to a uniformly random node with probability 1-eta, this solves
+ * (I - alpha*P')F = Y.
+ * <P>
+ * P is never built.  Writing it as the sparse row-normalized adjacency Q
+ * plus its rank-one teleports, I - alpha*P' = (I - alpha*eta*Q') - uv',
+ * where u = (alpha/n)1, v = eta*d + (1-eta)1 and d marks the nodes without
+ * out-edges.  Every class is then solved by Sherman-Morrison, where the
+ * systems of I - alpha*eta*Q' are solved by fixed point iteration, which
+ * converges at the rate alpha*eta.
+ *
+ * <B>Reference:</B>
+ * <UL>
+ * <LI> Fouss, F., Francoisse, K., Yen, L., Pirotte, A., & Saerens, M. (2012).<BR>
+ *      An experimental investigation of kernels on graphs for collaborative
+ *      recommendation and semisupervised classification.<BR>
+ *      Neural Networks, 31:53-72.
+ * </UL>
+ *
+ * Parameters:
+ * <UL>
+ * <LI> eta: the probability of following an edge (default 0.01)
+ * <LI> alpha: the absorbing rate (default 0.1)
+ * </UL>
+ * This does not use collective inference.  It uses only known labels and the graph.
+ */
+public class RCTK extends SparseTransducer
+{
+	private double eta = 0.01;
+	private double alpha = 0.1;
+	private TeleportingWalk walk = null;
+	private double[] z = null; // (I - alpha*eta*Q')^-1 u
+	private double denominator = 1; // 1 - v'z
+
+	public String getShortName() {
+		return "RCTK";
+	}
+	public String getName() {
+		return "Regularized Commute-time Kernel";
+	}
+	public String getDescription() {
+		return "See reference: Fouss, F., Francoisse, K., Yen, L., Pirotte, A., and Saerens, M. (2012), \"An experimental investigation of kernels on graphs for collaborative recommendation and semisupervised classification,\" Neural Networks, 31:53-72.";
+	}
+
+	public Configuration getDefaultConfiguration() {
+		Configuration conf = super.getDefaultConfiguration();
+		conf.set("eta",0.01);
+		conf.set("alpha",0.1);
+		return conf;
+	}
+
+	public void configure(Configuration config) {
+		super.configure(config);
+		eta = config.getDouble("eta",0.01);
+		alpha = config.getDouble("alpha",0.1);
+		logger.config(" configure: eta="+eta);
+		logger.config(" configure: alpha="+alpha);
+	}
+
+	protected boolean isSymmetric() {
+		return false;
+	}
+
+	/**
+	 * @return v'X for every column of the panel
+	 */
+	private double[] teleports(double[] X, int numColumns) {
+		final double[] sums = new double[numColumns];
+		for(int i=0;i<walk.numNodes;i++)
+		{
+			final double v = ( walk.dangling[i] ? 1 : 1-eta );
+			for(int c=0;c<numColumns;c++)
+				sums[c] += v*X[i*numColumns+c];
+		}
+		return sums;
+	}
+
+	protected void prepare(CSRGraph g) {
+		walk = new TeleportingWalk(g,eta);
+		final int n = walk.numNodes;
+		final double[] u = new double[n];
+		Arrays.fill(u,alpha/n);
+		z = new double[n];
+		final int iter = solver.iterate(newOperator(1),u,z,1);
+		denominator = 1 - teleports(z,1)[0];
+		logger.fine(getName()+" rank-one correction took "+iter+" iterations (1-v'z="+denominator+")");
+	}
+
+	/**
+	 * @return the operator alpha*eta*Q'
+	 */
+	protected BlockSolver.Operator newOperator(int numColumns) {
+		return new BlockSolver.Operator() {
+			public void apply(double[] X, double[] result, int numColumns) {
+				walk.multiplyEdgesTranspose(X,result,numColumns);
+				VectorMath.multiply(result,alpha*eta);
+			}
+		};
+	}
+
+	/**
+	 * Solve (I - alpha*P')X = B by Sherman-Morrison.
+	 */
+	protected int solve(BlockSolver.Operator op, double[] B, double[] X, int numColumns) {
+		final int iter = solver.iterate(op,B,X,numColumns);
+		final double[] scale = teleports(X,numColumns);
+		VectorMath.divide(scale,denominator);
+		for(int i=0;i<walk.numNodes;i++)
+			for(int c=0;c<numColumns;c++)
+				X[i*numColumns+c] += scale[c]*z[i];
+		return iter;
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * SGL.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.util.*;
+
+/**
+ * The symmetrized graph Laplacian with a teleporting random walk from Zhou
+ * et al. (2005), as in the SGL.m baseline.  The walk follows an out-edge with
+ * probability eta, proportional to its weight, and teleports to a uniformly
+ * random node otherwise or when there are no out-edges.  With P its transition
+ * matrix and pi its stationary distribution, this solves (I - alpha*Theta)F = Y,
+ * where Theta = (Pi<SUP>1/2</SUP>P Pi<SUP>-1/2</SUP> +
+ * Pi<SUP>-1/2</SUP>P'Pi<SUP>1/2</SUP>)/2.
+ * <P>
+ * P is never built, as the teleports are a rank-one term that is applied
+ * as a sum over the vector.  The stationary distribution is computed by power
+ * iteration, which converges at the rate eta, and the systems are solved by
+ * conjugate gradient as Theta is symmetric with norm one.
+ *
+ * <B>Reference:</B>
+ * <UL>
+ * <LI> Zhou, D., Huang, J., & Scholkopf, B. (2005).<BR>
+ *      Learning from labeled and unlabeled data on a directed graph.<BR>
+ *      The 22nd International Conference on Machine Learning (ICML).
+ * </UL>
+ *
+ * Parameters:
+ * <UL>
+ * <LI> eta: the probability of following an edge (default 0.01)
+ * <LI> alpha: the absorbing rate (default 0.1)
+ * </UL>
+ * This does not use collective inference.  It uses only known labels and the graph.
+ */
+public class SGL extends SparseTransducer
+{
+	private double eta = 0.01;
+	private double alpha = 0.1;
+	private TeleportingWalk walk = null;
+	private double[] sqrtPi = null;
+
+	public String getShortName() {
+		return "SGL";
+	}
+	public String getName() {
+		return "Symmetrized Graph Laplacian";
+	}
+	public String getDescription() {
+		return "See reference: Zhou, D., Huang, J., and Scholkopf, B. (2005), \"Learning from labeled and unlabeled data on a directed graph,\" The 22nd International Conference on Machine Learning (ICML).";
+	}
+
+	public Configuration getDefaultConfiguration() {
+		Configuration conf = super.getDefaultConfiguration();
+		conf.set("eta",0.01);
+		conf.set("alpha",0.1);
+		return conf;
+	}
+
+	public void configure(Configuration config) {
+		super.configure(config);
+		eta = config.getDouble("eta",0.01);
+		alpha = config.getDouble("alpha",0.1);
+		logger.config(" configure: eta="+eta);
+		logger.config(" configure: alpha="+alpha);
+	}
+
+	protected boolean isSymmetric() {
+		return true;
+	}
+
+	/**
+	 * @return the stationary distribution of the walk computed in the last
+	 * prepare call
+	 */
+	double[] getStationary() {
+		final double[] pi = new double[sqrtPi.length];
+		for(int i=0;i<pi.length;i++)
+			pi[i] = sqrtPi[i]*sqrtPi[i];
+		return pi;
+	}
+
+	protected void prepare(CSRGraph g) {
+		walk = new TeleportingWalk(g,eta);
+		final double[] pi = walk.getStationary(tolerance,maxIterations);
+		sqrtPi = new double[pi.length];
+		for(int i=0;i<pi.length;i++)
+			sqrtPi[i] = Math.sqrt(pi[i]);
+		logger.fine(getName()+" computed the stationary distribution");
+	}
+
+	protected BlockSolver.Operator newOperator(int numColumns) {
+		final int size = walk.numNodes*numColumns;
+		return new BlockSolver.Operator() {
+			private double[] y = new double[size];
+			private double[] py = new double[size];
+			private double[] z = new double[size];
+			private double[] pz = new double[size];
+
+			public void apply(double[] X, double[] result, int numColumns) {
+				if(y.length != X.length)
+				{
+					// converged columns were dropped from the panel
+					y = new double[X.length];
+					py = new double[X.length];
+					z = new double[X.length];
+					pz = new double[X.length];
+				}
+				for(int i=0,j=0;i<walk.numNodes;i++)
+					for(int c=0;c<numColumns;c++,j++)
+					{
+						y[j] = X[j]/sqrtPi[i];
+						z[j] = X[j]*sqrtPi[i];
+					}
+				walk.multiply(y,py,numColumns);
+				walk.multiplyTranspose(z,pz,numColumns);
+				for(int i=0,j=0;i<walk.numNodes;i++)
+					for(int c=0;c<numColumns;c++,j++)
+						result[j] = X[j] - alpha*0.5*(sqrtPi[i]*py[j] + pz[j]/sqrtPi[i]);
+			}
+		};
+	}
+}
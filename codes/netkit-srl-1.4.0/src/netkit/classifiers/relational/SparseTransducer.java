@@ -0,0 +1,200 @@
+/**
+ * SparseTransducer.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.classifiers.*;
+import netkit.graph.*;
+import netkit.util.*;
+
+/**
+ * The base of the transductive classifiers that, like the Harmonic function,
+ * compute all their predictions when the model is induced by solving one
+ * linear system per class over the directed graph, F = M<SUP>-1</SUP>Y, where
+ * Y holds the known labels as 0/1 columns.  Unlike Harmonic, the matrix M is
+ * never built: the graph is kept as a sparse adjacency over the node type and
+ * subclasses only supply the product of M with a panel of vectors, which is
+ * then solved by conjugate gradient if M is symmetric and by BiCGSTAB
+ * otherwise, or by a solve of their own.  All classes are solved at once by a
+ * {@link BlockSolver}, so every product reads the graph once for all classes.
+ * <P>
+ * The unknown nodes get their row of F as their estimate, which is not
+ * normalized.  Nodes whose scores are all zero, such as nodes that cannot be
+ * reached from any known label, are not estimated.
+ * <P>
+ * Parameters:
+ * <UL>
+ * <LI> tolerance: the relative residual at which a solve has converged (default 1e-8)
+ * <LI> maxiterations: the largest number of iterations of a solve (default 1000)
+ * </UL>
+ */
+public abstract class SparseTransducer extends NetworkClassifierImp
+{
+	protected double tolerance = 1e-8;
+	protected int maxIterations = 1000;
+	protected BlockSolver solver = null;
+
+	private Estimate predictions = null;
+
+	/**
+	 * Get the default configuration, which adds the tolerance and the
+	 * maximum number of iterations of the linear solver.
+	 */
+	public Configuration getDefaultConfiguration() {
+		Configuration conf = super.getDefaultConfiguration();
+		conf.set("tolerance",1e-8);
+		conf.set("maxiterations",1000);
+		return conf;
+	}
+
+	/**
+	 * Configure the classifier, including the tolerance and the maximum
+	 * number of iterations of the linear solver.
+	 */
+	public void configure(Configuration config) {
+		super.configure(config);
+		tolerance = config.getDouble("tolerance",1e-8);
+		maxIterations = config.getInt("maxiterations",1000);
+		logger.config(" configure: tolerance="+tolerance);
+		logger.config(" configure: maxiterations="+maxIterations);
+	}
+
+	/**
+	 * Set up the operator of the linear system over the given adjacency,
+	 * whose node indices are the node indices of the node type.
+	 */
+	protected abstract void prepare(CSRGraph graph);
+
+	/**
+	 * @return a new instance of the operator set up in the last prepare
+	 * call, for panels of the given number of columns
+	 */
+	protected abstract BlockSolver.Operator newOperator(int numColumns);
+
+	/**
+	 * @return true if the operator is symmetric positive definite, so
+	 * conjugate gradient can be used
+	 */
+	protected abstract boolean isSymmetric();
+
+	/**
+	 * This does nothing as all predictions are computed when the model is induced.
+	 *
+	 * @param currPrior The current priors for all nodes in the graph
+	 * @param unknowns The list of nodes whose labels are unknown
+	 */
+	public void initializeRun(Estimate currPrior, Node[] unknowns) {}
+
+	/**
+	 * Returns the prediction computed in the induceModel call.
+	 * @return true, if the node was estimated, false otherwise.
+	 */
+	public boolean doEstimate(Node node, double[] estimation) {
+		double[] val = predictions.getEstimate(node);
+		if(val == null)
+			return false;
+		System.arraycopy(val, 0, estimation, 0, estimation.length);
+		return true;
+	}
+
+	/**
+	 * Copies the predictions computed in the induceModel call straight into the result array.
+	 * @see NetworkClassifierImp#doEstimateBlock(netkit.graph.Node[], int, int, double[], boolean[])
+	 */
+	protected int doEstimateBlock(Node[] nodes, int from, int to, double[] result, boolean[] estimated) {
+		final int numClasses = attribute.size();
+		int num = 0;
+		for(int i=from;i<to;i++)
+		{
+			double[] val = predictions.getEstimate(nodes[i]);
+			estimated[i-from] = (val != null);
+			if(val != null)
+			{
+				System.arraycopy(val, 0, result, (i-from)*numClasses, numClasses);
+				num++;
+			}
+		}
+		return num;
+	}
+
+	/**
+	 * The model is the solution of the linear system, so this computes the
+	 * predictions of all the nodes in the unknown set.
+	 *
+	 * @param graph The graph to induce a model over
+	 * @param split The data split identifying which nodes have known and unknown labels
+	 *
+	 * @see NetworkClassifierImp#induceModel(netkit.graph.Graph, netkit.classifiers.DataSplit)
+	 */
+	public void induceModel(Graph graph, DataSplit split) {
+		super.induceModel(graph, split);
+		solver = new BlockSolver(tolerance,maxIterations);
+		final CSRGraph csr = new CSRGraph(graph, new String[]{nodeType});
+		logger.fine(getName()+" induceModel: nodes="+csr.numNodes+" edges="+csr.numEdges);
+		prepare(csr);
+
+		final int numClasses = split.getView().getAttribute().size();
+		final Classification truth = split.getView().getTruth();
+		final double[] F = new double[csr.numNodes*numClasses];
+		final double[] Y = new double[csr.numNodes*numClasses];
+		for(Node n : split.getTrainSet())
+			Y[n.getIndex()*numClasses+truth.getClassValue(n)] = 1;
+
+		final int iter = solve(newOperator(numClasses),Y,F,numClasses);
+		if(iter > maxIterations)
+			logger.warning(getName()+" did not converge in "+maxIterations+" iterations");
+		else
+			logger.fine(getName()+" converged in "+iter+" iterations");
+
+		predictions = new Estimate(graph,nodeType,split.getView().getAttribute());
+		for(Node n : split.getUnknownSet())
+		{
+			final double[] p = new double[numClasses];
+			System.arraycopy(F,n.getIndex()*numClasses,p,0,numClasses);
+			boolean any = false;
+			for(int c=0;c<numClasses;c++)
+				any |= (p[c] != 0);
+			if(any)
+				predictions.estimate(n, p);
+			else
+				logger.finest(getName()+" no prediction for "+n.getName());
+		}
+	}
+
+	/**
+	 * Solve the systems of all classes, by conjugate gradient if the
+	 * operator is symmetric and by BiCGSTAB otherwise.  Subclasses whose
+	 * system is not M*X = B for the operator override this.
+	 * @param B the known labels, as a row-major panel with one column per class
+	 * @param X the panel to put the solution in
+	 * @return the number of iterations, which is more than maxIterations if
+	 * some class did not converge
+	 */
+	protected int solve(BlockSolver.Operator op, double[] B, double[] X, int numColumns) {
+		return ( isSymmetric() ? solver.cg(op,B,X,numColumns) : solver.bicgstab(op,B,X,numColumns) );
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(getName()+" (Relational Classifier)").append(NetKitEnv.newline);
+		sb.append("-------------------------------------").append(NetKitEnv.newline);
+		sb.append("[[ SPARSE OPERATOR ]]").append(NetKitEnv.newline);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * TeleportingWalk.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.util.*;
+
+import java.util.Arrays;
+
+/**
+ * The random walk with teleporting over a sparse adjacency that SGL, CTK and
+ * RCTK are built on.  The walk follows an out-edge with probability eta,
+ * proportional to its weight, and teleports to a uniformly random node
+ * otherwise or when there are no out-edges, so its transition matrix is
+ * <BR>
+ * P = eta*(Q + d1'/n) + (1-eta)11'/n
+ * <BR>
+ * where Q is the row-normalized adjacency and d marks the dangling nodes
+ * without out-edges.  Only Q is kept; the teleports are a rank-one term that
+ * is applied as a sum over the vector.
+ */
+final class TeleportingWalk
+{
+	final int numNodes;
+	final double eta;
+	final boolean[] dangling;
+	private final CSRGraph graph;
+	private final CSRGraph transpose;
+	private final double[] weights;  // Q, in the order of graph
+	private final double[] tWeights; // Q, in the order of transpose
+
+	TeleportingWalk(CSRGraph g, double eta) {
+		this.eta = eta;
+		numNodes = g.numNodes;
+		graph = g;
+		transpose = g.transpose();
+		final double[] outDegree = new double[numNodes];
+		dangling = new boolean[numNodes];
+		weights = new double[g.numEdges];
+		tWeights = new double[g.numEdges];
+		for(int i=0;i<numNodes;i++)
+		{
+			for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+				outDegree[i] += g.weights[k];
+			dangling[i] = !(outDegree[i] > 0);
+			for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+				weights[k] = ( dangling[i] ? 0 : g.weights[k]/outDegree[i] );
+		}
+		for(int j=0;j<numNodes;j++)
+			for(int k=transpose.offsets[j];k<transpose.offsets[j+1];k++)
+			{
+				final int i = transpose.targets[k];
+				tWeights[k] = ( dangling[i] ? 0 : transpose.weights[k]/outDegree[i] );
+			}
+	}
+
+	/**
+	 * Set result = Q*X for a panel of the given number of columns, which
+	 * leaves out the teleports.
+	 */
+	void multiplyEdges(double[] X, double[] result, int numColumns) {
+		BlockSolver.multiply(graph,weights,X,numColumns,result);
+	}
+
+	/**
+	 * Set result = Q'*X for a panel of the given number of columns, which
+	 * leaves out the teleports.
+	 */
+	void multiplyEdgesTranspose(double[] X, double[] result, int numColumns) {
+		multiplyEdgesTranspose(X,result,numColumns,true);
+	}
+
+	/**
+	 * Set result = Q'*X, split over the shared pool of threads if parallel
+	 * is true and in the calling thread otherwise.
+	 */
+	void multiplyEdgesTranspose(double[] X, double[] result, int numColumns, boolean parallel) {
+		if(parallel)
+			BlockSolver.multiply(transpose,tWeights,X,numColumns,result);
+		else
+			BlockSolver.multiplySequential(transpose,tWeights,X,numColumns,result);
+	}
+
+	/**
+	 * Set result = P*X for a panel of the given number of columns.
+	 */
+	void multiply(double[] X, double[] result, int numColumns) {
+		final double[] avg = BlockSolver.columnSums(X,numColumns);
+		VectorMath.divide(avg,numNodes);
+		multiplyEdges(X,result,numColumns);
+		for(int i=0;i<numNodes;i++)
+			for(int c=0;c<numColumns;c++)
+			{
+				final int j = i*numColumns+c;
+				result[j] = eta*(dangling[i] ? avg[c] : result[j]) + (1-eta)*avg[c];
+			}
+	}
+
+	/**
+	 * Set result = P'*X for a panel of the given number of columns.
+	 */
+	void multiplyTranspose(double[] X, double[] result, int numColumns) {
+		final double[] teleport = BlockSolver.columnSums(X,numColumns);
+		for(int c=0;c<numColumns;c++)
+			teleport[c] *= (1-eta);
+		for(int i=0;i<numNodes;i++)
+			if(dangling[i])
+				for(int c=0;c<numColumns;c++)
+					teleport[c] += eta*X[i*numColumns+c];
+		VectorMath.divide(teleport,numNodes);
+		multiplyEdgesTranspose(X,result,numColumns);
+		for(int i=0;i<numNodes;i++)
+			for(int c=0;c<numColumns;c++)
+			{
+				final int j = i*numColumns+c;
+				result[j] = eta*result[j] + teleport[c];
+			}
+	}
+
+	/**
+	 * Compute the stationary distribution pi = P'pi by power iteration,
+	 * which converges at the rate eta.
+	 * @param tolerance the L1 change at which the iteration stops
+	 * @param maxIterations the largest number of iterations
+	 */
+	double[] getStationary(double tolerance, int maxIterations) {
+		double[] pi = new double[numNodes];
+		double[] next = new double[numNodes];
+		Arrays.fill(pi,1.0/numNodes);
+		int iter = 0;
+		double diff = Double.POSITIVE_INFINITY;
+		while(diff > tolerance && iter++ < maxIterations)
+		{
+			multiplyTranspose(pi,next,1);
+			diff = VectorMath.l1diff(pi,next);
+			final double[] tmp = pi;
+			pi = next;
+			next = tmp;
+		}
+		return pi;
+	}
+}
@@ -214,17 +214,52 @@ public final class WeightedVoteRelationalNeighbor extends NetworkClassifierImp
      */
     @Override
     public boolean doEstimate(Node node, double[] estimation) {
+        estimateInto(node, estimation, 0);
+        return true;
+    }
+
+    /**
+     * Estimates all nodes of the block straight into the result array.
+     *
+     * @see NetworkClassifierImp#doEstimateBlock(netkit.graph.Node[], int, int, double[], boolean[])
+     */
+    @Override
+    protected int doEstimateBlock(Node[] nodes, int from, int to, double[] result, boolean[] estimated) {
+        final int numClasses = init.length;
+        for(int i=from;i<to;i++)
+        {
+            estimateInto(nodes[i], result, (i-from)*numClasses);
+            estimated[i-from] = true;
+        }
+        return to-from;
+    }
+
+    // Put the weighted vote of the neighbors of the node at estimation[offset] through estimation[offset+numClasses-1]
+    private void estimateInto(Node node, double[] estimation, int offset) {
+        final int numClasses = init.length;
         if(laplace == LaplaceCorrection.External && external != null)
         {
-            System.arraycopy(external.getEstimate(node,init),0,estimation,0,estimation.length);
+            System.arraycopy(external.getEstimate(node,init),0,estimation,offset,numClasses);
             if(lfactor != 1.0D)
-                VectorMath.multiply(estimation,lfactor);
+                for(int c=offset;c<offset+numClasses;c++)
+                    estimation[c] *= lfactor;
         }
         else
         {
             // no need to multiply this by lfactor, as that was already taken care of
             // in the induceModel method
-            System.arraycopy(init,0,estimation,0,estimation.length);
+            System.arraycopy(init,0,estimation,offset,numClasses);
+        }
+
+        if(rfactor==0.0D)
+        {
+            // the known neighbors are summed up once per split, so only the unknown
+            // neighbors need to be visited
+            KnownNeighborCache cache = getKnownNeighbors();
+            cache.addKnownCounts(node, estimation, offset);
+            cache.addUnknownEstimates(node, prior, estimation, offset);
+            VectorMath.normalize(estimation, offset, numClasses);
+            return;
         }
         
         Edge[] edges = node.getEdgesToNeighbor(node.getType());
@@ -255,17 +290,16 @@ public final class WeightedVoteRelationalNeighbor extends NetworkClassifierImp
           Node dest = e.getDest();
           if(!dest.isMissing(clsIdx)) {
             int value = (int)dest.getValue(clsIdx);
-            estimation[value]+=rw;
+            estimation[offset+value]+=rw;
           } else if(prior != null) {
             double[] d = prior.getEstimate(dest);
             if(d!=null)
               for(int v=0;v<d.length;v++)
-                estimation[v] += rw*d[v];
+                estimation[offset+v] += rw*d[v];
           }
         }
         
-        VectorMath.normalize(estimation);
-        return true;
+        VectorMath.normalize(estimation, offset, numClasses);
     }
 
     
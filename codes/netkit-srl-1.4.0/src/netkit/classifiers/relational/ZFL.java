@@ -0,0 +1,311 @@
+/**
+ * ZFL.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+package netkit.classifiers.relational;
+
+import netkit.util.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * The zero-mode free Laplacian over high-order co-linkage from Wang et al.
+ * (2010), as in the ZFL.m baseline.  With A the adjacency scaled by the
+ * square root of the out-degree of the source and of the in-degree of the
+ * target, the co-linkage matrices are
+ * <UL>
+ * <LI> W2 = AA' + A'A
+ * <LI> W3 = A(A+A')A' + A'(A+A')A
+ * <LI> W4 = A(A<SUP>2</SUP>+A'<SUP>2</SUP>+AA')A' + A'(A<SUP>2</SUP>+A'<SUP>2</SUP>+A'A)A
+ * </UL>
+ * which are combined into W1 = W2 + (a2/a3)W3 + (a2/a4)W4, where ak is the sum
+ * of the off-diagonal entries of Wk.  This solves LF = Y, where
+ * L = D - alpha*W1 + (s/n)11', D holds the row sums of W1, s is their sum and
+ * n is the number of nodes.
+ * <P>
+ * None of the products are built.  W1 is symmetric, so the systems are solved by
+ * conjugate gradient where every product with W1 takes twelve sparse products
+ * with A or A'.  The sums of the Wk are computed from their products with a
+ * vector of ones and their traces from the rows of A<SUP>2</SUP> and AA', as
+ * tr(W2) = 2|A|<SUP>2</SUP>, tr(W3) = 4tr(A<SUP>2</SUP>A') and
+ * tr(W4) = 4tr(A<SUP>3</SUP>A') + 2|A<SUP>2</SUP>|<SUP>2</SUP>.  Nodes without
+ * any co-links, which would make L singular, are left out of the system and
+ * are not estimated.
+ *
+ * <B>Reference:</B>
+ * <UL>
+ * <LI> Wang, H., Ding, C., & Huang, H. (2010).<BR>
+ *      Directed graph learning via high-order co-linkage analysis.<BR>
+ *      European Conference on Machine Learning (ECML PKDD).
+ * </UL>
+ *
+ * Parameters:
+ * <UL>
+ * <LI> alpha: controls the singularity of the Laplacian (default 0.99)
+ * </UL>
+ * This does not use collective inference.  It uses only known labels and the graph.
+ */
+public class ZFL extends SparseTransducer
+{
+	private double alpha = 0.99;
+	private CSRGraph graph = null;
+	private CSRGraph transpose = null;
+	private double[] weights = null;  // A, in the order of graph
+	private double[] tWeights = null; // A, in the order of transpose
+	private double c3 = 0;
+	private double c4 = 0;
+	private double[] degree = null;
+	private double teleport = 0;
+
+	public String getShortName() {
+		return "ZFL";
+	}
+	public String getName() {
+		return "Zero-mode Free Laplacian";
+	}
+	public String getDescription() {
+		return "See reference: Wang, H., Ding, C., and Huang, H. (2010), \"Directed graph learning via high-order co-linkage analysis,\" European Conference on Machine Learning (ECML PKDD).";
+	}
+
+	public Configuration getDefaultConfiguration() {
+		Configuration conf = super.getDefaultConfiguration();
+		conf.set("alpha",0.99);
+		return conf;
+	}
+
+	public void configure(Configuration config) {
+		super.configure(config);
+		alpha = config.getDouble("alpha",0.99);
+		logger.config(" configure: alpha="+alpha);
+	}
+
+	protected boolean isSymmetric() {
+		return true;
+	}
+
+	/**
+	 * @return the row sums of W1 computed in the last prepare call
+	 */
+	double[] getDegree() {
+		return degree;
+	}
+
+	protected void prepare(CSRGraph g) {
+		graph = g;
+		transpose = g.transpose();
+		final int n = g.numNodes;
+		final double[] outScale = new double[n];
+		final double[] inScale = new double[n];
+		for(int i=0;i<n;i++)
+			for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+			{
+				outScale[i] += g.weights[k];
+				inScale[g.targets[k]] += g.weights[k];
+			}
+		for(int i=0;i<n;i++)
+		{
+			outScale[i] = ( (outScale[i] > 0) ? 1.0/Math.sqrt(outScale[i]) : 1 );
+			inScale[i] = ( (inScale[i] > 0) ? 1.0/Math.sqrt(inScale[i]) : 1 );
+		}
+		weights = new double[g.numEdges];
+		tWeights = new double[g.numEdges];
+		for(int i=0;i<n;i++)
+			for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+				weights[k] = g.weights[k]*outScale[i]*inScale[g.targets[k]];
+		for(int j=0;j<n;j++)
+			for(int k=transpose.offsets[j];k<transpose.offsets[j+1];k++)
+				tWeights[k] = transpose.weights[k]*outScale[transpose.targets[k]]*inScale[j];
+
+		final double[] traces = getTraces();
+		final double[] ones = new double[n];
+		Arrays.fill(ones,1);
+		final Scratch s = new Scratch(n);
+		final double[] w = new double[n];
+		final double[] sums = new double[3];
+		for(int m=0;m<3;m++)
+		{
+			applyW(ones,(m==0 ? 1 : 0),(m==1 ? 1 : 0),(m==2 ? 1 : 0),w,s,1);
+			sums[m] = VectorMath.sum(w) - traces[m];
+		}
+		c3 = ( (sums[1] > 0) ? sums[0]/sums[1] : 0 );
+		c4 = ( (sums[2] > 0) ? sums[0]/sums[2] : 0 );
+		logger.fine(getName()+" off-diagonal sums="+ArrayUtil.asString(sums)+" traces="+ArrayUtil.asString(traces));
+
+		degree = new double[n];
+		applyW(ones,1,c3,c4,degree,s,1);
+		teleport = VectorMath.sum(degree)/n;
+	}
+
+	/**
+	 * Compute the traces of W2, W3 and W4 from the rows of A<SUP>2</SUP> and
+	 * AA', which are accumulated one row at a time and in parallel.
+	 */
+	private double[] getTraces() {
+		final int n = graph.numNodes;
+		final int numThreads = ParallelUtil.getNumThreads(n);
+		final double[][] partial = new double[numThreads][3];
+		final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(numThreads);
+		for(int t=0;t<numThreads;t++)
+		{
+			final int first = t;
+			final int step = numThreads;
+			tasks.add(new Callable<Boolean>() {
+				public Boolean call() {
+					final double[] a2 = new double[n];  // row of A^2
+					final double[] aat = new double[n]; // row of AA'
+					final int[] touched = new int[n];
+					final boolean[] seen = new boolean[n];
+					double frobA = 0, trA2A = 0, trA3A = 0, frobA2 = 0;
+					for(int i=first;i<n;i+=step)
+					{
+						int numTouched = 0;
+						for(int k=graph.offsets[i];k<graph.offsets[i+1];k++)
+						{
+							final int j = graph.targets[k];
+							final double aij = weights[k];
+							frobA += aij*aij;
+							for(int l=graph.offsets[j];l<graph.offsets[j+1];l++)
+							{
+								final int m = graph.targets[l];
+								if(!seen[m])
+								{
+									seen[m] = true;
+									touched[numTouched++] = m;
+								}
+								a2[m] += aij*weights[l];
+							}
+							for(int l=transpose.offsets[j];l<transpose.offsets[j+1];l++)
+								aat[transpose.targets[l]] += aij*tWeights[l];
+						}
+						for(int k=graph.offsets[i];k<graph.offsets[i+1];k++)
+							trA2A += a2[graph.targets[k]]*weights[k];
+						for(int q=0;q<numTouched;q++)
+						{
+							final int m = touched[q];
+							frobA2 += a2[m]*a2[m];
+							trA3A += a2[m]*aat[m];
+							a2[m] = 0;
+							seen[m] = false;
+						}
+						// clear the row of AA'
+						for(int k=graph.offsets[i];k<graph.offsets[i+1];k++)
+						{
+							final int j = graph.targets[k];
+							for(int l=transpose.offsets[j];l<transpose.offsets[j+1];l++)
+								aat[transpose.targets[l]] = 0;
+						}
+					}
+					partial[first][0] = 2*frobA;
+					partial[first][1] = 4*trA2A;
+					partial[first][2] = 4*trA3A + 2*frobA2;
+					return true;
+				}
+			});
+		}
+		ParallelUtil.invokeAll(tasks);
+		final double[] traces = new double[3];
+		for(double[] p : partial)
+			VectorMath.add(traces,p);
+		return traces;
+	}
+
+	/**
+	 * Scratch space for the products with W1.
+	 */
+	private static final class Scratch {
+		final double[] p, q, ap, tp, aq, tq, u, v, t1, t2;
+		Scratch(int n) {
+			p = new double[n];
+			q = new double[n];
+			ap = new double[n];
+			tp = new double[n];
+			aq = new double[n];
+			tq = new double[n];
+			u = new double[n];
+			v = new double[n];
+			t1 = new double[n];
+			t2 = new double[n];
+		}
+	}
+
+	/**
+	 * Set result = (b2*W2 + b3*W3 + b4*W4)X by products with A and A', for a
+	 * panel of the given number of columns.
+	 */
+	private void applyW(double[] X, double b2, double b3, double b4, double[] result, Scratch s, int numColumns) {
+		final int size = X.length;
+		BlockSolver.multiply(transpose,tWeights,X,numColumns,s.p); // p = A'X
+		BlockSolver.multiply(graph,weights,X,numColumns,s.q);      // q = AX
+		BlockSolver.multiply(graph,weights,s.p,numColumns,s.ap);
+		BlockSolver.multiply(transpose,tWeights,s.p,numColumns,s.tp);
+		BlockSolver.multiply(graph,weights,s.q,numColumns,s.aq);
+		BlockSolver.multiply(transpose,tWeights,s.q,numColumns,s.tq);
+		for(int i=0;i<size;i++)
+		{
+			result[i] = b2*(s.ap[i] + s.tq[i]);
+			s.u[i] = s.ap[i] + s.tp[i]; // (A+A')A'X
+			s.v[i] = s.aq[i] + s.tq[i]; // (A+A')AX
+		}
+		// W3X = Au + A'v
+		// W4X = A(Au + A'tp) + A'(A'v + Aaq)
+		BlockSolver.multiply(graph,weights,s.u,numColumns,s.t1);
+		BlockSolver.multiply(transpose,tWeights,s.tp,numColumns,s.t2);
+		for(int i=0;i<size;i++)
+			s.u[i] = b3*s.u[i] + b4*(s.t1[i] + s.t2[i]);
+		BlockSolver.multiply(transpose,tWeights,s.v,numColumns,s.t1);
+		BlockSolver.multiply(graph,weights,s.aq,numColumns,s.t2);
+		for(int i=0;i<size;i++)
+			s.v[i] = b3*s.v[i] + b4*(s.t1[i] + s.t2[i]);
+		BlockSolver.multiply(graph,weights,s.u,numColumns,s.t1);
+		BlockSolver.multiply(transpose,tWeights,s.v,numColumns,s.t2);
+		for(int i=0;i<size;i++)
+			result[i] += s.t1[i] + s.t2[i];
+	}
+
+	protected BlockSolver.Operator newOperator(int numColumns) {
+		final int n = graph.numNodes;
+		final int size = n*numColumns;
+		return new BlockSolver.Operator() {
+			private Scratch s = new Scratch(size);
+			private double[] Y = new double[size];
+
+			public void apply(double[] X, double[] result, int numColumns) {
+				if(Y.length != X.length)
+				{
+					// converged columns were dropped from the panel
+					s = new Scratch(X.length);
+					Y = new double[X.length];
+				}
+				for(int i=0;i<n;i++)
+					for(int c=0;c<numColumns;c++)
+						Y[i*numColumns+c] = ( (degree[i] > 0) ? X[i*numColumns+c] : 0 );
+				final double[] sums = BlockSolver.columnSums(Y,numColumns);
+				applyW(Y,1,c3,c4,result,s,numColumns);
+				for(int i=0;i<n;i++)
+					for(int c=0;c<numColumns;c++)
+					{
+						final int j = i*numColumns+c;
+						result[j] = ( (degree[i] > 0) ? degree[i]*X[j] - alpha*result[j] + teleport*sums[c] : X[j] );
+					}
+			}
+		};
+	}
+}
@@ -44,6 +44,10 @@ public final class Edge implements Comparable<Edge>
     private final Node dest;
 
     private float weight;
+
+    // The graph this edge was added to, whose version a change of
+    // weight bumps.  Null for edges which are not in a graph.
+    Graph graph = null;
     
     /** The constructor requires an EdgeType, a source and destination Node and a weight.
      * @param edgeType an edge type describing the valid node types of
@@ -91,9 +95,12 @@ public final class Edge implements Comparable<Edge>
         if(weight <= 0)
             throw new IllegalArgumentException("Edge weight cannot be < 0!");
         this.weight += weight;
+        if(graph != null)
+            graph.weightChanged();
     }
 
-    /** Sets the weight field of this Edge.
+    /** Sets the weight field of this Edge.  If the weight changes,
+     * this bumps the version of the graph the edge is in.
      * @param weight the new weight of the edge.
      * @throws IllegalArgumentException if the supplied weight
      * is less than zero.
@@ -102,7 +109,11 @@ public final class Edge implements Comparable<Edge>
     {
         if(weight <= 0)
             throw new IllegalArgumentException("Edge weight cannot be <= 0!");
+        if(this.weight == (float)weight)
+            return;
         this.weight = (float)weight;
+        if(graph != null)
+            graph.weightChanged();
     }
 
     /** Get the weight field of this object.
@@ -21,6 +21,7 @@
 
 package netkit.graph;
 
+import netkit.util.Components;
 import netkit.util.GraphMetrics;
 import netkit.util.HistogramCategorical;
 
@@ -235,14 +236,32 @@ public final class Graph implements Cloneable
 
     private GraphMetrics metrics = null;
 
-    private transient Node[] nodes;
-    private transient Edge[] edges;
+    // Metrics whose centrality stats come from a given number of pivots,
+    // kept apart from the metrics above and from each other.
+    private transient Map<Integer,GraphMetrics> pivotMetrics = null;
+
+    // Structural version of this graph.  Bumped on every change to the
+    // nodes, edges or edge weights so that cached metrics can be
+    // recognized as stale.
+    private transient long version = 0;
+
+    // Connected components of all nodes, indexed as by GraphMetrics,
+    // which are kept up to date as edges are added and dropped on any
+    // other structural change.
+    private transient Components components = null;
+    private transient Map<String,Integer> componentOffsets = null;
+
+    private transient volatile Node[] nodes;
+    private transient volatile Edge[] edges;
     
     public Graph clone() {
       Graph newG = new Graph();
       newG.edges = this.edges;
       newG.nodes = this.nodes;
       newG.metrics = metrics;
+      newG.version = version;
+      // the clone shares the nodes, so edges added to it would not be seen here
+      dropComponents();
       newG.ntMap.putAll(ntMap);
       newG.ethMap.putAll(ethMap);
       
@@ -293,15 +312,95 @@ public final class Graph implements Cloneable
     }
 
     /** Get the metrics encapsulating statistics about this graph.
+     * The metrics are cached and only recomputed if the graph has
+     * changed since they were created.
      * @return a GraphMetrics object which contains graph metrics about this graph.
+     * @see #getVersion()
      */
     public GraphMetrics getMetrics()
     {
-    if(metrics == null)
+    if(metrics == null || metrics.graphVersion != version)
         metrics = new GraphMetrics(this);
     return metrics;
     }
 
+    /** Get the metrics of this graph whose centrality stats are computed
+     * from the given number of pivots.  These are cached apart for each
+     * number of pivots, so that they are not changed by setting the pivots
+     * of the metrics from {@link #getMetrics()} or of metrics for another
+     * number of pivots.
+     * @param pivots number of pivots to sample, or 0 for exact stats
+     * @return a GraphMetrics object which contains graph metrics about this graph.
+     * @see GraphMetrics#setCentralityPivots(int)
+     */
+    public GraphMetrics getMetrics(int pivots)
+    {
+    if(pivots<0 || pivots>=numNodes())
+        pivots = 0;
+    if(pivotMetrics == null)
+        pivotMetrics = new HashMap<Integer,GraphMetrics>();
+    GraphMetrics gm = pivotMetrics.get(pivots);
+    if(gm == null || gm.graphVersion != version)
+    {
+        gm = new GraphMetrics(this);
+        gm.setCentralityPivots(pivots);
+        pivotMetrics.put(pivots,gm);
+    }
+    return gm;
+    }
+
+    /** Keep the given connected components of all nodes in this graph up
+     * to date as edges are added, such that they need not be found again
+     * for later versions of the graph.  Nodes are indexed as by
+     * GraphMetrics: by node type in the order of the graph, and within a
+     * node type by the node index.  The components are dropped when nodes
+     * or edges are removed or nodes are added.
+     * @param c the components of the current version of this graph.
+     * @see #getTrackedComponents()
+     */
+    public void trackComponents(Components c)
+    {
+	componentOffsets = new HashMap<String,Integer>();
+	int offset = 0;
+	for (final Map.Entry<String,NodeTypeHolder> nt : ntMap.entrySet())
+	{
+	    componentOffsets.put(nt.getKey(), offset);
+	    offset += nt.getValue().numNodes();
+	}
+	components = c;
+    }
+
+    /** Get the connected components kept up to date by trackComponents.
+     * @return the components of the current version of this graph, or
+     * null if they are not being tracked.
+     */
+    public Components getTrackedComponents()
+    {
+	return components;
+    }
+
+    private void dropComponents()
+    {
+	components = null;
+	componentOffsets = null;
+    }
+
+    /** Get the structural version of this graph.  The version changes
+     * every time nodes, edges or edge weights are added or removed, and
+     * every time the weight of one of its edges changes.
+     * @return the current version of this graph.
+     */
+    public long getVersion()
+    {
+	return version;
+    }
+
+    // Called by the edges of this graph when their weight changes.
+    void weightChanged()
+    {
+	version++;
+    }
+
     /** Adds the supplied Attributes container (or node type) to this
      * Graph; Attributes must be added to the Graph before Nodes that
      * utilize them can be added.
@@ -518,6 +617,7 @@ public final class Graph implements Cloneable
 	if (!ntMap.containsKey(et.getDestType()))
 	    throw new RuntimeException("Invalid EdgeType destination <" +et.getDestType());
 	ethMap.put(edgeTypeName, new EdgeTypeHolder(et));
+	version++;
     }
     
     /** Remove the supplied EdgeType from this Graph.  If force is
@@ -556,6 +656,8 @@ public final class Graph implements Cloneable
 	
 	// Now remove the supplied EdgeType from this Graph.
 	ethMap.remove(edgeTypeName);
+	dropComponents();
+	version++;
     }
 
     /** Gets the total number of nodes in this graph.
@@ -614,8 +716,11 @@ public final class Graph implements Cloneable
      */
     public Node addNode(String nodeName, Attributes a) 
     {
+	final Node node = ntMap.get(a.getName()).addNode(nodeName);
 	nodes = null;
-	return ntMap.get(a.getName()).addNode(nodeName);
+	dropComponents();
+	version++;
+	return node;
     }
 
     /** Remove all Nodes in this Graph whose Attributes container (AKA
@@ -666,6 +771,8 @@ public final class Graph implements Cloneable
 	nt.clearNodes();
 	// Invalidate the nodes array cache.
 	nodes = null;
+	dropComponents();
+	version++;
     }
 
     /** Remove the supplied Attributes container (AKA nodeType) from
@@ -727,9 +834,13 @@ public final class Graph implements Cloneable
      */
     public Node getNode(int index)
     {
-	if (nodes == null)
+	Node[] list = nodes;
+	if (list == null)
+	{
 	    getNodes();
-        return nodes[index];
+	    list = nodes;
+	}
+        return list[index];
     }
 
     /** Gets the node coresponding to the supplied node name and node type.
@@ -750,15 +861,18 @@ public final class Graph implements Cloneable
      */
     public Node[] getNodes()
     {
-        if(nodes == null)
+        Node[] list = nodes;
+        if(list == null)
 	{
-	    nodes = new Node[numNodes()];
+	    // fill in the array before publishing it, as it may be read concurrently
+	    list = new Node[numNodes()];
 	    int i = 0;
 	    for (final NodeTypeHolder nt : ntMap.values())
 		for (final Node node : nt.getNodes())
-		    nodes[i++] = node;
+		    list[i++] = node;
+	    nodes = list;
 	}
-        return nodes.clone();
+        return list.clone();
     }
 
     /** Gets all of the Nodes matching the supplied node type.
@@ -830,10 +944,15 @@ public final class Graph implements Cloneable
         if (existingEdge == null)
         {
             existingEdge = ethMap.get(edgeTypeName).addEdge(source, dest, weight);
+            existingEdge.graph = this;
             edges = null;
+            if (components != null)
+                components.union(componentOffsets.get(source.getType())+source.getIndex(),
+                                 componentOffsets.get(dest.getType())+dest.getIndex());
         }
         else
             existingEdge.addWeight(weight);
+        version++;
         return existingEdge;
     }
 
@@ -855,6 +974,8 @@ public final class Graph implements Cloneable
 	if(eth!=null) eth.removeEdge(source, dest);
 	// Invalidate the Edge array cache.
 	edges = null;
+	dropComponents();
+	version++;
     }
     
     /** Removes all Edges from this Graph sharing the supplied EdgeType.
@@ -869,6 +990,8 @@ public final class Graph implements Cloneable
       if(eth!=null) eth.removeEdges();
 	// Invalidate the Edge array cache.
 	edges = null;
+	dropComponents();
+	version++;
     }
     
     /** Gets the edge connecting two nodes in the graph; if the nodes
@@ -890,15 +1013,18 @@ public final class Graph implements Cloneable
      */
     public Edge[] getEdges()
     {
-        if(edges == null)
+        Edge[] list = edges;
+        if(list == null)
 	{
-	    edges = new Edge[numEdges()];
+	    // fill in the array before publishing it, as it may be read concurrently
+	    list = new Edge[numEdges()];
 	    int i = 0;
 	    for (final EdgeTypeHolder eth : ethMap.values())
 		for (final Edge e : eth.getEdges())
-		    edges[i++] = e;
+		    list[i++] = e;
+	    edges = list;
 	}
-        return edges.clone();
+        return list.clone();
     }
 
     /** Gets all the of the edges in the graph having a particular
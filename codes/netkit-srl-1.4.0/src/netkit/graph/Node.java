@@ -51,8 +51,8 @@ public final class Node implements Comparable<Node>
 	= new HashMap<String,HashMap<Node,Edge>>(2);
 
     private transient int hash;
-    private transient Node[] neighbors;
-    private transient Edge[] edges;
+    private transient volatile Node[] neighbors;
+    private transient volatile Edge[] edges;
 
     // Helper method to check the values array length against the
     // Attributes container length.  This ensures we don't try to
@@ -390,15 +390,18 @@ public final class Node implements Comparable<Node>
     public Edge[] getEdges()
     {
 	// Assumes that container preserves the insertion order.
-        if (edges == null)
+        Edge[] list = edges;
+        if (list == null)
 	{
-	    edges = new Edge[numEdges()];
+	    // fill in the array before publishing it, as it may be read concurrently
+	    list = new Edge[numEdges()];
 	    int i = 0;
 	    for (final Map<Node,Edge> nMap : etMap.values())
 		for (final Edge e : nMap.values())
-		    edges[i++] = e;
+		    list[i++] = e;
+	    edges = list;
 	}
-	return edges;
+	return list;
     }
 
     /** Get all the edges of this Node whose destination Node is the
@@ -560,15 +563,18 @@ public final class Node implements Comparable<Node>
     public Node[] getNeighbors()
     {
 	// Assumes that container preserves the insertion order.
-        if (neighbors == null)
+        Node[] list = neighbors;
+        if (list == null)
 	{
-	    neighbors = new Node[numEdges()];
+	    // fill in the array before publishing it, as it may be read concurrently
+	    list = new Node[numEdges()];
 	    int i = 0;
 	    for (final Map<Node,Edge> nMap : etMap.values())
 		for (final Node n : nMap.keySet())
-		    neighbors[i++] = n;
+		    list[i++] = n;
+	    neighbors = list;
 	}
-        return neighbors;
+        return list;
     }
 
     /** Gets the adjacent nodes connected to this node through an Edge
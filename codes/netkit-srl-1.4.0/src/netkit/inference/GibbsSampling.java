@@ -34,6 +34,7 @@
 package netkit.inference;
 
 import netkit.util.Configuration;
+import netkit.util.RandomStreams;
 import netkit.util.VectorMath;
 import netkit.util.NetKitEnv;
 import netkit.graph.Node;
@@ -42,6 +43,7 @@ import netkit.classifiers.Estimate;
 
 import java.util.Iterator;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.logging.Logger;
 
 public class GibbsSampling extends InferenceMethod
@@ -50,6 +52,11 @@ public class GibbsSampling extends InferenceMethod
 
     protected int[][] chains;
 
+    // the random streams of the chains, derived from the seed, the run and the chain,
+    // with one more stream for drawing the initial state
+    private Random[] chainRandom;
+    private int run = 0;
+
     private Estimate tmpEstimate = null;
     private int burnin = 0;
     private int numChains = 0;
@@ -95,6 +102,8 @@ public class GibbsSampling extends InferenceMethod
         logger.config("   "+this.getClass().getName()+" configure: numchains="+numChains);
 
         chains = new int[numChains][];
+        chainRandom = new Random[numChains+1];
+        run = 0;
     }
     public void reset(Iterator<Node> unknowns) {
         super.reset(unknowns);
@@ -106,14 +115,17 @@ public class GibbsSampling extends InferenceMethod
             chains[i] = new int[unknown.length];
             System.arraycopy(chains[0],0,chains[i],0,unknown.length);
         }
+        for(int i=0;i<chainRandom.length;i++)
+            chainRandom[i] = RandomStreams.get("gibbs", run, i);
+        run++;
         for(int i=0;i<numChains;i++)
-            VectorMath.randomize(chains[i]);
+            VectorMath.randomize(chains[i],chains[i],chains[i].length,chainRandom[i]);
 
         tmpEstimate = new Estimate(currPrior.getGraph(), currPrior.getNodeType(), currPrior.getAttribute());
 
     	for (Node n : unknown)
         {
-            int pIdx = currPrior.sampleEstimateIdx(n);
+            int pIdx = currPrior.sampleEstimateIdx(n,chainRandom[numChains]);
             tmpEstimate.estimate(n,idMatrix[pIdx]);
         }
 
@@ -146,20 +158,21 @@ public class GibbsSampling extends InferenceMethod
                 Arrays.fill(counts[i],0);
         }
 
-        for(int[] nodes : chains)
+        for(int c=0;c<chains.length;c++)
         {
-            for(int idx : nodes)
+            Random random = chainRandom[c];
+            for(int idx : chains[c])
             {
                 Node node = unknown[idx];
-                if(networkClassifier.estimate(node,tmpEstimate,tmpPredict,true))
+                // sample straight from the estimate rather than storing it in tmpEstimate first
+                if(networkClassifier.estimate(node,tmpEstimate,tmpPredict,false))
                 {
-                    int pIdx = tmpEstimate.sampleEstimateIdx(node);
-                    if(pIdx != -1)
-                    {
-                        tmpEstimate.estimate(node,idMatrix[pIdx]);
-                        counts[idx][pIdx]++;
-                    }
+                    int pIdx = VectorMath.sampleIdx(tmpPredict,random);
+                    tmpEstimate.estimate(node,idMatrix[pIdx]);
+                    counts[idx][pIdx]++;
                 }
+                else
+                    tmpEstimate.estimate(node,null);
             }
         }
         return true;
@@ -47,10 +47,8 @@ import netkit.util.NetKitEnv;
 
 import java.util.*;
 import java.util.logging.Logger;
-import java.util.logging.Level;
 import java.io.PrintWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.File;
 
 public abstract class InferenceMethod implements Configurable
 {
@@ -71,8 +69,11 @@ public abstract class InferenceMethod implements Configurable
   private boolean append = false;
   private boolean showItAcc = false;
   private String header = null;
+  private boolean binary = false;
 
-  private transient Set<InferenceMethodListener> listeners = new HashSet<InferenceMethodListener>();
+  // copied on write, such that notifying the listeners does nothing if no-one listens
+  private static final InferenceMethodListener[] NO_LISTENERS = new InferenceMethodListener[0];
+  private transient volatile InferenceMethodListener[] listeners = NO_LISTENERS;
   private boolean notify=true;
 
   public abstract String getShortName();
@@ -177,11 +178,20 @@ public abstract class InferenceMethod implements Configurable
       boolean append,
       Node[] eval,
       String header) {
+    savePredictions(outPredict,pe,append,eval,header,false);
+  }
+  public final void savePredictions(String outPredict,
+      PrintEstimateWriter pe,
+      boolean append,
+      Node[] eval,
+      String header,
+      boolean binary) {
     this.outPredict = outPredict;
     this.pe         = pe;
     this.append     = append;
     this.eval       = ((eval==null)? unknown : eval);
     this.header     = header;
+    this.binary     = binary;
   }
 
   public final void savePredictionsInPajek(String pajekFile) {
@@ -194,31 +204,9 @@ public abstract class InferenceMethod implements Configurable
     if(outPredict != null)
     {
       logger.info(new Date()+" ["+getClass().getName()+"] iteration-"+numIteration+" accuracy="+getCurrentAccuracy());
-      try
-      {
-        PrintWriter pw = new PrintWriter(new FileWriter(outPredict+"."+(numIteration+1)+".predict",append),true);
-        pw.println(header);
-        Classification outTruth;
-        if (truth != null)
-          outTruth = truth;
-        else
-        {
-          outTruth = new Classification(currPrior.getGraph(), currPrior.getNodeType(), currPrior.getAttribute());
-          outTruth.clear();
-          for(Node node : eval)
-            outTruth.set(node, truth.getClassValue(node));
-        }
-        pe.setOutput(pw);
-        for (Node node : eval)
-        {
-          pe.println(node, getCurrentEstimate(), outTruth);
-        }
-        pw.close();
-      }
-      catch(IOException ioe)
-      {
-        logger.log(Level.WARNING,"Error writing to '"+outPredict+"."+(numIteration+1)+".predict'",ioe);
-      }
+      // the estimates are copied and written in the background while the next iteration runs
+      String filename = outPredict+"."+(numIteration+1)+(binary ? ".predict.bin" : ".predict");
+      pe.printAsync(new File(filename), append, header, eval, getCurrentEstimate(), truth, binary);
     }
     if(pajekFile != null && pajekPW == null)
       pajekPW = NetKitEnv.getPrintWriter(pajekFile);
@@ -235,17 +223,31 @@ public abstract class InferenceMethod implements Configurable
     reset(unknowns);
     logger.fine("["+getClass().getName()+"] initial accuracy="+getCurrentAccuracy());
     printStatistics(-1,networkClassifier);
+    int[] unknownIdx = null;
     for(int i=0;i<numIterations;i++)
     {
       networkClassifier.initializeRun(currPrior,unknown);
       boolean predictOK = iterate(networkClassifier);
       printStatistics(i,networkClassifier);
+      // listeners are told about all estimates once per iteration
+      if(hasListeners())
+      {
+        if(unknownIdx == null)
+        {
+          unknownIdx = new int[unknown.length];
+          for(int u=0;u<unknown.length;u++)
+            unknownIdx[u] = unknown[u].getIndex();
+        }
+        notifyListeners(currPrior,unknownIdx);
+      }
       if(!predictOK)
       {
         logger.info(getName()+" converged after "+i+" iterations (max="+numIterations+")");
         i=numIterations;
       }
     }
+    if(outPredict != null)
+      pe.awaitPending();
     if(pajekPW != null) {
       pajekPW.println();
       pajekPW.close();
@@ -282,14 +284,20 @@ public abstract class InferenceMethod implements Configurable
     return numIterations;
   }
 
-  public final void addListener(InferenceMethodListener cl) {
-    listeners.add(cl);
+  public final synchronized void addListener(InferenceMethodListener cl) {
+    if(cl == null || Arrays.asList(listeners).contains(cl))
+      return;
+    InferenceMethodListener[] l = Arrays.copyOf(listeners, listeners.length+1);
+    l[l.length-1] = cl;
+    listeners = l;
   }
-  public final void removeListener(InferenceMethodListener cl) {
-    listeners.remove(cl);
+  public final synchronized void removeListener(InferenceMethodListener cl) {
+    ArrayList<InferenceMethodListener> l = new ArrayList<InferenceMethodListener>(Arrays.asList(listeners));
+    if(l.remove(cl))
+      listeners = l.toArray(NO_LISTENERS);
   }
-  public final void clearListeners() {
-    listeners.clear();
+  public final synchronized void clearListeners() {
+    listeners = NO_LISTENERS;
   }
   public final boolean getNofifyListeners() {
     return notify;
@@ -297,23 +305,29 @@ public abstract class InferenceMethod implements Configurable
   public final void setNofityListeners(boolean notify) {
     this.notify = notify;
   }
+  public final boolean hasListeners() {
+    return notify && listeners.length > 0;
+  }
 
   public final void notifyListeners(Estimate e, int[] unknown) {
     if(!notify)
       return;
-    for (InferenceMethodListener iml : listeners)
-      iml.estimate(e,unknown);
+    final InferenceMethodListener[] imls = listeners;
+    for (int i=0;i<imls.length;i++)
+      imls[i].estimate(e,unknown);
   }
   public final void notifyListeners(Classification c, int[] unknown) {
     if(!notify)
       return;
-    for (InferenceMethodListener iml : listeners)
-      iml.classify(c,unknown);
+    final InferenceMethodListener[] imls = listeners;
+    for (int i=0;i<imls.length;i++)
+      imls[i].classify(c,unknown);
   }
   public final void notifyListeners(Graph g, int[] unknown) {
     if(!notify)
       return;
-    for (InferenceMethodListener iml : listeners)
-      iml.iterate(g,unknown);
+    final InferenceMethodListener[] imls = listeners;
+    for (int i=0;i<imls.length;i++)
+      imls[i].iterate(g,unknown);
   }
 }
@@ -38,6 +38,13 @@ import netkit.classifiers.Classification;
 import netkit.classifiers.Estimate;
 
 public interface InferenceMethodListener {
+    /**
+     * Called once at the end of every iteration of collective inference with the
+     * current estimates of all the unknown nodes, rather than once per node.
+     *
+     * @param e The current estimates
+     * @param unknown The indices of the unknown nodes
+     */
     public void estimate(Estimate e, int[] unknown);
     public void classify(Classification c,int[] unknown);
     public void iterate(Graph g,int[] unknown);
@@ -49,12 +49,18 @@ public class RelaxationLabeling extends InferenceMethod {
     private double decay=0.99;
     private double beta0=1;
     private double beta=1;
+    private int blockSize=256;
+
+    // the estimates of the current block of unknown nodes
+    private double[] blockResult=null;
+    private boolean[] blockEstimated=null;
 
     public Configuration getDefaultConfiguration() {
         Configuration dCfg = super.getDefaultConfiguration();
         dCfg.set("numit",99);
         dCfg.set("beta",1.0);
         dCfg.set("decay",0.99);
+        dCfg.set("blocksize",256);
         return dCfg;
     }
     public void configure(Configuration config) {
@@ -63,6 +69,7 @@ public class RelaxationLabeling extends InferenceMethod {
         {
             beta0 = config.getDouble("beta",1);
             decay = config.getDouble("decay",0.99);
+            blockSize = config.getInt("blocksize",256);
         }
         catch(NumberFormatException nfe)
         {
@@ -72,14 +79,19 @@ public class RelaxationLabeling extends InferenceMethod {
         if(beta0>1) beta0 = 1;
         beta = beta0;
         if(decay<0||decay>1) decay = beta;
+        if(blockSize<1) blockSize = 1;
         logger.config("   "+this.getClass().getName()+" configure: beta="+beta);
         logger.config("   "+this.getClass().getName()+" configure: decay="+decay);
+        logger.config("   "+this.getClass().getName()+" configure: blocksize="+blockSize);
     }
 
     public void reset(Iterator<Node> unknowns) {
         super.reset(unknowns);
         tmpEstimate = new Estimate(currPrior);
         beta = beta0;
+        int size = Math.min(blockSize,Math.max(1,unknown.length));
+        blockResult = new double[size*currPrior.getAttribute().size()];
+        blockEstimated = new boolean[size];
     }
 
     public String getShortName() {
@@ -114,16 +126,28 @@ public class RelaxationLabeling extends InferenceMethod {
     }
 
     public boolean iterate(NetworkClassifier networkClassifier) {
-	for (Node n : unknown)
+        // all nodes are estimated from the same prior, so they can be estimated a block at a time
+        final int numClasses = currPrior.getAttribute().size();
+        for(int from=0;from<unknown.length;from+=blockEstimated.length)
         {
-            double[] oldEstimate = currPrior.getEstimate(n);
-            if(networkClassifier.estimate(n, currPrior, tmpEstimate, false))
+            int to = Math.min(unknown.length,from+blockEstimated.length);
+            networkClassifier.estimateBlock(unknown, from, to, currPrior, blockResult, blockEstimated);
+            for(int i=from;i<to;i++)
             {
-                double[] result = tmpEstimate.getEstimate(n);
-                if(result != null && beta<1)
+                Node n = unknown[i];
+                if(!blockEstimated[i-from])
                 {
-                    VectorMath.merge(beta,oldEstimate,result,result);
+                    tmpEstimate.estimate(n, null);
+                    continue;
                 }
+                int offset = (i-from)*numClasses;
+                double[] oldEstimate = currPrior.getEstimate(n);
+                if(beta<1 && oldEstimate != null)
+                {
+                    VectorMath.merge(beta,oldEstimate,0,blockResult,offset,blockResult,offset,numClasses);
+                }
+                tmpEstimate.estimate(n, blockResult, offset);
+                double[] result = tmpEstimate.getEstimate(n);
                 if(logger.isLoggable(Level.FINEST))
                 {
                     logger.finest("BeliefProp-node-"+n.getIndex()+"="+ArrayUtil.asString(result));
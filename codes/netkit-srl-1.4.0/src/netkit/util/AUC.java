@@ -0,0 +1,347 @@
+/**
+ * AUC.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import netkit.classifiers.Classification;
+import netkit.classifiers.Estimate;
+import netkit.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Computes the area under the ROC curve of every class of an estimate over
+ * primitive arrays.  The scores of all classes are gathered in one pass over
+ * the estimates, split by whether the node is a positive of the class, and
+ * the positive and negative scores of a class are each sorted as a double[]
+ * and merged from the highest score down into the groups of tied scores that
+ * make up the curve.  The classes are done in parallel.
+ * <p>
+ * The curve, and so the AUC, is exactly the one computed by {@link ROC},
+ * which uses this class to build its points: consecutive groups are merged
+ * into one segment unless one of them holds no positives or no negatives
+ * where the other one does.  Nodes without a score for a class are left
+ * out, nodes whose true label is not known count as negatives, and the AUC
+ * is 0 if there are no positives or no negatives.
+ * <p>
+ * For very large test sets, the scores can instead be counted into a number
+ * of equal-width bins between the smallest and largest score, which takes
+ * linear time.  Every bin is a segment of the curve and none are merged, so
+ * this is the usual AUC where a (positive,negative) pair in the same bin
+ * counts as half ordered.  It differs from the exact AUC by at most the
+ * fraction of pairs that share a bin, and when scores are tied across the
+ * classes, also by the segments that the exact curve merges.
+ */
+public final class AUC {
+	// the number of scores from which to do the classes in parallel
+	private static final int PARALLEL_SIZE = 1<<14;
+
+	private AUC() {}
+
+	/**
+	 * A growing list of the (positive,negative) counts of the segments of an
+	 * ROC curve, from the highest score down.
+	 */
+	static final class Curve {
+		private int[] pos = new int[16];
+		private int[] neg = new int[16];
+		private int size = 0;
+		final int numPos;
+		final int numNeg;
+		private final boolean merge;
+
+		Curve(int numPos, int numNeg, boolean merge) {
+			this.numPos = numPos;
+			this.numNeg = numNeg;
+			this.merge = merge;
+		}
+
+		/**
+		 * Add the next group of tied scores.  If merging, it is merged into
+		 * the last segment unless one of them has no positives or no
+		 * negatives where the other one does.
+		 */
+		void add(int p, int n) {
+			if(merge && size > 0 && (p != 0 || pos[size-1] == 0) && (n != 0 || neg[size-1] == 0))
+			{
+				pos[size-1] += p;
+				neg[size-1] += n;
+				return;
+			}
+			if(size == pos.length)
+			{
+				pos = Arrays.copyOf(pos,2*size);
+				neg = Arrays.copyOf(neg,2*size);
+			}
+			pos[size] = p;
+			neg[size] = n;
+			size++;
+		}
+
+		/**
+		 * @return the number of points on the curve, including (0,0)
+		 */
+		int getNumPoints() {
+			return size+1;
+		}
+
+		/**
+		 * @return the x (false positive rate) and y (true positive rate)
+		 * coordinates of the points on the curve, starting at (0,0)
+		 */
+		double[][] getPoints() {
+			double[][] xy = new double[2][size+1];
+			int cumP = 0;
+			int cumN = 0;
+			for(int i=0;i<size;i++)
+			{
+				cumP += pos[i];
+				cumN += neg[i];
+				xy[0][i+1] = (double)cumN/(double)numNeg;
+				xy[1][i+1] = (double)cumP/(double)numPos;
+			}
+			return xy;
+		}
+
+		/**
+		 * @return the area under the curve, which is closed off to (1,1)
+		 */
+		double getArea() {
+			double prevX = 0;
+			double prevY = 0;
+			double area = 0;
+			int cumP = 0;
+			int cumN = 0;
+			for(int i=0;i<size;i++)
+			{
+				cumP += pos[i];
+				cumN += neg[i];
+				final double x = (double)cumN/(double)numNeg;
+				final double y = (double)cumP/(double)numPos;
+				if(prevX != x)
+					area += ((y + prevY) / 2.0) * (x - prevX);
+				prevX = x;
+				prevY = y;
+			}
+			if(prevX != 1)
+				area += ((1 + prevY) / 2.0) * (1 - prevX);
+			return area;
+		}
+	}
+
+	/**
+	 * The scores of one class, split into the scores of the positives and of
+	 * the negatives.
+	 */
+	static final class Scores {
+		double[] pos;
+		double[] neg;
+		int numPos = 0;
+		int numNeg = 0;
+
+		Scores(int posCapacity, int negCapacity) {
+			pos = new double[posCapacity];
+			neg = new double[negCapacity];
+		}
+
+		void add(double score, boolean positive) {
+			if(positive)
+			{
+				if(numPos == pos.length)
+					pos = Arrays.copyOf(pos,Math.max(16,2*numPos));
+				pos[numPos++] = score;
+			}
+			else
+			{
+				if(numNeg == neg.length)
+					neg = Arrays.copyOf(neg,Math.max(16,2*numNeg));
+				neg[numNeg++] = score;
+			}
+		}
+
+		/**
+		 * Build the ROC curve of these scores: both sides are sorted and then
+		 * walked from the highest score down, one group of tied scores at a
+		 * time.
+		 * @return the curve, or null if there are no positives or no negatives
+		 */
+		Curve getCurve() {
+			if(numPos == 0 || numNeg == 0)
+				return null;
+			Arrays.sort(pos,0,numPos);
+			Arrays.sort(neg,0,numNeg);
+			final Curve curve = new Curve(numPos,numNeg,true);
+			int i = numPos-1;
+			int j = numNeg-1;
+			while(i >= 0 || j >= 0)
+			{
+				final double s = ( (j < 0 || (i >= 0 && pos[i] >= neg[j])) ? pos[i] : neg[j] );
+				int p = 0;
+				int n = 0;
+				for(;i >= 0 && pos[i] == s;i--)
+					p++;
+				for(;j >= 0 && neg[j] == s;j--)
+					n++;
+				curve.add(p,n);
+			}
+			return curve;
+		}
+
+		/**
+		 * Build the ROC curve of these scores counted into equal-width bins.
+		 * @return the curve, or null if there are no positives or no negatives
+		 */
+		Curve getBinnedCurve(int numBins) {
+			if(numPos == 0 || numNeg == 0)
+				return null;
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for(int i=0;i<numPos;i++)
+			{
+				min = Math.min(min,pos[i]);
+				max = Math.max(max,pos[i]);
+			}
+			for(int i=0;i<numNeg;i++)
+			{
+				min = Math.min(min,neg[i]);
+				max = Math.max(max,neg[i]);
+			}
+			final int[] binPos = new int[numBins];
+			final int[] binNeg = new int[numBins];
+			final double scale = ( (max > min) ? numBins/(max-min) : 0 );
+			for(int i=0;i<numPos;i++)
+				binPos[getBin(pos[i],min,scale,numBins)]++;
+			for(int i=0;i<numNeg;i++)
+				binNeg[getBin(neg[i],min,scale,numBins)]++;
+			final Curve curve = new Curve(numPos,numNeg,false);
+			for(int b=numBins-1;b>=0;b--)
+				if(binPos[b] != 0 || binNeg[b] != 0)
+					curve.add(binPos[b],binNeg[b]);
+			return curve;
+		}
+
+		private static int getBin(double score, double min, double scale, int numBins) {
+			return Math.min(numBins-1,(int)((score-min)*scale));
+		}
+
+		double getAUC(int numBins) {
+			final Curve curve = ( (numBins > 0) ? getBinnedCurve(numBins) : getCurve() );
+			return ( (curve == null) ? 0 : curve.getArea() );
+		}
+	}
+
+	/**
+	 * Gather the scores of the given classes in one pass over the estimates,
+	 * after a first pass which counts the positives of each class to size
+	 * the scores by.
+	 * @param classes the classes to gather, or null for all classes
+	 */
+	static Scores[] getScores(Estimate predictions, Classification truth, int[] classes) {
+		final int numClasses = predictions.getAttribute().size();
+		if(classes == null)
+		{
+			classes = new int[numClasses];
+			for(int c=0;c<numClasses;c++)
+				classes[c] = c;
+		}
+		final int[] numLabeled = new int[numClasses];
+		int numScored = 0;
+		for(Node node : predictions)
+		{
+			if(predictions.getEstimate(node) == null)
+				continue;
+			numScored++;
+			final int lbl = truth.getClassValue(node);
+			if(lbl >= 0 && lbl < numClasses)
+				numLabeled[lbl]++;
+		}
+		final Scores[] scores = new Scores[classes.length];
+		for(int c=0;c<classes.length;c++)
+		{
+			final int numPos = (classes[c] < numClasses ? numLabeled[classes[c]] : 0);
+			scores[c] = new Scores(numPos,numScored-numPos);
+		}
+		for(Node node : predictions)
+		{
+			final double[] p = predictions.getEstimate(node);
+			if(p == null)
+				continue;
+			final int lbl = truth.getClassValue(node);
+			for(int c=0;c<classes.length;c++)
+			{
+				final int cls = classes[c];
+				if(cls >= p.length || Double.isNaN(p[cls]))
+					continue;
+				scores[c].add(p[cls],lbl == cls);
+			}
+		}
+		return scores;
+	}
+
+	/**
+	 * @return the AUC of the given class, where the nodes whose true label is
+	 * the class are the positives
+	 */
+	public static double getAUC(Estimate predictions, Classification truth, int posClass) {
+		return getScores(predictions,truth,new int[]{posClass})[0].getAUC(0);
+	}
+
+	/**
+	 * @return the AUCs of all classes of the given estimates
+	 */
+	public static double[] getAUCs(Estimate predictions, Classification truth) {
+		return getAUCs(predictions,truth,0);
+	}
+
+	/**
+	 * Compute the AUCs of all classes of the given estimates, exactly or over
+	 * binned scores.
+	 *
+	 * @param predictions the estimates to score
+	 * @param truth the true labels
+	 * @param numBins the number of bins to count the scores into, or 0 to
+	 * compute the exact AUCs
+	 * @return the AUCs, indexed by class
+	 */
+	public static double[] getAUCs(Estimate predictions, Classification truth, final int numBins) {
+		final Scores[] scores = getScores(predictions,truth,null);
+		final double[] auc = new double[scores.length];
+		final boolean parallel = ((long)predictions.size()*scores.length >= PARALLEL_SIZE);
+		final int numThreads = ( parallel ? ParallelUtil.getNumThreads(scores.length) : 1 );
+		final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(numThreads);
+		for(int t=0;t<numThreads;t++)
+		{
+			final int first = t;
+			final int step = numThreads;
+			tasks.add(new Callable<Boolean>() {
+				public Boolean call() {
+					for(int c=first;c<scores.length;c+=step)
+						auc[c] = scores[c].getAUC(numBins);
+					return true;
+				}
+			});
+		}
+		ParallelUtil.invokeAll(tasks);
+		return auc;
+	}
+}
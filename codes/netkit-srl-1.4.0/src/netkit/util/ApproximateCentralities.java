@@ -3,14 +3,26 @@ package netkit.util;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
-import netkit.graph.Edge;
 import netkit.graph.Graph;
 import netkit.graph.Node;
 
+/**
+ * Approximate alpha centrality and pagerank, computed by pushing residual
+ * mass along the edges of the graph until the residual of every node is
+ * below a threshold.  Nodes whose residual is above the threshold are
+ * processed in rounds: all nodes of a round give up their residual at the
+ * same time, and the residual is then propagated to their neighbors.  Small
+ * rounds push along the out-edges of the round's nodes; large rounds are
+ * split over NetKitEnv.getNumThreads() threads, where each thread pulls the
+ * residual into its own range of nodes along their in-edges.
+ */
 public class ApproximateCentralities {
     private Object lock = new Object();
     public GraphMetrics metrics;
@@ -24,13 +36,19 @@ public class ApproximateCentralities {
     public ApproximateCentrality la_pagerank = new ApproximateLimitedAttentionPagerank();
     public ApproximateCentrality la_weightedPagerank = new ApproximateLimitedAttentionPagerank(true);
     
-    private Node[] nodes=null;
-    private double[] inDegree=null;
-    private double[] wInDegree=null;
-    private double[] degree=null;
-    private double[] wDegree=null;
+    /**
+     * A round is pulled in parallel if its nodes have more than
+     * 1/PULL_FRACTION of all edges; smaller rounds are pushed.
+     */
+    private static final int PULL_FRACTION = 20;
     
-    private double maxOutDegree = 0;
+    /**
+     * The adjacency and degrees shared by all centralities.  It is built by
+     * the first centrality which needs it; any others wait on the future.
+     */
+    private final FutureTask<Topology> topology = new FutureTask<Topology>(new Callable<Topology>() {
+	    public Topology call() { return new Topology(metrics.getCSRGraph()); }
+	});
     
     final private double numN;
     
@@ -70,6 +88,55 @@ public class ApproximateCentralities {
 	};
     }
     
+    private static final class Topology {
+	final CSRGraph out;
+	final CSRGraph in;
+	final double[] degree;
+	final double[] wDegree;
+	final double[] inDegree;
+	final double[] wInDegree;
+	
+	Topology(final CSRGraph g) {
+	    out = g;
+	    in = g.transpose();
+	    degree = new double[g.numNodes];
+	    wDegree = new double[g.numNodes];
+	    inDegree = new double[g.numNodes];
+	    wInDegree = new double[g.numNodes];
+	    for(int v=0;v<g.numNodes;v++) {
+		degree[v] = out.getDegree(v);
+		inDegree[v] = in.getDegree(v);
+		for(int k=out.offsets[v];k<out.offsets[v+1];k++)
+		    wDegree[v] += out.weights[k];
+		for(int k=in.offsets[v];k<in.offsets[v+1];k++)
+		    wInDegree[v] += in.weights[k];
+	    }
+	}
+    }
+    
+    /**
+     * A growable list of node indices.
+     */
+    private static final class IntList {
+	int[] items;
+	int size = 0;
+	
+	IntList(final int capacity) {
+	    items = new int[Math.max(1,capacity)];
+	}
+	
+	void add(final int item) {
+	    if(size == items.length)
+		items = Arrays.copyOf(items,2*size);
+	    items[size++] = item;
+	}
+	
+	void addAll(final IntList list) {
+	    for(int i=0;i<list.size;i++)
+		add(list.items[i]);
+	}
+    }
+    
     public abstract class ApproximateCentrality extends ComputeProcess {
 	protected double[] centrality=null;
 	protected double[] residual=null;
@@ -79,19 +146,38 @@ public class ApproximateCentralities {
 	protected double alpha = Double.NaN;
 	protected double delta = Double.NaN;
 	
+	protected Topology topo = null;
+	
+	/**
+	 * How the residual r of node u is propagated, set by init():
+	 * <ul>
+	 * <li>u keeps gain*r as centrality
+	 * <li>each edge u->v of pushGraph adds r*scale[u]*w*targetScale[v]
+	 *     to the residual of v, where w is the edge weight if useWeights
+	 *     is set and 1 otherwise, and a null targetScale means 1
+	 * <li>v is queued once its residual is at least threshold[v]
+	 * </ul>
+	 */
+	protected CSRGraph pushGraph = null;
+	protected double gain = 1D;
+	protected double[] scale = null;
+	protected boolean useWeights = false;
+	protected double[] targetScale = null;
+	protected double[] threshold = null;
+	
+	// the residual given up by each node of the current round
+	private double[] pushed = null;
+	
 	protected ApproximateCentrality(final String name, final boolean weighted) {
 	    super(name);
 	    this.weighted=weighted;
 	}
 	
 	/**
-	 * Update the queue with the current node, returning the first node index which was added (if any)
-	 * @param node
-	 * @param queue
-	 * @return index of first node added or -1 if no node added
+	 * Set the starting residuals and add the nodes to process first to the queue.
+	 * @return false if aborted
 	 */
-	protected abstract int updateQueue(final int node, final Queue<Integer> queue);
-	protected abstract Queue<Integer> initQueue();
+	protected abstract boolean initQueue(final IntList queue);
 	protected abstract boolean init();
 	
 	/**
@@ -122,93 +208,28 @@ public class ApproximateCentralities {
 	    return (centrality==null ? Double.NaN : centrality[node]);
 	}
 	
-	protected boolean setNodes() {
-	    if(nodes!=null) {
-		while(nodes[nodes.length-1]==null)
-		    try { Thread.sleep(50); } catch(Exception ex) {}
-		return true;
-	    }
-	    nodes = new Node[metrics.numNodes];
-	    for (final Node n : ((metrics.nodeType == null) ? metrics.graph.getNodes() : metrics.graph.getNodes(metrics.nodeType)))
-		{
-		    if(!active()) return false;
-		    nodes[metrics.getNodeIndex(n)] = n;
-		}
-	    return true;
-	}
-	
-	protected boolean setInDegree() {
-	    final int max=metrics.numNodes-1;
-	    if(inDegree!=null) {
-		while(inDegree[max]==-1)
-		    try { Thread.sleep(50); } catch(Exception ex) {}
+	/**
+	 * Get the adjacency and degrees, waiting for them if another
+	 * centrality is building them.
+	 * @return false if interrupted
+	 */
+	protected boolean setTopology() {
+	    topology.run();
+	    try {
+		topo = topology.get();
 		return true;
+	    } catch(InterruptedException ie) {
+		Thread.currentThread().interrupt();
+		return false;
+	    } catch(ExecutionException ee) {
+		throw new RuntimeException(ee.getCause().getMessage(),ee.getCause());
 	    }
-	    
-	    synchronized(lock) {
-		inDegree = new double[metrics.numNodes];
-		Arrays.fill(inDegree,0D);
-		inDegree[max] = -1;
-		
-		wInDegree = new double[metrics.numNodes];
-		Arrays.fill(wInDegree,0D);
-	    }
-	    double in=0;
-	    for (final Node n : ((metrics.nodeType == null) ? metrics.graph.getNodes() : metrics.graph.getNodes(metrics.nodeType)))
-		{
-		    if(!active()) return false;
-		    for(final Edge e : (metrics.nodeType == null ? n.getEdges() : n.getEdgesToNeighbor(metrics.nodeType))) {
-			final int cIdx = metrics.getNodeIndex(e.getDest());
-			wInDegree[cIdx] += e.getWeight();
-			if(cIdx==max)
-			    in++;
-			else
-			    inDegree[cIdx]++;
-		    }
-		}
-	    inDegree[max] = in;
-	    return true;
 	}
 	
-	protected boolean setDegree() {
-	    final int max=metrics.numNodes-1;
-	    if(degree!=null) {
-		while(degree[max]==-1)
-		    try { Thread.sleep(50); } catch(Exception ex) {}
-		return true;
-	    }
-	    
-	    synchronized(lock) {
-		degree = new double[metrics.numNodes];
-		Arrays.fill(degree,0D);
-		degree[max] = -1;
-		
-		wDegree = new double[metrics.numNodes];
-		Arrays.fill(wDegree,0D);
-	    }
-	    double in=0;
-	    for (final Node n : ((metrics.nodeType == null) ? metrics.graph.getNodes() : metrics.graph.getNodes(metrics.nodeType)))
-		{
-		    if(!active()) return false;
-		    final int cIdx = metrics.getNodeIndex(n);
-		    wDegree[cIdx] = ((metrics.nodeType==null) ? nodes[cIdx].getWeightedDegree() : nodes[cIdx].getWeightedDegree(metrics.nodeType));
-		    
-		    final double d = ((metrics.nodeType==null) ? nodes[cIdx].getUnweightedDegree() : nodes[cIdx].getUnweightedDegree(metrics.nodeType)); 
-		    if(cIdx==max)
-			in = d;
-		    else
-			degree[cIdx] = d;
-		}
-	    degree[max] = in;
-	    return true;
-	}		
-	
 	private void clean() {
 	    logger.info(name()+" --- clean()");
 	    centrality=null;
-	    residual=null;
-	    nodes=null;
-	    active=null;
+	    cleanup();
 	}
 	
 	/**
@@ -222,91 +243,189 @@ public class ApproximateCentralities {
 	    
 	    residual = new double[metrics.numNodes]; 
 	    centrality = new double[metrics.numNodes];
-	    Arrays.fill(residual,0D);
-	    Arrays.fill(centrality,0D);
+	    pushed = new double[metrics.numNodes];
+	    active = new boolean[metrics.numNodes];
 	    
-	    Queue<Integer> queue = initQueue();
-	    if(queue==null) {
+	    IntList queue = new IntList(metrics.numNodes);
+	    if(!initQueue(queue)) {
 		clean();
 		return false;
 	    }
-	    
-	    active = new boolean[metrics.numNodes];
-	    Arrays.fill(active,false);
-	    for(int node : queue) {
-		if(!active()) {
-		    clean();
-		    return false;
-		}
-		active[node]=true;
+	    for(int i=0;i<queue.size;i++)
+		active[queue.items[i]]=true;
+	    
+	    final int numThreads = ParallelUtil.getNumThreads(metrics.numNodes);
+	    final ExecutorService pool = (numThreads>1 ? Executors.newFixedThreadPool(numThreads) : null);
+	    try {
+		return iterate(queue, pool, numThreads);
+	    } finally {
+		if(pool!=null)
+		    pool.shutdownNow();
 	    }
-	    
+	}
+	
+	private boolean iterate(IntList queue, final ExecutorService pool, final int numThreads) {
+	    final int pullEdges = pushGraph.numEdges/PULL_FRACTION;
 	    double nInc=0; // how many consecutive steps did residual increase?
 	    double tDiff=0; // what is total residual diff of all increases so far?
 	    double psum = VectorMath.sum(residual);
-	    logger.info(name()+" START Iterating QS="+queue.size()+" residual="+psum+" queueSize="+queue.size());
-	    int itStart = (queue.isEmpty() ? -1 : queue.peek());
+	    logger.info(name()+" START Iterating QS="+queue.size+" residual="+psum+" queueSize="+queue.size);
 	    int numN=0;
-	    while(!queue.isEmpty()) {
+	    int numRounds=0;
+	    while(queue.size>0) {
 		if(!active()) {
 		    clean();
 		    return false;
 		}
-		numN++;
-		final int node = queue.poll();
-		active[node] = false;
+		numN += queue.size;
+		numRounds++;
 		
-		final int firstAdd = updateQueue(node,queue);
+		int edges = 0;
+		for(int i=0;i<queue.size;i++) {
+		    final int node = queue.items[i];
+		    final double r = residual[node];
+		    residual[node]=0;
+		    active[node]=false;
+		    centrality[node] += gain*r;
+		    pushed[node] = r;
+		    edges += pushGraph.getDegree(node);
+		}
 		
-		if(itStart==node) {
-		    itStart = firstAdd;
-		    final double csum = VectorMath.sum(residual);
-		    double diff = csum-psum;
-		    if(diff>0) {
-			nInc++;
-			tDiff+=diff;
-		    } else {
-			nInc=0;
-			tDiff=0;
-		    }
-		    logger.info(name()+": "+((csum>psum)?"WARNING ":"")+"[a="+alpha+"] Node["+node+" ("+nodes[node].getName()+")] CR="+csum+" PR="+psum+" DR="+(csum-psum)+" QS="+queue.size()+" nInc="+nInc+" aDiff="+(tDiff/nInc));
-		    
-		    if(Double.isInfinite(csum)) {
+		final IntList next = ( (pool==null || edges<pullEdges) ? push(queue) : pull(pool, numThreads) );
+		if(next==null) {
+		    clean();
+		    return false;
+		}
+		for(int i=0;i<queue.size;i++)
+		    pushed[queue.items[i]] = 0;
+		
+		final double csum = VectorMath.sum(residual);
+		double diff = csum-psum;
+		if(diff>0) {
+		    nInc++;
+		    tDiff+=diff;
+		} else {
+		    nInc=0;
+		    tDiff=0;
+		}
+		logger.info(name()+": "+((csum>psum)?"WARNING ":"")+"[a="+alpha+"] Round["+numRounds+" ("+queue.size+" nodes, "+edges+" edges)] CR="+csum+" PR="+psum+" DR="+(csum-psum)+" QS="+next.size+" nInc="+nInc+" aDiff="+(tDiff/nInc));
+		
+		if(Double.isInfinite(csum) || Double.isNaN(csum)) {
+		    logger.severe(name()+" is not converging.  Aborting.");
+		    clean();
+		    return false;
+		}
+		
+		if(nInc>2) {
+		    double aDiff = tDiff/nInc;
+		    if(aDiff<diff || nInc>4) {
 			logger.severe(name()+" is not converging.  Aborting.");
 			clean();
 			return false;
 		    }
-		    
-		    psum = csum;
-		    
-		    if(nInc>2) {
-			double aDiff = tDiff/nInc;
-			if(aDiff<diff || nInc>4) {
-			    logger.severe(name()+" is not converging.  Aborting.");
-			    clean();
-			    return false;
-			}
-		    }
-		    
-		    psum = csum;
-		    itStart=-1;
-		} else if(itStart==-1)
-		    itStart = firstAdd;
+		}
+		
+		psum = csum;
+		queue = next;
 	    }
-	    double csum = VectorMath.sum(residual);
-	    logger.info(name()+": FINAL: ["+numN+" nodes processed] "+((csum>psum)?"WARNING ":"")+"[a="+alpha+"] Node[-1 (NA)] CR="+csum+" PR="+psum+" DR="+(csum-psum)+" QS="+queue.size());
+	    logger.info(name()+": FINAL: ["+numN+" nodes processed in "+numRounds+" rounds] [a="+alpha+"] CR="+psum);
 	    
 	    cleanup();
 	    
-	    logger.info(name()+": DONE (alpha="+alpha+") [active="+active+" progress="+progress+")");
+	    logger.info(name()+": DONE (alpha="+alpha+") [active="+active()+" progress="+progress+")");
 	    
 	    return true;
 	}
 	
+	/**
+	 * Push the residual given up by the nodes in the queue along their edges.
+	 * @return the nodes to process in the next round
+	 */
+	private IntList push(final IntList queue) {
+	    final IntList next = new IntList(queue.size);
+	    final int[] offsets = pushGraph.offsets;
+	    final int[] targets = pushGraph.targets;
+	    final double[] weights = pushGraph.weights;
+	    for(int i=0;i<queue.size;i++) {
+		final int node = queue.items[i];
+		final double inc = pushed[node]*scale[node];
+		for(int k=offsets[node];k<offsets[node+1];k++) {
+		    final int node2 = targets[k];
+		    double r = inc;
+		    if(useWeights) r *= weights[k];
+		    if(targetScale!=null) r *= targetScale[node2];
+		    residual[node2] += r;
+		    if(residual[node2] >= threshold[node2] && !active[node2]) {
+			active[node2]=true;
+			next.add(node2);
+		    }
+		}
+	    }
+	    return next;
+	}
+	
+	/**
+	 * Pull the residual given up by the nodes in the queue into every
+	 * node, with each thread updating its own range of nodes.
+	 * @return the nodes to process in the next round, or null if aborted
+	 */
+	private IntList pull(final ExecutorService pool, final int numThreads) {
+	    final CSRGraph pullGraph = (pushGraph==topo.out ? topo.in : topo.out);
+	    final int numNodes = metrics.numNodes;
+	    final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+	    final IntList[] found = new IntList[numThreads];
+	    for(int t=0;t<numThreads;t++) {
+		final int id = t;
+		final int first = (int)((long)numNodes*t/numThreads);
+		final int last = (int)((long)numNodes*(t+1)/numThreads);
+		tasks.add(new Callable<Boolean>() {
+			public Boolean call() {
+			    final IntList next = new IntList(16);
+			    final int[] offsets = pullGraph.offsets;
+			    final int[] sources = pullGraph.targets;
+			    final double[] weights = pullGraph.weights;
+			    for(int node2=first;node2<last;node2++) {
+				double r = 0;
+				for(int k=offsets[node2];k<offsets[node2+1];k++) {
+				    final int node = sources[k];
+				    if(pushed[node]==0)
+					continue;
+				    double inc = pushed[node]*scale[node];
+				    if(useWeights) inc *= weights[k];
+				    r += inc;
+				}
+				if(r==0)
+				    continue;
+				if(targetScale!=null) r *= targetScale[node2];
+				residual[node2] += r;
+				if(residual[node2] >= threshold[node2] && !active[node2]) {
+				    active[node2]=true;
+				    next.add(node2);
+				}
+			    }
+			    found[id] = next;
+			    return active();
+			}
+		    });
+	    }
+	    if(!ParallelUtil.invokeAll(pool, tasks))
+		return null;
+	    final IntList next = new IntList(found[0].size);
+	    for(IntList list : found)
+		next.addAll(list);
+	    return next;
+	}
+	
 	protected void cleanup() {
 	    logger.info(name()+" --- cleanup()");
 	    residual=null;
 	    active=null;
+	    pushed=null;
+	    scale=null;
+	    targetScale=null;
+	    threshold=null;
+	    pushGraph=null;
+	    topo=null;
 	}
     }
     
@@ -337,9 +456,7 @@ public class ApproximateCentralities {
 	
 	@Override
 	    protected boolean init() {
-	    if(!setNodes())
-		return false;
-	    if(!setInDegree())
+	    if(!setTopology())
 		return false;
 	    
 	    // alpha should be <= c/d_max
@@ -348,9 +465,7 @@ public class ApproximateCentralities {
 	    if(Double.isNaN(alpha)) {
 		// default c=0.5
 		//         alpha = c/d_max
-		if(!setDegree())
-		    return false;
-		final double[] ldegree = (weighted?wDegree:degree);
+		final double[] ldegree = (weighted?topo.wDegree:topo.degree);
 		final double maxD = VectorMath.getMaxValue(ldegree);
 		alpha = 0.5 / maxD;
 		logger.info(name()+": Setting alpha="+alpha+" (maxDegree="+maxD+")");
@@ -364,54 +479,36 @@ public class ApproximateCentralities {
 	    }
 	    
 	    epsilon = delta/(double)numN; // should be |s|*delta/numN, but |s|=1 since we normalize
+	    
+	    pushGraph = topo.out;
+	    gain = 1D;
+	    scale = new double[metrics.numNodes];
+	    Arrays.fill(scale,alpha);
+	    useWeights = weighted;
+	    targetScale = null;
+	    threshold = new double[metrics.numNodes];
+	    Arrays.fill(threshold,epsilon);
 	    return true;
 	}
 	
 	@Override
-	    protected Queue<Integer> initQueue() {
-	    final double[] degree = (weighted?wInDegree:inDegree);
+	    protected boolean initQueue(final IntList queue) {
+	    final double[] degree = (weighted?topo.wInDegree:topo.inDegree);
 	    double sum = VectorMath.sum(degree);
 	    
-	    Queue<Integer> queue = new LinkedList<Integer>();
 	    for(int i=0;i<degree.length;i++) {
 		if(!active())
-		    return null;
+		    return false;
 		residual[i] = degree[i]/sum;
 		if(residual[i]>=epsilon) {
 		    queue.add(i);
 		}
 	    }
-	    return queue;
-	}
-	
-	@Override
-	    protected int updateQueue(final int node, final Queue<Integer> queue) {
-	    int add=-1;
-	    final double r = residual[node];
-	    residual[node]=0;
-	    
-	    final double T = alpha * r;
-	    centrality[node] += r;
-	    
-	    for(Edge e : ((metrics.nodeType == null) ? nodes[node].getEdges() : nodes[node].getEdgesToNeighbor(metrics.nodeType))) {
-		final int node2 = metrics.getNodeIndex(e.getDest());
-		double inc = T;
-		if(weighted) inc *= e.getWeight();
-		residual[node2] += inc;
-		if(residual[node2] >= epsilon && !active[node2]) {
-		    active[node2]=true;
-		    queue.add(node2);
-		    if(add==-1)
-			add=node2;
-		}
-	    }
-	    return add;
+	    return true;
 	}
     }
     
     private class ApproximatePagerank extends ApproximateCentrality {
-	double[] threshold;
-	double[] mult;
 	double alphaNeg;
 	
 	public ApproximatePagerank() {
@@ -439,12 +536,10 @@ public class ApproximateCentralities {
 	
 	@Override
 	    protected boolean init() {
-	    if(!setNodes())
-		return false;
-	    if(!setDegree())
+	    if(!setTopology())
 		return false;
 	    
-	    final double[] ldegree = (weighted?wDegree:degree);
+	    final double[] ldegree = (weighted?topo.wDegree:topo.degree);
 	    final double maxD = VectorMath.getMaxValue(ldegree);
 	    
 	    alpha=metrics.getPagerankAlpha();
@@ -465,65 +560,35 @@ public class ApproximateCentralities {
 	    
 	    epsilon = delta/(double)(numN*maxD);
 	    
+	    pushGraph = topo.out;
+	    gain = alpha;
+	    scale = new double[metrics.numNodes];
+	    useWeights = false;
+	    targetScale = null;
 	    threshold = new double[metrics.numNodes];
-	    mult = new double[metrics.numNodes];
 	    return true;
 	}
 	
 	@Override
-	    protected Queue<Integer> initQueue() {
-	    final double[] ldegree = (weighted?wDegree:degree);
+	    protected boolean initQueue(final IntList queue) {
+	    final double[] ldegree = (weighted?topo.wDegree:topo.degree);
 	    
-	    Queue<Integer> queue = new LinkedList<Integer>();
-	    for(int i=0;i<degree.length;i++) {
+	    for(int i=0;i<ldegree.length;i++) {
 		if(!active())
-		    return null;
+		    return false;
 		if(ldegree[i]==0)
 		    continue;
 		
 		threshold[i] = ldegree[i]*epsilon;
-		mult[i] = alphaNeg/ldegree[i];
+		scale[i] = alphaNeg/ldegree[i];
 		residual[i] = 1D;
 		queue.add(i);
 	    }
-	    return queue;
-	}
-	
-	@Override
-	    protected int updateQueue(final int node, final Queue<Integer> queue) {
-	    int add=-1;
-	    final double r = residual[node];
-	    residual[node]=0;
-	    
-	    final double T = alpha * r;
-	    centrality[node] += T;
-	    
-	    final double inc = mult[node]*r;
-	    for(Edge e : ((metrics.nodeType == null) ? nodes[node].getEdges() : nodes[node].getEdgesToNeighbor(metrics.nodeType))) {
-		final int node2 = metrics.getNodeIndex(e.getDest());
-		residual[node2] += inc;
-		if(residual[node2] >= threshold[node2] && !active[node2]) {
-		    active[node2]=true;
-		    queue.add(node2);
-		    if(add==-1)
-			add=node2;
-		}
-	    }
-	    return add;
-	}
-	
-	@Override
-	    protected void cleanup() {
-	    super.cleanup();
-	    mult=null;
-	    threshold=null;
+	    return true;
 	}
     }
     
     private class ApproximateLimitedAttentionPagerank extends ApproximateCentrality {
-	double[] threshold;
-	double[] mult;
-	double[] lInDegree;
 	double alphaNeg;
 	double delta;
 	
@@ -547,15 +612,11 @@ public class ApproximateCentralities {
 	
 	@Override
 	    protected boolean init() {
-	    if(!setNodes())
-		return false;
-	    if(!setDegree())
-		return false;
-	    if(!setInDegree())
+	    if(!setTopology())
 		return false;
 	    
-	    final double[] ldegree = (weighted?wDegree:degree);
-	    lInDegree = (weighted?wInDegree:inDegree);
+	    final double[] ldegree = (weighted?topo.wDegree:topo.degree);
+	    final double[] lInDegree = (weighted?topo.wInDegree:topo.inDegree);
 	    
 	    final double maxD = VectorMath.getMaxValue(ldegree);
 	    delta = metrics.getPagerankDelta();
@@ -563,68 +624,41 @@ public class ApproximateCentralities {
 	    alphaNeg = (1D-alpha);
 	    epsilon = delta/(double)(numN*maxD);
 	    
+	    pushGraph = topo.out;
+	    gain = alphaNeg;
+	    scale = new double[metrics.numNodes];
+	    useWeights = false;
+	    targetScale = new double[metrics.numNodes];
+	    for(int i=0;i<lInDegree.length;i++)
+		targetScale[i] = 1D/lInDegree[i];
 	    threshold = new double[metrics.numNodes];
-	    mult = new double[metrics.numNodes];
 	    
 	    return true;
 	}
 	
 	@Override
-	    protected Queue<Integer> initQueue() {
-	    final double[] ldegree = (weighted?wDegree:degree);
+	    protected boolean initQueue(final IntList queue) {
+	    final double[] ldegree = (weighted?topo.wDegree:topo.degree);
 	    final double startVal = 1D/(double)numN;
 	    
-	    Queue<Integer> queue = new LinkedList<Integer>();
-	    for(int i=0;i<degree.length;i++) {
+	    for(int i=0;i<ldegree.length;i++) {
 		if(!active())
-		    return null;
+		    return false;
 		if(ldegree[i]==0)
 		    continue;
 		
-		mult[i] = alpha/ldegree[i];
+		scale[i] = alpha/ldegree[i];
 		residual[i]=startVal;
 		threshold[i] = ldegree[i]*epsilon;
 		queue.add(i);
 	    }
-	    return queue;
-	}
-	
-	@Override
-	    protected int updateQueue(final int node, final Queue<Integer> queue) {
-	    int add=-1;
-	    final double r = residual[node];
-	    residual[node]=0;
-	    centrality[node] += alphaNeg*r;
-	    
-	    final double m = mult[node]*r;
-	    for(Edge e : ((metrics.nodeType == null) ? nodes[node].getEdges() : nodes[node].getEdgesToNeighbor(metrics.nodeType))) {
-		final int node2 = metrics.getNodeIndex(e.getDest());
-		residual[node2] += m/lInDegree[node2];
-		if(residual[node2] >= threshold[node2] && !active[node2]) {
-		    active[node2]=true;
-		    queue.add(node2);
-		    if(add==-1)
-			add=node2;
-		}
-	    }
-	    return add;
-	}
-	
-	@Override
-	    protected void cleanup() {
-	    super.cleanup();
-	    mult=null;
-	    threshold=null;
-	    lInDegree=null;
+	    return true;
 	}
     }
     
     private class ApproximateLimitedAttentionAlphaCentrality extends ApproximateCentrality {
-	double[] mult;
-	double[] lInDegree;
 	double maxD=1D;
 	double delta;
-	List<List<Integer>> nbrIn = null;
 	
 	public ApproximateLimitedAttentionAlphaCentrality() {
 	    this(false);
@@ -646,81 +680,51 @@ public class ApproximateCentralities {
 	
 	@Override
 	    protected boolean init() {
-	    if(!setNodes())
-		return false;
-	    if(!setInDegree())
-		return false;
-	    if(!setDegree())
+	    if(!setTopology())
 		return false;
 	    
-	    lInDegree = (weighted?wInDegree:inDegree);
+	    final double[] lInDegree = (weighted?topo.wInDegree:topo.inDegree);
 	    
 	    alpha=metrics.getAlphaCentralityAlpha();
 	    delta=metrics.getAlphaCentralityDelta();
 	    maxD = VectorMath.getMaxValue(lInDegree);
 	    epsilon = delta/(double)(numN*maxD);
 	    
-	    mult = new double[metrics.numNodes];
+	    // the residual flows against the edges, from a node to the nodes linking to it
+	    pushGraph = topo.in;
+	    gain = 1D;
+	    scale = new double[metrics.numNodes];
+	    useWeights = false;
+	    targetScale = new double[metrics.numNodes];
+	    threshold = new double[metrics.numNodes];
+	    for(int i=0;i<lInDegree.length;i++) {
+		scale[i] = alpha/lInDegree[i];
+		targetScale[i] = 1D/lInDegree[i];
+	    }
+	    Arrays.fill(threshold,epsilon*maxD);
 	    
 	    return true;
 	}
 	
 	@Override
-	    protected Queue<Integer> initQueue() {
-	    Queue<Integer> queue = new LinkedList<Integer>();
-	    nbrIn = new ArrayList<List<Integer>>();
+	    protected boolean initQueue(final IntList queue) {
+	    final double[] lInDegree = (weighted?topo.wInDegree:topo.inDegree);
+	    final CSRGraph g = topo.out;
 	    
-	    for(int i=0;i<degree.length;i++) {
+	    for(int i=0;i<lInDegree.length;i++) {
 		if(!active())
-		    return null;
-		nbrIn.add(new ArrayList<Integer>());
-	    }
-	    for(int i=0;i<degree.length;i++) {
-		if(!active())
-		    return null;
+		    return false;
 		double start = 0;
-		for(Edge e : ((metrics.nodeType == null) ? nodes[i].getEdges() : nodes[i].getEdgesToNeighbor(metrics.nodeType))) {
-		    int node2 = metrics.getNodeIndex(e.getDest());
+		for(int k=g.offsets[i];k<g.offsets[i+1];k++) {
+		    int node2 = g.targets[k];
 		    if(lInDegree[node2]>0)
 			start += 1D/lInDegree[node2];
-		    List<Integer> list = nbrIn.get(node2);
-		    list.add(i);
 		}
-		mult[i] = alpha/lInDegree[i];
 		residual[i]=start;
 		if(start>epsilon)
 		    queue.add(i);
 	    }
-	    return queue;
-	}
-	
-	@Override
-	    protected int updateQueue(final int node, final Queue<Integer> queue) {
-	    int add=-1;
-	    final double r = residual[node];
-	    residual[node]=0;
-	    centrality[node] += r;
-	    
-	    final double m = mult[node]*r;
-	    List<Integer> nbrList = nbrIn.get(node);
-	    for(int node2 : nbrList) {
-		residual[node2] += m/lInDegree[node2];
-		if(residual[node2]/maxD >= epsilon && !active[node2]) {
-		    active[node2]=true;
-		    queue.add(node2);
-		    if(add==-1)
-			add=node2;
-		}
-	    }
-	    return add;
-	}
-	
-	@Override
-	    protected void cleanup() {
-	    super.cleanup();
-	    mult=null;
-	    lInDegree=null;
-	    nbrIn=null;
+	    return true;
 	}
     }
     
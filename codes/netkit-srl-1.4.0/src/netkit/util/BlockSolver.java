@@ -0,0 +1,502 @@
+/**
+ * BlockSolver.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Solves a sparse linear system for many right-hand sides at once, such as
+ * one per class.  The right-hand sides and the solutions are n-by-k panels
+ * of doubles stored row-major, so the k values of a node are next to each
+ * other, and the operator is applied to the whole panel at a time.  A product
+ * of a sparse matrix with a panel reads every nonzero once for all k columns
+ * rather than once per column, which is what bounds the solve when there are
+ * as many columns as the 20 classes of 20Newsgroups.
+ * <p>
+ * Every column is its own conjugate gradient, BiCGSTAB or fixed point
+ * iteration, with its own step sizes and stopping test: only the products
+ * with the operator are shared.  Unlike true block Krylov methods, this
+ * cannot break down when columns are linearly dependent or zero, which is
+ * common for label columns.  Once a column has converged, it is dropped
+ * from the panels, so the later products are over the columns still being
+ * solved only, and the solve stops once all columns have converged.
+ * <p>
+ * Large sparse products are split into row ranges of about equal numbers
+ * of nonzeros that are run on a shared pool of daemon threads.
+ */
+public final class BlockSolver {
+	// the number of nonzeros times columns from which to multiply in parallel
+	private static final int PARALLEL_SIZE = 1<<16;
+	private static ExecutorService pool = null;
+
+	/**
+	 * A linear operator applied to a row-major panel.
+	 */
+	public static interface Operator {
+		/**
+		 * Set result = M*X, where X and result are n-by-numColumns panels.
+		 * As converged columns are dropped, numColumns may be less than
+		 * the number of columns the solve started with, so every column
+		 * must be treated on its own.
+		 */
+		void apply(double[] X, double[] result, int numColumns);
+	}
+
+	private final double tolerance;
+	private final int maxIterations;
+
+	/**
+	 * @param tolerance the relative residual at which a column has converged
+	 * @param maxIterations the largest number of iterations
+	 */
+	public BlockSolver(double tolerance, int maxIterations) {
+		this.tolerance = tolerance;
+		this.maxIterations = maxIterations;
+	}
+
+	private static synchronized ExecutorService getPool() {
+		if(pool == null)
+			pool = ParallelUtil.newDaemonPool(NetKitEnv.getNumThreads());
+		return pool;
+	}
+
+	/**
+	 * Set result = A*X for the sparse matrix with the adjacency of the given
+	 * graph and the given weights, which are in the order of its edges.
+	 */
+	public static void multiply(final CSRGraph g, final double[] weights, final double[] X, final int numColumns, final double[] result) {
+		final int numThreads = ( ((long)g.numEdges*numColumns >= PARALLEL_SIZE) ? ParallelUtil.getNumThreads(g.numNodes) : 1 );
+		if(numThreads == 1)
+		{
+			multiply(g,weights,X,numColumns,result,0,g.numNodes);
+			return;
+		}
+		final int numChunks = 4*numThreads;
+		final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(numChunks);
+		int from = 0;
+		for(int t=1;t<=numChunks && from<g.numNodes;t++)
+		{
+			// the first row past an equal share of the nonzeros
+			final long target = (long)g.offsets[g.numNodes]*t/numChunks;
+			int to = Arrays.binarySearch(g.offsets,from,g.numNodes+1,(int)target);
+			to = ( (to < 0) ? -to-1 : to );
+			to = ( (t == numChunks) ? g.numNodes : Math.max(from+1,Math.min(to,g.numNodes)) );
+			final int start = from;
+			final int end = to;
+			tasks.add(new Callable<Boolean>() {
+				public Boolean call() {
+					multiply(g,weights,X,numColumns,result,start,end);
+					return true;
+				}
+			});
+			from = to;
+		}
+		ParallelUtil.invokeAll(getPool(),tasks);
+	}
+
+	/**
+	 * Set result = A*X as {@link #multiply(CSRGraph,double[],double[],int,double[])}
+	 * does, but in the calling thread only, for callers which already run
+	 * in parallel themselves.
+	 */
+	public static void multiplySequential(CSRGraph g, double[] weights, double[] X, int numColumns, double[] result) {
+		multiply(g,weights,X,numColumns,result,0,g.numNodes);
+	}
+
+	private static void multiply(CSRGraph g, double[] weights, double[] X, int numColumns, double[] result, int from, int to) {
+		final int[] offsets = g.offsets;
+		final int[] targets = g.targets;
+		if(numColumns == 1)
+		{
+			for(int i=from;i<to;i++)
+			{
+				double sum = 0;
+				for(int k=offsets[i];k<offsets[i+1];k++)
+					sum += weights[k]*X[targets[k]];
+				result[i] = sum;
+			}
+			return;
+		}
+		// four columns at a time, so the sums stay in registers while the
+		// nonzeros of the row, read once from memory, are walked again from cache
+		for(int i=from;i<to;i++)
+		{
+			final int row = i*numColumns;
+			final int first = offsets[i];
+			final int last = offsets[i+1];
+			int c = 0;
+			for(;c+4<=numColumns;c+=4)
+			{
+				double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+				for(int k=first;k<last;k++)
+				{
+					final double w = weights[k];
+					final int src = targets[k]*numColumns+c;
+					s0 += w*X[src];
+					s1 += w*X[src+1];
+					s2 += w*X[src+2];
+					s3 += w*X[src+3];
+				}
+				result[row+c] = s0;
+				result[row+c+1] = s1;
+				result[row+c+2] = s2;
+				result[row+c+3] = s3;
+			}
+			// and the last one to three columns in one more walk, such that
+			// dropping a column never makes the product slower
+			final int rest = numColumns-c;
+			if(rest == 3)
+			{
+				double s0 = 0, s1 = 0, s2 = 0;
+				for(int k=first;k<last;k++)
+				{
+					final double w = weights[k];
+					final int src = targets[k]*numColumns+c;
+					s0 += w*X[src];
+					s1 += w*X[src+1];
+					s2 += w*X[src+2];
+				}
+				result[row+c] = s0;
+				result[row+c+1] = s1;
+				result[row+c+2] = s2;
+			}
+			else if(rest == 2)
+			{
+				double s0 = 0, s1 = 0;
+				for(int k=first;k<last;k++)
+				{
+					final double w = weights[k];
+					final int src = targets[k]*numColumns+c;
+					s0 += w*X[src];
+					s1 += w*X[src+1];
+				}
+				result[row+c] = s0;
+				result[row+c+1] = s1;
+			}
+			else if(rest == 1)
+			{
+				double sum = 0;
+				for(int k=first;k<last;k++)
+					sum += weights[k]*X[targets[k]*numColumns+c];
+				result[row+c] = sum;
+			}
+		}
+	}
+
+	/**
+	 * @return the sums of the columns of the panel
+	 */
+	public static double[] columnSums(double[] X, int numColumns) {
+		final double[] sums = new double[numColumns];
+		for(int i=0;i<X.length;i+=numColumns)
+			for(int c=0;c<numColumns;c++)
+				sums[c] += X[i+c];
+		return sums;
+	}
+
+	/**
+	 * @return the dot products of the matching columns of the two panels
+	 */
+	public static double[] columnDots(double[] X, double[] Y, int numColumns) {
+		final double[] dots = new double[numColumns];
+		for(int i=0;i<X.length;i+=numColumns)
+			for(int c=0;c<numColumns;c++)
+				dots[c] += X[i+c]*Y[i+c];
+		return dots;
+	}
+
+	// the squared residual at which each column stops
+	private double[] getStops(double[] B, int numColumns) {
+		final double[] stops = columnDots(B,B,numColumns);
+		for(int c=0;c<numColumns;c++)
+			stops[c] *= tolerance*tolerance;
+		return stops;
+	}
+
+	/**
+	 * Solve M*X = B by conjugate gradient for every column, starting from
+	 * X = 0.  M must be symmetric positive definite.
+	 * @return the number of iterations, which is more than maxIterations if
+	 * some column did not converge
+	 */
+	public int cg(Operator op, double[] B, double[] X, int numColumns) {
+		int m = numColumns;
+		int[] cols = columns(numColumns);
+		double[] Xa = new double[B.length];
+		double[] R = B.clone();
+		double[] P = B.clone();
+		double[] Q = new double[B.length];
+		double[] stops = getStops(B,numColumns);
+		double[] rr = columnDots(R,R,m);
+		int iter = 0;
+		while(true)
+		{
+			final int[] keep = unconverged(rr,stops);
+			if(keep.length == 0 || ++iter > maxIterations)
+				break;
+			if(keep.length < m)
+			{
+				scatter(Xa,cols,X,numColumns);
+				Xa = select(Xa,m,keep);
+				R = select(R,m,keep);
+				P = select(P,m,keep);
+				Q = new double[R.length];
+				rr = select(rr,m,keep);
+				stops = select(stops,m,keep);
+				cols = select(cols,keep);
+				m = keep.length;
+			}
+			op.apply(P,Q,m);
+			final double[] a = columnDots(P,Q,m);
+			for(int c=0;c<m;c++)
+				a[c] = rr[c]/a[c];
+			for(int i=0;i<R.length;i+=m)
+				for(int c=0;c<m;c++)
+				{
+					Xa[i+c] += a[c]*P[i+c];
+					R[i+c] -= a[c]*Q[i+c];
+				}
+			final double[] rrNew = columnDots(R,R,m);
+			final double[] beta = new double[m];
+			for(int c=0;c<m;c++)
+				beta[c] = rrNew[c]/rr[c];
+			for(int i=0;i<R.length;i+=m)
+				for(int c=0;c<m;c++)
+					P[i+c] = R[i+c] + beta[c]*P[i+c];
+			rr = rrNew;
+		}
+		scatter(Xa,cols,X,numColumns);
+		return iter;
+	}
+
+	/**
+	 * Solve M*X = B by BiCGSTAB for every column, starting from X = 0.
+	 * @return the number of iterations, which is more than maxIterations if
+	 * some column did not converge
+	 */
+	public int bicgstab(Operator op, double[] B, double[] X, int numColumns) {
+		int m = numColumns;
+		int[] cols = columns(numColumns);
+		double[] Xa = new double[B.length];
+		double[] R = B.clone();
+		double[] R0 = B.clone();
+		double[] P = new double[B.length];
+		double[] V = new double[B.length];
+		double[] S = new double[B.length];
+		double[] T = new double[B.length];
+		double[] rho = new double[m];
+		double[] a = new double[m];
+		double[] w = new double[m];
+		Arrays.fill(rho,1);
+		Arrays.fill(a,1);
+		Arrays.fill(w,1);
+		double[] stops = getStops(B,numColumns);
+		double[] rr = columnDots(R,R,m);
+		int iter = 0;
+		while(true)
+		{
+			final int[] keep = unconverged(rr,stops);
+			if(keep.length == 0 || ++iter > maxIterations)
+				break;
+			if(keep.length < m)
+			{
+				scatter(Xa,cols,X,numColumns);
+				Xa = select(Xa,m,keep);
+				R = select(R,m,keep);
+				R0 = select(R0,m,keep);
+				P = select(P,m,keep);
+				V = select(V,m,keep);
+				S = new double[R.length];
+				T = new double[R.length];
+				rho = select(rho,m,keep);
+				a = select(a,m,keep);
+				w = select(w,m,keep);
+				rr = select(rr,m,keep);
+				stops = select(stops,m,keep);
+				cols = select(cols,keep);
+				m = keep.length;
+			}
+			final double[] rhoNew = columnDots(R0,R,m);
+			final double[] beta = new double[m];
+			for(int c=0;c<m;c++)
+			{
+				if(rhoNew[c] == 0)
+				{
+					// breakdown: restart the column from its current residual
+					restart(R,R0,P,V,c,m);
+					rhoNew[c] = columnDot(R0,R,c,m);
+					rho[c] = a[c] = w[c] = 1;
+				}
+				beta[c] = (rhoNew[c]/rho[c])*(a[c]/w[c]);
+			}
+			for(int i=0;i<R.length;i+=m)
+				for(int c=0;c<m;c++)
+					P[i+c] = R[i+c] + beta[c]*(P[i+c] - w[c]*V[i+c]);
+			op.apply(P,V,m);
+			final double[] r0v = columnDots(R0,V,m);
+			for(int c=0;c<m;c++)
+				a[c] = ( (r0v[c] != 0) ? rhoNew[c]/r0v[c] : 0 );
+			for(int i=0;i<R.length;i+=m)
+				for(int c=0;c<m;c++)
+					S[i+c] = R[i+c] - a[c]*V[i+c];
+			op.apply(S,T,m);
+			final double[] tt = columnDots(T,T,m);
+			final double[] ts = columnDots(T,S,m);
+			for(int c=0;c<m;c++)
+				w[c] = ( (tt[c] > 0) ? ts[c]/tt[c] : 0 );
+			for(int i=0;i<R.length;i+=m)
+				for(int c=0;c<m;c++)
+				{
+					Xa[i+c] += a[c]*P[i+c] + w[c]*S[i+c];
+					R[i+c] = S[i+c] - w[c]*T[i+c];
+				}
+			final double[] rrNew = columnDots(R,R,m);
+			for(int c=0;c<m;c++)
+			{
+				rho[c] = rhoNew[c];
+				if(w[c] == 0 && rrNew[c] > stops[c])
+				{
+					// stagnation: restart the column from its current residual
+					restart(R,R0,P,V,c,m);
+					rho[c] = a[c] = w[c] = 1;
+				}
+			}
+			rr = rrNew;
+		}
+		scatter(Xa,cols,X,numColumns);
+		return iter;
+	}
+
+	private static double columnDot(double[] X, double[] Y, int c, int numColumns) {
+		double dot = 0;
+		for(int i=c;i<X.length;i+=numColumns)
+			dot += X[i]*Y[i];
+		return dot;
+	}
+
+	private static void restart(double[] R, double[] R0, double[] P, double[] V, int c, int numColumns) {
+		for(int i=c;i<R.length;i+=numColumns)
+		{
+			R0[i] = R[i];
+			P[i] = 0;
+			V[i] = 0;
+		}
+	}
+
+	/**
+	 * Solve X = B + C*X for every column by fixed point iteration, starting
+	 * from X = B, which converges at the rate of the norm of C if it is a
+	 * contraction.  This is the Jacobi iteration of (I - C)X = B.
+	 * @return the number of iterations, which is more than maxIterations if
+	 * some column did not converge
+	 */
+	public int iterate(Operator op, double[] B, double[] X, int numColumns) {
+		int m = numColumns;
+		int[] cols = columns(numColumns);
+		double[] Ba = B;
+		double[] Xa = B.clone();
+		double[] CX = new double[B.length];
+		double[] stops = getStops(B,numColumns);
+		double[] diff = new double[m];
+		Arrays.fill(diff,Double.POSITIVE_INFINITY);
+		int iter = 0;
+		while(true)
+		{
+			final int[] keep = unconverged(diff,stops);
+			if(keep.length == 0 || ++iter > maxIterations)
+				break;
+			if(keep.length < m)
+			{
+				scatter(Xa,cols,X,numColumns);
+				Xa = select(Xa,m,keep);
+				Ba = select(Ba,m,keep);
+				CX = new double[Xa.length];
+				stops = select(stops,m,keep);
+				cols = select(cols,keep);
+				m = keep.length;
+				diff = new double[m];
+			}
+			op.apply(Xa,CX,m);
+			Arrays.fill(diff,0);
+			for(int i=0;i<Xa.length;i+=m)
+				for(int c=0;c<m;c++)
+				{
+					final double next = Ba[i+c] + CX[i+c];
+					diff[c] += (next-Xa[i+c])*(next-Xa[i+c]);
+					Xa[i+c] = next;
+				}
+		}
+		scatter(Xa,cols,X,numColumns);
+		return iter;
+	}
+
+	/**
+	 * @return the columns whose residual is above their stop
+	 */
+	private static int[] unconverged(double[] rr, double[] stops) {
+		int m = 0;
+		final int[] keep = new int[rr.length];
+		for(int c=0;c<rr.length;c++)
+			if(rr[c] > stops[c])
+				keep[m++] = c;
+		return Arrays.copyOf(keep,m);
+	}
+
+	private static int[] columns(int numColumns) {
+		final int[] cols = new int[numColumns];
+		for(int c=0;c<numColumns;c++)
+			cols[c] = c;
+		return cols;
+	}
+
+	/**
+	 * @return the panel of the given columns of the panel X
+	 */
+	private static double[] select(double[] X, int numColumns, int[] keep) {
+		final int m = keep.length;
+		final double[] Y = new double[X.length/numColumns*m];
+		for(int i=0,j=0;i<X.length;i+=numColumns,j+=m)
+			for(int c=0;c<m;c++)
+				Y[j+c] = X[i+keep[c]];
+		return Y;
+	}
+
+	private static int[] select(int[] cols, int[] keep) {
+		final int[] selected = new int[keep.length];
+		for(int c=0;c<keep.length;c++)
+			selected[c] = cols[keep[c]];
+		return selected;
+	}
+
+	/**
+	 * Copy the columns of the panel Xa into the given columns of X.
+	 */
+	private static void scatter(double[] Xa, int[] cols, double[] X, int numColumns) {
+		final int m = cols.length;
+		for(int i=0,j=0;j<Xa.length;i+=numColumns,j+=m)
+			for(int c=0;c<m;c++)
+				X[i+cols[c]] = Xa[j+c];
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * CSRGraph.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import netkit.graph.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only snapshot of the adjacency structure of a graph in compressed
+ * sparse row (CSR) format.  Nodes are given a global index in the same way
+ * as GraphMetrics does: node types in the order of the graph, and within a
+ * node type by the node index.  The out-edges of node <code>i</code> are
+ * found at positions <code>offsets[i]</code> (inclusive) to
+ * <code>offsets[i+1]</code> (exclusive) in the <code>targets</code> and
+ * <code>weights</code> arrays, in the order they are returned by
+ * Node.getEdgesToNeighbor for each node type.
+ * <p>
+ * The arrays are exposed for speed and must not be modified.
+ */
+public final class CSRGraph {
+	public final Graph graph;
+	public final int numNodes;
+	public final int numEdges;
+	public final int[] offsets;
+	public final int[] targets;
+	public final double[] weights;
+
+	private final Node[] nodes;
+	private final String[] nodeTypes;
+	private final int[] nodetypeOffsets;
+	private final Map<String,Integer> nodetypeToIndex;
+
+	/**
+	 * Build the adjacency over all nodes and edges in the graph
+	 * @param g
+	 */
+	public CSRGraph(Graph g) {
+		this(g, g.getNodeTypes());
+	}
+
+	/**
+	 * Build the adjacency over the nodes of the given node types and the
+	 * edges between them.
+	 * @param g
+	 * @param nodeTypes the node types to include, in the order they are indexed
+	 */
+	public CSRGraph(Graph g, String[] nodeTypes) {
+		graph = g;
+		this.nodeTypes = nodeTypes.clone();
+		nodetypeOffsets = new int[nodeTypes.length];
+		nodetypeToIndex = new HashMap<String,Integer>();
+		int n = 0;
+		for(int i=0;i<nodeTypes.length;i++)
+		{
+			nodetypeToIndex.put(nodeTypes[i],i);
+			nodetypeOffsets[i] = n;
+			n += g.numNodes(nodeTypes[i]);
+		}
+		numNodes = n;
+
+		nodes = new Node[numNodes];
+		for(int i=0;i<nodeTypes.length;i++)
+			for(Node node : g.getNodes(nodeTypes[i]))
+				nodes[nodetypeOffsets[i]+node.getIndex()] = node;
+
+		offsets = new int[numNodes+1];
+		int m = 0;
+		for(int v=0;v<numNodes;v++)
+		{
+			offsets[v] = m;
+			for(Edge e : nodes[v].getEdges())
+				if(nodetypeToIndex.containsKey(e.getDest().getType()))
+					m++;
+		}
+		offsets[numNodes] = m;
+		numEdges = m;
+
+		targets = new int[m];
+		weights = new double[m];
+		int k = 0;
+		for(int v=0;v<numNodes;v++)
+		{
+			Edge[] edges = nodes[v].getEdges();
+			for(int j=0;j<nodeTypes.length;j++)
+			{
+				for(Edge e : edges)
+				{
+					Node dst = e.getDest();
+					if(!dst.getType().equals(nodeTypes[j]))
+						continue;
+					targets[k] = nodetypeOffsets[j] + dst.getIndex();
+					weights[k] = e.getWeight();
+					k++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A graph over the same nodes with the given adjacency arrays.
+	 */
+	private CSRGraph(CSRGraph g, int[] offsets, int[] targets, double[] weights) {
+		graph = g.graph;
+		numNodes = g.numNodes;
+		numEdges = targets.length;
+		nodes = g.nodes;
+		nodeTypes = g.nodeTypes;
+		nodetypeOffsets = g.nodetypeOffsets;
+		nodetypeToIndex = g.nodetypeToIndex;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+	}
+
+	/**
+	 * Build the transpose of this graph, where the out-edges of a node are
+	 * the in-edges of that node in this graph, ordered by their source.
+	 * @return a new graph with every edge reversed
+	 */
+	public CSRGraph transpose() {
+		final int[] tOffsets = new int[numNodes+1];
+		for(int k=0;k<numEdges;k++)
+			tOffsets[targets[k]+1]++;
+		for(int v=0;v<numNodes;v++)
+			tOffsets[v+1] += tOffsets[v];
+
+		final int[] next = new int[numNodes];
+		System.arraycopy(tOffsets,0,next,0,numNodes);
+		final int[] tTargets = new int[numEdges];
+		final double[] tWeights = new double[numEdges];
+		for(int v=0;v<numNodes;v++)
+		{
+			for(int k=offsets[v];k<offsets[v+1];k++)
+			{
+				int pos = next[targets[k]]++;
+				tTargets[pos] = v;
+				tWeights[pos] = weights[k];
+			}
+		}
+		return new CSRGraph(this, tOffsets, tTargets, tWeights);
+	}
+
+	/**
+	 * Build a copy of this graph where the out-edges of every node are sorted
+	 * by their target, such that neighbor lists can be intersected by merging
+	 * and parallel edges (of different edge types) are next to each other.
+	 * Edges to the same target keep their order.
+	 * @return a new graph with sorted adjacency lists
+	 */
+	public CSRGraph sortByTarget() {
+		final int[] sTargets = new int[numEdges];
+		final double[] sWeights = new double[numEdges];
+		long[] keys = new long[0];
+		for(int v=0;v<numNodes;v++)
+		{
+			final int start = offsets[v];
+			final int len = offsets[v+1]-start;
+			if(keys.length < len)
+				keys = new long[len];
+			// the target in the high bits and the position in the low bits keeps the sort stable
+			for(int k=0;k<len;k++)
+				keys[k] = ((long)targets[start+k]<<32) | k;
+			Arrays.sort(keys,0,len);
+			for(int k=0;k<len;k++)
+			{
+				int pos = start+(int)keys[k];
+				sTargets[start+k] = targets[pos];
+				sWeights[start+k] = weights[pos];
+			}
+		}
+		return new CSRGraph(this, offsets, sTargets, sWeights);
+	}
+
+	/**
+	 * @return the global index of the given node
+	 */
+	public int getIndex(Node n) {
+		int offset = ( (nodeTypes.length==1) ? 0 : nodetypeOffsets[nodetypeToIndex.get(n.getType())] );
+		return offset + n.getIndex();
+	}
+
+	/**
+	 * @return the node with the given global index
+	 */
+	public Node getNode(int idx) {
+		return nodes[idx];
+	}
+
+	/**
+	 * @return the number of out-edges of the node with the given global index
+	 */
+	public int getDegree(int idx) {
+		return offsets[idx+1]-offsets[idx];
+	}
+}
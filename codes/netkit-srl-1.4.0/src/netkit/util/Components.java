@@ -0,0 +1,265 @@
+/**
+ * Components.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The connected components of a graph, ignoring the direction of the edges,
+ * over the global node indices of a CSRGraph.  They are found with a
+ * union-find forest, which is built in parallel over the nodes and can then
+ * be kept up to date as edges are added, one union at a time.
+ * <p>
+ * The root of every tree in the forest is the smallest index in its
+ * component, and components are numbered in the order of their smallest
+ * index, such that the numbering does not depend on the order in which the
+ * edges were seen.  The numbering is computed when it is first asked for
+ * after a change, after which looking up the component of a node is an
+ * array read.
+ * <p>
+ * A Components object may be read by several threads, but it must not be
+ * read while edges are added to it.
+ */
+public final class Components {
+	public final int numNodes;
+
+	// parent[i]<=i, and parent[i]==i for the roots
+	private final int[] parent;
+
+	// the numbering, recomputed when null after a change
+	private volatile int[] component = null;
+	private int[] componentSize = null;
+	private int numSingletons = 0;
+	private int maxComponentSize = 0;
+	private int maxComponentIdx = -1;
+
+	/**
+	 * All nodes in a component of their own.
+	 */
+	public Components(int numNodes) {
+		this.numNodes = numNodes;
+		parent = new int[numNodes];
+		for(int i=0;i<numNodes;i++)
+			parent[i] = i;
+	}
+
+	private Components(int[] parent) {
+		this.numNodes = parent.length;
+		this.parent = parent;
+	}
+
+	/**
+	 * Find the components of the given graph, spreading the nodes over
+	 * NetKitEnv.getNumThreads() threads.
+	 */
+	public Components(CSRGraph g) {
+		this.numNodes = g.numNodes;
+		final AtomicIntegerArray forest = new AtomicIntegerArray(numNodes);
+		for(int i=0;i<numNodes;i++)
+			forest.set(i,i);
+
+		final int numThreads = ParallelUtil.getNumThreads(numNodes);
+		List<Callable<Boolean>> workers = new ArrayList<Callable<Boolean>>(numThreads);
+		for(int t=0;t<numThreads;t++)
+		{
+			final int first = t;
+			final int step = numThreads;
+			workers.add(new Callable<Boolean>() {
+				public Boolean call() {
+					for(int v=first;v<numNodes;v+=step)
+						for(int k=g.offsets[v];k<g.offsets[v+1];k++)
+							union(forest, v, g.targets[k]);
+					return true;
+				}
+			});
+		}
+		ParallelUtil.invokeAll(workers);
+
+		// every parent has a smaller index, so it already points to its root
+		parent = new int[numNodes];
+		for(int i=0;i<numNodes;i++)
+		{
+			int p = forest.get(i);
+			parent[i] = (p==i ? i : parent[p]);
+		}
+	}
+
+	private static int find(AtomicIntegerArray forest, int x) {
+		while(true)
+		{
+			int p = forest.get(x);
+			if(p == x)
+				return x;
+			int gp = forest.get(p);
+			// path halving: this only ever moves a node closer to its root
+			if(gp != p)
+				forest.compareAndSet(x, p, gp);
+			x = gp;
+		}
+	}
+
+	private static void union(AtomicIntegerArray forest, int a, int b) {
+		while(true)
+		{
+			a = find(forest, a);
+			b = find(forest, b);
+			if(a == b)
+				return;
+			if(a < b)
+			{
+				int t = a;
+				a = b;
+				b = t;
+			}
+			// hang the larger root under the smaller one, unless another thread got to it first
+			if(forest.compareAndSet(a, a, b))
+				return;
+		}
+	}
+
+	private int find(int x) {
+		int root = x;
+		while(parent[root] != root)
+			root = parent[root];
+		while(parent[x] != root)
+		{
+			int p = parent[x];
+			parent[x] = root;
+			x = p;
+		}
+		return root;
+	}
+
+	/**
+	 * Add an edge between the nodes with the given indices.
+	 * @return true if this joined two components
+	 */
+	public boolean union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if(a == b)
+			return false;
+		if(a < b)
+			parent[b] = a;
+		else
+			parent[a] = b;
+		component = null;
+		return true;
+	}
+
+	/**
+	 * @return a copy of these components which edges can be added to independently
+	 */
+	public Components copy() {
+		return new Components(parent.clone());
+	}
+
+	private void number() {
+		if(component == null)
+			renumber();
+	}
+
+	private synchronized void renumber() {
+		if(component != null)
+			return;
+		final int[] c = new int[numNodes];
+		int n = 0;
+		for(int i=0;i<numNodes;i++)
+		{
+			int root = find(i);
+			c[i] = (root == i ? n++ : c[root]);
+		}
+		final int[] size = new int[n];
+		for(int i=0;i<numNodes;i++)
+			size[c[i]]++;
+		numSingletons = 0;
+		maxComponentSize = 0;
+		maxComponentIdx = -1;
+		for(int k=0;k<n;k++)
+		{
+			if(size[k] == 1)
+				numSingletons++;
+			if(size[k] > maxComponentSize)
+			{
+				maxComponentSize = size[k];
+				maxComponentIdx = k;
+			}
+		}
+		componentSize = size;
+		component = c;
+	}
+
+	/**
+	 * @return the component of the node with the given index
+	 */
+	public int getComponent(int idx) {
+		int[] c = component;
+		if(c == null)
+		{
+			renumber();
+			c = component;
+		}
+		return c[idx];
+	}
+
+	/**
+	 * @return the number of components, including singletons
+	 */
+	public int getNumComponents() {
+		number();
+		return componentSize.length;
+	}
+
+	/**
+	 * @return the number of nodes in the given component
+	 */
+	public int getComponentSize(int componentNum) {
+		number();
+		return componentSize[componentNum];
+	}
+
+	/**
+	 * @return the number of nodes without any edges to other nodes
+	 */
+	public int getNumSingletons() {
+		number();
+		return numSingletons;
+	}
+
+	/**
+	 * @return the number of nodes in the largest component
+	 */
+	public int getMaxComponentSize() {
+		number();
+		return maxComponentSize;
+	}
+
+	/**
+	 * @return the first of the largest components
+	 */
+	public int getMaxComponentIdx() {
+		number();
+		return maxComponentIdx;
+	}
+}
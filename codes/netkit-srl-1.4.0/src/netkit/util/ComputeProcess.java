@@ -9,7 +9,7 @@ public abstract class ComputeProcess {
 
 	private final String name;
 	protected double progress = 0D;
-	private boolean active = false;
+	private volatile boolean active = false;
 	private boolean clean = true;
 	
 	protected ComputeProcess(final String name) {
@@ -23,13 +23,16 @@ public abstract class ComputeProcess {
 	public void stop(final boolean wait) { 
 		active=false;
 		if(wait) {
-			while(!clean) {
-				try { 
-					Thread.sleep(50);
-				}
-				catch(Exception ex)
-				{
-
+			synchronized(lock) {
+				while(!clean) {
+					try { 
+						lock.wait();
+					}
+					catch(InterruptedException ie)
+					{
+						Thread.currentThread().interrupt();
+						return;
+					}
 				}
 			}
 		}
@@ -58,6 +61,7 @@ public abstract class ComputeProcess {
 				}
 			}
 			clean = true;
+			lock.notifyAll();
 		}
 		
 		logger.info(name()+": DONE Computing.  Finish="+success);
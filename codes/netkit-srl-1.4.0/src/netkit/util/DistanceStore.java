@@ -0,0 +1,201 @@
+/**
+ * DistanceStore.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Holds the rows of a pairwise distance matrix, one row per source node.
+ * Rows are added as they are computed and a row which is not (or no
+ * longer) available must be recomputed by the caller.
+ * <ul>
+ * <li><code>Memory</code> --- keep all rows in memory (numNodes^2 doubles)
+ * <li><code>Recompute</code> --- keep no rows, except for a small cache of the most recently used ones
+ * <li><code>Disk</code> --- keep all rows in a memory-mapped temporary file
+ * <li><code>Auto</code> --- Memory if the matrix fits comfortably in the heap, Recompute otherwise
+ * </ul>
+ */
+public abstract class DistanceStore {
+	protected static Logger logger = NetKitEnv.getLogger(DistanceStore.class);
+
+	public static enum Storage { Auto, Memory, Recompute, Disk };
+
+	/** How many rows the Recompute store keeps around */
+	public static final int RECOMPUTE_CACHE_SIZE = 64;
+
+	public final int numNodes;
+
+	protected DistanceStore(int numNodes) {
+		this.numNodes = numNodes;
+	}
+
+	/**
+	 * Create a new store.
+	 * @param storage how to store the distances
+	 * @param numNodes the number of rows and columns
+	 * @param dir the directory for the Disk store; null for the default temporary directory
+	 */
+	public static DistanceStore create(Storage storage, int numNodes, File dir) {
+		if(storage == Storage.Auto)
+		{
+			long bytes = 8L*numNodes*numNodes;
+			storage = (bytes <= Runtime.getRuntime().maxMemory()/8 ? Storage.Memory : Storage.Recompute);
+			logger.info("DistanceStore: "+numNodes+" nodes need "+(bytes>>20)+"MB per matrix, using "+storage);
+		}
+		switch(storage)
+		{
+		case Memory: return new MemoryStore(numNodes);
+		case Recompute: return new RecomputeStore(numNodes,RECOMPUTE_CACHE_SIZE);
+		case Disk: return new DiskStore(numNodes,dir);
+		default: throw new IllegalArgumentException("Unknown storage "+storage);
+		}
+	}
+
+	/**
+	 * @return how this store keeps its rows (never Auto)
+	 */
+	public abstract Storage getStorage();
+
+	/**
+	 * @return true if rows added while computing all shortest paths are not
+	 * kept, such that there is no point in adding them.
+	 */
+	public boolean isStreaming() { return false; }
+
+	/**
+	 * @return whether the row of the given source node is available
+	 */
+	public abstract boolean hasRow(int src);
+
+	/**
+	 * @return the distance from src to dst.  The row of src must be available.
+	 */
+	public abstract double get(int src, int dst);
+
+	/**
+	 * Store a copy of the given row.  Rows of different sources can be
+	 * added concurrently.
+	 */
+	public abstract void putRow(int src, double[] row);
+
+	/**
+	 * Release any resources held by this store.
+	 */
+	public void close() {}
+
+	private static final class MemoryStore extends DistanceStore {
+		private final double[][] rows;
+
+		MemoryStore(int numNodes) {
+			super(numNodes);
+			rows = new double[numNodes][];
+		}
+		public Storage getStorage() { return Storage.Memory; }
+		public boolean hasRow(int src) { return rows[src] != null; }
+		public double get(int src, int dst) { return rows[src][dst]; }
+		public void putRow(int src, double[] row) { rows[src] = row.clone(); }
+	}
+
+	private static final class RecomputeStore extends DistanceStore {
+		private final Map<Integer,double[]> cache;
+
+		RecomputeStore(int numNodes, final int cacheSize) {
+			super(numNodes);
+			cache = new LinkedHashMap<Integer,double[]>(cacheSize,0.75f,true) {
+				private static final long serialVersionUID = 1L;
+				protected boolean removeEldestEntry(Map.Entry<Integer,double[]> eldest) {
+					return size() > cacheSize;
+				}
+			};
+		}
+		public Storage getStorage() { return Storage.Recompute; }
+		public boolean isStreaming() { return true; }
+		public synchronized boolean hasRow(int src) { return cache.containsKey(src); }
+		public synchronized double get(int src, int dst) { return cache.get(src)[dst]; }
+		public synchronized void putRow(int src, double[] row) { cache.put(src, row.clone()); }
+	}
+
+	private static final class DiskStore extends DistanceStore {
+		private final File file;
+		private final RandomAccessFile raf;
+		private final MappedByteBuffer[] maps;
+		private final int rowsPerMap;
+		private final boolean[] stored;
+
+		DiskStore(int numNodes, File dir) {
+			super(numNodes);
+			stored = new boolean[numNodes];
+			rowsPerMap = Math.max(1, (int)(Integer.MAX_VALUE/(8L*Math.max(1,numNodes))));
+			try
+			{
+				file = File.createTempFile("netkit-dist", ".bin", dir);
+				file.deleteOnExit();
+				raf = new RandomAccessFile(file, "rw");
+				long rowBytes = 8L*numNodes;
+				raf.setLength(rowBytes*numNodes);
+				maps = new MappedByteBuffer[(numNodes+rowsPerMap-1)/rowsPerMap];
+				FileChannel channel = raf.getChannel();
+				for(int i=0;i<maps.length;i++)
+				{
+					long start = (long)i*rowsPerMap*rowBytes;
+					long size = Math.min((long)rowsPerMap, (long)numNodes-(long)i*rowsPerMap)*rowBytes;
+					maps[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+				}
+			}
+			catch(IOException ioe)
+			{
+				throw new RuntimeException("Could not create distance file: "+ioe.getMessage(),ioe);
+			}
+			logger.info("DistanceStore: storing distances in "+file);
+		}
+		public Storage getStorage() { return Storage.Disk; }
+		public boolean hasRow(int src) { return stored[src]; }
+		public double get(int src, int dst) {
+			return maps[src/rowsPerMap].getDouble(8*((src%rowsPerMap)*numNodes+dst));
+		}
+		public void putRow(int src, double[] row) {
+			// each writer gets its own duplicate, so concurrent positioning is safe
+			ByteBuffer buf = maps[src/rowsPerMap].duplicate();
+			buf.position(8*(src%rowsPerMap)*numNodes);
+			buf.asDoubleBuffer().put(row);
+			stored[src] = true;
+		}
+		public void close() {
+			try
+			{
+				raf.close();
+			}
+			catch(IOException ioe)
+			{
+				logger.warning("DistanceStore: could not close "+file+": "+ioe.getMessage());
+			}
+			file.delete();
+		}
+	}
+}
@@ -25,7 +25,10 @@ import netkit.graph.*;
 import netkit.util.ModularityClusterer.Cluster;
 import netkit.classifiers.Classification;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class GraphMetrics {
@@ -102,15 +105,17 @@ public class GraphMetrics {
 	public final String nodeType;
 	public final int numNodes;
 	public final int numEdges;
+	public final long graphVersion;
 
 	private final Object lock = new Object();
 
 	private ModularityClusterer mc = null;
+	private ModularityClusterer.Method clusterMethod = ModularityClusterer.Method.CNM;
 
-	private boolean calcCentrality = false;
-	private double centralityProgress = 0;
-	private boolean calcCluster = false;
-	private double clusterProgress = 0;
+	private volatile boolean calcCentrality = false;
+	private volatile double centralityProgress = 0;
+	private volatile boolean calcCluster = false;
+	private volatile double clusterProgress = 0;
 	private boolean calcComponent = false;
 	private double componentProgress = 0;
 
@@ -138,8 +143,10 @@ public class GraphMetrics {
 	private double[] weightedClosenessCentrality = null;
 	private double[] betweennessCentrality = null;
 	private double[] weightedBetweennessCentrality = null;
-	private double[][] weightedPairwisedistances = null;
-	private double[][] pairwisedistances = null;
+	private DistanceStore weightedPairwisedistances = null;
+	private DistanceStore pairwisedistances = null;
+	private DistanceStore.Storage distanceStorage = DistanceStore.Storage.Auto;
+	private File distanceDir = null;
 	private double[] graphCentralityPerNode = null;
 	private double[] weightedGraphCentralityPerNode = null;
 	private double meanDist = Double.NaN;
@@ -148,6 +155,11 @@ public class GraphMetrics {
 	private double weightedCharacteristicPathLength = Double.NaN;
 	private double graphCentrality = Double.NaN;
 	private double weightedGraphCentrality = Double.NaN;
+	private int centralityPivots = 0;
+	private static final double PATH_EPSILON = 1e-10;
+	private CSRGraph csr = null;
+	private final AtomicInteger centralitySourcesDone = new AtomicInteger();
+	private final AtomicInteger clusterNodesDone = new AtomicInteger();
 	private double maxDist = -1;
 	private double weightedMaxDist = -1;
 
@@ -155,14 +167,11 @@ public class GraphMetrics {
 	private int path2 = -1;
 	private double localClusterCoeff = -1;
 	private double globalClusterCoeff = -1;
-	private int numComponents = -1;
-	private Map<String,int[]> component = null; // component[nodetype]->[node-index] = which component does it belong to
-	private int[] componentSize = null;
+	private Components components = null;
+	private final Map<String,MixingMatrices> mixingMatrices = new HashMap<String,MixingMatrices>();
+	private final Map<String,MixingMatrices> truthMixingMatrices = new HashMap<String,MixingMatrices>();
 	private int[] clusternum = null; // clusternum[globalnodeindex] = which cluster does it belong to
 	private Cluster[] clusters = null;
-	private int maxComponentSize = -1;
-	private int maxComponentIdx = -1;
-	private int numSingletons = -1;
 
 	/**
 	 * Compute metrics over all nodes in the graph
@@ -173,6 +182,7 @@ public class GraphMetrics {
 		nodeType = null;
 		numNodes = graph.numNodes();
 		numEdges = graph.numEdges();
+		graphVersion = graph.getVersion();
 		nodetypeToIndex = new HashMap<String,Integer>();
 		nodeTypes = graph.getNodeTypes();
 		nodetypeOffsets = new int[nodeTypes.length];
@@ -198,6 +208,7 @@ public class GraphMetrics {
 		for(String et : graph.getEdgeTypeNames(nodeType,nodeType))
 			nE += graph.numEdges(et);
 		numEdges = nE;
+		graphVersion = graph.getVersion();
 		nodeTypes = new String[]{nodeType};
 		nodetypeOffsets = new int[]{0};
 		nodetypeToIndex = new HashMap<String,Integer>();
@@ -206,10 +217,33 @@ public class GraphMetrics {
 
 	public ModularityClusterer getClusterer() {
 		if(mc == null)
-			mc = new ModularityClusterer(graph);
+			mc = new ModularityClusterer(graph, clusterMethod);
 		return mc;
 	}
 
+	/**
+	 * Set the method the clusterer finds clusters with.  CNM merges one
+	 * pair of clusters at a time and does not scale much beyond 10^5 edges;
+	 * Louvain is a multi-level method which scales to millions of edges.
+	 * Changing the method discards any clusters already found.
+	 * @param method the clustering method (default CNM)
+	 * @see ModularityClusterer.Method
+	 */
+	public void setClusterMethod(ModularityClusterer.Method method) {
+		synchronized(lock) {
+			if(method == clusterMethod)
+				return;
+			if(mc != null && mc.isActive())
+				throw new IllegalStateException("GraphMetrics is already clustering the graph!");
+			clusterMethod = method;
+			mc = null;
+			clusternum = null;
+			clusters = null;
+		}
+	}
+
+	public ModularityClusterer.Method getClusterMethod() { return clusterMethod; }
+
 	private void doCluster() {
 		if(clusternum != null)
 			return;
@@ -269,6 +303,20 @@ public class GraphMetrics {
 	public boolean calcClusterActive() { return calcCluster; }
 	public void stopCalcClusterStat() { calcCluster=false; }
 
+	/**
+	 * Counts the paths of length two, node1-&gt;node2-&gt;node3 with node1!=node3,
+	 * and how many of them are closed into a triangle by edges between node1
+	 * and node3 in both directions.  A path is counted at its center node2,
+	 * once for every pair of edges (of any edge type) it is made of.
+	 * <p>
+	 * Rather than walking every path, this works over the CSR adjacency with
+	 * its rows sorted by target.  The paths through a center are its in-degree
+	 * times its out-degree, less those which return to where they started.
+	 * The triangles through a center are found by intersecting its out-edges
+	 * with the mutual neighbors of each of its in-neighbors, iterating over
+	 * the shorter of the two lists and probing the other.  The centers are
+	 * spread over NetKitEnv.getNumThreads() threads.
+	 */
 	public void calculateClusterStat() {
 		if(numtriangles >= 0)
 			return;
@@ -278,64 +326,219 @@ public class GraphMetrics {
 				throw new IllegalArgumentException("This graph metric is already computing cluster stats!");
 			calcCluster = true;
 		}
-		path2 = 0;
-		numtriangles = 0;
-		int[] triple = new int[numNodes];
-		int[] center = new int[numNodes];
-		Arrays.fill(triple, 0);
-		Arrays.fill(center, 0);
-
 		clusterProgress = 0;
-		double progressDelta = 1.0D/(double)((numNodes + graph.numEdges()*graph.numEdges()));
-
-		for (final Node node1 : ((nodeType==null) ? graph.getNodes() : graph.getNodes(nodeType)))
+		clusterNodesDone.set(0);
+
+		final CSRGraph out = getCSRGraph().sortByTarget();
+		final CSRGraph in = out.transpose();
+		final int[] mOffsets = new int[numNodes+1];
+		final int[] mutual = getMutualNeighbors(out, in, mOffsets);
+		final long[] center = new long[numNodes];
+		final long[] triple = new long[numNodes];
+
+		int numThreads = ParallelUtil.getNumThreads(numNodes);
+		List<ClusterWorker> workers = new ArrayList<ClusterWorker>(numThreads);
+		for(int t=0;t<numThreads;t++)
+			workers.add(new ClusterWorker(out, in, mOffsets, mutual, center, triple, t, numThreads));
+
+		boolean finished = false;
+		try
+		{
+			finished = ParallelUtil.invokeAll(workers) && calcCluster;
+		}
+		finally
 		{
-			for(final Edge e1 : ((nodeType == null) ? node1.getEdges() : node1.getEdgesToNeighbor(nodeType)))
+			if(!finished)
 			{
-				clusterProgress += progressDelta;
-				Node node2 = e1.getDest();
-				int idx = getNodeIndex(node2);
-				for(final Edge e2 : ((nodeType == null) ? node2.getEdges() : node2.getEdgesToNeighbor(nodeType)))
-				{
-					if(!calcCluster) {
-						cleanClusterStat();
-						return;
-					}
-					final Node node3 = e2.getDest();
-					if (node1 == node3)
-						continue;
-					path2++;
-					center[idx]++;
-					if(node1.getEdgesToNeighbor(node3).length == 0)
-						continue;
-					if(node3.getEdgesToNeighbor(node1).length == 0)
-						continue;
-					triple[idx]++;
-					numtriangles++;
-				}
+				calcCluster = false;
+				cleanClusterStat();
 			}
 		}
+		if(!finished)
+			return;
+
+		long p2 = 0;
+		long tri = 0;
+		for (int i = 0; i < numNodes; i++)
+		{
+			p2 += center[i];
+			tri += triple[i];
+		}
+		path2 = (int)p2;
+		numtriangles = (int)tri;
 
 		globalClusterCoeff = (double)numtriangles / (double)path2;
 		localClusterCoeff = 0;
-		for (int i = 0; i < triple.length; i++)
+		for (int i = 0; i < numNodes; i++)
 		{
-			clusterProgress += progressDelta;
-			if(!calcCluster) {
-				cleanClusterStat();
-				return;
-			}
-
 			if (center[i] == 0 || triple[i] == 0)
 				continue;
 			localClusterCoeff += (double) triple[i] / (double) center[i];
 		}
-		localClusterCoeff /= triple.length;
+		localClusterCoeff /= numNodes;
 
 		clusterProgress = 1;
 		calcCluster = false;
 	}
 
+	/**
+	 * Find the mutual neighbors of every node: the other nodes it has edges
+	 * to and from.
+	 * @param out the adjacency with rows sorted by target
+	 * @param in the transpose of out
+	 * @param mOffsets filled in with where the mutual neighbors of each node start in the returned array
+	 * @return the mutual neighbors of all nodes, sorted within each node
+	 */
+	private static int[] getMutualNeighbors(CSRGraph out, CSRGraph in, int[] mOffsets) {
+		int[] mutual = new int[0];
+		for(int pass=0;pass<2;pass++)
+		{
+			int m = 0;
+			for(int u=0;u<out.numNodes;u++)
+			{
+				mOffsets[u] = m;
+				int o = out.offsets[u];
+				int oEnd = out.offsets[u+1];
+				int i = in.offsets[u];
+				int iEnd = in.offsets[u+1];
+				while(o<oEnd && i<iEnd)
+				{
+					int a = out.targets[o];
+					int b = in.targets[i];
+					if(a<b)
+						o++;
+					else if(b<a)
+						i++;
+					else
+					{
+						if(a != u)
+						{
+							if(pass == 1)
+								mutual[m] = a;
+							m++;
+						}
+						while(o<oEnd && out.targets[o]==a) o++;
+						while(i<iEnd && in.targets[i]==a) i++;
+					}
+				}
+			}
+			mOffsets[out.numNodes] = m;
+			if(pass == 0)
+				mutual = new int[m];
+		}
+		return mutual;
+	}
+
+	/**
+	 * Counts the paths and triangles through every step-th center starting
+	 * at first.
+	 */
+	private final class ClusterWorker implements Callable<Boolean> {
+		private final CSRGraph out;
+		private final CSRGraph in;
+		private final int[] mOffsets;
+		private final int[] mutual;
+		private final long[] center;
+		private final long[] triple;
+		private final int first;
+		private final int step;
+
+		// scratch space: the number of edges from the current center to each node
+		private final int[] mark;
+
+		ClusterWorker(CSRGraph out, CSRGraph in, int[] mOffsets, int[] mutual, long[] center, long[] triple, int first, int step) {
+			this.out = out;
+			this.in = in;
+			this.mOffsets = mOffsets;
+			this.mutual = mutual;
+			this.center = center;
+			this.triple = triple;
+			this.first = first;
+			this.step = step;
+			mark = new int[numNodes];
+		}
+
+		public Boolean call() {
+			for(int v=first;v<numNodes;v+=step)
+			{
+				if(!calcCluster)
+					return false;
+				count(v);
+				clusterProgress = (double)clusterNodesDone.incrementAndGet()/(double)numNodes;
+			}
+			return true;
+		}
+
+		private void count(int v) {
+			final int[] oTargets = out.targets;
+			final int[] iTargets = in.targets;
+			final int oStart = out.offsets[v];
+			final int oEnd = out.offsets[v+1];
+			final int iStart = in.offsets[v];
+			final int iEnd = in.offsets[v+1];
+
+			// paths u->v->w, less those where w==u
+			long back = 0;
+			for(int o=oStart,i=iStart;o<oEnd && i<iEnd;)
+			{
+				int a = oTargets[o];
+				int b = iTargets[i];
+				if(a<b)
+					o++;
+				else if(b<a)
+					i++;
+				else
+				{
+					long na = 0, nb = 0;
+					while(o<oEnd && oTargets[o]==a) { o++; na++; }
+					while(i<iEnd && iTargets[i]==a) { i++; nb++; }
+					back += na*nb;
+				}
+			}
+			center[v] = (long)(oEnd-oStart)*(long)(iEnd-iStart) - back;
+			if(center[v] == 0)
+				return;
+
+			int numOut = 0;
+			for(int o=oStart;o<oEnd;o++)
+				if(mark[oTargets[o]]++ == 0)
+					numOut++;
+
+			// paths u->v->w where u and w link to each other in both directions
+			long t = 0;
+			for(int i=iStart;i<iEnd;)
+			{
+				final int u = iTargets[i];
+				long nu = 0;
+				while(i<iEnd && iTargets[i]==u) { i++; nu++; }
+				final int mStart = mOffsets[u];
+				final int mEnd = mOffsets[u+1];
+				if(mStart == mEnd)
+					continue;
+				long closed = 0;
+				if(mEnd-mStart <= numOut)
+				{
+					for(int k=mStart;k<mEnd;k++)
+						closed += mark[mutual[k]];
+				}
+				else
+				{
+					for(int o=oStart;o<oEnd;o++)
+					{
+						int w = oTargets[o];
+						if(w != u && Arrays.binarySearch(mutual, mStart, mEnd, w) >= 0)
+							closed++;
+					}
+				}
+				t += nu*closed;
+			}
+			triple[v] = t;
+
+			for(int o=oStart;o<oEnd;o++)
+				mark[oTargets[o]] = 0;
+		}
+	}
+
 	/**
 	 * @return The local clustering coefficient (computed as average over all triangles)
 	 */
@@ -545,21 +748,23 @@ public class GraphMetrics {
 	 }
 
 	 private void cleanComponentStat() {
-		 component = null;
-		 maxComponentSize = 0;
-		 numComponents = 0;
-		 numSingletons = 0;
-		 maxComponentSize = 0;
-		 maxComponentIdx = 0;
-		 componentSize = null;
+		 components = null;
 	 }
 
 	 public double calcComponentProgress() { return componentProgress; }
 	 public boolean calcComponentActive() { return calcComponent; }
 	 public void stopCalcComponentStat() { calcComponent=false; }
 
+	 /**
+	  * Find the connected components, ignoring the direction of the edges,
+	  * with a union-find over the CSR adjacency.  Components are numbered in
+	  * the order of their first node.  For metrics over all nodes, the graph
+	  * keeps the components up to date as edges are added, such that the
+	  * metrics of later versions of the graph need not find them again.
+	  * @see Graph#trackComponents(Components)
+	  */
 	 public void calculateComponentStat() {
-		 if(component != null)
+		 if(components != null)
 			 return;
 
 		 synchronized(lock) {
@@ -567,70 +772,28 @@ public class GraphMetrics {
 				 throw new IllegalStateException("This graph metrics is already computing component stats!");
 			 calcComponent = true;
 		 }
-		 component = new HashMap<String,int[]>(nodeTypes.length);
-		 Map<String,int[]> tag = new HashMap<String,int[]>(nodeTypes.length);
-		 int[] tComponentSize = new int[numNodes];
-		 Node[] front = new Node[numNodes];
-
+		 componentProgress = 0;
 
-		 for(String nt : nodeTypes)
+		 // the graph only tracks the components of its current version
+		 final boolean current = (nodeType == null && graphVersion == graph.getVersion());
+		 Components c = null;
+		 if(current)
 		 {
-			 int[] c = new int[graph.numNodes(nt)];
-			 Arrays.fill(c, -1);
-			 component.put(nt,c);
-			 int[] t = new int[numNodes];
-			 Arrays.fill(t, 0);
-			 tag.put(nt,t);
+			 Components tracked = graph.getTrackedComponents();
+			 if(tracked != null && tracked.numNodes == numNodes)
+				 c = tracked.copy();
 		 }
-		 maxComponentSize = 0;
-		 numComponents = 0;
-		 numSingletons = 0;
-		 componentProgress = 0;
-		 double progressDelta = 1.0D/(double)( (nodeType == null) ? graph.getNodes().length : graph.getNodes(nodeType).length );
-
-		 for (Node node : ( (nodeType == null) ? graph.getNodes() : graph.getNodes(nodeType) ) )
+		 if(c == null)
 		 {
-			 componentProgress+=progressDelta;
-			 if (component.get(node.getType())[node.getIndex()] >= 0)
-				 continue;
-			 front[0] = node;
-			 int idx = 1;
-			 int size = 0;
-			 while (idx > 0)
-			 {
-				 if(!calcComponent) {
-					 cleanComponentStat();
-					 return;
-				 }
-				 --idx;
-				 Node frontNode = front[idx];
-				 int[] c = component.get(frontNode.getType());
-				 if (c[frontNode.getIndex()] >= 0)
-					 continue;
-				 size++;
-				 c[frontNode.getIndex()] = numComponents;
-				 for (Edge e : ( (nodeType==null) ? frontNode.getEdges() : frontNode.getEdgesToNeighbor(nodeType)))
-				 {
-					 Node neighbor = e.getDest();
-					 if (tag.get(neighbor.getType())[neighbor.getIndex()] > 0)
-						 continue;
-					 tag.get(neighbor.getType())[neighbor.getIndex()] = 1;
-					 front[idx] = neighbor;
-					 idx++;
-				 }
-			 }
-			 if (size == 1)
-				 numSingletons++;
-			 if (size > maxComponentSize)
-			 {
-				 maxComponentSize = size;
-				 maxComponentIdx = numComponents;
-			 }
-			 tComponentSize[numComponents] = size;
-			 numComponents++;
+			 c = new Components(getCSRGraph());
+			 if(current)
+				 graph.trackComponents(c.copy());
+		 }
+		 if(!calcComponent) {
+			 cleanComponentStat();
+			 return;
 		 }
-		 componentSize = new int[numComponents];
-		 System.arraycopy(tComponentSize, 0, componentSize, 0, numComponents);
+		 components = c;
 		 componentProgress = 1;
 		 calcComponent = false;
 	 }
@@ -640,33 +803,34 @@ public class GraphMetrics {
 	  * @return The component index of the specified node
 	  */
 	 public int getComponent(Node node) {
-		 if (component == null) calculateComponentStat();
-		 int[] c = component.get(node.getType());
-		 return ( (c==null) ? -1 : c[node.getIndex()]);
+		 if (components == null) calculateComponentStat();
+		 if (!nodetypeToIndex.containsKey(node.getType()))
+			 return -1;
+		 return components.getComponent(getNodeIndex(node));
 	 }
 
 	 /**
 	  * @return the number of connected components in the graph (includes singletons)
 	  */
 	 public int getNumComponents() {
-		 if (component == null) calculateComponentStat();
-		 return numComponents;
+		 if (components == null) calculateComponentStat();
+		 return components.getNumComponents();
 	 }
 
 	 /**
 	  * @return the number of singleton nodes in the graph
 	  */
 	 public int getNumSingletons() {
-		 if (component == null) calculateComponentStat();
-		 return numSingletons;
+		 if (components == null) calculateComponentStat();
+		 return components.getNumSingletons();
 	 }
 
 	 /**
 	  * @return the size (number of nodes) of the largest connected component
 	  */
 	 public int getMaxComponentSize() {
-		 if (component == null) calculateComponentStat();
-		 return maxComponentSize;
+		 if (components == null) calculateComponentStat();
+		 return components.getMaxComponentSize();
 	 }
 
 	 /**
@@ -674,16 +838,16 @@ public class GraphMetrics {
 	  * @return the number of nodes belonging to the specified connected component
 	  */
 	 public int getComponentSize(int componentNum) {
-		 if (component == null) calculateComponentStat();
-		 return componentSize[componentNum];
+		 if (components == null) calculateComponentStat();
+		 return components.getComponentSize(componentNum);
 	 }
 
 	 /**
 	  * @return index into largest connected component in the graph
 	  */
 	 public int getMaxComponentIdx() {
-		 if (component == null) calculateComponentStat();
-		 return maxComponentIdx;
+		 if (components == null) calculateComponentStat();
+		 return components.getMaxComponentIdx();
 	 }
 
 	 public int getNodeIndex(Node n) {
@@ -701,10 +865,14 @@ public class GraphMetrics {
 		 characteristicPathLength = 0;
 		 weightedCharacteristicPathLength = 0;
 		 betweennessCentrality = null;
+		 if(pairwisedistances != null)
+			 pairwisedistances.close();
 		 pairwisedistances = null;
 		 closenessCentrality = null;
 		 graphCentralityPerNode = null;
 		 weightedBetweennessCentrality = null;
+		 if(weightedPairwisedistances != null)
+			 weightedPairwisedistances.close();
 		 weightedPairwisedistances = null;
 		 weightedClosenessCentrality = null;
 		 weightedGraphCentralityPerNode = null;
@@ -715,7 +883,478 @@ public class GraphMetrics {
 	 public void stopCalcCentralityStat() { calcCentrality=false; }
 
 	 /**
-	  * This calculates the all-pairs closest distances
+	  * Set how the pairwise distances are kept.  All centrality stats are
+	  * accumulated while the shortest paths are computed, so the distances
+	  * are only needed by getDist and getWeightedDist.  With Recompute,
+	  * no numNodes^2 matrix is kept and distances are recomputed from the
+	  * source node when needed; with Disk, they are kept in a memory-mapped
+	  * file.  Changing the storage discards any centrality stats already
+	  * computed.
+	  * @param storage how to keep the pairwise distances (default Auto)
+	  * @param dir directory for the Disk storage, or null for the temporary directory
+	  * @see DistanceStore
+	  */
+	 public void setDistanceStorage(DistanceStore.Storage storage, File dir) {
+		 if(storage == distanceStorage && (dir == null ? distanceDir == null : dir.equals(distanceDir)))
+			 return;
+		 synchronized(lock) {
+			 if(calcCentrality)
+				 throw new IllegalStateException("GraphMetrics is already calculating centrality stats!");
+			 distanceStorage = storage;
+			 distanceDir = dir;
+			 cleanCentralityStat();
+		 }
+	 }
+
+	 public void setDistanceStorage(DistanceStore.Storage storage) {
+		 setDistanceStorage(storage, null);
+	 }
+
+	 public DistanceStore.Storage getDistanceStorage() { return distanceStorage; }
+
+	 /**
+	  * Set the number of pivots to use for the centrality stats.  If k is
+	  * larger than 0 and less than the number of nodes, then shortest paths
+	  * are only computed from k randomly sampled pivot nodes and the
+	  * betweenness and closeness centralities are extrapolated from those
+	  * (Brandes and Pich, 2007; Eppstein and Wang, 2004).  Otherwise all
+	  * nodes are used and the stats are exact.  Changing the number of
+	  * pivots discards any centrality stats already computed.
+	  * @param k number of pivots to sample, or 0 to compute exact stats
+	  */
+	 public void setCentralityPivots(int k) {
+		 if(k<0 || k>=numNodes)
+			 k = 0;
+		 if(k == centralityPivots)
+			 return;
+		 synchronized(lock) {
+			 if(calcCentrality)
+				 throw new IllegalStateException("GraphMetrics is already calculating centrality stats!");
+			 centralityPivots = k;
+			 cleanCentralityStat();
+		 }
+	 }
+
+	 /**
+	  * @return number of pivots used for the centrality stats, 0 if they are exact
+	  */
+	 public int getCentralityPivots() { return centralityPivots; }
+
+	 /**
+	  * @return true if the centrality stats are approximated from a sample of pivots
+	  */
+	 public boolean isCentralityApproximate() { return (centralityPivots>0); }
+
+	 /**
+	  * @return the adjacency structure of the nodes covered by these metrics,
+	  * indexed by the global node index.
+	  */
+	 public CSRGraph getCSRGraph() {
+		 synchronized(lock) {
+			 if(csr == null)
+				 csr = new CSRGraph(graph, nodeTypes);
+			 return csr;
+		 }
+	 }
+
+	 /**
+	  * @return the global indices of the nodes to compute shortest paths
+	  * from: all nodes, or a sorted random sample of pivots.
+	  */
+	 private int[] pickCentralitySources() {
+		 int[] sources = new int[numNodes];
+		 for(int i=0;i<numNodes;i++)
+			 sources[i] = i;
+		 if(centralityPivots<=0 || centralityPivots>=numNodes)
+			 return sources;
+
+		 // partial Fisher-Yates shuffle, seeded for repeatable runs
+		 Random rand = new Random(VectorMath.getSeed());
+		 for(int i=0;i<centralityPivots;i++)
+		 {
+			 int j = i+rand.nextInt(numNodes-i);
+			 int tmp = sources[i];
+			 sources[i] = sources[j];
+			 sources[j] = tmp;
+		 }
+		 int[] pivots = Arrays.copyOf(sources,centralityPivots);
+		 Arrays.sort(pivots);
+		 return pivots;
+	 }
+
+	 /**
+	  * Single-source shortest paths, with scratch space that is reused
+	  * across sources.  The unweighted distances come from a breadth-first
+	  * search and the weighted distances from Dijkstra's algorithm, where an
+	  * edge of weight w has length 1/w (edges with a non-positive weight are
+	  * not traversed).  Both searches also count the number of shortest
+	  * paths to each node and record the order in which nodes were finished.
+	  */
+	 private final class ShortestPaths {
+		 private final CSRGraph g;
+		 private final IndexedMinHeap heap;
+
+		 final double[] dist;   // -1 if not reachable
+		 final double[] nsp;    // number shortest paths (sigma in pseudo code)
+		 final int[] order;     // BFS order
+		 int numReached = 0;
+
+		 final double[] wdist;  // -1 if not reachable
+		 final double[] wnsp;   // number shortest paths - weighted
+		 final int[] worder;    // order in which Dijkstra settled the nodes
+		 int wNumReached = 0;
+
+		 ShortestPaths(CSRGraph g) {
+			 this.g = g;
+			 heap = new IndexedMinHeap(numNodes);
+			 dist = new double[numNodes];
+			 nsp = new double[numNodes];
+			 order = new int[numNodes];
+			 wdist = new double[numNodes];
+			 wnsp = new double[numNodes];
+			 worder = new int[numNodes];
+		 }
+
+		 void bfs(int s) {
+			 final int[] offsets = g.offsets;
+			 final int[] targets = g.targets;
+			 Arrays.fill(dist,-1);
+			 Arrays.fill(nsp,0.0);
+			 nsp[s] = 1;
+			 dist[s] = 0;
+			 int head = 0;
+			 int tail = 0;
+			 order[tail++] = s;
+			 while(head<tail)
+			 {
+				 int v = order[head++];
+				 double sp = dist[v] + 1;
+				 for(int k=offsets[v];k<offsets[v+1];k++)
+				 {
+					 int w = targets[k];
+
+					 // path discovery: w found for the first time?
+					 if(dist[w] < 0)
+					 {
+						 dist[w] = sp;
+						 order[tail++] = w;
+					 }
+
+					 // path counting: shortest path to w via v?
+					 if(dist[w] == sp)
+						 nsp[w] += nsp[v];
+				 }
+			 }
+			 numReached = tail;
+		 }
+
+		 void dijkstra(int s) {
+			 final int[] offsets = g.offsets;
+			 final int[] targets = g.targets;
+			 final double[] weights = g.weights;
+			 Arrays.fill(wdist,-1);
+			 Arrays.fill(wnsp,0.0);
+			 wnsp[s] = 1;
+			 wdist[s] = 0;
+			 heap.clear();
+			 heap.put(s,0);
+			 int n = 0;
+			 while(!heap.isEmpty())
+			 {
+				 int v = heap.poll();
+				 worder[n++] = v;
+				 double dv = wdist[v];
+				 for(int k=offsets[v];k<offsets[v+1];k++)
+				 {
+					 if(weights[k] <= 0)
+						 continue;
+					 int w = targets[k];
+					 double sp = dv + 1.0/weights[k];
+					 double dw = wdist[w];
+					 if(dw < 0 || (heap.contains(w) && sp < dw - PATH_EPSILON*dw))
+					 {
+						 // first or shorter path to w
+						 wdist[w] = sp;
+						 wnsp[w] = wnsp[v];
+						 heap.put(w,sp);
+					 }
+					 else if(heap.contains(w) && isShortestPath(sp,dw))
+					 {
+						 // another shortest path to w
+						 wnsp[w] += wnsp[v];
+					 }
+				 }
+			 }
+			 wNumReached = n;
+		 }
+	 }
+
+	 /**
+	  * Weighted path lengths are sums of inverse weights, so ties are
+	  * compared with a relative tolerance.
+	  * @return whether a path of length sp ties with the shortest distance d
+	  */
+	 private static boolean isShortestPath(double sp, double d) {
+		 return Math.abs(sp-d) <= PATH_EPSILON*d;
+	 }
+
+	 // scratch space of the single source searches, one per calling thread
+	 private final ThreadLocal<ShortestPaths> distanceScratch = new ThreadLocal<ShortestPaths>();
+
+	 /**
+	  * Single source search, used to fill in the pairwise distances of nodes
+	  * which were not used as pivots or whose distances were not kept.  Only
+	  * the requested row is computed, in scratch space kept by the calling
+	  * thread, and copied into the distance store.
+	  * @return the unweighted or weighted distance from the source to the destination
+	  */
+	 private double calculateDistance(int idxS, int idxD, boolean weighted) {
+		 ShortestPaths sp = distanceScratch.get();
+		 if(sp == null)
+		 {
+			 sp = new ShortestPaths(getCSRGraph());
+			 distanceScratch.set(sp);
+		 }
+		 if(weighted)
+		 {
+			 sp.dijkstra(idxS);
+			 weightedPairwisedistances.putRow(idxS, sp.wdist);
+			 return sp.wdist[idxD];
+		 }
+		 sp.bfs(idxS);
+		 pairwisedistances.putRow(idxS, sp.dist);
+		 return sp.dist[idxD];
+	 }
+
+	 /**
+	  * Computes the shortest-path stats from every step'th source node,
+	  * starting at the first'th.  Each worker has its own scratch arrays and
+	  * its own betweenness and distance sums, which are added up once all
+	  * workers are done.  Per-source results (distance rows, closeness and
+	  * average path lengths) are written directly as no two workers share a
+	  * source.
+	  */
+	 private final class CentralityWorker implements Callable<Boolean> {
+		 private final CSRGraph g;
+		 private final int[] sources;
+		 private final int first;
+		 private final int step;
+		 private final double[] avgSP;
+		 private final double[] wavgSP;
+
+		 // scratch space
+		 private final ShortestPaths paths;
+		 private final ShortestPaths inPaths; // over the reverse graph, null if not needed
+		 private final double[] delta;
+		 private final double[] wdelta;
+
+		 // partial results
+		 final double[] betweenness;
+		 final double[] wbetweenness;
+		 final double[] farness;  // distance sums to the pivots, null if exact
+		 final double[] wfarness;
+		 final double[] ecc;      // max distance to the pivots, null if exact
+		 final double[] wecc;
+		 double totDist = 0;
+		 double wTotDist = 0;
+		 long numPair = 0;
+		 long wNumPair = 0;
+		 double maxDist = 0;
+		 double wMaxDist = 0;
+
+		 /**
+		  * @param reverse the reverse of g to find the distances to the
+		  * pivots from, which is g itself if g is symmetric, or null if the
+		  * stats are exact
+		  */
+		 CentralityWorker(CSRGraph g, CSRGraph reverse, int[] sources, int first, int step, double[] avgSP, double[] wavgSP) {
+			 final boolean approximate = (reverse != null);
+			 this.g = g;
+			 this.sources = sources;
+			 this.first = first;
+			 this.step = step;
+			 this.avgSP = avgSP;
+			 this.wavgSP = wavgSP;
+			 paths = new ShortestPaths(g);
+			 inPaths = ( (approximate && reverse != g) ? new ShortestPaths(reverse) : null );
+			 delta = new double[numNodes];
+			 wdelta = new double[numNodes];
+			 betweenness = new double[numNodes];
+			 wbetweenness = new double[numNodes];
+			 farness = (approximate ? new double[numNodes] : null);
+			 wfarness = (approximate ? new double[numNodes] : null);
+			 ecc = (approximate ? new double[numNodes] : null);
+			 wecc = (approximate ? new double[numNodes] : null);
+		 }
+
+		 public Boolean call() {
+			 for(int si=first;si<sources.length;si+=step)
+			 {
+				 if(!calcCentrality)
+					 return false;
+				 singleSource(si);
+				 sourceDone(sources.length);
+			 }
+			 return true;
+		 }
+
+		 private void singleSource(int si) {
+			 final int[] offsets = g.offsets;
+			 final int[] targets = g.targets;
+			 final double[] weights = g.weights;
+			 final int s = sources[si];
+
+			 paths.bfs(s);
+			 paths.dijkstra(s);
+			 final double[] dist = paths.dist;
+			 final double[] nsp = paths.nsp;
+			 final double[] wdist = paths.wdist;
+			 final double[] wnsp = paths.wnsp;
+
+			 // accumulation phase - back-propagation of dependencies.  Rather
+			 // than keeping predecessor lists, v collects the dependencies of
+			 // its successors w, which have all been finished before v.
+			 for(int i=paths.numReached-1;i>=0;i--)
+			 {
+				 int v = paths.order[i];
+				 double sp = dist[v] + 1;
+				 double d = 0;
+				 for(int k=offsets[v];k<offsets[v+1];k++)
+				 {
+					 int w = targets[k];
+					 if(dist[w] == sp)
+						 d += (nsp[v]/nsp[w]) * (1.0 + delta[w]);
+				 }
+				 delta[v] = d;
+				 if(v != s)
+					 betweenness[v] += d;
+			 }
+
+			 // same for the weighted shortest paths, in reverse Dijkstra order
+			 for(int i=paths.wNumReached-1;i>=0;i--)
+			 {
+				 int v = paths.worder[i];
+				 double d = 0;
+				 for(int k=offsets[v];k<offsets[v+1];k++)
+				 {
+					 if(weights[k] <= 0)
+						 continue;
+					 int w = targets[k];
+					 if(wdist[w] > wdist[v] && isShortestPath(wdist[v] + 1.0/weights[k], wdist[w]))
+						 d += (wnsp[v]/wnsp[w]) * (1.0 + wdelta[w]);
+				 }
+				 wdelta[v] = d;
+				 if(v != s)
+					 wbetweenness[v] += d;
+			 }
+
+			 double nodeDist = 0;
+			 double wNodeDist = 0;
+			 double maxD = 0;
+			 double wMaxD = 0;
+			 int nodePair = 0;
+			 int wNodePair = 0;
+			 for(int v=0;v<numNodes;v++)
+			 {
+				 double dv = dist[v];
+				 double wdv = wdist[v];
+				 if(dv>0)
+				 {
+					 nodeDist += dv;
+					 nodePair++;
+					 if(dv>maxD)
+						 maxD = dv;
+				 }
+				 if(wdv>0)
+				 {
+					 wNodeDist += wdv;
+					 wNodePair++;
+					 if(wdv>wMaxD)
+						 wMaxD = wdv;
+				 }
+			 }
+
+			 // the distances from every node to the pivot, as the closeness
+			 // of a pivot is from its distances to the other nodes
+			 if(farness != null)
+			 {
+				 double[] in = dist;
+				 double[] win = wdist;
+				 if(inPaths != null)
+				 {
+					 inPaths.bfs(s);
+					 inPaths.dijkstra(s);
+					 in = inPaths.dist;
+					 win = inPaths.wdist;
+				 }
+				 for(int v=0;v<numNodes;v++)
+				 {
+					 if(in[v]>0)
+					 {
+						 farness[v] += in[v];
+						 if(in[v]>ecc[v])
+							 ecc[v] = in[v];
+					 }
+					 if(win[v]>0)
+					 {
+						 wfarness[v] += win[v];
+						 if(win[v]>wecc[v])
+							 wecc[v] = win[v];
+					 }
+				 }
+			 }
+
+			 totDist += nodeDist;
+			 wTotDist += wNodeDist;
+			 numPair += nodePair;
+			 wNumPair += wNodePair;
+			 if(maxD>maxDist)
+				 maxDist = maxD;
+			 if(wMaxD>wMaxDist)
+				 wMaxDist = wMaxD;
+
+			 if(!pairwisedistances.isStreaming())
+			 {
+				 pairwisedistances.putRow(s, dist);
+				 weightedPairwisedistances.putRow(s, wdist);
+			 }
+			 avgSP[si]  = nodeDist/(double)nodePair;
+			 wavgSP[si] = wNodeDist/(double)wNodePair;
+			 closenessCentrality[s] = inverse(nodeDist);
+			 weightedClosenessCentrality[s] = inverse(wNodeDist);
+			 graphCentralityPerNode[s] = inverse(maxD);
+			 weightedGraphCentralityPerNode[s] = inverse(wMaxD);
+		 }
+	 }
+
+	 /**
+	  * @return 1/d, or 0 if d is 0 as the node reaches no other node
+	  */
+	 private static double inverse(double d) {
+		 return ( (d > 0) ? 1.0/d : 0 );
+	 }
+
+	 /**
+	  * @return the reverse of the given adjacency, or the adjacency itself
+	  * if it is symmetric
+	  */
+	 private static CSRGraph getReverse(CSRGraph g) {
+		 final CSRGraph t = g.transpose();
+		 final CSRGraph sg = g.sortByTarget();
+		 final CSRGraph st = t.sortByTarget();
+		 if(Arrays.equals(sg.offsets,st.offsets) && Arrays.equals(sg.targets,st.targets) && Arrays.equals(sg.weights,st.weights))
+			 return g;
+		 return t;
+	 }
+
+	 private void sourceDone(int numSources) {
+		 centralityProgress = (double)centralitySourcesDone.incrementAndGet()/(double)numSources;
+	 }
+
+	 /**
+	  * This calculates the all-pairs closest distances, or the distances
+	  * from a sample of pivots if setCentralityPivots has been set.  The
+	  * source nodes are spread over NetKitEnv.getNumThreads() threads.
 	  */
 	  public void calculateCentralityStat() {
 		  // This follows the pseudocode from:
@@ -736,344 +1375,107 @@ public class GraphMetrics {
 		  }
 
 		  centralityProgress = 0;
+		  centralitySourcesDone.set(0);
+
+		  final CSRGraph g = getCSRGraph();
+		  final int[] sources = pickCentralitySources();
+		  final boolean approximate = (sources.length < numNodes);
+		  final CSRGraph reverse = (approximate ? getReverse(g) : null);
 
 		  betweennessCentrality = new double[numNodes];
-		  Arrays.fill(betweennessCentrality,0.0);
-		  pairwisedistances = new double[numNodes][numNodes];
+		  pairwisedistances = DistanceStore.create(distanceStorage, numNodes, distanceDir);
 		  closenessCentrality = new double[numNodes];
 		  graphCentralityPerNode = new double[numNodes];
 
 		  weightedBetweennessCentrality = new double[numNodes];
-		  Arrays.fill(weightedBetweennessCentrality,0.0);
-		  weightedPairwisedistances = new double[numNodes][numNodes];
+		  weightedPairwisedistances = DistanceStore.create(pairwisedistances.getStorage(), numNodes, distanceDir);
 		  weightedClosenessCentrality = new double[numNodes];
 		  weightedGraphCentralityPerNode = new double[numNodes];
 
-		  maxDist = 0;
-		  weightedMaxDist = 0;
-
-		  double[] nsp   = new double[numNodes]; // number shortest paths
-		  double[] wnsp   = new double[numNodes]; // number shortest paths - weighted
-		  double[] dist;
-		  double[] wdist;
-		  double[] delta = new double[numNodes];
-		  double[] wdelta = new double[numNodes];
-		  double[] avgSP = new double[numNodes];
-		  double[] wavgSP = new double[numNodes];
-		  int numPair    = 0;
-		  int nodePair   = 0;
-		  double totDist    = 0;
-		  double nodeDist   = 0;
-		  double wTotDist    = 0;
-		  double wNodeDist   = 0;
-
-		  boolean DEBUG = false;
-		  Node[] revIdx = null;
-		  if(DEBUG)
-		  {
-			  revIdx  = new Node[numNodes]; // This is for debugging
-			  Arrays.fill(revIdx,null);
-		  }
+		  double[] avgSP = new double[sources.length];
+		  double[] wavgSP = new double[sources.length];
 
-		  Queue<Node> Q = new LinkedList<Node>();
-		  Stack<Node> S = new Stack<Node>();
-		  List<List<Node>> pred = new ArrayList<List<Node>>();
-		  List<List<Edge>> wpred = new ArrayList<List<Edge>>();
+		  int numThreads = ParallelUtil.getNumThreads(sources.length);
+		  List<CentralityWorker> workers = new ArrayList<CentralityWorker>(numThreads);
+		  for(int t=0;t<numThreads;t++)
+			  workers.add(new CentralityWorker(g, reverse, sources, t, numThreads, avgSP, wavgSP));
 
-		  double progressDelta = 1.0D/(numNodes + numNodes*numNodes);
-
-		  // N steps
-		  for(int i=0;i<numNodes;i++)
+		  boolean finished = false;
+		  try
 		  {
-			  centralityProgress += progressDelta;
-			  pred.add(new ArrayList<Node>());
-			  wpred.add(new ArrayList<Edge>());
+			  finished = ParallelUtil.invokeAll(workers) && calcCentrality;
 		  }
-
-		  if(!calcCentrality)
+		  finally
 		  {
-			  cleanCentralityStat();
-			  return;
+			  if(!finished)
+			  {
+				  calcCentrality = false;
+				  cleanCentralityStat();
+			  }
 		  }
+		  if(!finished)
+			  return;
 
-		  // for each node (N) do shortest-path (N*logN) roughly
-		  for(int i=0;i<nodeTypes.length;i++)
+		  // reduction of the partial results
+		  maxDist = 0;
+		  weightedMaxDist = 0;
+		  long numPair = 0;
+		  long wNumPair = 0;
+		  double totDist = 0;
+		  double wTotDist = 0;
+		  double[] farness = (approximate ? new double[numNodes] : null);
+		  double[] wfarness = (approximate ? new double[numNodes] : null);
+		  double[] ecc = (approximate ? new double[numNodes] : null);
+		  double[] wecc = (approximate ? new double[numNodes] : null);
+		  for(CentralityWorker w : workers)
 		  {
-			  int offsetS = nodetypeOffsets[i];
-
-			  // For each node, do shortest-path problem
-			  for(Node s : graph.getNodes(nodeTypes[i]))
+			  for(int k=0;k<numNodes;k++)
 			  {
-				  if(!calcCentrality)
-				  {
-					  cleanCentralityStat();
-					  return;
-				  }
-
-				  int idxS = s.getIndex() + offsetS;
-
-				  if(DEBUG)
-				  {
-					  if(revIdx[idxS] == null)
-						  revIdx[idxS] = s;
-					  else if(revIdx[idxS] != s)
-						  System.err.println("Node("+s.getName()+"): idx["+idxS+"] already taken by: "+revIdx[idxS].getName());
-
-					  System.out.println("vertexStat: Analyzing Node("+s.getName()+"):");
-				  }
-
-				  // BEGIN: Initialization
-				  dist = pairwisedistances[s.getIndex()];
-				  wdist = weightedPairwisedistances[s.getIndex()];
-
-				  Arrays.fill(dist,-1);
-				  Arrays.fill(wdist,-1);
-
-				  // clear pred for all nodes
-				  for(List<Node> w : pred)
-					  w.clear();
-
-				  // clear pred for all nodes
-				  for(List<Edge> w : wpred)
-					  w.clear();
-
-				  // nsp = sigma in pseudo code
-				  Arrays.fill(nsp,0.0);
-				  Arrays.fill(wnsp,0.0);
-				  nsp[idxS] = 1;
-				  wnsp[idxS] = 1;
-
-				  dist[idxS] = 0;
-				  wdist[idxS] = 0;
-
-				  S.clear();
-				  Q.clear();
-				  Q.add(s);
-				  // END: Initialization
-
-				  while(!Q.isEmpty())
-				  {
-					  centralityProgress += progressDelta;
-
-					  if(!calcCentrality)
-					  {
-						  cleanCentralityStat();
-						  return;
-					  }
-
-					  Node v = Q.remove();
-					  S.push(v);
-					  int idxV = getNodeIndex(v);
-
-					  if(DEBUG)
-					  {
-						  if(revIdx[idxV] == null)
-							  revIdx[idxV] = v;
-						  else if(revIdx[idxV] != v)
-							  System.err.println("Node("+v.getName()+"): idx["+idxV+"] already taken by: "+revIdx[idxV].getName());
-					  }
-
-					  for(int j=0;j<nodeTypes.length;j++)
-					  {
-						  int offsetW = nodetypeOffsets[j];
-
-						  // go through all edges from w 
-						  for(Edge e : v.getEdgesToNeighbor(nodeTypes[j]))
-						  {
-							  if(!calcCentrality)
-							  {
-								  cleanCentralityStat();
-								  return;
-							  }
-
-							  Node w = e.getDest();
-
-							  int idxW = w.getIndex()+offsetW;
-
-							  if(DEBUG)
-							  {
-								  if(revIdx[idxW] == null)
-									  revIdx[idxW] = w;
-								  else if(revIdx[idxW] != w)
-									  System.err.println("Node("+w.getName()+"): idx["+idxW+"] already taken by: "+revIdx[idxW].getName());
-							  }
-
-							  double sp = dist[idxV] + 1;
-							  double wsp = wdist[idxV] + 1.0/e.getWeight();
-
-							  // path discovery: w found for the first time?
-							  if(dist[idxW] < 0)
-							  {
-								  dist[idxW] = sp;
-								  wdist[idxW] = wsp;
-								  Q.add(w);
-							  }
-
-							  // path counting: shortest path to w via v?
-							  if(dist[idxW] == sp )
-							  {
-								  nsp[idxW] += nsp[idxV];
-								  pred.get(idxW).add(v);
-							  }
-
-							  // weighted path counting: shortest path to w via v?
-							  if(wdist[idxW] == wsp )
-							  {
-								  wnsp[idxW] += wnsp[idxV];
-								  wpred.get(idxW).add(e);
-							  }
-						  }
-					  }
-				  }
-
-				  // accumulation phase - back-propagation of dependencies
-				  Arrays.fill(delta, 0.0);
-				  Arrays.fill(wdelta, 0.0);
-				  while(!S.isEmpty())
-				  {
-					  if(!calcCentrality)
-					  {
-						  cleanCentralityStat();
-						  return;
-					  }
-
-					  Node w = S.pop();
-					  int idxW = getNodeIndex(w);
-
-					  // handle unweighted case
-					  for(Node v : pred.get(idxW))
-					  {
-						  int idxV = getNodeIndex(v);
-						  delta[idxV] += (nsp[idxV]/nsp[idxW]) * (1.0 + delta[idxW]);
-					  }
-
-					  // handle weighted case
-					  for(Edge e : wpred.get(idxW))
-					  {
-						  int idxV = getNodeIndex(e.getSource());
-						  wdelta[idxV] += (wnsp[idxV]/wnsp[idxW]) * (e.getWeight() + delta[idxW]);
-					  }
-
-					  if(w != s)
-					  {
-						  betweennessCentrality[idxW] += delta[idxW];
-						  weightedBetweennessCentrality[idxW] += wdelta[idxW];
-					  }
-				  }
-
-				  if(DEBUG)
-				  {                
-					  System.out.print("Node("+s.getName()+") dist: ");
-					  for(int k=0;k<dist.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+dist[k]);
-					  }
-					  System.out.println();
-					  System.out.print("Node("+s.getName()+") wdist: ");
-					  for(int k=0;k<wdist.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+wdist[k]);
-					  }
-					  System.out.println();
-
-					  System.out.print("Node("+s.getName()+") NSP: ");
-					  for(int k=0;k<nsp.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+nsp[k]);
-					  }
-					  System.out.println();
-					  System.out.print("Node("+s.getName()+") wNSP: ");
-					  for(int k=0;k<wnsp.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+wnsp[k]);
-					  }
-					  System.out.println();
-
-					  System.out.print("Node("+s.getName()+") delta: ");
-					  for(int k=0;k<delta.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+delta[k]);
-					  }
-					  System.out.println();
-					  System.out.print("Node("+s.getName()+") wdelta: ");
-					  for(int k=0;k<wdelta.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+wdelta[k]);
-					  }
-					  System.out.println();
-
-					  System.out.print("betweenness: ");
-					  for(int k=0;k<betweennessCentrality.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+betweennessCentrality[k]);
-					  }
-					  System.out.println();
-					  System.out.print("weightedbetweenness: ");
-					  for(int k=0;k<weightedBetweennessCentrality.length;k++)
-					  {
-						  if(revIdx[k] == null)
-							  continue;
-						  System.out.print(" "+revIdx[k].getName()+":"+weightedBetweennessCentrality[k]);
-					  }
-					  System.out.println();
-				  } // DEBUG END
-
-				  if(!calcCentrality)
-				  {
-					  cleanCentralityStat();
-					  return;
-				  }
-
-				  nodeDist = 0;
-				  nodePair = 0;
-				  wNodeDist = 0;
-				  for(double d : dist)
+				  betweennessCentrality[k] += w.betweenness[k];
+				  weightedBetweennessCentrality[k] += w.wbetweenness[k];
+				  if(approximate)
 				  {
-					  if(d<=0)
-						  continue;
-					  if(d>maxDist)
-						  maxDist = d;
-					  nodeDist+=d;
-					  nodePair++;
-				  }
-				  for(double d : wdist)
-				  {
-					  if(d<=0)
-						  continue;
-					  if(d>weightedMaxDist)
-						  weightedMaxDist = d;
-					  wNodeDist+=d;
+					  farness[k] += w.farness[k];
+					  wfarness[k] += w.wfarness[k];
+					  ecc[k] = Math.max(ecc[k],w.ecc[k]);
+					  wecc[k] = Math.max(wecc[k],w.wecc[k]);
 				  }
+			  }
+			  totDist += w.totDist;
+			  wTotDist += w.wTotDist;
+			  numPair += w.numPair;
+			  wNumPair += w.wNumPair;
+			  maxDist = Math.max(maxDist,w.maxDist);
+			  weightedMaxDist = Math.max(weightedMaxDist,w.wMaxDist);
+		  }
+		  workers = null;
 
-				  totDist += nodeDist;
-				  wTotDist += wNodeDist;
-				  numPair += nodePair;
 
-				  avgSP[idxS]  = (double)nodeDist/(double)nodePair;
-				  wavgSP[idxS] = (double)wNodeDist/(double)nodePair;
-				  closenessCentrality[idxS] = 1/(double)nodeDist;               
-				  weightedClosenessCentrality[idxS] = 1/(double)wNodeDist;               
-				  graphCentralityPerNode[idxS] = 1.0/VectorMath.getMaxValue(dist);
-				  weightedGraphCentralityPerNode[idxS] = 1.0/VectorMath.getMaxValue(wdist);
+		  // extrapolate from the pivots: betweenness is scaled up by n/k and
+		  // closeness of the non-pivots uses their distances to the pivots,
+		  // in the same direction as the distances from a pivot.  A node that
+		  // reaches no pivot gets 0.
+		  if(approximate)
+		  {
+			  double scale = (double)numNodes/(double)sources.length;
+			  boolean[] isPivot = new boolean[numNodes];
+			  for(int idx : sources)
+				  isPivot[idx] = true;
+			  for(int k=0;k<numNodes;k++)
+			  {
+				  betweennessCentrality[k] *= scale;
+				  weightedBetweennessCentrality[k] *= scale;
+				  if(isPivot[k])
+					  continue;
+				  closenessCentrality[k] = inverse(scale*farness[k]);
+				  weightedClosenessCentrality[k] = inverse(scale*wfarness[k]);
+				  graphCentralityPerNode[k] = inverse(ecc[k]);
+				  weightedGraphCentralityPerNode[k] = inverse(wecc[k]);
 			  }
 		  }
 
 		  meanDist = (double)totDist/(double)numPair;
-		  weightedMeanDist = (double)wTotDist/(double)numPair;
+		  weightedMeanDist = (double)wTotDist/(double)wNumPair;
 
 		  graphCentrality = 0;
 		  weightedGraphCentrality = 0;
@@ -1085,7 +1487,7 @@ public class GraphMetrics {
 		  graphCentrality /= (double)(numNodes-1);
 
 		  double wmax = weightedBetweennessCentrality[VectorMath.getMaxIdx(weightedBetweennessCentrality)];
-		  for(double cb : betweennessCentrality)
+		  for(double cb : weightedBetweennessCentrality)
 		  {
 			  weightedGraphCentrality += (wmax - cb);
 		  }
@@ -1093,25 +1495,17 @@ public class GraphMetrics {
 
 		  Arrays.sort(avgSP);
 		  Arrays.sort(wavgSP);
-		  int midPt = numNodes/2;
-		  if((numNodes%2) == 0)
+		  int midPt = avgSP.length/2;
+		  if((avgSP.length%2) == 0)
 		  {
-			  characteristicPathLength = (avgSP[midPt]+avgSP[midPt+1])/2.0;
-			  weightedCharacteristicPathLength = (wavgSP[midPt]+wavgSP[midPt+1])/2.0;
+			  characteristicPathLength = (avgSP[midPt-1]+avgSP[midPt])/2.0;
+			  weightedCharacteristicPathLength = (wavgSP[midPt-1]+wavgSP[midPt])/2.0;
 		  }
 		  else
 		  {
-			  characteristicPathLength = wavgSP[midPt];
+			  characteristicPathLength = avgSP[midPt];
 			  weightedCharacteristicPathLength = wavgSP[midPt];
 		  }
-		  if(DEBUG)
-		  {
-			  System.out.println("pairwise:");
-			  System.out.println(ArrayUtil.asString(pairwisedistances));
-			  System.out.println("weightedpairwise:");
-			  System.out.println(ArrayUtil.asString(weightedPairwisedistances));
-		  }
-
 		  centralityProgress = 1.0;
 		  calcCentrality = false;
 	  }
@@ -1124,7 +1518,9 @@ public class GraphMetrics {
 		  calculateCentralityStat();
 		  int srcIndex = getNodeIndex(src);
 		  int dstIndex = getNodeIndex(dst);
-		  return pairwisedistances[srcIndex][dstIndex]; 
+		  if(!pairwisedistances.hasRow(srcIndex))
+			  return calculateDistance(srcIndex, dstIndex, false);
+		  return pairwisedistances.get(srcIndex,dstIndex); 
 	  }
 
 	  /**
@@ -1134,7 +1530,9 @@ public class GraphMetrics {
 		  calculateCentralityStat();
 		  int srcIndex = getNodeIndex(src);
 		  int dstIndex = getNodeIndex(dst);
-		  return weightedPairwisedistances[srcIndex][dstIndex]; 
+		  if(!weightedPairwisedistances.hasRow(srcIndex))
+			  return calculateDistance(srcIndex, dstIndex, true);
+		  return weightedPairwisedistances.get(srcIndex,dstIndex); 
 	  }
 
 	  /**
@@ -1314,20 +1712,66 @@ public class GraphMetrics {
 		  return edgeAssort;
 	  }
 
+	  /**
+	   * Get new class-mixing matrices of all edge types between nodes of the
+	   * given type, with all labels unknown.  The edges are read once for the
+	   * current version of the graph and shared by all matrices handed out,
+	   * while the known labels are the caller's own.  Keep the matrices to
+	   * have only the nodes whose labels change gone over when new known
+	   * labels are set on them.
+	   * @param nodeType
+	   * @param attribute the class attribute
+	   * @return the mixing matrices, with no known labels
+	   */
+	  public MixingMatrices getMixingMatrices(String nodeType, AttributeCategorical attribute) {
+		  synchronized(lock) {
+			  final String key = nodeType+"\t"+attribute.getName();
+			  MixingMatrices mm = mixingMatrices.get(key);
+			  if(mm == null || mm.graphVersion != graph.getVersion() || mm.attribute != attribute)
+			  {
+				  mm = new MixingMatrices(graph, nodeType, attribute);
+				  mixingMatrices.put(key, mm);
+			  }
+			  return new MixingMatrices(mm);
+		  }
+	  }
+
+	  // the mixing matrices which hold the true labels, locked for each use
+	  private MixingMatrices getTruthMixingMatrices(String nodeType, AttributeCategorical attribute) {
+		  synchronized(lock) {
+			  final String key = nodeType+"\t"+attribute.getName();
+			  MixingMatrices mm = truthMixingMatrices.get(key);
+			  if(mm == null || mm.graphVersion != graph.getVersion() || mm.attribute != attribute)
+			  {
+				  mm = getMixingMatrices(nodeType, attribute);
+				  truthMixingMatrices.put(key, mm);
+			  }
+			  return mm;
+		  }
+	  }
+
+	  private double[] calculateAssortativityCoeff(String nodeType, AttributeCategorical attribute, EdgeType et, boolean edgeBased) {
+		  final MixingMatrices mm = getTruthMixingMatrices(nodeType, attribute);
+		  synchronized(mm) {
+			  mm.setKnown(new Classification(graph, nodeType, attribute));
+			  return (edgeBased ? mm.getEdgeBasedAssortativity(et) : mm.getNodeBasedAssortativity(et));
+		  }
+	  }
+
 	  public double[] calculateEdgeBasedAssortativityCoeff(String nodeType, AttributeCategorical attribute) {
-		  return calculateEdgeBasedAssortativityCoeff(new Classification(graph, nodeType, attribute));
+		  return calculateAssortativityCoeff(nodeType, attribute, null, true);
 	  }
 
 	  public double[] calculateNodeBasedAssortativityCoeff(String nodeType, AttributeCategorical attribute) {
-		  return calculateNodeBasedAssortativityCoeff(new Classification(graph, nodeType, attribute));
+		  return calculateAssortativityCoeff(nodeType, attribute, null, false);
 	  }
 
 	  public double[] calculateEdgeBasedAssortativityCoeff(String nodeType, AttributeCategorical attribute, EdgeType et) {
-		  return calculateEdgeBasedAssortativityCoeff(new Classification(graph, nodeType, attribute), et);
+		  return calculateAssortativityCoeff(nodeType, attribute, et, true);
 	  }
 
 	  public double[] calculateNodeBasedAssortativityCoeff(String nodeType, AttributeCategorical attribute, EdgeType et) {
-		  return calculateNodeBasedAssortativityCoeff(new Classification(graph, nodeType, attribute), et);
+		  return calculateAssortativityCoeff(nodeType, attribute, et, false);
 	  }
 
 	  /**
@@ -0,0 +1,153 @@
+/**
+ * IndexedMinHeap.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap over the integer items 0..capacity-1 with double keys.
+ * Like the IndexedMaxHeap used by the ModularityClusterer, it keeps track
+ * of where each item is in the heap such that the key of an item can be
+ * changed in O(log n), but it works on primitive arrays only and does not
+ * allocate anything after construction.  This makes it suitable as the
+ * priority queue of Dijkstra's algorithm.
+ */
+public final class IndexedMinHeap {
+	private final int[] heap;    // heap position -> item
+	private final int[] pos;     // item -> heap position, -1 if not in the heap
+	private final double[] key;  // item -> key
+	private int size = 0;
+
+	public IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		pos = new int[capacity];
+		key = new double[capacity];
+		Arrays.fill(pos,-1);
+	}
+
+	public int size() { return size; }
+	public boolean isEmpty() { return (size == 0); }
+	public boolean contains(int item) { return (pos[item] != -1); }
+
+	/**
+	 * @return the key of the given item, which must be in the heap
+	 */
+	public double getKey(int item) { return key[item]; }
+
+	/**
+	 * Add the item with the given key, or change its key if it is already
+	 * in the heap.
+	 */
+	public void put(int item, double k) {
+		if(pos[item] == -1)
+		{
+			key[item] = k;
+			heap[size] = item;
+			pos[item] = size;
+			siftUp(size++);
+		}
+		else if(k < key[item])
+		{
+			key[item] = k;
+			siftUp(pos[item]);
+		}
+		else
+		{
+			key[item] = k;
+			siftDown(pos[item]);
+		}
+	}
+
+	/**
+	 * @return the item with the smallest key, without removing it
+	 */
+	public int peek() {
+		if(size == 0)
+			throw new IllegalStateException("heap is empty");
+		return heap[0];
+	}
+
+	/**
+	 * Remove and return the item with the smallest key.
+	 */
+	public int poll() {
+		int item = peek();
+		pos[item] = -1;
+		size--;
+		if(size > 0)
+		{
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return item;
+	}
+
+	/**
+	 * Remove all items from the heap.
+	 */
+	public void clear() {
+		for(int i=0;i<size;i++)
+			pos[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		int item = heap[i];
+		double k = key[item];
+		while(i > 0)
+		{
+			int parent = (i-1)>>>1;
+			int p = heap[parent];
+			if(key[p] <= k)
+				break;
+			heap[i] = p;
+			pos[p] = i;
+			i = parent;
+		}
+		heap[i] = item;
+		pos[item] = i;
+	}
+
+	private void siftDown(int i) {
+		int item = heap[i];
+		double k = key[item];
+		int half = size>>>1;
+		while(i < half)
+		{
+			int child = 2*i+1;
+			int c = heap[child];
+			int right = child+1;
+			if(right < size && key[heap[right]] < key[c])
+			{
+				child = right;
+				c = heap[child];
+			}
+			if(k <= key[c])
+				break;
+			heap[i] = c;
+			pos[c] = i;
+			i = child;
+		}
+		heap[i] = item;
+		pos[item] = i;
+	}
+}
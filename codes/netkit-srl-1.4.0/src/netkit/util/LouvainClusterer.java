@@ -0,0 +1,501 @@
+/**
+ * LouvainClusterer.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+/**
+ * Multi-level modularity clustering (Blondel et al., 2008) over the global
+ * node indices of a CSRGraph.  It maximizes the same directed, weighted
+ * modularity as the ModularityClusterer, ignoring self-loops, but runs in
+ * roughly linear time per level rather than by merging one pair of
+ * clusters at a time.
+ * <p>
+ * Each level moves nodes to the neighboring community with the largest
+ * gain in modularity until no sweep over the nodes improves it by more
+ * than MIN_IMPROVEMENT, and then aggregates every community into a single
+ * node of the next level.  Nodes are visited in batches of BATCH_SIZE: the
+ * best move of every node in a batch is found on NetKitEnv.getNumThreads()
+ * threads against the communities at the start of the batch, after which
+ * the moves are applied one at a time, and only if they still improve the
+ * modularity.  Modularity therefore never decreases and the result does
+ * not depend on the number of threads.
+ * <p>
+ * As in the Leiden algorithm (Traag et al., 2019), communities which are
+ * not connected in the end are split into their connected parts, which
+ * can only increase the modularity.
+ */
+public final class LouvainClusterer {
+	private static final Logger logger = NetKitEnv.getLogger(LouvainClusterer.class);
+
+	/** The number of nodes whose moves are found in parallel against the same communities */
+	public static final int BATCH_SIZE = 1024;
+
+	/** The smallest increase in modularity for which another sweep over the nodes is made */
+	public static final double MIN_IMPROVEMENT = 1e-7;
+
+	public final CSRGraph graph;
+	public final int numNodes;
+
+	private volatile boolean stop = false;
+	private final List<int[]> levels = new ArrayList<int[]>();
+	private int[] community = null;
+	private boolean[] connected = null;
+	private int numCommunities = 0;
+	private double modularity = Double.NaN;
+
+	/**
+	 * The adjacency of one level, where the edges between two nodes in
+	 * either direction are combined into a single symmetric weight.
+	 */
+	private static final class Level {
+		final int n;
+		final int[] offsets;
+		final int[] targets;
+		final double[] weights;
+		final double[] kOut;
+		final double[] kIn;
+		final double[] self;
+
+		Level(int n, int[] offsets, int[] targets, double[] weights, double[] kOut, double[] kIn, double[] self) {
+			this.n = n;
+			this.offsets = offsets;
+			this.targets = targets;
+			this.weights = weights;
+			this.kOut = kOut;
+			this.kIn = kIn;
+			this.self = self;
+		}
+
+		int maxDegree() {
+			int max = 0;
+			for(int i=0;i<n;i++)
+				max = Math.max(max, offsets[i+1]-offsets[i]);
+			return max;
+		}
+	}
+
+	public LouvainClusterer(CSRGraph g) {
+		graph = g;
+		numNodes = g.numNodes;
+	}
+
+	/**
+	 * Stop clustering as soon as possible.  The communities found so far
+	 * are kept, but they are not aggregated any further.
+	 */
+	public void stop() { stop = true; }
+
+	/**
+	 * Find the communities.
+	 * @return false if the clustering was stopped before it finished
+	 */
+	public boolean cluster() {
+		stop = false;
+		levels.clear();
+		final Level level0 = buildLevel(graph);
+		double m = 0;
+		for(int i=0;i<numNodes;i++)
+			m += level0.kOut[i];
+
+		final int[] node2comm = new int[numNodes];
+		for(int i=0;i<numNodes;i++)
+			node2comm[i] = i;
+
+		if(m > 0)
+		{
+			final int numThreads = ParallelUtil.getNumThreads(Math.min(BATCH_SIZE,numNodes));
+			final ExecutorService pool = (numThreads > 1 ? ParallelUtil.newDaemonPool(numThreads) : null);
+			try
+			{
+				Level g = level0;
+				while(!stop)
+				{
+					final int[] comm = new int[g.n];
+					if(!moveNodes(g, comm, m, pool, numThreads))
+						break;
+					final int k = renumber(comm);
+					for(int v=0;v<numNodes;v++)
+						node2comm[v] = comm[node2comm[v]];
+					levels.add(node2comm.clone());
+					logger.fine("level "+levels.size()+": "+g.n+" nodes in "+k+" communities");
+					if(k == g.n)
+						break;
+					g = aggregate(g, comm, k);
+				}
+			}
+			finally
+			{
+				if(pool != null)
+					pool.shutdownNow();
+			}
+		}
+
+		split(level0, node2comm);
+		modularity = modularity(level0, community, numCommunities, m);
+		logger.fine("found "+numCommunities+" communities in "+levels.size()+" levels, modularity="+modularity);
+		return !stop;
+	}
+
+	/**
+	 * Build the first level from the out-edges of the graph, leaving out
+	 * self-loops.
+	 */
+	private static Level buildLevel(CSRGraph g) {
+		final CSRGraph out = g.sortByTarget();
+		final CSRGraph in = out.transpose(); // rows sorted by source
+		final int n = g.numNodes;
+		final double[] kOut = new double[n];
+		final double[] kIn = new double[n];
+		final int[] offsets = new int[n+1];
+		final int[] targets = new int[out.numEdges+in.numEdges];
+		final double[] weights = new double[out.numEdges+in.numEdges];
+		int m = 0;
+		for(int v=0;v<n;v++)
+		{
+			offsets[v] = m;
+			int p = out.offsets[v];
+			int q = in.offsets[v];
+			final int pEnd = out.offsets[v+1];
+			final int qEnd = in.offsets[v+1];
+			while(p < pEnd || q < qEnd)
+			{
+				final int t;
+				double w = 0;
+				if(q == qEnd || (p < pEnd && out.targets[p] <= in.targets[q]))
+				{
+					t = out.targets[p];
+					if(t != v)
+						kOut[v] += out.weights[p];
+					w = out.weights[p++];
+				}
+				else
+				{
+					t = in.targets[q];
+					if(t != v)
+						kIn[v] += in.weights[q];
+					w = in.weights[q++];
+				}
+				if(t == v)
+					continue;
+				if(m > offsets[v] && targets[m-1] == t)
+					weights[m-1] += w;
+				else
+				{
+					targets[m] = t;
+					weights[m] = w;
+					m++;
+				}
+			}
+		}
+		offsets[n] = m;
+		return new Level(n, offsets, Arrays.copyOf(targets,m), Arrays.copyOf(weights,m), kOut, kIn, new double[n]);
+	}
+
+	/**
+	 * Move nodes between communities until the modularity no longer
+	 * improves.  All nodes start out in a community of their own.
+	 * @return true if any node was moved
+	 */
+	private boolean moveNodes(final Level g, final int[] comm, final double m, final ExecutorService pool, final int numThreads) {
+		final double[] totOut = g.kOut.clone();
+		final double[] totIn = g.kIn.clone();
+		for(int i=0;i<g.n;i++)
+			comm[i] = i;
+
+		final double epsilon = 1e-12*m;
+		final int[] proposal = new int[BATCH_SIZE];
+		final int[] batch = new int[2];
+		final int maxDegree = g.maxDegree();
+
+		final List<Callable<Boolean>> workers = new ArrayList<Callable<Boolean>>(numThreads);
+		for(int t=0;t<numThreads;t++)
+		{
+			final int first = t;
+			final int step = numThreads;
+			workers.add(new Callable<Boolean>() {
+				private final double[] acc = new double[g.n];
+				private final int[] touched = new int[maxDegree];
+				public Boolean call() {
+					final int start = batch[0];
+					for(int i=start+first;i<batch[1];i+=step)
+					{
+						if(stop)
+							return false;
+						final int a = comm[i];
+						int numTouched = 0;
+						for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+						{
+							final int c = comm[g.targets[k]];
+							if(acc[c] == 0)
+								touched[numTouched++] = c;
+							acc[c] += g.weights[k];
+						}
+						final double kOut = g.kOut[i];
+						final double kIn = g.kIn[i];
+						double bestGain = acc[a] - (kOut*(totIn[a]-kIn) + kIn*(totOut[a]-kOut))/m + epsilon;
+						int best = -1;
+						for(int j=0;j<numTouched;j++)
+						{
+							final int c = touched[j];
+							if(c == a)
+								continue;
+							final double gain = acc[c] - (kOut*totIn[c] + kIn*totOut[c])/m;
+							if(gain > bestGain)
+							{
+								bestGain = gain;
+								best = c;
+							}
+						}
+						for(int j=0;j<numTouched;j++)
+							acc[touched[j]] = 0;
+						acc[a] = 0;
+						proposal[i-start] = best;
+					}
+					return true;
+				}
+			});
+		}
+
+		boolean moved = false;
+		while(!stop)
+		{
+			double improvement = 0;
+			for(int start=0;start<g.n && !stop;start+=BATCH_SIZE)
+			{
+				final int end = Math.min(g.n, start+BATCH_SIZE);
+				batch[0] = start;
+				batch[1] = end;
+				ParallelUtil.invokeAll(pool, workers);
+				if(stop)
+					break;
+
+				// the other moves in the batch may have made this one worse, so check it again
+				for(int i=start;i<end;i++)
+				{
+					final int b = proposal[i-start];
+					if(b < 0)
+						continue;
+					final int a = comm[i];
+					double wa = 0;
+					double wb = 0;
+					for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+					{
+						final int c = comm[g.targets[k]];
+						if(c == a)
+							wa += g.weights[k];
+						else if(c == b)
+							wb += g.weights[k];
+					}
+					final double kOut = g.kOut[i];
+					final double kIn = g.kIn[i];
+					final double ga = wa - (kOut*(totIn[a]-kIn) + kIn*(totOut[a]-kOut))/m;
+					final double gb = wb - (kOut*totIn[b] + kIn*totOut[b])/m;
+					if(gb <= ga + epsilon)
+						continue;
+					totOut[a] -= kOut;
+					totIn[a] -= kIn;
+					totOut[b] += kOut;
+					totIn[b] += kIn;
+					comm[i] = b;
+					improvement += gb-ga;
+					moved = true;
+				}
+			}
+			if(improvement/m < MIN_IMPROVEMENT)
+				break;
+		}
+		return moved;
+	}
+
+	/**
+	 * Number the communities 0..k-1 in the order of their first node.
+	 * @return the number of communities
+	 */
+	private static int renumber(final int[] comm) {
+		final int[] map = new int[comm.length];
+		Arrays.fill(map, -1);
+		int k = 0;
+		for(int i=0;i<comm.length;i++)
+		{
+			if(map[comm[i]] == -1)
+				map[comm[i]] = k++;
+			comm[i] = map[comm[i]];
+		}
+		return k;
+	}
+
+	/**
+	 * Build the next level, where every community is a node whose self-loop
+	 * holds the weight of the edges within the community.
+	 */
+	private static Level aggregate(final Level g, final int[] comm, final int k) {
+		final int[] start = new int[k+1];
+		for(int i=0;i<g.n;i++)
+			start[comm[i]+1]++;
+		for(int c=0;c<k;c++)
+			start[c+1] += start[c];
+		final int[] members = new int[g.n];
+		final int[] next = Arrays.copyOf(start, k);
+		for(int i=0;i<g.n;i++)
+			members[next[comm[i]]++] = i;
+
+		final double[] kOut = new double[k];
+		final double[] kIn = new double[k];
+		final double[] self = new double[k];
+		final int[] offsets = new int[k+1];
+		final int[] targets = new int[g.targets.length];
+		final double[] weights = new double[g.targets.length];
+		final double[] acc = new double[k];
+		final int[] touched = new int[k];
+		int m = 0;
+		for(int c=0;c<k;c++)
+		{
+			offsets[c] = m;
+			int numTouched = 0;
+			double internal = 0;
+			for(int j=start[c];j<start[c+1];j++)
+			{
+				final int i = members[j];
+				kOut[c] += g.kOut[i];
+				kIn[c] += g.kIn[i];
+				self[c] += g.self[i];
+				for(int e=g.offsets[i];e<g.offsets[i+1];e++)
+				{
+					final int d = comm[g.targets[e]];
+					if(d == c)
+						internal += g.weights[e];
+					else
+					{
+						if(acc[d] == 0)
+							touched[numTouched++] = d;
+						acc[d] += g.weights[e];
+					}
+				}
+			}
+			// every edge within the community was seen from both of its ends
+			self[c] += internal/2;
+			for(int j=0;j<numTouched;j++)
+			{
+				targets[m] = touched[j];
+				weights[m] = acc[touched[j]];
+				acc[touched[j]] = 0;
+				m++;
+			}
+		}
+		offsets[k] = m;
+		return new Level(k, offsets, Arrays.copyOf(targets,m), Arrays.copyOf(weights,m), kOut, kIn, self);
+	}
+
+	/**
+	 * Split the communities of the first level into their connected parts
+	 * and find which of them have edges to other communities.
+	 */
+	private void split(final Level g, final int[] node2comm) {
+		final Components parts = new Components(numNodes);
+		for(int v=0;v<numNodes;v++)
+			for(int k=g.offsets[v];k<g.offsets[v+1];k++)
+				if(node2comm[v] == node2comm[g.targets[k]])
+					parts.union(v, g.targets[k]);
+
+		numCommunities = parts.getNumComponents();
+		community = new int[numNodes];
+		connected = new boolean[numCommunities];
+		for(int v=0;v<numNodes;v++)
+			community[v] = parts.getComponent(v);
+		for(int v=0;v<numNodes;v++)
+			for(int k=g.offsets[v];k<g.offsets[v+1];k++)
+				if(community[v] != community[g.targets[k]])
+					connected[community[v]] = true;
+	}
+
+	private static double modularity(final Level g, final int[] comm, final int k, final double m) {
+		if(m == 0)
+			return 0;
+		final double[] totOut = new double[k];
+		final double[] totIn = new double[k];
+		double internal = 0;
+		for(int i=0;i<g.n;i++)
+		{
+			totOut[comm[i]] += g.kOut[i];
+			totIn[comm[i]] += g.kIn[i];
+			internal += g.self[i];
+			for(int e=g.offsets[i];e<g.offsets[i+1];e++)
+				if(comm[g.targets[e]] == comm[i])
+					internal += g.weights[e]/2;
+		}
+		double expected = 0;
+		for(int c=0;c<k;c++)
+			expected += totOut[c]*totIn[c];
+		return (internal - expected/m)/m;
+	}
+
+	/**
+	 * @return the number of levels, each of which aggregated the communities of the previous one
+	 */
+	public int getNumLevels() {
+		return levels.size();
+	}
+
+	/**
+	 * The communities of the nodes after the given level, before they are
+	 * split into their connected parts.  The communities of a level are
+	 * unions of the communities of the level before it.  The array must
+	 * not be modified.
+	 * @param level the level, from 0 to getNumLevels()-1
+	 * @return the community of each node, by its global index
+	 */
+	public int[] getLevel(int level) {
+		return levels.get(level);
+	}
+
+	/**
+	 * The final communities, numbered by their smallest node index.  The
+	 * array must not be modified.
+	 * @return the community of each node, by its global index
+	 */
+	public int[] getCommunities() {
+		return community;
+	}
+
+	public int getNumCommunities() {
+		return numCommunities;
+	}
+
+	/**
+	 * @return true if there is an edge between the given community and another community
+	 */
+	public boolean isConnected(int community) {
+		return connected[community];
+	}
+
+	/**
+	 * @return the modularity of the final communities
+	 */
+	public double getModularity() {
+		return modularity;
+	}
+}
@@ -0,0 +1,561 @@
+/**
+ * MixingMatrices.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import netkit.graph.*;
+import netkit.classifiers.Classification;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The class-mixing matrices (Newman, 2003 "Mixing patterns in networks")
+ * of all edge types between the nodes of one node type at once, from
+ * which the edge-based and node-based assortativity coefficients of
+ * GraphMetrics are computed.  The edges are read in a single pass over the
+ * graph when the MixingMatrices are created.  After that, the matrices are
+ * updated as labels are revealed or hidden, at the cost of the edges of
+ * the nodes whose labels change, such that moving from one data split to
+ * the next does not go over the whole graph again.
+ * <p>
+ * The matrices only cover the edge types whose source and destination are
+ * of the given node type, and must be recreated when the graph changes.
+ * GraphMetrics.getMixingMatrices keeps the edges around for the current
+ * version of the graph and hands each caller its own known labels on them,
+ * which the caller should keep for as long as it moves between labelings.
+ * The known labels are not thread-safe.
+ * @see GraphMetrics#calculateEdgeBasedAssortativityCoeff(Classification, EdgeType)
+ * @see GraphMetrics#calculateNodeBasedAssortativityCoeff(Classification, EdgeType)
+ */
+public final class MixingMatrices {
+	public final Graph graph;
+	public final String nodeType;
+	public final AttributeCategorical attribute;
+	public final long graphVersion;
+
+	private final int numNodes;
+	private final int numC;
+	private final EdgeType[] edgeTypes;
+	private final Map<String,Integer> edgeTypeIndex = new HashMap<String,Integer>();
+	private final Node[] nodes;
+
+	// the out- and in-edges of each edge type over node indices
+	private final int[][] outOffsets;
+	private final int[][] outTargets;
+	private final double[][] outWeights;
+	private final int[][] inOffsets;
+	private final int[][] inSources;
+	private final double[][] inWeights;
+
+	private final int[] label;
+	private int numKnown = 0;
+
+	// edge-based counts, [edgetype][c1][c2] and their totals
+	private final double[][][] edgeCount;
+	private final double[][][] edgeWeight;
+	private final double[] numEdges;
+	private final double[] sumWeights;
+
+	// the known neighbors of each node by class, [edgetype][node*numC+c]
+	private final double[][] nbrCount;
+	private final double[][] nbrWeight;
+	private final int[][] nbrDegree;
+
+	// node-based sums of normalized neighbor distributions, [edgetype or all][c1][c2]
+	private final double[][][] nodeCount;
+	private final double[][][] nodeWeight;
+	private final int[] numSources;
+
+	// scratch space for one neighbor distribution and marking affected nodes
+	private final double[] dist;
+	private final int[] mark;
+	private int stamp = 0;
+
+	/**
+	 * Read the edges between nodes of the given type, with all labels unknown.
+	 * @param graph
+	 * @param nodeType
+	 * @param attribute the class attribute
+	 */
+	public MixingMatrices(Graph graph, String nodeType, AttributeCategorical attribute) {
+		this.graph = graph;
+		this.nodeType = nodeType;
+		this.attribute = attribute;
+		graphVersion = graph.getVersion();
+		numNodes = graph.numNodes(nodeType);
+		numC = attribute.size();
+		nodes = graph.getNodes(nodeType);
+		edgeTypes = graph.getEdgeTypes(nodeType, nodeType);
+		final int numT = edgeTypes.length;
+		for(int t=0;t<numT;t++)
+			edgeTypeIndex.put(edgeTypes[t].getName(), t);
+
+		// count the edges of each type from every node
+		outOffsets = new int[numT][numNodes+1];
+		inOffsets = new int[numT][numNodes+1];
+		for(Node node : nodes)
+		{
+			for(Edge e : node.getEdges())
+			{
+				final Integer t = edgeTypeIndex.get(e.getEdgeType().getName());
+				if(t == null)
+					continue;
+				outOffsets[t][node.getIndex()+1]++;
+				inOffsets[t][e.getDest().getIndex()+1]++;
+			}
+		}
+		outTargets = new int[numT][];
+		outWeights = new double[numT][];
+		inSources = new int[numT][];
+		inWeights = new double[numT][];
+		final int[][] outNext = new int[numT][];
+		final int[][] inNext = new int[numT][];
+		for(int t=0;t<numT;t++)
+		{
+			for(int i=0;i<numNodes;i++)
+			{
+				outOffsets[t][i+1] += outOffsets[t][i];
+				inOffsets[t][i+1] += inOffsets[t][i];
+			}
+			outTargets[t] = new int[outOffsets[t][numNodes]];
+			outWeights[t] = new double[outOffsets[t][numNodes]];
+			inSources[t] = new int[inOffsets[t][numNodes]];
+			inWeights[t] = new double[inOffsets[t][numNodes]];
+			outNext[t] = Arrays.copyOf(outOffsets[t], numNodes);
+			inNext[t] = Arrays.copyOf(inOffsets[t], numNodes);
+		}
+		for(Node node : nodes)
+		{
+			final int src = node.getIndex();
+			for(Edge e : node.getEdges())
+			{
+				final Integer t = edgeTypeIndex.get(e.getEdgeType().getName());
+				if(t == null)
+					continue;
+				final int dst = e.getDest().getIndex();
+				final int o = outNext[t][src]++;
+				outTargets[t][o] = dst;
+				outWeights[t][o] = e.getWeight();
+				final int i = inNext[t][dst]++;
+				inSources[t][i] = src;
+				inWeights[t][i] = e.getWeight();
+			}
+		}
+
+		label = new int[numNodes];
+		Arrays.fill(label, -1);
+		edgeCount = new double[numT][numC][numC];
+		edgeWeight = new double[numT][numC][numC];
+		numEdges = new double[numT];
+		sumWeights = new double[numT];
+		nbrCount = new double[numT][numNodes*numC];
+		nbrWeight = new double[numT][numNodes*numC];
+		nbrDegree = new int[numT][numNodes];
+		nodeCount = new double[numT+1][numC][numC];
+		nodeWeight = new double[numT+1][numC][numC];
+		numSources = new int[numT+1];
+		dist = new double[numC];
+		mark = new int[numNodes];
+	}
+
+	/**
+	 * Share the edges of the given matrices, with all labels unknown.
+	 * @param edges the matrices whose edges to use
+	 */
+	MixingMatrices(MixingMatrices edges) {
+		graph = edges.graph;
+		nodeType = edges.nodeType;
+		attribute = edges.attribute;
+		graphVersion = edges.graphVersion;
+		numNodes = edges.numNodes;
+		numC = edges.numC;
+		nodes = edges.nodes;
+		edgeTypes = edges.edgeTypes;
+		edgeTypeIndex.putAll(edges.edgeTypeIndex);
+		outOffsets = edges.outOffsets;
+		outTargets = edges.outTargets;
+		outWeights = edges.outWeights;
+		inOffsets = edges.inOffsets;
+		inSources = edges.inSources;
+		inWeights = edges.inWeights;
+
+		final int numT = edgeTypes.length;
+		label = new int[numNodes];
+		Arrays.fill(label, -1);
+		edgeCount = new double[numT][numC][numC];
+		edgeWeight = new double[numT][numC][numC];
+		numEdges = new double[numT];
+		sumWeights = new double[numT];
+		nbrCount = new double[numT][numNodes*numC];
+		nbrWeight = new double[numT][numNodes*numC];
+		nbrDegree = new int[numT][numNodes];
+		nodeCount = new double[numT+1][numC][numC];
+		nodeWeight = new double[numT+1][numC][numC];
+		numSources = new int[numT+1];
+		dist = new double[numC];
+		mark = new int[numNodes];
+	}
+
+	/**
+	 * @return the edge types covered, whose source and destination are of the node type
+	 */
+	public EdgeType[] getEdgeTypes() {
+		return edgeTypes.clone();
+	}
+
+	/**
+	 * @return the number of nodes whose label is known
+	 */
+	public int getNumKnown() {
+		return numKnown;
+	}
+
+	/**
+	 * @return the known label of the given node, or -1 if it is unknown
+	 */
+	public int getClassValue(Node node) {
+		return label[node.getIndex()];
+	}
+
+	/**
+	 * Make the known labels those of the given classification, updating
+	 * the matrices for the nodes whose label changed.  If most labels
+	 * changed, the matrices are recomputed in one pass instead.
+	 * @param known the known labels, over the node type and attribute of these matrices
+	 */
+	public void setKnown(Classification known) {
+		if(!known.getNodeType().equals(nodeType))
+			throw new IllegalArgumentException("Classification is over '"+known.getNodeType()+"' rather than '"+nodeType+"'");
+		final int[] cls = new int[numNodes];
+		int numChanged = 0;
+		for(int i=0;i<numNodes;i++)
+		{
+			cls[i] = known.getClassValue(nodes[i]);
+			if(cls[i] != label[i])
+				numChanged++;
+		}
+		if(numChanged == 0)
+			return;
+		if(numChanged > numNodes/4)
+		{
+			recompute(cls);
+			return;
+		}
+		for(int i=0;i<numNodes;i++)
+			if(cls[i] != label[i])
+				set(i, cls[i]);
+	}
+
+	/**
+	 * Reveal or hide the label of the given node.
+	 * @param node
+	 * @param cls the label, or -1 to hide it
+	 */
+	public void set(Node node, int cls) {
+		if(!node.getType().equals(nodeType))
+			throw new IllegalArgumentException("node["+node+"] is of wrong type.  Expected type '"+nodeType+"'");
+		set(node.getIndex(), cls);
+	}
+
+	private void set(final int v, final int cls) {
+		final int old = label[v];
+		if(old == cls)
+			return;
+		if(cls >= numC)
+			throw new IllegalArgumentException("label "+cls+" is out of range for "+attribute.getName());
+
+		// the node-based rows of v and of every node with an edge to v depend on the label of v
+		stamp++;
+		removeSource(v);
+		for(int t=0;t<edgeTypes.length;t++)
+			for(int k=inOffsets[t][v];k<inOffsets[t][v+1];k++)
+				removeSource(inSources[t][k]);
+
+		for(int t=0;t<edgeTypes.length;t++)
+		{
+			addEdges(t, v, -1);
+			for(int k=inOffsets[t][v];k<inOffsets[t][v+1];k++)
+			{
+				final int u = inSources[t][k];
+				if(old >= 0)
+				{
+					nbrCount[t][u*numC+old]--;
+					nbrWeight[t][u*numC+old] -= inWeights[t][k];
+					nbrDegree[t][u]--;
+				}
+				if(cls >= 0)
+				{
+					nbrCount[t][u*numC+cls]++;
+					nbrWeight[t][u*numC+cls] += inWeights[t][k];
+					nbrDegree[t][u]++;
+				}
+			}
+		}
+
+		label[v] = cls;
+		numKnown += (cls >= 0 ? 1 : 0) - (old >= 0 ? 1 : 0);
+
+		for(int t=0;t<edgeTypes.length;t++)
+			addEdges(t, v, 1);
+		stamp++;
+		addSource(v);
+		for(int t=0;t<edgeTypes.length;t++)
+			for(int k=inOffsets[t][v];k<inOffsets[t][v+1];k++)
+				addSource(inSources[t][k]);
+	}
+
+	/**
+	 * Add (sign 1) or remove (sign -1) the edges of type t into and out of
+	 * v between known nodes.  A self-loop is counted once.
+	 */
+	private void addEdges(final int t, final int v, final int sign) {
+		final int c1 = label[v];
+		if(c1 < 0)
+			return;
+		for(int k=outOffsets[t][v];k<outOffsets[t][v+1];k++)
+		{
+			final int c2 = label[outTargets[t][k]];
+			if(c2 < 0)
+				continue;
+			edgeCount[t][c1][c2] += sign;
+			edgeWeight[t][c1][c2] += sign*outWeights[t][k];
+			numEdges[t] += sign;
+			sumWeights[t] += sign*outWeights[t][k];
+		}
+		for(int k=inOffsets[t][v];k<inOffsets[t][v+1];k++)
+		{
+			final int u = inSources[t][k];
+			final int c0 = label[u];
+			if(c0 < 0 || u == v)
+				continue;
+			edgeCount[t][c0][c1] += sign;
+			edgeWeight[t][c0][c1] += sign*inWeights[t][k];
+			numEdges[t] += sign;
+			sumWeights[t] += sign*inWeights[t][k];
+		}
+	}
+
+	private void removeSource(final int u) {
+		if(mark[u] == stamp)
+			return;
+		mark[u] = stamp;
+		addSource(u, -1);
+	}
+
+	private void addSource(final int u) {
+		if(mark[u] == stamp)
+			return;
+		mark[u] = stamp;
+		addSource(u, 1);
+	}
+
+	/**
+	 * Add (sign 1) or remove (sign -1) the normalized distributions of the
+	 * known neighbors of u to the node-based rows of its label, for each
+	 * edge type and for all of them together.
+	 */
+	private void addSource(final int u, final int sign) {
+		final int c = label[u];
+		if(c < 0)
+			return;
+		final int numT = edgeTypes.length;
+		final int off = u*numC;
+		int degree = 0;
+		for(int t=0;t<numT;t++)
+		{
+			if(nbrDegree[t][u] == 0)
+				continue;
+			degree += nbrDegree[t][u];
+			numSources[t] += sign;
+			addDistribution(nodeCount[t][c], nbrCount[t], off, sign);
+			addDistribution(nodeWeight[t][c], nbrWeight[t], off, sign);
+		}
+		if(degree == 0)
+			return;
+		numSources[numT] += sign;
+		for(int p=0;p<2;p++)
+		{
+			Arrays.fill(dist, 0);
+			for(int t=0;t<numT;t++)
+				for(int j=0;j<numC;j++)
+					dist[j] += (p == 0 ? nbrCount : nbrWeight)[t][off+j];
+			VectorMath.normalize(dist);
+			final double[] row = (p == 0 ? nodeCount : nodeWeight)[numT][c];
+			for(int j=0;j<numC;j++)
+				row[j] += sign*dist[j];
+		}
+	}
+
+	private void addDistribution(final double[] row, final double[] nbr, final int off, final int sign) {
+		System.arraycopy(nbr, off, dist, 0, numC);
+		VectorMath.normalize(dist);
+		for(int j=0;j<numC;j++)
+			row[j] += sign*dist[j];
+	}
+
+	/**
+	 * Set all labels and recompute the matrices in one pass over the edges.
+	 */
+	private void recompute(final int[] cls) {
+		final int numT = edgeTypes.length;
+		System.arraycopy(cls, 0, label, 0, numNodes);
+		numKnown = 0;
+		for(int c : label)
+			if(c >= 0)
+				numKnown++;
+		for(int t=0;t<numT;t++)
+		{
+			for(double[] row : edgeCount[t])
+				Arrays.fill(row, 0);
+			for(double[] row : edgeWeight[t])
+				Arrays.fill(row, 0);
+			numEdges[t] = 0;
+			sumWeights[t] = 0;
+			Arrays.fill(nbrCount[t], 0);
+			Arrays.fill(nbrWeight[t], 0);
+			Arrays.fill(nbrDegree[t], 0);
+			for(int v=0;v<numNodes;v++)
+			{
+				final int c1 = label[v];
+				if(c1 < 0)
+					continue;
+				for(int k=outOffsets[t][v];k<outOffsets[t][v+1];k++)
+				{
+					final int c2 = label[outTargets[t][k]];
+					if(c2 < 0)
+						continue;
+					final double w = outWeights[t][k];
+					edgeCount[t][c1][c2]++;
+					edgeWeight[t][c1][c2] += w;
+					numEdges[t]++;
+					sumWeights[t] += w;
+				}
+			}
+			// every node's neighbors, whether or not the node itself is known
+			for(int v=0;v<numNodes;v++)
+			{
+				for(int k=outOffsets[t][v];k<outOffsets[t][v+1];k++)
+				{
+					final int c2 = label[outTargets[t][k]];
+					if(c2 < 0)
+						continue;
+					nbrCount[t][v*numC+c2]++;
+					nbrWeight[t][v*numC+c2] += outWeights[t][k];
+					nbrDegree[t][v]++;
+				}
+			}
+		}
+		for(int t=0;t<=numT;t++)
+		{
+			for(double[] row : nodeCount[t])
+				Arrays.fill(row, 0);
+			for(double[] row : nodeWeight[t])
+				Arrays.fill(row, 0);
+			numSources[t] = 0;
+		}
+		stamp++;
+		for(int v=0;v<numNodes;v++)
+			addSource(v);
+	}
+
+	private int index(EdgeType et) {
+		if(et == null)
+			return edgeTypes.length;
+		final Integer t = edgeTypeIndex.get(et.getName());
+		return (t == null ? -1 : t);
+	}
+
+	/**
+	 * The edge-based mixing matrix, where entry [c1][c2] is the fraction of
+	 * the edges between known nodes which go from class c1 to class c2.
+	 * @param et the edge type, or null for all edge types between nodes of the node type
+	 * @param weighted whether to count edges by their weight
+	 * @return the matrix, or null if the edge type is not covered
+	 */
+	public double[][] getEdgeMixingMatrix(EdgeType et, boolean weighted) {
+		final int t = index(et);
+		if(t < 0)
+			return null;
+		final double[][] matrix = new double[numC][numC];
+		double tot = 0;
+		final int first = (t == edgeTypes.length ? 0 : t);
+		final int last = (t == edgeTypes.length ? edgeTypes.length : t+1);
+		for(int s=first;s<last;s++)
+		{
+			final double[][] counts = (weighted ? edgeWeight[s] : edgeCount[s]);
+			for(int c1=0;c1<numC;c1++)
+				VectorMath.add(matrix[c1], counts[c1]);
+			tot += (weighted ? sumWeights[s] : numEdges[s]);
+		}
+		for(double[] row : matrix)
+			VectorMath.divide(row, tot);
+		return matrix;
+	}
+
+	/**
+	 * The node-based mixing matrix, where row c1 is the sum of the class
+	 * distributions of the known neighbors of the known nodes of class c1,
+	 * normalized as in GraphMetrics.calculateNodeBasedAssortativityCoeff.
+	 * @param et the edge type, or null for all edge types between nodes of the node type
+	 * @param weighted whether to weigh neighbors by the weight of their edge
+	 * @return the matrix, or null if the edge type is not covered
+	 */
+	public double[][] getNodeMixingMatrix(EdgeType et, boolean weighted) {
+		final int t = index(et);
+		if(t < 0)
+			return null;
+		final double[][] matrix = new double[numC][];
+		final double num = (double)numSources[t]*numC;
+		for(int c1=0;c1<numC;c1++)
+		{
+			matrix[c1] = (weighted ? nodeWeight[t][c1] : nodeCount[t][c1]).clone();
+			VectorMath.divide(matrix[c1], num);
+		}
+		return matrix;
+	}
+
+	/**
+	 * @param et the edge type, or null for all edge types between nodes of the node type
+	 * @return the unweighted and weighted edge-based assortativity coefficients
+	 * @see GraphMetrics#calculateEdgeBasedAssortativityCoeff(Classification, EdgeType)
+	 */
+	public double[] getEdgeBasedAssortativity(EdgeType et) {
+		if(numKnown == 0 || index(et) < 0)
+			return new double[]{Double.NaN, Double.NaN};
+		return new double[]{
+			GraphMetrics.computeAssortativityFromMatrix(getEdgeMixingMatrix(et, false)),
+			GraphMetrics.computeAssortativityFromMatrix(getEdgeMixingMatrix(et, true)) };
+	}
+
+	/**
+	 * @param et the edge type, or null for all edge types between nodes of the node type
+	 * @return the unweighted and weighted node-based assortativity coefficients
+	 * @see GraphMetrics#calculateNodeBasedAssortativityCoeff(Classification, EdgeType)
+	 */
+	public double[] getNodeBasedAssortativity(EdgeType et) {
+		if(numKnown == 0 || index(et) < 0)
+			return new double[]{Double.NaN, Double.NaN};
+		return new double[]{
+			GraphMetrics.computeAssortativityFromMatrix(getNodeMixingMatrix(et, false)),
+			GraphMetrics.computeAssortativityFromMatrix(getNodeMixingMatrix(et, true)) };
+	}
+}
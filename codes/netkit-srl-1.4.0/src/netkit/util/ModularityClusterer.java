@@ -11,6 +11,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -34,9 +35,20 @@ import com.fetch.common.structures.TinyIdentityMap;
  * 
  * Self-loops are ignored.  All edges are directed.  For bidirectional edges,
  * use two opposite edges with equal weights.
+ * <p>
+ * The clusters can be found by one of two methods:
+ * <ul>
+ * <li><code>CNM</code> --- greedily merge the pair of clusters which increases
+ *     modularity the most, until no merge increases it (default)
+ * <li><code>Louvain</code> --- multi-level clustering by the LouvainClusterer,
+ *     which scales to much larger graphs.  The dendrogram of each cluster
+ *     follows the levels of the LouvainClusterer, where the clusters of a
+ *     level are merged pairwise into the cluster of the next level.
+ * </ul>
  * 
  * @see A. Clauset, M. Newman and C. Moore, "Finding community structure in
  *      very large networks." 
+ * @see LouvainClusterer
  * 
  * @author Evan Gamble (egamble@fetch.com)
  * @author Sofus A. Macskassy (sofmac@gmail.com)
@@ -47,6 +59,8 @@ public final class ModularityClusterer {
   private static final double clusterPct = 0.9;
   private static final double summaryPct = 0.005;
   
+  public static enum Method { CNM, Louvain };
+
   private final Logger logger = NetKitEnv.getLogger(this);
   
   // max heap containing the max ClusterEdge from each cluster
@@ -70,13 +84,20 @@ public final class ModularityClusterer {
   private double pctDone = 0D;
   
   private final Graph graph;
+  private final Method method;
+  private volatile LouvainClusterer louvain = null;
   
   private boolean stop = false;
   private boolean active = false;
   private final Object lock = new Object();
 
   public ModularityClusterer(Graph g) {
+    this(g, Method.CNM);
+  }
+
+  public ModularityClusterer(Graph g, Method method) {
     this.graph = g;
+    this.method = method;
   }
   
   public void startClustering() {
@@ -100,9 +121,15 @@ public final class ModularityClusterer {
     numSingletons = 0;
     stop = false;
 
-    cluster();
-    if(!stop)
-      summarize();
+    if(method == Method.Louvain) {
+      clusterLouvain();
+      if(!stop)
+        summarizeClusters();
+    } else {
+      cluster();
+      if(!stop)
+        summarize();
+    }
     
     if(!stop)
       pctDone = 1.0D;
@@ -121,9 +148,15 @@ public final class ModularityClusterer {
   public int getNumClusterNodes() { return numClusterNodes; }
   public int getNumSingletons() { return numSingletons; }
   public Graph getGraph() { return graph; }
+  public Method getMethod() { return method; }
   public double percentDone() { return pctDone; }
   public boolean isActive() { return active; }
-  public void stop() { stop = true; }
+  public void stop() {
+    stop = true;
+    final LouvainClusterer lc = louvain;
+    if(lc != null)
+      lc.stop();
+  }
 
   private void cluster() {
     // pctDone is initPct after initialize()
@@ -186,6 +219,12 @@ public final class ModularityClusterer {
       connectedClusters.add(c2);
     }
 
+    majorMaxHeap = null;
+    summarizeClusters();
+  }
+
+  private void summarizeClusters()
+  {
     numConnectedClusters = 0;
     numIsolatedClusters = 0;
     numClusterNodes = 0;
@@ -219,11 +258,88 @@ public final class ModularityClusterer {
       numIsolatedClusters++;
     }
 
-    majorMaxHeap = null;
-
     pctDone = 1D;
   }
 
+  /**
+   * Find the clusters with the LouvainClusterer and build their dendrograms
+   * from its levels.  At each level, the clusters of the nodes which are in
+   * the same community (and end up in the same final community) are merged
+   * pairwise into a balanced tree.
+   */
+  private void clusterLouvain() {
+    logger.fine("clusterLouvain() build CSR graph");
+    final CSRGraph csr = new CSRGraph(graph);
+    final int numNodes = csr.numNodes;
+    final LouvainClusterer lc = new LouvainClusterer(csr);
+    louvain = lc;
+    if(stop)
+      return;
+    pctDone = initPct;
+    final boolean done = lc.cluster();
+    louvain = null;
+    if(stop || !done)
+      return;
+    pctDone = initPct + clusterPct/2;
+
+    final int[] community = lc.getCommunities();
+    List<Cluster> units = new ArrayList<Cluster>(numNodes);
+    List<Integer> reps = new ArrayList<Integer>(numNodes);
+    for(int v=0;v<numNodes;v++) {
+      units.add(new Cluster(csr.getNode(v),null,null));
+      reps.add(v);
+    }
+
+    // the last pass groups by the final communities alone
+    for(int level=0;level<=lc.getNumLevels();level++) {
+      if(stop)
+        return;
+      final int[] label = (level<lc.getNumLevels() ? lc.getLevel(level) : null);
+      final Map<Long,Integer> groupIdx = new HashMap<Long,Integer>();
+      final List<List<Cluster>> groups = new ArrayList<List<Cluster>>();
+      final List<Integer> groupReps = new ArrayList<Integer>();
+      for(int u=0;u<units.size();u++) {
+        final int rep = reps.get(u);
+        final long key = (long)community[rep]*numNodes + (label==null ? 0 : label[rep]);
+        Integer g = groupIdx.get(key);
+        if(g == null) {
+          g = groups.size();
+          groupIdx.put(key,g);
+          groups.add(new ArrayList<Cluster>());
+          groupReps.add(rep);
+        }
+        groups.get(g).add(units.get(u));
+      }
+      units = new ArrayList<Cluster>(groups.size());
+      for(List<Cluster> group : groups)
+        units.add(mergeClusters(group));
+      reps = groupReps;
+    }
+
+    // the final communities are numbered by their smallest node, which is also the order of the groups
+    connectedClusters = new LinkedHashSet<Cluster>();
+    isolatedClusters = new LinkedHashSet<Cluster>();
+    for(int u=0;u<units.size();u++) {
+      if(lc.isConnected(community[reps.get(u)]))
+        connectedClusters.add(units.get(u));
+      else
+        isolatedClusters.add(units.get(u));
+    }
+    pctDone = initPct+clusterPct;
+  }
+
+  private Cluster mergeClusters(List<Cluster> clusters) {
+    while(clusters.size() > 1) {
+      final List<Cluster> merged = new ArrayList<Cluster>((clusters.size()+1)/2);
+      for(int i=0;i+1<clusters.size();i+=2)
+        merged.add(new Cluster(null,clusters.get(i),clusters.get(i+1)));
+      if(clusters.size()%2 == 1)
+        merged.add(clusters.get(clusters.size()-1));
+      clusters = merged;
+    }
+    return clusters.get(0);
+  }
+
   private void addNodeCluster(List<Set<Node>> clusters, Cluster c) {
     Set<Node> nodeCluster = new HashSet<Node>();
 
@@ -509,6 +625,16 @@ public final class ModularityClusterer {
     }
 
     
+    // this constructor creates a cluster found by the LouvainClusterer: a leaf if node is not null, otherwise the merge of the two children
+    private Cluster(Node node, Cluster child1, Cluster child2) {
+      this.node = node;
+      this.child1 = child1;
+      this.child2 = child2;
+      size = (node == null ? child1.size + child2.size : 1);
+      edgeEnds = null;
+      minorMaxHeap = null;
+    }
+
     // this constructor creates a new cluster by merging the two clusters from the max cluster edge in majorMaxHeap
     private Cluster() {
       node = null;
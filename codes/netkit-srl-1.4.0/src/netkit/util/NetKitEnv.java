@@ -58,6 +58,7 @@ public final class NetKitEnv {
     private static Properties loggingProperties = null;
     public static final PrintWriter systemOut = new PrintWriter(System.out, true);
     private static PrintWriter stdOut = new PrintWriter(System.out, true);
+    private static int numThreads = Runtime.getRuntime().availableProcessors();
 
     static {
         newline = System.getProperty("line.separator");
@@ -273,6 +274,19 @@ public final class NetKitEnv {
       stdOut = (pw == null) ? stdOut : pw;
     }
     
+    /**
+     * @return the number of worker threads to use for parallel computations.
+     * Defaults to the number of available processors.
+     */
+    public static int getNumThreads() {
+      return numThreads;
+    }
+    
+    public static void setNumThreads(final int n) {
+      numThreads = (n < 1) ? 1 : n;
+      logger.config("Using "+numThreads+" worker threads");
+    }
+    
     public static PrintWriter getPrintWriter(final String s) {   
       if(s == null)
         return stdOut;
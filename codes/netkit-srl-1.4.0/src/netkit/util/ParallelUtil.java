@@ -0,0 +1,134 @@
+/**
+ * ParallelUtil.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Small helpers to run independent pieces of a computation on
+ * NetKitEnv.getNumThreads() worker threads.
+ */
+public final class ParallelUtil {
+	private ParallelUtil() {}
+
+	/**
+	 * @param numTasks the number of independent tasks available
+	 * @return the number of threads to use for the given number of tasks
+	 */
+	public static int getNumThreads(int numTasks) {
+		return Math.max(1,Math.min(NetKitEnv.getNumThreads(),numTasks));
+	}
+
+	/**
+	 * Create a pool of the given number of daemon threads.  This is for
+	 * objects which keep a pool around across calls and have no point at
+	 * which they are closed, such that the pool does not keep the JVM from
+	 * exiting.  The pool should still be shut down when it is replaced.
+	 */
+	public static ExecutorService newDaemonPool(int numThreads) {
+		return Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			private final ThreadFactory factory = Executors.defaultThreadFactory();
+			public Thread newThread(Runnable r) {
+				Thread t = factory.newThread(r);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Run the given tasks and wait for all of them to finish.  A single task
+	 * is run in the calling thread.  If any task throws an exception, then it
+	 * is rethrown as a RuntimeException.
+	 * @return false if any task returned false or the calling thread was
+	 * interrupted, true otherwise.
+	 */
+	public static boolean invokeAll(List<? extends Callable<Boolean>> tasks) {
+		if(tasks.size() == 1)
+			return invokeAll(null,tasks);
+
+		final ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+		try
+		{
+			return invokeAll(pool,tasks);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Run the given tasks on the given pool and wait for all of them to
+	 * finish.  This is for computations which run many short parallel
+	 * steps, where starting new threads for each step would dominate.  A
+	 * single task, or any tasks if the pool is null, are run in the calling
+	 * thread.
+	 * @return false if any task returned false or the calling thread was
+	 * interrupted, true otherwise.
+	 * @see #invokeAll(List)
+	 */
+	public static boolean invokeAll(ExecutorService pool, List<? extends Callable<Boolean>> tasks) {
+		try
+		{
+			if(pool == null || tasks.size() == 1)
+			{
+				boolean success = true;
+				for(Callable<Boolean> task : tasks)
+					success &= task.call();
+				return success;
+			}
+
+			boolean success = true;
+			for(Future<Boolean> f : pool.invokeAll(tasks))
+				success &= f.get();
+			return success;
+		}
+		catch(InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch(ExecutionException ee)
+		{
+			Throwable cause = ee.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if(cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException(cause.getMessage(),cause);
+		}
+		catch(RuntimeException re)
+		{
+			throw re;
+		}
+		catch(Exception ex)
+		{
+			throw new RuntimeException(ex.getMessage(),ex);
+		}
+	}
+}
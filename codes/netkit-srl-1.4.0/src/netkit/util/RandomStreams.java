@@ -0,0 +1,134 @@
+/**
+ * RandomStreams.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+package netkit.util;
+
+import java.util.Random;
+
+/**
+ * Hands out independent random streams that are derived from the global
+ * seed (<code>VectorMath.getSeed()</code>, which is set by <code>-seed</code>)
+ * and a name plus a list of ids, such as a run and a chain number.  The same
+ * seed, name and ids always give the same stream, no matter which thread asks
+ * for it or in which order the streams are asked for, such that parallel
+ * computations are reproducible as long as each independent piece of work
+ * draws from its own stream.
+ * <p>
+ * The streams are SplitMix64 generators.  Unlike the shared
+ * <code>VectorMath.pickRandom</code>, they do not synchronize, so a stream
+ * must only be used by one thread at a time.
+ */
+public final class RandomStreams {
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private RandomStreams() {}
+
+	// the SplitMix64 finalizer
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * A fast, unsynchronized SplitMix64 generator.  It is a Random so it can be
+	 * used wherever a Random is, but it must not be shared between threads.
+	 */
+	public static final class SplitRandom extends Random {
+		private static final long serialVersionUID = 1L;
+		private long state;
+
+		public SplitRandom(long seed) {
+			super(seed);
+			state = seed;
+		}
+
+		public void setSeed(long seed) {
+			super.setSeed(seed);
+			state = seed;
+		}
+
+		protected int next(int bits) {
+			return (int)(nextLong() >>> (64-bits));
+		}
+
+		public long nextLong() {
+			state += GOLDEN_GAMMA;
+			return mix64(state);
+		}
+
+		public double nextDouble() {
+			return (nextLong() >>> 11) * 0x1.0p-53;
+		}
+
+		/**
+		 * @return a new generator whose stream is independent of this one
+		 */
+		public SplitRandom split() {
+			return new SplitRandom(mix64(nextLong()));
+		}
+	}
+
+	/**
+	 * Get the stream for the given name and ids under the current global seed.
+	 *
+	 * @param name The name of the computation drawing from the stream, e.g. "gibbs"
+	 * @param ids Further ids telling the streams of the computation apart, e.g. a run and a chain
+	 * @return a new generator at the start of the stream
+	 */
+	public static SplitRandom get(String name, long... ids) {
+		long s = mix64(VectorMath.getSeed() + GOLDEN_GAMMA*name.hashCode());
+		for(long id : ids)
+			s = mix64(s + GOLDEN_GAMMA*(id+1));
+		return new SplitRandom(s);
+	}
+
+	private static final ThreadLocal<Random> bound = new ThreadLocal<Random>();
+
+	/**
+	 * Make the given generator the one that the methods of
+	 * <code>VectorMath</code> which are not given a Random, such as the random
+	 * tie-breaks of <code>getMaxIdx</code>, draw from in the calling thread.
+	 * Work that runs concurrently binds its own stream from <code>get</code>
+	 * while it runs, so its draws do not depend on what other threads draw or
+	 * on how many threads there are.
+	 *
+	 * @param r The generator to bind, or null to go back to <code>VectorMath.pickRandom</code>
+	 * @return the generator that was bound before, which the caller should bind
+	 * again when done
+	 */
+	public static Random bind(Random r) {
+		final Random old = bound.get();
+		if(r == null)
+			bound.remove();
+		else
+			bound.set(r);
+		return old;
+	}
+
+	/**
+	 * @return the generator bound to the calling thread, or
+	 * <code>VectorMath.pickRandom</code> if there is none
+	 */
+	public static Random current() {
+		final Random r = bound.get();
+		return ( (r == null) ? VectorMath.pickRandom : r );
+	}
+}
@@ -37,6 +37,16 @@ import java.util.Random;
 
 public class VectorMath {
   private static long seed = System.currentTimeMillis();
+
+  /**
+   * The shared random generator of the methods that are not given one, unless the
+   * calling thread has bound a stream with <code>RandomStreams.bind</code>.  Use the
+   * streams of <code>RandomStreams</code>, which are derived from the same seed,
+   * for anything that runs concurrently or should not depend on what else has
+   * drawn from this generator.
+   *
+   * @see netkit.util.RandomStreams
+   */
   public static Random pickRandom = new Random(seed);
 
   public static double sum(double[] array) {
@@ -115,18 +125,6 @@ public class VectorMath {
       throw new ArithmeticException("invalid alpha="+alpha+" (must lie in the range 0-1 inclusive)");
     double[] result = new double[arr1.length];
     merge(alpha,arr1,arr2,result);
-    if(alpha==1)
-      System.arraycopy(arr2,0,result,0,arr2.length);
-    else if(alpha==0)
-      System.arraycopy(arr1,0,result,0,arr2.length);
-    else
-    {
-      double beta = 1-alpha;
-      for(int c=0;c<result.length;c++)
-      {
-        result[c] = alpha*arr1[c] + beta*arr2[c];
-      }
-    }
     return result;
   }
 
@@ -153,13 +151,42 @@ public class VectorMath {
     else
     {
       double beta = 1-alpha;
-      for(int c=0;c<result.length;c++)
+      for(int c=0;c<arr1.length;c++)
       {
         result[c] = alpha*arr1[c] + beta*arr2[c];
       }
     }
   }
 
+  /**
+   * combine slices of arrays 1 and 2 without allocating:
+   * result[offR+c] = alpha*arr1[off1+c] + (1-alpha)*arr2[off2+c] for c=0..length-1.
+   * The result may be either of the input arrays, such as when merging an old
+   * estimate into a block of new estimates.
+   * @param alpha
+   * @param arr1
+   * @param off1
+   * @param arr2
+   * @param off2
+   * @param result
+   * @param offR
+   * @param length
+   */
+  public static void merge(double alpha, double[] arr1, int off1, double[] arr2, int off2, double[] result, int offR, int length) {
+    if(alpha<0 || alpha>1)
+      throw new ArithmeticException("invalid alpha="+alpha+" (must lie in the range 0-1 inclusive)");
+    if(alpha==1)
+      System.arraycopy(arr1,off1,result,offR,length);
+    else if(alpha==0)
+      System.arraycopy(arr2,off2,result,offR,length);
+    else
+    {
+      final double beta = 1-alpha;
+      for(int c=0;c<length;c++)
+        result[offR+c] = alpha*arr1[off1+c] + beta*arr2[off2+c];
+    }
+  }
+
   public static double l2_length(double[] e) {
     double tot = 0;
     for (double d : e)
@@ -199,6 +226,46 @@ public class VectorMath {
     }
   }
 
+  /**
+   * Normalize <code>e[offset]</code> through <code>e[offset+length-1]</code> in place,
+   * as <code>normalize(double[])</code> does for a whole array.
+   */
+  public static void normalize(double[] e, int offset, int length) {
+    final int end = offset+length;
+    double tot = 0;
+    for (int i=offset;i<end;i++)
+      tot += e[i];
+    normalizeBy(e, offset, length, tot);
+  }
+
+  /**
+   * Normalize <code>e</code> in place given its sum, which callers that
+   * accumulated the values have already computed.  This saves the pass
+   * over the array that <code>normalize(double[])</code> makes to sum it.
+   */
+  public static void normalizeBy(double[] e, double tot) {
+    normalizeBy(e, 0, e.length, tot);
+  }
+
+  /**
+   * Normalize <code>e[offset]</code> through <code>e[offset+length-1]</code> in
+   * place given their sum.
+   */
+  public static void normalizeBy(double[] e, int offset, int length, double tot) {
+    final int end = offset+length;
+    if(tot == 0)
+    {
+      tot = 1.0/(double)length;
+      for(int i=offset;i<end;i++)
+        e[i]=tot;
+    }
+    else if(tot != 1.0)
+    {
+      for(int i=offset;i<end;i++)
+        e[i]/=tot;
+    }
+  }
+
   /**
    * Add array 2 into array 1
    * @param arr1
@@ -308,6 +375,10 @@ public class VectorMath {
   }
   
   public static <T> void randomize(T[] src, T[] dst, int numItems) {
+    randomize(src,dst,numItems,RandomStreams.current());
+  }
+
+  public static <T> void randomize(T[] src, T[] dst, int numItems, Random random) {
     if(src == null)
       return;
     if(numItems > dst.length || numItems > src.length)
@@ -316,7 +387,7 @@ public class VectorMath {
       System.arraycopy(src,0,dst,0,numItems);
     for(int i=0;i<numItems;i++)
     {
-      int j = pickRandom.nextInt(numItems);
+      int j = random.nextInt(numItems);
       final T s = dst[i];
       dst[i] = dst[j];
       dst[j] = s;
@@ -336,6 +407,10 @@ public class VectorMath {
   }
   
   public static void randomize(int[] src, int[] dst, int numItems) {
+    randomize(src,dst,numItems,RandomStreams.current());
+  }
+
+  public static void randomize(int[] src, int[] dst, int numItems, Random random) {
     if(src == null)
       return;
     if(numItems > dst.length || numItems > src.length)
@@ -344,7 +419,7 @@ public class VectorMath {
       System.arraycopy(src,0,dst,0,numItems);
     for(int i=0;i<numItems;i++)
     {
-      int j = pickRandom.nextInt(numItems);
+      int j = random.nextInt(numItems);
       final int s = dst[i];
       dst[i] = dst[j];
       dst[j] = s;
@@ -364,6 +439,10 @@ public class VectorMath {
   }
   
   public static void randomize(double[] src, double[] dst, int numItems) {
+    randomize(src,dst,numItems,RandomStreams.current());
+  }
+
+  public static void randomize(double[] src, double[] dst, int numItems, Random random) {
     if(src == null)
       return;
     if(numItems > dst.length || numItems > src.length)
@@ -372,7 +451,7 @@ public class VectorMath {
       System.arraycopy(src,0,dst,0,numItems);
     for(int i=0;i<numItems;i++)
     {
-      int j = pickRandom.nextInt(numItems);
+      int j = random.nextInt(numItems);
       final double s = dst[i];
       dst[i] = dst[j];
       dst[j] = s;
@@ -382,7 +461,34 @@ public class VectorMath {
   public static int sampleIdx(double[] vals) {
     if(vals == null)
       return -1;
-    double v = sum(vals)*pickRandom.nextDouble();
+    return sampleIdx(vals, sum(vals));
+  }
+
+  /**
+   * Sample an index with probability proportional to its value, given
+   * the sum of the values so that only one pass is made over the array.
+   */
+  public static int sampleIdx(double[] vals, double total) {
+    return sampleIdx(vals,total,RandomStreams.current());
+  }
+
+  /**
+   * Sample an index with probability proportional to its value, drawing from the given random stream.
+   */
+  public static int sampleIdx(double[] vals, Random random) {
+    if(vals == null)
+      return -1;
+    return sampleIdx(vals, sum(vals), random);
+  }
+
+  /**
+   * Sample an index with probability proportional to its value, given the sum of
+   * the values and drawing from the given random stream.
+   */
+  public static int sampleIdx(double[] vals, double total, Random random) {
+    if(vals == null)
+      return -1;
+    double v = total*random.nextDouble();
     double s = 0;
     for(int i=0;i<vals.length;i++)
     {
@@ -393,6 +499,52 @@ public class VectorMath {
     return vals.length-1;
   }
 
+  /**
+   * Fill in the cumulative sums of the given values, cdf[i] = vals[0]+...+vals[i],
+   * such that the same distribution can be sampled many times using
+   * <code>sampleCumulativeIdx</code>.
+   * @return the sum of all values
+   */
+  public static double cumulative(double[] vals, double[] cdf) {
+    double s = 0;
+    for(int i=0;i<vals.length;i++)
+    {
+      s += vals[i];
+      cdf[i] = s;
+    }
+    return s;
+  }
+
+  /**
+   * Sample an index from the cumulative sums made by <code>cumulative</code>, using
+   * a binary search.  This picks the same index as <code>sampleIdx</code> does on
+   * the original values.
+   */
+  public static int sampleCumulativeIdx(double[] cdf) {
+    return sampleCumulativeIdx(cdf,RandomStreams.current());
+  }
+
+  /**
+   * Sample an index from the cumulative sums made by <code>cumulative</code>,
+   * drawing from the given random stream.
+   */
+  public static int sampleCumulativeIdx(double[] cdf, Random random) {
+    if(cdf == null || cdf.length == 0)
+      return -1;
+    double v = cdf[cdf.length-1]*random.nextDouble();
+    int lo = 0;
+    int hi = cdf.length-1;
+    while(lo<hi)
+    {
+      int mid = (lo+hi)>>>1;
+      if(cdf[mid]>=v)
+        hi = mid;
+      else
+        lo = mid+1;
+    }
+    return lo;
+  }
+
   public static int getMaxIdx(double[] vals) {
     if(vals == null)
       return -1;
@@ -402,7 +554,7 @@ public class VectorMath {
     {
       if(vals[i] < m)
         continue;
-      if(vals[i] > m || pickRandom.nextDouble()>0.5)
+      if(vals[i] > m || RandomStreams.current().nextDouble()>0.5)
       {
         m = vals[i];
         mIdx = i;
@@ -411,6 +563,49 @@ public class VectorMath {
     return mIdx;
   }
 
+  /**
+   * Get the index of the largest of <code>vals[offset]</code> through
+   * <code>vals[offset+length-1]</code>, relative to offset, breaking ties at
+   * random as <code>getMaxIdx(double[])</code> does.  The largest value is then
+   * <code>vals[offset+idx]</code>, so no second pass is needed to find it.
+   */
+  public static int getMaxIdx(double[] vals, int offset, int length) {
+    if(vals == null)
+      return -1;
+    double m = vals[offset];
+    int mIdx = 0;
+    for(int i=1;i<length;i++)
+    {
+      final double v = vals[offset+i];
+      if(v < m)
+        continue;
+      if(v > m || RandomStreams.current().nextDouble()>0.5)
+      {
+        m = v;
+        mIdx = i;
+      }
+    }
+    return mIdx;
+  }
+
+  /**
+   * Normalize each of the numRows rows of length rowLength stored one after
+   * the other in the flat array, as a block of estimates is.
+   */
+  public static void normalizeBlock(double[] flat, int numRows, int rowLength) {
+    for(int r=0;r<numRows;r++)
+      normalize(flat, r*rowLength, rowLength);
+  }
+
+  /**
+   * Get the index of the largest value in each of the numRows rows of length
+   * rowLength stored one after the other in the flat array.
+   */
+  public static void getMaxIdxBlock(double[] flat, int numRows, int rowLength, int[] result) {
+    for(int r=0;r<numRows;r++)
+      result[r] = getMaxIdx(flat, r*rowLength, rowLength);
+  }
+
   public static int getMinIdx(double[] vals) {
     if(vals == null)
       return -1;
@@ -420,7 +615,7 @@ public class VectorMath {
     {
       if(vals[i] > m)
         continue;
-      if(vals[i] < m || pickRandom.nextDouble()>0.5)
+      if(vals[i] < m || RandomStreams.current().nextDouble()>0.5)
       {
         m = vals[i];
         mIdx = i;
@@ -459,7 +654,7 @@ public class VectorMath {
     {
       if(vals[i] < m)
         continue;
-      if(vals[i] > m || pickRandom.nextDouble()>0.5)
+      if(vals[i] > m || RandomStreams.current().nextDouble()>0.5)
       {
         m = vals[i];
         mIdx = i;
@@ -477,7 +672,7 @@ public class VectorMath {
     {
       if(vals[i] > m)
         continue;
-      if(vals[i] < m || pickRandom.nextDouble()>0.5)
+      if(vals[i] < m || RandomStreams.current().nextDouble()>0.5)
       {
         m = vals[i];
         mIdx = i;
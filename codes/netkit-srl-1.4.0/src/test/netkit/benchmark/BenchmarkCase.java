@@ -0,0 +1,76 @@
+/**
+ * BenchmarkCase.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.benchmark;
+
+/**
+ * One benchmark of the BenchmarkRunner.  The runner calls setUp once, then
+ * run repeatedly (first to warm up, then to measure) and finally tearDown.
+ * Work which should not be timed, such as building a fresh object for every
+ * run, goes into prepare, which is called before every run.
+ * <p>
+ * run returns a value computed from the work done, which the runner sums
+ * into a checksum such that the JIT cannot drop the work.
+ */
+public abstract class BenchmarkCase
+{
+    private final String name;
+    private final String unit;
+
+    /**
+     * @param name The name of the benchmark, e.g. "wvrn.estimate"
+     * @param unit What an operation is, e.g. "node", such that scores are reported in ns/node
+     */
+    protected BenchmarkCase(String name, String unit)
+    {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    public final String getName()
+    {
+        return name;
+    }
+
+    public final String getUnit()
+    {
+        return unit;
+    }
+
+    public void setUp() throws Exception {}
+
+    public void prepare() throws Exception {}
+
+    /**
+     * @return a checksum of the work done
+     */
+    public abstract double run() throws Exception;
+
+    /**
+     * @return the number of operations done by one call of run
+     */
+    public abstract long getOperations();
+
+    public void tearDown() throws Exception {}
+}
@@ -0,0 +1,303 @@
+/**
+ * BenchmarkRunner.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs BenchmarkCases the way JMH runs its benchmarks in average time mode:
+ * every case is run for a number of warmup iterations which are thrown away
+ * and then for a number of measured iterations.  An iteration calls run
+ * (and prepare, which is not timed) until it has taken at least the minimum
+ * iteration time, and its score is the time per operation.  The score of a
+ * case is the median over the measured iterations, and the error is their
+ * standard deviation.
+ * <p>
+ * The results can be written as JSON, one result per line, and compared
+ * against the JSON written by an earlier run to find regressions.
+ */
+public class BenchmarkRunner
+{
+    /**
+     * The measurements of one case under one set of parameters.
+     */
+    public static final class Result
+    {
+        public final String benchmark;
+        public final Map<String,String> params;
+        public final String unit;
+        public final int iterations;
+        public final double score;
+        public final double error;
+        public final double min;
+        public final double max;
+
+        public Result(String benchmark, Map<String,String> params, String unit, double[] nsPerOp)
+        {
+            this.benchmark = benchmark;
+            this.params = new LinkedHashMap<String,String>(params);
+            this.unit = unit;
+            this.iterations = nsPerOp.length;
+            double[] sorted = nsPerOp.clone();
+            Arrays.sort(sorted);
+            int mid = sorted.length/2;
+            this.score = (sorted.length%2 == 1 ? sorted[mid] : (sorted[mid-1]+sorted[mid])/2);
+            this.min = sorted[0];
+            this.max = sorted[sorted.length-1];
+            double mean = 0;
+            for(double d : sorted)
+                mean += d;
+            mean /= sorted.length;
+            double var = 0;
+            for(double d : sorted)
+                var += (d-mean)*(d-mean);
+            this.error = (sorted.length > 1 ? Math.sqrt(var/(sorted.length-1)) : 0);
+        }
+
+        public String getKey()
+        {
+            return benchmark+params;
+        }
+    }
+
+    private int warmupIterations = 3;
+    private int measureIterations = 5;
+    private long minIterationNanos = 100000000L;
+    private final Map<String,String> params = new LinkedHashMap<String,String>();
+    private final List<Result> results = new ArrayList<Result>();
+    private double checksum = 0;
+
+    public void setWarmupIterations(int n)
+    {
+        warmupIterations = Math.max(0,n);
+    }
+
+    public void setMeasureIterations(int n)
+    {
+        measureIterations = Math.max(1,n);
+    }
+
+    /**
+     * @param millis The minimum time an iteration runs for
+     */
+    public void setMinIterationTime(long millis)
+    {
+        minIterationNanos = Math.max(0,millis)*1000000L;
+    }
+
+    /**
+     * Set a parameter which is recorded with the results of all cases run
+     * from now on, such as the number of nodes of the synthetic graph.
+     */
+    public void setParam(String name, String value)
+    {
+        params.put(name, value);
+    }
+
+    public List<Result> getResults()
+    {
+        return results;
+    }
+
+    public double getChecksum()
+    {
+        return checksum;
+    }
+
+    private double iteration(BenchmarkCase bc) throws Exception
+    {
+        long elapsed = 0;
+        long ops = 0;
+        do
+        {
+            bc.prepare();
+            long start = System.nanoTime();
+            checksum += bc.run();
+            elapsed += System.nanoTime()-start;
+            ops += bc.getOperations();
+        } while(elapsed < minIterationNanos);
+        return (double)elapsed/Math.max(1,ops);
+    }
+
+    /**
+     * Run a case and keep its result.
+     * @return the result, or null if the case failed
+     */
+    public Result run(BenchmarkCase bc)
+    {
+        try
+        {
+            bc.setUp();
+            try
+            {
+                for(int i=0;i<warmupIterations;i++)
+                    iteration(bc);
+                double[] nsPerOp = new double[measureIterations];
+                for(int i=0;i<measureIterations;i++)
+                    nsPerOp[i] = iteration(bc);
+                Result r = new Result(bc.getName(), params, "ns/"+bc.getUnit(), nsPerOp);
+                results.add(r);
+                System.out.printf("%-32s %-36s %14.2f +- %10.2f %s%n", r.benchmark, r.params, r.score, r.error, r.unit);
+                return r;
+            }
+            finally
+            {
+                bc.tearDown();
+            }
+        }
+        catch(Exception e)
+        {
+            System.out.println(bc.getName()+" "+params+" FAILED: "+e);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static String quote(String s)
+    {
+        return '"'+s.replace("\\","\\\\").replace("\"","\\\"")+'"';
+    }
+
+    /**
+     * Write all results as a JSON array with one result per line.
+     */
+    public void writeJson(File file) throws IOException
+    {
+        PrintWriter pw = new PrintWriter(new FileWriter(file));
+        try
+        {
+            pw.println("[");
+            for(int i=0;i<results.size();i++)
+            {
+                Result r = results.get(i);
+                StringBuilder sb = new StringBuilder();
+                sb.append("  {\"benchmark\":").append(quote(r.benchmark));
+                sb.append(",\"params\":{");
+                boolean first = true;
+                for(Map.Entry<String,String> e : r.params.entrySet())
+                {
+                    if(!first)
+                        sb.append(',');
+                    first = false;
+                    sb.append(quote(e.getKey())).append(':').append(quote(e.getValue()));
+                }
+                sb.append("},\"mode\":\"avgt\",\"unit\":").append(quote(r.unit));
+                sb.append(",\"iterations\":").append(r.iterations);
+                sb.append(",\"score\":").append(r.score);
+                sb.append(",\"scoreError\":").append(r.error);
+                sb.append(",\"min\":").append(r.min);
+                sb.append(",\"max\":").append(r.max);
+                sb.append('}');
+                if(i < results.size()-1)
+                    sb.append(',');
+                pw.println(sb);
+            }
+            pw.println("]");
+        }
+        finally
+        {
+            pw.close();
+        }
+    }
+
+    private static final Pattern benchmarkPattern = Pattern.compile("\"benchmark\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern paramsPattern = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)\\}");
+    private static final Pattern paramPattern = Pattern.compile("\"([^\"]*)\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern scorePattern = Pattern.compile("\"score\"\\s*:\\s*([-+0-9.eE]+|NaN|Infinity)");
+
+    /**
+     * Read the scores written by writeJson.
+     * @return the scores keyed by benchmark name and parameters
+     */
+    public static Map<String,Double> readJson(File file) throws IOException
+    {
+        Map<String,Double> scores = new HashMap<String,Double>();
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            while((line = br.readLine()) != null)
+            {
+                Matcher bm = benchmarkPattern.matcher(line);
+                Matcher sm = scorePattern.matcher(line);
+                if(!bm.find() || !sm.find())
+                    continue;
+                Map<String,String> p = new LinkedHashMap<String,String>();
+                Matcher pm = paramsPattern.matcher(line);
+                if(pm.find())
+                {
+                    Matcher m = paramPattern.matcher(pm.group(1));
+                    while(m.find())
+                        p.put(m.group(1), m.group(2));
+                }
+                scores.put(bm.group(1)+p, Double.valueOf(sm.group(1)));
+            }
+        }
+        finally
+        {
+            br.close();
+        }
+        return scores;
+    }
+
+    /**
+     * Compare the results against the scores of an earlier run and print
+     * the change of every benchmark found in both.
+     * @param baseline The earlier scores, as read by readJson
+     * @param threshold The relative slowdown, e.g. 0.1 for 10%, beyond which a change is a regression
+     * @return the number of regressions
+     */
+    public int compare(Map<String,Double> baseline, double threshold)
+    {
+        int regressions = 0;
+        System.out.println();
+        System.out.printf("%-32s %-36s %14s %14s %8s%n", "benchmark", "params", "baseline", "score", "change");
+        for(Result r : results)
+        {
+            Double base = baseline.get(r.getKey());
+            if(base == null || base <= 0)
+                continue;
+            double change = r.score/base-1;
+            boolean regressed = (change > threshold);
+            if(regressed)
+                regressions++;
+            System.out.printf("%-32s %-36s %14.2f %14.2f %+7.1f%%%s%n", r.benchmark, r.params, base, r.score, 100*change, (regressed ? "  REGRESSION" : ""));
+        }
+        return regressions;
+    }
+}
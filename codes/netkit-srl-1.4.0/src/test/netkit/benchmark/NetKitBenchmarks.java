@@ -0,0 +1,754 @@
+/**
+ * NetKitBenchmarks.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.benchmark;
+
+import netkit.classifiers.Classification;
+import netkit.classifiers.Estimate;
+import netkit.classifiers.NetworkLearning;
+import netkit.classifiers.io.PrintEstimateWriter;
+import netkit.classifiers.relational.ANRL;
+import netkit.classifiers.relational.BNRWR;
+import netkit.classifiers.relational.CTK;
+import netkit.classifiers.relational.ClassDistribRelNeighbor;
+import netkit.classifiers.relational.Harmonic;
+import netkit.classifiers.relational.LLGC;
+import netkit.classifiers.relational.MetaMultiplicative;
+import netkit.classifiers.relational.NetworkClassifier;
+import netkit.classifiers.relational.NetworkClassifierImp;
+import netkit.classifiers.relational.NetworkOnlyBayes;
+import netkit.classifiers.relational.ParameterSweep;
+import netkit.classifiers.relational.RCTK;
+import netkit.classifiers.relational.SGL;
+import netkit.classifiers.relational.SparseTransducer;
+import netkit.classifiers.relational.WeightedVoteRelationalNeighbor;
+import netkit.classifiers.relational.ZFL;
+import netkit.graph.Edge;
+import netkit.graph.Graph;
+import netkit.graph.Node;
+import netkit.graph.edgecreator.BaseNumericEdgeCreator;
+import netkit.graph.io.EdgeWriterRN;
+import netkit.graph.io.NodeWriter;
+import netkit.graph.io.SchemaReader;
+import netkit.graph.io.SchemaWriter;
+import netkit.inference.GibbsSampling;
+import netkit.inference.InferenceMethod;
+import netkit.inference.RelaxationLabeling;
+import netkit.util.AUC;
+import netkit.util.BlockSolver;
+import netkit.util.CSRGraph;
+import netkit.util.Configuration;
+import netkit.util.DistanceStore;
+import netkit.util.GraphMetrics;
+import netkit.util.LouvainClusterer;
+import netkit.util.NetKitEnv;
+import netkit.util.VectorMath;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks the hot paths of NetKit on synthetic graphs with a skewed
+ * degree distribution: building and loading a graph, looking up the edges
+ * to a neighbor, the wvRN, cdRN and nBC estimates (one node at a time and a
+ * block at a time), the VectorMath operations on the estimates of every
+ * node (per array and a block at a time), an iteration of relaxation
+ * labeling with wvRN and with a meta classifier, a sweep of Gibbs sampling,
+ * the harmonic solve, a conjugate gradient panel solve, the sparse LLGC,
+ * ZFL, SGL, CTK, RCTK, aNRL and bNRWR solves, a cross-validation sweep of
+ * bNRWR, the GraphMetrics clustering and centrality stats, the AUCs of an
+ * estimate, Louvain clustering, creating edges from an attribute and
+ * writing predictions as text and binary.  Run it with the lib directory on
+ * the classpath, as the classifiers read their properties from there:
+ * <pre>
+ *   java netkit.benchmark.NetKitBenchmarks [-sizes 1000,10000] [-graphs undirected,directed]
+ *        [-degree 10] [-filter regex] [-warmup 3] [-iterations 5] [-time ms]
+ *        [-json results.json] [-baseline old.json] [-threshold 0.1]
+ * </pre>
+ * Scores are the median time per operation, where the operation of a case
+ * (a node, an edge, a call, ...) is part of its unit.  With -json, the
+ * results are written as JSON; with -baseline, they are compared against
+ * the JSON of an earlier run, and the exit code is 1 if any case got slower
+ * by more than the threshold.  Graphs of 10^6 nodes need a large heap
+ * (-Xmx8g or more).  The harmonic solve inverts a dense matrix, so it is
+ * only run up to -maxdense nodes, and the centrality stats are approximated
+ * from 64 pivots beyond -maxexact nodes.
+ */
+public class NetKitBenchmarks
+{
+    private final SyntheticGraph sg;
+    private final BenchmarkRunner runner;
+    private final Pattern filter;
+
+    public NetKitBenchmarks(SyntheticGraph sg, BenchmarkRunner runner, Pattern filter)
+    {
+        this.sg = sg;
+        this.runner = runner;
+        this.filter = filter;
+    }
+
+    private void run(BenchmarkCase bc)
+    {
+        if(filter == null || filter.matcher(bc.getName()).find())
+            runner.run(bc);
+    }
+
+    private static void delete(File f)
+    {
+        File[] files = f.listFiles();
+        if(files != null)
+            for(File c : files)
+                delete(c);
+        f.delete();
+    }
+
+    private void graphCases()
+    {
+        final Graph g = sg.getGraph();
+        final int numEdges = g.numEdges();
+
+        run(new BenchmarkCase("graph.build", "edge") {
+            public double run() {
+                return sg.build().numEdges();
+            }
+            public long getOperations() { return numEdges; }
+        });
+
+        run(new BenchmarkCase("graph.load", "edge") {
+            private File dir;
+            private File schema;
+            public void setUp() throws Exception {
+                dir = File.createTempFile("netkit-bench", "");
+                dir.delete();
+                dir.mkdirs();
+                schema = new File(dir, "syn.arff");
+                Map<String,String> nodeFiles = new HashMap<String,String>();
+                nodeFiles.put(SyntheticGraph.NODE_TYPE, "syn.csv");
+                Map<String,String> edgeFiles = new HashMap<String,String>();
+                edgeFiles.put(SyntheticGraph.EDGE_TYPE, "link.rn");
+                Writer w = new FileWriter(schema);
+                SchemaWriter.writeSchema(g, w, nodeFiles, edgeFiles);
+                w.close();
+                w = new FileWriter(new File(dir, "syn.csv"));
+                NodeWriter.writeNodes(g.getNodes(SyntheticGraph.NODE_TYPE), w);
+                w.close();
+                w = new FileWriter(new File(dir, "link.rn"));
+                EdgeWriterRN.writeEdges(g.getEdges(SyntheticGraph.EDGE_TYPE), w);
+                w.close();
+            }
+            public double run() {
+                return SchemaReader.readSchema(schema).numEdges();
+            }
+            public long getOperations() { return numEdges; }
+            public void tearDown() {
+                delete(dir);
+            }
+        });
+
+        run(new BenchmarkCase("node.getEdgesToNeighbor", "call") {
+            private Node[] from;
+            private Node[] to;
+            public void setUp() {
+                // four random neighbors of every node, such that the edges of high degree nodes are searched often
+                Random r = new Random(1);
+                Node[] nodes = sg.getNodes();
+                from = new Node[4*nodes.length];
+                to = new Node[from.length];
+                int num = 0;
+                for(Node n : nodes)
+                {
+                    Edge[] edges = n.getEdges();
+                    for(int k=0;k<4 && k<edges.length;k++)
+                    {
+                        from[num] = n;
+                        to[num] = edges[r.nextInt(edges.length)].getDest();
+                        num++;
+                    }
+                }
+                from = Arrays.copyOf(from, num);
+                to = Arrays.copyOf(to, num);
+            }
+            public double run() {
+                double sum = 0;
+                for(int i=0;i<from.length;i++)
+                    sum += from[i].getEdgesToNeighbor(to[i]).length;
+                return sum;
+            }
+            public long getOperations() { return from.length; }
+        });
+    }
+
+    private void classifierCases(final String name, final NetworkClassifierImp nc)
+    {
+        final Node[] unknown = sg.getUnknown();
+        final Estimate prior = sg.getPrior();
+        final int numClasses = sg.getClassAttribute().size();
+
+        run(new BenchmarkCase(name+".estimate", "node") {
+            private final double[] result = new double[numClasses];
+            public void setUp() {
+                nc.configure(nc.getDefaultConfiguration());
+                nc.induceModel(sg.getGraph(), sg.getSplit());
+            }
+            public double run() {
+                double sum = 0;
+                for(Node n : unknown)
+                    if(nc.estimate(n, prior, result, false))
+                        sum += result[0];
+                return sum;
+            }
+            public long getOperations() { return unknown.length; }
+        });
+
+        run(new BenchmarkCase(name+".estimateBlock", "node") {
+            private final int blockSize = 256;
+            private final double[] result = new double[blockSize*numClasses];
+            private final boolean[] estimated = new boolean[blockSize];
+            public void setUp() {
+                nc.configure(nc.getDefaultConfiguration());
+                nc.induceModel(sg.getGraph(), sg.getSplit());
+            }
+            public double run() {
+                double sum = 0;
+                for(int from=0;from<unknown.length;from+=blockSize)
+                    sum += nc.estimateBlock(unknown, from, Math.min(unknown.length,from+blockSize), prior, result, estimated);
+                return sum+result[0];
+            }
+            public long getOperations() { return unknown.length; }
+        });
+    }
+
+    private void inferenceCase(String name, final InferenceMethod im, final int numIterations, Configuration config)
+    {
+        WeightedVoteRelationalNeighbor wvrn = new WeightedVoteRelationalNeighbor();
+        inferenceCase(name, im, numIterations, config, wvrn, wvrn.getDefaultConfiguration());
+    }
+
+    private void inferenceCase(String name, final InferenceMethod im, final int numIterations, Configuration config, final NetworkClassifier nc, final Configuration ncConfig)
+    {
+        final Node[] unknown = sg.getUnknown();
+        im.configure(config);
+        run(new BenchmarkCase(name, "node") {
+            public void setUp() {
+                nc.configure(ncConfig);
+                nc.induceModel(sg.getGraph(), sg.getSplit());
+                im.setInitialPrior(sg.getPrior());
+            }
+            public double run() {
+                Estimate e = im.estimate(nc, Arrays.asList(unknown).iterator());
+                return e.getEstimate(unknown[0])[0];
+            }
+            public long getOperations() { return (long)numIterations*unknown.length; }
+        });
+    }
+
+    /**
+     * The allocating and per-array VectorMath methods against their
+     * allocation-free, fused and blocked variants, on a block of estimates
+     * of every node as they are used in an inference iteration.
+     */
+    private void vectorMathCases()
+    {
+        final int numNodes = sg.numNodes;
+        final int numClasses = sg.numClasses;
+        final double[][] rows = new double[numNodes][numClasses];
+        final double[][] old = new double[numNodes][numClasses];
+        final double[] flat = new double[numNodes*numClasses];
+        final double[] oldFlat = new double[numNodes*numClasses];
+        final double[] cdf = new double[numClasses];
+        final int[] maxIdx = new int[numNodes];
+        Random r = new Random(1);
+        for(int i=0;i<numNodes;i++)
+        {
+            for(int c=0;c<numClasses;c++)
+            {
+                rows[i][c] = r.nextDouble();
+                old[i][c] = r.nextDouble();
+                flat[i*numClasses+c] = rows[i][c];
+                oldFlat[i*numClasses+c] = old[i][c];
+            }
+        }
+
+        run(new BenchmarkCase("vectormath.merge", "node") {
+            public double run() {
+                double sum = 0;
+                for(int i=0;i<numNodes;i++)
+                    sum += VectorMath.merge(0.3, old[i], rows[i])[0];
+                return sum;
+            }
+            public long getOperations() { return numNodes; }
+        });
+        run(new BenchmarkCase("vectormath.merge.block", "node") {
+            public double run() {
+                for(int i=0;i<numNodes;i++)
+                    VectorMath.merge(0.3, oldFlat, i*numClasses, flat, i*numClasses, flat, i*numClasses, numClasses);
+                return flat[0];
+            }
+            public long getOperations() { return numNodes; }
+        });
+        run(new BenchmarkCase("vectormath.normalize", "node") {
+            public double run() {
+                for(int i=0;i<numNodes;i++)
+                    VectorMath.normalize(rows[i]);
+                return rows[0][0];
+            }
+            public long getOperations() { return numNodes; }
+        });
+        run(new BenchmarkCase("vectormath.normalize.block", "node") {
+            public double run() {
+                VectorMath.normalizeBlock(flat, numNodes, numClasses);
+                return flat[0];
+            }
+            public long getOperations() { return numNodes; }
+        });
+        run(new BenchmarkCase("vectormath.sampleIdx", "node") {
+            public double run() {
+                double sum = 0;
+                for(int i=0;i<numNodes;i++)
+                    sum += VectorMath.sampleIdx(rows[i]);
+                return sum;
+            }
+            public long getOperations() { return numNodes; }
+        });
+        // ten samples from the same estimate, as over the chains of Gibbs sampling
+        run(new BenchmarkCase("vectormath.sampleIdx.10", "node") {
+            public double run() {
+                double sum = 0;
+                for(int i=0;i<numNodes;i++)
+                    for(int k=0;k<10;k++)
+                        sum += VectorMath.sampleIdx(rows[i]);
+                return sum;
+            }
+            public long getOperations() { return numNodes; }
+        });
+        run(new BenchmarkCase("vectormath.sampleIdx.10.cdf", "node") {
+            public double run() {
+                double sum = 0;
+                for(int i=0;i<numNodes;i++)
+                {
+                    VectorMath.cumulative(rows[i], cdf);
+                    for(int k=0;k<10;k++)
+                        sum += VectorMath.sampleCumulativeIdx(cdf);
+                }
+                return sum;
+            }
+            public long getOperations() { return numNodes; }
+        });
+        run(new BenchmarkCase("vectormath.max", "node") {
+            public double run() {
+                double sum = 0;
+                for(int i=0;i<numNodes;i++)
+                    sum += VectorMath.getMaxIdx(rows[i]) + VectorMath.getMaxValue(rows[i]);
+                return sum;
+            }
+            public long getOperations() { return numNodes; }
+        });
+        run(new BenchmarkCase("vectormath.max.block", "node") {
+            public double run() {
+                VectorMath.getMaxIdxBlock(flat, numNodes, numClasses, maxIdx);
+                double sum = 0;
+                for(int i=0;i<numNodes;i++)
+                    sum += maxIdx[i] + flat[i*numClasses+maxIdx[i]];
+                return sum;
+            }
+            public long getOperations() { return numNodes; }
+        });
+    }
+
+    private void inferenceCases()
+    {
+        RelaxationLabeling rl = new RelaxationLabeling();
+        Configuration config = rl.getDefaultConfiguration();
+        config.set("numit", 1);
+        inferenceCase("relaxlabel.iteration", rl, 1, config);
+
+        // the members of a meta classifier run side by side over each block, or one after the other
+        for(boolean parallel : new boolean[] { true, false })
+        {
+            MetaMultiplicative meta = new MetaMultiplicative();
+            Configuration metaConfig = meta.getDefaultConfiguration();
+            metaConfig.set(NetworkLearning.RC_PREFIX, "wvrn,cdrn-norm-cos,nobayes");
+            metaConfig.set(NetworkLearning.LC_PREFIX, "classprior");
+            metaConfig.set("parallel", parallel);
+            inferenceCase("meta.relaxlabel.iteration"+(parallel ? "" : ".sequential"), rl, 1, config, meta, metaConfig);
+        }
+
+        // one burnin and one counted sweep of a single chain
+        GibbsSampling gibbs = new GibbsSampling();
+        config = gibbs.getDefaultConfiguration();
+        config.set("burnin", 1);
+        config.set("numit", 1);
+        config.set("numchains", 1);
+        inferenceCase("gibbs.sweep", gibbs, 2, config);
+    }
+
+    private void harmonicCase()
+    {
+        run(new BenchmarkCase("harmonic.solve", "call") {
+            public double run() {
+                Harmonic h = new Harmonic();
+                h.configure(h.getDefaultConfiguration());
+                h.induceModel(sg.getGraph(), sg.getSplit());
+                return h.estimate(sg.getUnknown()[0], sg.getPrior(), false)[0];
+            }
+            public long getOperations() { return 1; }
+        });
+    }
+
+    private void transducerCase(final String name, final SparseTransducer st)
+    {
+        run(new BenchmarkCase(name+".solve", "call") {
+            public double run() {
+                st.configure(st.getDefaultConfiguration());
+                st.induceModel(sg.getGraph(), sg.getSplit());
+                return st.estimate(sg.getUnknown()[0], sg.getPrior(), false)[0];
+            }
+            public long getOperations() { return 1; }
+        });
+    }
+
+    /**
+     * Conjugate gradient on (D+I) - (A+A') for 20 columns, as many as the
+     * classes of 20Newsgroups, with every known node labeled in one column.
+     * With mixed columns, every other column is all ones instead, which is
+     * solved by the first step, such that the panel shrinks to the others.
+     */
+    private void blockSolverCase(final boolean mixed)
+    {
+        final int numColumns = 20;
+        final CSRGraph g = new CSRGraph(sg.getGraph());
+        final CSRGraph t = g.transpose();
+        final double[] diag = new double[g.numNodes];
+        for(int i=0;i<g.numNodes;i++)
+            for(int k=g.offsets[i];k<g.offsets[i+1];k++)
+            {
+                diag[i] += g.weights[k];
+                diag[g.targets[k]] += g.weights[k];
+            }
+        final BlockSolver.Operator op = new BlockSolver.Operator() {
+            private double[] TX = new double[0];
+            public void apply(double[] X, double[] result, int k) {
+                if(TX.length != X.length)
+                    TX = new double[X.length];
+                BlockSolver.multiply(g, g.weights, X, k, result);
+                BlockSolver.multiply(t, t.weights, X, k, TX);
+                for(int i=0;i<X.length;i++)
+                    result[i] = (diag[i/k]+1)*X[i] - result[i] - TX[i];
+            }
+        };
+        final double[] B = new double[g.numNodes*numColumns];
+        Random r = new Random(1);
+        for(int i=0;i<g.numNodes;i++)
+        {
+            if(sg.known[i])
+                B[i*numColumns+r.nextInt(numColumns)] = 1;
+            if(mixed)
+                for(int c=1;c<numColumns;c+=2)
+                    B[i*numColumns+c] = 1;
+        }
+
+        run(new BenchmarkCase((mixed ? "blocksolver.cg.mixed" : "blocksolver.cg"), "call") {
+            private final double[] X = new double[B.length];
+            public double run() {
+                new BlockSolver(1e-6, 1000).cg(op, B, X, numColumns);
+                return X[0];
+            }
+            public long getOperations() { return 1; }
+        });
+    }
+
+    private void transducerCases()
+    {
+        blockSolverCase(false);
+        blockSolverCase(true);
+        transducerCase("llgc", new LLGC());
+        transducerCase("zfl", new ZFL());
+        transducerCase("sgl", new SGL());
+        transducerCase("ctk", new CTK());
+        transducerCase("rctk", new RCTK());
+        transducerCase("anrl", new ANRL());
+        transducerCase("bnrwr", new BNRWR());
+
+        // a 5x5 grid over 5 folds, as in bNRWR_cv.m
+        run(new BenchmarkCase("bnrwr.sweep", "setting") {
+            final double[] alphas = { 0.1, 0.3, 0.5, 0.7, 0.9 };
+            final int[] iterations = { 1, 2, 5, 10, 20 };
+            public double run() {
+                BNRWR b = new BNRWR();
+                b.configure(b.getDefaultConfiguration());
+                ParameterSweep sweep = new ParameterSweep(b, alphas, iterations, 5);
+                return sweep.run(sg.getGraph(), sg.getSplit(), 1)[0][0];
+            }
+            public long getOperations() { return alphas.length*iterations.length; }
+        });
+    }
+
+    private void metricsCases(final int pivots)
+    {
+        run(new BenchmarkCase("metrics.clustering", "call") {
+            private GraphMetrics gm;
+            public void prepare() {
+                gm = new GraphMetrics(sg.getGraph(), SyntheticGraph.NODE_TYPE);
+            }
+            public double run() {
+                gm.calculateClusterStat();
+                return gm.getGlobalClusterCoeff();
+            }
+            public long getOperations() { return 1; }
+        });
+
+        run(new BenchmarkCase("metrics.auc", "node") {
+            private Estimate e;
+            private Classification truth;
+            public void setUp() {
+                // scores from the class-dependent x value, with the true label of every node
+                Node[] nodes = sg.getNodes();
+                e = new Estimate(sg.getGraph(), SyntheticGraph.NODE_TYPE, sg.getClassAttribute());
+                truth = new Classification(sg.getGraph(), SyntheticGraph.NODE_TYPE, sg.getClassAttribute());
+                double[] p = new double[sg.numClasses];
+                for(int i=0;i<nodes.length;i++)
+                {
+                    for(int c=0;c<p.length;c++)
+                        p[c] = Math.exp(-(sg.x[i]-c)*(sg.x[i]-c));
+                    e.estimate(nodes[i], p);
+                    truth.set(nodes[i], sg.truth[i]);
+                }
+            }
+            public double run() {
+                return AUC.getAUCs(e, truth)[0];
+            }
+            public long getOperations() { return sg.numNodes; }
+        });
+
+        final CSRGraph csr = new CSRGraph(sg.getGraph());
+        run(new BenchmarkCase("metrics.louvain", "edge") {
+            public double run() {
+                LouvainClusterer lc = new LouvainClusterer(csr);
+                lc.cluster();
+                return lc.getModularity();
+            }
+            public long getOperations() { return csr.numEdges; }
+        });
+
+        run(new BenchmarkCase((pivots > 0 ? "metrics.centrality.pivots"+pivots : "metrics.centrality"), "call") {
+            private GraphMetrics gm;
+            public void prepare() {
+                gm = new GraphMetrics(sg.getGraph(), SyntheticGraph.NODE_TYPE);
+                gm.setCentralityPivots(pivots);
+            }
+            public double run() {
+                gm.calculateCentralityStat();
+                return gm.getGraphCentrality();
+            }
+            public long getOperations() { return 1; }
+        });
+
+        // twice as many sources as the cache keeps, so every distance misses
+        final int numSources = 2*DistanceStore.RECOMPUTE_CACHE_SIZE;
+        run(new BenchmarkCase("metrics.dist.recompute", "row") {
+            private GraphMetrics gm;
+            private Node[] nodes;
+            public void setUp() {
+                nodes = sg.getNodes();
+                gm = new GraphMetrics(sg.getGraph(), SyntheticGraph.NODE_TYPE);
+                gm.setDistanceStorage(DistanceStore.Storage.Recompute);
+                gm.setCentralityPivots(pivots > 0 ? pivots : 64);
+                gm.calculateCentralityStat();
+            }
+            public double run() {
+                double sum = 0;
+                for(int i=0;i<numSources;i++)
+                {
+                    Node src = nodes[(int)((long)i*nodes.length/numSources)];
+                    Node dst = nodes[nodes.length-1-i%nodes.length];
+                    sum += gm.getDist(src, dst) + gm.getWeightedDist(src, dst);
+                }
+                return sum;
+            }
+            public long getOperations() { return 2*numSources; }
+        });
+    }
+
+    private void edgeCreatorCase()
+    {
+        final Graph g = sg.getGraph();
+        final int xIdx = g.getAttributes(SyntheticGraph.NODE_TYPE).getAttributeIndex("x");
+        run(new BenchmarkCase("edgecreator.numeric", "node") {
+            private BaseNumericEdgeCreator ec;
+            public void prepare() {
+                ec = new BaseNumericEdgeCreator();
+                ec.initialize(g, SyntheticGraph.NODE_TYPE, xIdx, Double.NaN, 5);
+                ec.buildModel(sg.getSplit());
+            }
+            public double run() {
+                return ec.createEdges().length;
+            }
+            public long getOperations() { return sg.numNodes; }
+        });
+    }
+
+    private void outputCases()
+    {
+        final Node[] unknown = sg.getUnknown();
+        final Estimate prior = sg.getPrior();
+        for(final boolean binary : new boolean[]{false,true})
+        {
+            run(new BenchmarkCase((binary ? "output.predict.binary" : "output.predict.text"), "node") {
+                private File file;
+                private PrintEstimateWriter pe;
+                public void setUp() throws Exception {
+                    file = File.createTempFile("netkit-bench", ".predict");
+                    pe = new PrintEstimateWriter(System.out);
+                }
+                public double run() {
+                    pe.printAsync(file, false, "#0", unknown, prior, null, binary);
+                    pe.awaitPending();
+                    return file.length();
+                }
+                public long getOperations() { return unknown.length; }
+                public void tearDown() {
+                    file.delete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Run all cases on the synthetic graph.
+     * @param maxDense The largest graph to run the harmonic solve on
+     * @param maxExact The largest graph to compute exact centrality stats on
+     */
+    public void run(int maxDense, int maxExact)
+    {
+        graphCases();
+        classifierCases("wvrn", new WeightedVoteRelationalNeighbor());
+        classifierCases("cdrn", new ClassDistribRelNeighbor());
+        classifierCases("nobayes", new NetworkOnlyBayes());
+        vectorMathCases();
+        inferenceCases();
+        if(sg.numNodes <= maxDense)
+            harmonicCase();
+        transducerCases();
+        metricsCases(sg.numNodes <= maxExact ? 0 : 64);
+        edgeCreatorCase();
+        outputCases();
+    }
+
+    private static void usage()
+    {
+        System.err.println("usage: NetKitBenchmarks [-sizes n1,n2,...] [-graphs undirected,directed] [-degree d]");
+        System.err.println("         [-filter regex] [-warmup n] [-iterations n] [-time ms] [-seed s]");
+        System.err.println("         [-maxdense n] [-maxexact n] [-json file] [-baseline file] [-threshold t]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        String[] sizes = new String[] { "1000", "10000" };
+        String[] graphs = new String[] { "undirected", "directed" };
+        double degree = 10;
+        Pattern filter = null;
+        long seed = 1;
+        int maxDense = 2000;
+        int maxExact = 5000;
+        File json = null;
+        File baseline = null;
+        double threshold = 0.1;
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for(int i=0;i<args.length;i++)
+        {
+            if(i+1 >= args.length)
+                usage();
+            String opt = args[i];
+            String val = args[++i];
+            if(opt.equals("-sizes"))
+                sizes = val.split(",");
+            else if(opt.equals("-graphs"))
+                graphs = val.split(",");
+            else if(opt.equals("-degree"))
+                degree = Double.parseDouble(val);
+            else if(opt.equals("-filter"))
+                filter = Pattern.compile(val);
+            else if(opt.equals("-warmup"))
+                runner.setWarmupIterations(Integer.parseInt(val));
+            else if(opt.equals("-iterations"))
+                runner.setMeasureIterations(Integer.parseInt(val));
+            else if(opt.equals("-time"))
+                runner.setMinIterationTime(Long.parseLong(val));
+            else if(opt.equals("-seed"))
+                seed = Long.parseLong(val);
+            else if(opt.equals("-maxdense"))
+                maxDense = Integer.parseInt(val);
+            else if(opt.equals("-maxexact"))
+                maxExact = Integer.parseInt(val);
+            else if(opt.equals("-json"))
+                json = new File(val);
+            else if(opt.equals("-baseline"))
+                baseline = new File(val);
+            else if(opt.equals("-threshold"))
+                threshold = Double.parseDouble(val);
+            else
+                usage();
+        }
+
+        // only report errors, and do not write a log file
+        NetKitEnv.getLogger(NetKitBenchmarks.class.getName());
+        LogManager.getLogManager().reset();
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.SEVERE);
+        root.addHandler(new ConsoleHandler());
+
+        for(String size : sizes)
+        {
+            int numNodes = Integer.parseInt(size.trim());
+            for(String graph : graphs)
+            {
+                boolean directed = graph.trim().equals("directed");
+                if(!directed && !graph.trim().equals("undirected"))
+                    usage();
+                SyntheticGraph sg = new SyntheticGraph(numNodes, degree, directed, seed);
+                runner.setParam("nodes", Integer.toString(numNodes));
+                runner.setParam("graph", graph.trim());
+                runner.setParam("degree", Double.toString(degree));
+                new NetKitBenchmarks(sg, runner, filter).run(maxDense, maxExact);
+            }
+        }
+        System.out.println("checksum="+runner.getChecksum());
+
+        if(json != null)
+            runner.writeJson(json);
+        if(baseline != null && runner.compare(BenchmarkRunner.readJson(baseline), threshold) > 0)
+            System.exit(1);
+    }
+}
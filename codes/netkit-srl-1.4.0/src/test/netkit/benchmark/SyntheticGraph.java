@@ -0,0 +1,279 @@
+/**
+ * SyntheticGraph.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.benchmark;
+
+import netkit.classifiers.DataSplit;
+import netkit.classifiers.DataView;
+import netkit.classifiers.Estimate;
+import netkit.graph.*;
+import netkit.util.RandomStreams;
+import netkit.util.VectorMath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A random graph with a skewed degree distribution and a class label with
+ * homophily, for benchmarking.  The expected degree of node i is
+ * proportional to (i+1)^(-1/(exponent-1)) as in the Chung-Lu model, which
+ * gives a power-law degree distribution with the given exponent.  The
+ * source of an edge is drawn by expected degree, and its destination is
+ * drawn by expected degree from the nodes of the same class with
+ * probability homophily and from all nodes otherwise.
+ * <p>
+ * The edges are drawn when the SyntheticGraph is constructed, but the Graph
+ * is only built by build, such that building it can be timed.  Every node
+ * has a key, a continuous attribute "x" drawn around its class and the
+ * class, which is missing for a fraction of the nodes.  In an undirected
+ * graph, every edge is added in both directions.
+ */
+public class SyntheticGraph
+{
+    public static final String NODE_TYPE = "syn";
+    public static final String EDGE_TYPE = "link";
+
+    public final int numNodes;
+    public final boolean directed;
+    public final int numClasses;
+    public final int[] truth;
+    public final boolean[] known;
+    public final double[] x;
+    public final int[] src;
+    public final int[] dst;
+    public final double[] weight;
+
+    private Graph graph = null;
+    private AttributeCategorical cls = null;
+    private EdgeType edgeType = null;
+    private Node[] nodes = null;
+    private Node[] unknown = null;
+    private DataSplit split = null;
+    private Estimate prior = null;
+
+    /**
+     * A graph with power-law exponent 2.5, homophily 0.8, three classes and
+     * half of the labels unknown.
+     */
+    public SyntheticGraph(int numNodes, double meanDegree, boolean directed, long seed)
+    {
+        this(numNodes, meanDegree, directed, 2.5, 0.8, 3, 0.5, seed);
+    }
+
+    /**
+     * @param numNodes The number of nodes
+     * @param meanDegree The mean number of edges per node, counting both directions of an undirected edge
+     * @param directed Whether edges are only added in one direction
+     * @param exponent The exponent of the power-law degree distribution (larger than 2)
+     * @param homophily The probability that an edge is drawn within the class of its source
+     * @param numClasses The number of classes
+     * @param unknownFraction The fraction of nodes whose class is unknown
+     * @param seed The seed of the random draws
+     */
+    public SyntheticGraph(int numNodes, double meanDegree, boolean directed, double exponent, double homophily, int numClasses, double unknownFraction, long seed)
+    {
+        if(numNodes < 2)
+            throw new IllegalArgumentException("numNodes must be at least 2");
+        if(exponent <= 1)
+            throw new IllegalArgumentException("exponent must be larger than 1");
+        this.numNodes = numNodes;
+        this.directed = directed;
+        this.numClasses = numClasses;
+        Random r = new RandomStreams.SplitRandom(seed);
+
+        truth = new int[numNodes];
+        known = new boolean[numNodes];
+        x = new double[numNodes];
+        double[] w = new double[numNodes];
+        double power = -1.0/(exponent-1);
+        for(int i=0;i<numNodes;i++)
+        {
+            truth[i] = r.nextInt(numClasses);
+            known[i] = (r.nextDouble() >= unknownFraction);
+            x[i] = truth[i]+r.nextGaussian();
+            w[i] = Math.pow(i+1,power);
+        }
+
+        // the expected degrees over all nodes and over the nodes of each class
+        double[] cdf = new double[numNodes];
+        VectorMath.cumulative(w, cdf);
+        int[][] members = new int[numClasses][];
+        double[][] classCdf = new double[numClasses][];
+        int[] size = new int[numClasses];
+        for(int c : truth)
+            size[c]++;
+        for(int c=0;c<numClasses;c++)
+        {
+            members[c] = new int[size[c]];
+            classCdf[c] = new double[size[c]];
+            size[c] = 0;
+        }
+        for(int i=0;i<numNodes;i++)
+        {
+            int c = truth[i];
+            members[c][size[c]++] = i;
+        }
+        for(int c=0;c<numClasses;c++)
+        {
+            double tot = 0;
+            for(int k=0;k<members[c].length;k++)
+            {
+                tot += w[members[c][k]];
+                classCdf[c][k] = tot;
+            }
+        }
+
+        int numEdges = (int)Math.round(directed ? numNodes*meanDegree : numNodes*meanDegree/2);
+        src = new int[numEdges];
+        dst = new int[numEdges];
+        weight = new double[numEdges];
+        for(int e=0;e<numEdges;e++)
+        {
+            int s, d;
+            do
+            {
+                s = VectorMath.sampleCumulativeIdx(cdf, r);
+                int c = truth[s];
+                if(members[c].length > 1 && r.nextDouble() < homophily)
+                    d = members[c][VectorMath.sampleCumulativeIdx(classCdf[c], r)];
+                else
+                    d = VectorMath.sampleCumulativeIdx(cdf, r);
+            } while(s == d);
+            src[e] = s;
+            dst[e] = d;
+            weight[e] = 1+r.nextInt(3);
+        }
+    }
+
+    /**
+     * Build a new Graph from the drawn nodes and edges.  The graph returned
+     * by getGraph is not changed.
+     */
+    public Graph build()
+    {
+        Graph g = new Graph();
+        Attributes a = new Attributes(NODE_TYPE);
+        AttributeKey key = new AttributeKey("key");
+        a.add(key);
+        a.add(new AttributeContinuous("x"));
+        String[] tokens = new String[numClasses];
+        for(int c=0;c<numClasses;c++)
+            tokens[c] = "c"+c;
+        a.add(new AttributeFixedCategorical("class", new FixedTokenSet(tokens)));
+        g.addAttributes(a);
+        EdgeType et = new EdgeType(EDGE_TYPE,NODE_TYPE,NODE_TYPE);
+        g.addEdgeType(et);
+
+        Node[] n = new Node[numNodes];
+        for(int i=0;i<numNodes;i++)
+        {
+            String name = "n"+i;
+            n[i] = g.addNode(name,a);
+            n[i].setValues(new double[] { key.parseAndInsert(name), x[i], (known[i] ? truth[i] : Double.NaN) });
+        }
+        for(int e=0;e<src.length;e++)
+        {
+            g.addEdge(et, n[src[e]], n[dst[e]], weight[e]);
+            if(!directed)
+                g.addEdge(et, n[dst[e]], n[src[e]], weight[e]);
+        }
+        return g;
+    }
+
+    private void init()
+    {
+        if(graph != null)
+            return;
+        graph = build();
+        edgeType = graph.getEdgeType(EDGE_TYPE);
+        cls = (AttributeCategorical)graph.getAttributes(NODE_TYPE).getAttribute("class");
+        nodes = graph.getNodes(NODE_TYPE);
+        List<Node> train = new ArrayList<Node>();
+        List<Node> test = new ArrayList<Node>();
+        double[] marginal = new double[numClasses];
+        for(Node node : nodes)
+        {
+            int i = Integer.parseInt(node.getName().substring(1));
+            if(known[i])
+            {
+                train.add(node);
+                marginal[truth[i]]++;
+            }
+            else
+                test.add(node);
+        }
+        VectorMath.normalize(marginal);
+        unknown = test.toArray(new Node[test.size()]);
+        DataView view = new DataView(graph, NODE_TYPE, cls, 1, false, false, false, false, false);
+        split = new DataSplit(view, unknown, train.toArray(new Node[train.size()]));
+
+        // the unknown nodes start out with the class marginals of the known nodes
+        prior = new Estimate(graph, NODE_TYPE, cls);
+        for(Node node : unknown)
+            prior.estimate(node, marginal);
+    }
+
+    public Graph getGraph()
+    {
+        init();
+        return graph;
+    }
+
+    public EdgeType getEdgeType()
+    {
+        init();
+        return edgeType;
+    }
+
+    public AttributeCategorical getClassAttribute()
+    {
+        init();
+        return cls;
+    }
+
+    public Node[] getNodes()
+    {
+        init();
+        return nodes;
+    }
+
+    public Node[] getUnknown()
+    {
+        init();
+        return unknown;
+    }
+
+    public DataSplit getSplit()
+    {
+        init();
+        return split;
+    }
+
+    public Estimate getPrior()
+    {
+        init();
+        return prior;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * AggregationPlanTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.aggregators;
+
+import junit.framework.TestCase;
+import netkit.classifiers.Estimate;
+import netkit.graph.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * AggregationPlan Tester.
+ */
+public class AggregationPlanTest extends TestCase
+{
+    private static final String nodeType = "AggregationPlanTest";
+    private Graph g;
+    private AttributeCategorical cls;
+    private AttributeDiscrete disc;
+    private AttributeContinuous cont;
+    private EdgeType[] edgeTypes;
+    private Estimate prior;
+    private AggregationContext context;
+
+    public AggregationPlanTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        g = new Graph();
+        Attributes a = new Attributes(nodeType);
+        cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"A","B","C"}));
+        disc = new AttributeDiscrete("disc");
+        cont = new AttributeContinuous("cont");
+        a.add(new AttributeKey("key"));
+        a.add(cls);
+        a.add(disc);
+        a.add(cont);
+        g.addAttributes(a);
+
+        // values are missing for every fifth node
+        Random r = new Random(17);
+        Node[] nodes = new Node[30];
+        for(int i=0;i<nodes.length;i++)
+        {
+            nodes[i] = g.addNode("n"+i,a);
+            boolean missing = (i%5 == 0);
+            nodes[i].setValues(new double[] { i,
+                                              (missing ? Double.NaN : r.nextInt(3)),
+                                              (missing ? Double.NaN : r.nextInt(4)),
+                                              (missing ? Double.NaN : r.nextGaussian()) });
+        }
+
+        edgeTypes = new EdgeType[] { new EdgeType("e1",nodeType,nodeType), new EdgeType("e2",nodeType,nodeType) };
+        for(EdgeType et : edgeTypes)
+            g.addEdgeType(et);
+        for(int i=0;i<nodes.length;i++)
+        {
+            // every node has a neighbor with a known class to avoid ties in the mode
+            int known = ( ((i+1)%5 == 0) ? i+2 : i+1 );
+            g.addEdge(edgeTypes[0], nodes[i], nodes[known%nodes.length], 1.0+r.nextDouble());
+            for(int j=0;j<3;j++)
+            {
+                Node dst = nodes[r.nextInt(nodes.length)];
+                if(dst != nodes[i])
+                    g.addEdge(edgeTypes[r.nextInt(2)], nodes[i], dst, 1.0+r.nextDouble());
+            }
+        }
+
+        prior = new Estimate(g, nodeType, cls);
+        for(Node n : nodes)
+            if(n.isMissing(1))
+                prior.estimate(n, new double[] { 0.2, 0.5, 0.3 });
+
+        context = new AggregationContext(g);
+    }
+
+    public void tearDown() throws Exception
+    {
+        g = null;
+        prior = null;
+        context = null;
+        super.tearDown();
+    }
+
+    private List<Aggregator> getAggregators()
+    {
+        List<Aggregator> aggs = new ArrayList<Aggregator>();
+        for(EdgeType et : edgeTypes)
+        {
+            for(int v=0;v<cls.size();v++)
+            {
+                aggs.add(new Count(et, cls, v));
+                aggs.add(new Ratio(et, cls, v));
+                aggs.add(new Exist(et, cls, v));
+            }
+            for(int v=0;v<4;v++)
+            {
+                aggs.add(new Count(et, disc, v));
+                aggs.add(new Ratio(et, disc, v));
+                aggs.add(new Exist(et, disc, v));
+            }
+            aggs.add(new Mode(et, disc));
+            for(Attribute attrib : new Attribute[] { disc, cont })
+            {
+                aggs.add(new Mean(et, attrib));
+                aggs.add(new Min(et, attrib));
+                aggs.add(new Max(et, attrib));
+            }
+        }
+        aggs.add(new Mode(edgeTypes[0], cls));
+        for(Aggregator agg : aggs)
+            ((AggregatorImp)agg).setContext(context);
+        return aggs;
+    }
+
+    private void checkPlan(Estimate prior)
+    {
+        List<Aggregator> aggs = getAggregators();
+        AggregationPlan plan = new AggregationPlan(context, aggs);
+        assertEquals(aggs.size(), plan.size());
+
+        double[] vector = new double[aggs.size()+1];
+        for(Node n : g.getNodes(nodeType))
+        {
+            plan.evaluate(n, prior, vector, 1);
+            for(int i=0;i<aggs.size();i++)
+                assertEquals(n.getName()+" "+aggs.get(i), aggs.get(i).getValue(n, prior), vector[i+1], 1e-9);
+        }
+    }
+
+    public void testEvaluate() throws Exception
+    {
+        checkPlan(null);
+    }
+
+    public void testEvaluateWithPrior() throws Exception
+    {
+        checkPlan(prior);
+    }
+
+    public void testConcurrentEvaluate() throws Exception
+    {
+        final List<Aggregator> aggs = getAggregators();
+        final AggregationPlan plan = new AggregationPlan(context, aggs);
+        final Node[] nodes = g.getNodes(nodeType);
+        final double[][] expected = new double[nodes.length][aggs.size()];
+        for(int i=0;i<nodes.length;i++)
+            plan.evaluate(nodes[i], prior, expected[i], 0);
+
+        // each thread visits the nodes in a different order, using both the plan
+        // and the aggregators' own (per-thread) statistics
+        final String[] failure = new String[1];
+        Thread[] threads = new Thread[4];
+        for(int t=0;t<threads.length;t++)
+        {
+            final int step = 2*t+1;
+            threads[t] = new Thread() {
+                public void run() {
+                    double[] vector = new double[aggs.size()];
+                    for(int k=0;k<20*nodes.length;k++)
+                    {
+                        int i = (k*step)%nodes.length;
+                        plan.evaluate(nodes[i], prior, vector, 0);
+                        for(int j=0;j<vector.length;j++)
+                        {
+                            double value = aggs.get(j).getValue(nodes[i], prior);
+                            if(Math.abs(vector[j]-expected[i][j]) > 1e-9 || Math.abs(value-expected[i][j]) > 1e-9)
+                            {
+                                synchronized(failure) { failure[0] = nodes[i].getName()+" "+aggs.get(j); }
+                                return;
+                            }
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread : threads)
+            thread.join();
+        assertNull(failure[0], failure[0]);
+    }
+}
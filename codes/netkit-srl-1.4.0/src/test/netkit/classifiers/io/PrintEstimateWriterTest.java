@@ -0,0 +1,206 @@
+/**
+ * PrintEstimateWriterTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.io;
+
+import junit.framework.TestCase;
+import netkit.classifiers.Classification;
+import netkit.classifiers.Estimate;
+import netkit.graph.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Random;
+
+/**
+ * PrintEstimateWriter Tester.
+ */
+public class PrintEstimateWriterTest extends TestCase
+{
+    private static final String nodeType = "PrintEstimateWriterTest";
+    private static final String NL = System.getProperty("line.separator");
+    private Graph g;
+    private Node[] nodes;
+    private Estimate e;
+    private Classification truth;
+
+    public PrintEstimateWriterTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        g = new Graph();
+        Attributes a = new Attributes(nodeType);
+        AttributeCategorical cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"A","B","C"}));
+        a.add(new AttributeKey("key"));
+        a.add(cls);
+        g.addAttributes(a);
+
+        // node n0 has no estimate and no known label
+        Random r = new Random(5);
+        nodes = new Node[500];
+        for(int i=0;i<nodes.length;i++)
+        {
+            nodes[i] = g.addNode("n"+i,a);
+            nodes[i].setValues(new double[] { i, (i == 0 ? Double.NaN : r.nextInt(3)) });
+        }
+        e = new Estimate(g, nodeType, cls);
+        for(int i=1;i<nodes.length;i++)
+            e.estimate(nodes[i], new double[] { r.nextDouble(), r.nextDouble(), r.nextDouble() });
+        e.estimate(nodes[1], new double[] { 0.2, 0.7, 0.1 });
+        nodes[1].setValue(1, 1);
+        truth = new Classification(g, nodeType, cls);
+    }
+
+    public void testFormat()
+    {
+        PrintEstimateWriter pe = new PrintEstimateWriter(new PrintWriter(new StringWriter()));
+        assertEquals("n1 A:0.2 B:0.7 C:0.1", pe.toString(nodes[1], e));
+        assertEquals("n0 A:-1 B:-1 C:-1", pe.toString(nodes[0], e));
+
+        pe.setOutputFormat("%ID %CLASS %PREDICTION %ESTIMATE!A %ESTIMATE!B %ESTIMATE!C");
+        assertEquals("n1 B B:0.7 A:0.2  C:0.1", pe.toString(nodes[1], e, truth));
+        assertEquals("n1 UNKNOWN B:0.7 A:0.2  C:0.1", pe.toString(nodes[1], e));
+
+        pe.setOutputFormat("Node %ID is %PREDICTLABEL (%PREDICTSCORE), B=%B, X=%X");
+        assertEquals("Node n1 is B (0.7), B=0.7, X=-1.0", pe.toString(nodes[1], e));
+    }
+
+    private String printLines(PrintEstimateWriter pe)
+    {
+        StringWriter sw = new StringWriter();
+        pe.setOutput(new PrintWriter(sw));
+        for(Node node : nodes)
+            pe.println(node, e, truth);
+        return sw.toString();
+    }
+
+    public void testPrintAll()
+    {
+        PrintEstimateWriter pe = new PrintEstimateWriter(new PrintWriter(new StringWriter()), "%ID %CLASS %PREDICTION %A:%B:%C");
+        String expected = printLines(pe);
+        StringWriter sw = new StringWriter();
+        pe.setOutput(new PrintWriter(sw));
+        pe.printAll(nodes, e, truth);
+        assertEquals(expected, sw.toString());
+        assertEquals(nodes.length, expected.split(NL).length);
+    }
+
+    public void testAsync() throws Exception
+    {
+        PrintEstimateWriter pe = new PrintEstimateWriter(new PrintWriter(new StringWriter()));
+        String expected = printLines(pe);
+        File text = File.createTempFile("pew", ".predict");
+        File binary = File.createTempFile("pew", ".predict.bin");
+        try
+        {
+            double[] p1 = e.getEstimate(nodes[1]).clone();
+            pe.printAsync(text, false, "#0", nodes, e, truth, false);
+            pe.printAsync(binary, false, "#0", nodes, e, truth, true);
+            // the estimates may change once printAsync returns
+            e.estimate(nodes[1], new double[] { 1, 0, 0 });
+            pe.printAsync(binary, true, "#1", nodes, e, truth, true);
+            pe.awaitPending();
+
+            byte[] buf = new byte[(int)text.length()];
+            InputStream is = new FileInputStream(text);
+            assertEquals(buf.length, is.read(buf));
+            is.close();
+            assertEquals("#0"+NL+expected, new String(buf));
+
+            is = new FileInputStream(binary);
+            PrintEstimateWriter.BinaryEstimates be = PrintEstimateWriter.readBinary(is);
+            assertEquals("#0", be.header);
+            assertEquals(nodes.length, be.nodes.length);
+            assertEquals(3, be.tokens.length);
+            assertTrue(Float.isNaN(be.getScore(0, 0)));
+            for(int c=0;c<3;c++)
+                assertEquals((float)p1[c], be.getScore(1, c), 0);
+            be = PrintEstimateWriter.readBinary(is);
+            assertEquals("#1", be.header);
+            assertEquals(1f, be.getScore(1, 0), 0);
+            for(int i=2;i<nodes.length;i++)
+            {
+                assertEquals(nodes[i].getName(), be.nodes[i]);
+                for(int c=0;c<3;c++)
+                    assertEquals((float)e.getScore(nodes[i], c), be.getScore(i, c), 0);
+            }
+            assertNull(PrintEstimateWriter.readBinary(is));
+            is.close();
+        }
+        finally
+        {
+            text.delete();
+            binary.delete();
+        }
+    }
+
+    public void testAsyncFailure() throws Exception
+    {
+        PrintEstimateWriter pe = new PrintEstimateWriter(new PrintWriter(new StringWriter()));
+        printLines(pe);
+        File dir = File.createTempFile("pew", ".dir");
+        dir.delete();
+        dir.mkdir();
+        try
+        {
+            // a directory cannot be opened for writing
+            pe.printAsync(dir, false, "#0", nodes, e, truth, false);
+            try
+            {
+                pe.awaitPending();
+                fail("expected the write to fail");
+            }
+            catch(RuntimeException re)
+            {
+                assertTrue(re.getCause() instanceof IOException);
+            }
+            // the failure is reported once
+            pe.awaitPending();
+        }
+        finally
+        {
+            dir.delete();
+        }
+    }
+
+    public void testBinary() throws Exception
+    {
+        PrintEstimateWriter pe = new PrintEstimateWriter(new PrintWriter(new StringWriter()));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        pe.printBinary(os, null, nodes, e);
+        PrintEstimateWriter.BinaryEstimates be = PrintEstimateWriter.readBinary(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals("", be.header);
+        assertEquals("B", be.tokens[1]);
+        assertEquals(0.7f, be.getScore(1, 1), 0);
+    }
+}
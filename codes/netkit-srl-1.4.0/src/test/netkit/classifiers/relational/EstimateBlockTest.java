@@ -0,0 +1,247 @@
+/**
+ * EstimateBlockTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.relational;
+
+import junit.framework.TestCase;
+import netkit.classifiers.ClassifierBlockListener;
+import netkit.classifiers.ClassifierListener;
+import netkit.classifiers.DataSplit;
+import netkit.classifiers.DataView;
+import netkit.classifiers.Estimate;
+import netkit.graph.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * NetworkClassifierImp#estimateBlock Tester.
+ */
+public class EstimateBlockTest extends TestCase
+{
+    private static final String nodeType = "EstimateBlockTest";
+    private Graph g;
+    private AttributeCategorical cls;
+    private Node[] test;
+    private DataSplit split;
+    private Estimate prior;
+
+    public EstimateBlockTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        g = new Graph();
+        Attributes a = new Attributes(nodeType);
+        cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"A","B","C"}));
+        a.add(new AttributeKey("key"));
+        a.add(cls);
+        g.addAttributes(a);
+        EdgeType et = new EdgeType("link",nodeType,nodeType);
+        g.addEdgeType(et);
+
+        // the class of every fourth node is unknown
+        Random r = new Random(11);
+        Node[] nodes = new Node[200];
+        int[] truth = new int[nodes.length];
+        List<Node> train = new ArrayList<Node>();
+        List<Node> unknown = new ArrayList<Node>();
+        for(int i=0;i<nodes.length;i++)
+        {
+            truth[i] = r.nextInt(3);
+            nodes[i] = g.addNode("n"+i,a);
+            boolean known = (i%4 != 0);
+            nodes[i].setValues(new double[] { i, (known ? truth[i] : Double.NaN) });
+            (known ? train : unknown).add(nodes[i]);
+        }
+        for(int i=0;i<nodes.length;i++)
+        {
+            for(int j=0;j<3;j++)
+            {
+                int k = r.nextInt(nodes.length);
+                if(truth[k] != truth[i] && r.nextDouble() < 0.7)
+                    continue;
+                if(k != i)
+                {
+                    double w = 1+r.nextInt(3);
+                    g.addEdge(et, nodes[i], nodes[k], w);
+                    g.addEdge(et, nodes[k], nodes[i], w);
+                }
+            }
+        }
+        test = unknown.toArray(new Node[unknown.size()]);
+        DataView view = new DataView(g, nodeType, cls, 1, false, false, false, false, false);
+        split = new DataSplit(view, test, train.toArray(new Node[train.size()]));
+
+        prior = new Estimate(g, nodeType, cls);
+        for(Node n : test)
+        {
+            double[] d = new double[] { r.nextDouble(), r.nextDouble(), r.nextDouble() };
+            double sum = d[0]+d[1]+d[2];
+            for(int c=0;c<d.length;c++)
+                d[c] /= sum;
+            prior.estimate(n, d);
+        }
+    }
+
+    public void tearDown() throws Exception
+    {
+        g = null;
+        split = null;
+        prior = null;
+        super.tearDown();
+    }
+
+    // the block estimates must be the same as estimating one node at a time
+    private void checkBlocks(NetworkClassifierImp nc)
+    {
+        nc.configure(nc.getDefaultConfiguration());
+        nc.induceModel(g, split);
+
+        int numClasses = cls.size();
+        double[][] expected = new double[test.length][];
+        for(int i=0;i<test.length;i++)
+            expected[i] = nc.estimate(test[i], prior, false);
+
+        for(int blockSize : new int[] { 1, 7, test.length })
+        {
+            double[] result = new double[blockSize*numClasses];
+            boolean[] estimated = new boolean[blockSize];
+            for(int from=0;from<test.length;from+=blockSize)
+            {
+                int to = Math.min(test.length,from+blockSize);
+                int num = nc.estimateBlock(test, from, to, prior, result, estimated);
+                int numExpected = 0;
+                for(int i=from;i<to;i++)
+                {
+                    assertEquals(nc.getShortName()+":"+test[i].getName(), expected[i] != null, estimated[i-from]);
+                    if(expected[i] == null)
+                        continue;
+                    numExpected++;
+                    for(int c=0;c<numClasses;c++)
+                        assertEquals(nc.getShortName()+":"+test[i].getName()+"["+c+"]", expected[i][c], result[(i-from)*numClasses+c], 0.0);
+                }
+                assertEquals(numExpected, num);
+            }
+        }
+    }
+
+    public void testWeightedVoteRelationalNeighbor()
+    {
+        checkBlocks(new WeightedVoteRelationalNeighbor());
+    }
+
+    public void testClassDistribRelNeighbor()
+    {
+        checkBlocks(new ClassDistribRelNeighbor());
+    }
+
+    public void testNetworkOnlyBayes()
+    {
+        checkBlocks(new NetworkOnlyBayes());
+    }
+
+    public void testHarmonic()
+    {
+        checkBlocks(new Harmonic());
+    }
+
+    private static class CountingListener implements ClassifierListener
+    {
+        int numEstimates = 0;
+        public void estimate(Node node, double[] estimate) { numEstimates++; }
+        public void classify(Node node, int label) {}
+    }
+
+    private static class CountingBlockListener extends CountingListener implements ClassifierBlockListener
+    {
+        int numBlocks = 0;
+        int numNodes = 0;
+        public void estimate(Node[] nodes, int from, int to, double[] estimates, boolean[] estimated)
+        {
+            numBlocks++;
+            numNodes += to-from;
+        }
+    }
+
+    public void testListeners()
+    {
+        WeightedVoteRelationalNeighbor wvrn = new WeightedVoteRelationalNeighbor();
+        wvrn.configure(wvrn.getDefaultConfiguration());
+        wvrn.induceModel(g, split);
+        assertFalse(wvrn.hasListeners());
+
+        CountingListener node = new CountingListener();
+        CountingBlockListener block = new CountingBlockListener();
+        wvrn.addListener(node);
+        wvrn.addListener(block);
+        wvrn.addListener(block);
+        assertTrue(wvrn.hasListeners());
+
+        int blockSize = 7;
+        double[] result = new double[blockSize*cls.size()];
+        boolean[] estimated = new boolean[blockSize];
+        int numBlocks = 0;
+        for(int from=0;from<test.length;from+=blockSize)
+        {
+            wvrn.estimateBlock(test, from, Math.min(test.length,from+blockSize), prior, result, estimated);
+            numBlocks++;
+        }
+        assertEquals(test.length, node.numEstimates);
+        assertEquals(0, block.numEstimates);
+        assertEquals(numBlocks, block.numBlocks);
+        assertEquals(test.length, block.numNodes);
+
+        // single estimates are passed on one node at a time
+        wvrn.estimate(test[0], prior, false);
+        assertEquals(test.length+1, node.numEstimates);
+        assertEquals(1, block.numEstimates);
+
+        wvrn.removeListener(node);
+        wvrn.estimate(test[0], prior, false);
+        assertEquals(test.length+1, node.numEstimates);
+        assertEquals(2, block.numEstimates);
+
+        wvrn.clearListeners();
+        assertFalse(wvrn.hasListeners());
+    }
+
+    public void testInvalidBlock()
+    {
+        WeightedVoteRelationalNeighbor wvrn = new WeightedVoteRelationalNeighbor();
+        wvrn.configure(wvrn.getDefaultConfiguration());
+        wvrn.induceModel(g, split);
+        try
+        {
+            wvrn.estimateBlock(test, 0, 2, prior, new double[cls.size()], new boolean[2]);
+            fail("result array is too small for the block");
+        }
+        catch(IllegalArgumentException iae)
+        {
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * KnownNeighborCacheTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.relational;
+
+import junit.framework.TestCase;
+import netkit.classifiers.Estimate;
+import netkit.graph.*;
+
+import java.util.Random;
+
+/**
+ * KnownNeighborCache Tester.
+ */
+public class KnownNeighborCacheTest extends TestCase
+{
+    private static final String nodeType = "KnownNeighborCacheTest";
+    private static final int clsIdx = 1;
+    private Graph g;
+    private AttributeCategorical cls;
+    private EdgeType[] edgeTypes;
+    private Estimate prior;
+
+    public KnownNeighborCacheTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        g = new Graph();
+        Attributes a = new Attributes(nodeType);
+        cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"A","B","C"}));
+        a.add(new AttributeKey("key"));
+        a.add(cls);
+        g.addAttributes(a);
+
+        // the class is unknown for every third node
+        Random r = new Random(5);
+        Node[] nodes = new Node[30];
+        for(int i=0;i<nodes.length;i++)
+        {
+            nodes[i] = g.addNode("n"+i,a);
+            nodes[i].setValues(new double[] { i, ((i%3 == 0) ? Double.NaN : r.nextInt(3)) });
+        }
+
+        edgeTypes = new EdgeType[] { new EdgeType("e1",nodeType,nodeType), new EdgeType("e2",nodeType,nodeType) };
+        for(EdgeType et : edgeTypes)
+            g.addEdgeType(et);
+        for(int i=0;i<nodes.length;i++)
+        {
+            for(int j=0;j<4;j++)
+            {
+                Node dst = nodes[r.nextInt(nodes.length)];
+                if(dst != nodes[i])
+                    g.addEdge(edgeTypes[r.nextInt(2)], nodes[i], dst, 1.0+r.nextDouble());
+            }
+        }
+
+        prior = new Estimate(g, nodeType, cls);
+        for(Node n : nodes)
+            if(n.isMissing(clsIdx))
+                prior.estimate(n, new double[] { 0.2, 0.5, 0.3 });
+    }
+
+    public void tearDown() throws Exception
+    {
+        g = null;
+        prior = null;
+        super.tearDown();
+    }
+
+    // what wvRN computed before the cache: a weighted vote over all edges
+    private double[] scan(Node node, EdgeType et)
+    {
+        double[] counts = new double[cls.size()];
+        for(Edge e : node.getEdges())
+        {
+            if(et != null && !e.getEdgeType().getName().equals(et.getName()))
+                continue;
+            Node dest = e.getDest();
+            if(!dest.isMissing(clsIdx))
+                counts[(int)dest.getValue(clsIdx)] += e.getWeight();
+            else
+            {
+                double[] d = prior.getEstimate(dest);
+                for(int v=0;v<d.length;v++)
+                    counts[v] += e.getWeight()*d[v];
+            }
+        }
+        return counts;
+    }
+
+    public void testCounts()
+    {
+        KnownNeighborCache cache = new KnownNeighborCache(g, nodeType, clsIdx, cls.size(), null, false);
+        int numUnknown = 0;
+        for(Node node : g.getNodes(nodeType))
+        {
+            for(Edge e : node.getEdges())
+                if(e.getDest().isMissing(clsIdx))
+                    numUnknown++;
+            double[] counts = new double[cls.size()];
+            cache.addKnownCounts(node, counts, 0);
+            cache.addUnknownEstimates(node, prior, counts, 0);
+            double[] expected = scan(node, null);
+            for(int c=0;c<counts.length;c++)
+                assertEquals(node.getName()+"["+c+"]", expected[c], counts[c], 1e-12);
+            for(int k=cache.offsets[node.getIndex()];k<cache.offsets[node.getIndex()+1];k++)
+                assertTrue(cache.dests[k].isMissing(clsIdx));
+        }
+        assertEquals(numUnknown, cache.numUnknownEdges());
+    }
+
+    public void testCountsByEdgeType()
+    {
+        KnownNeighborCache cache = new KnownNeighborCache(g, nodeType, clsIdx, cls.size(), edgeTypes, true);
+        assertEquals(2, cache.numBlocks);
+        for(Node node : g.getNodes(nodeType))
+        {
+            double[] counts = new double[cache.numBlocks*cls.size()];
+            cache.addKnownCounts(node, counts, 0);
+            cache.addUnknownEstimates(node, prior, counts, 0);
+            for(int b=0;b<edgeTypes.length;b++)
+            {
+                double[] expected = scan(node, edgeTypes[b]);
+                for(int c=0;c<expected.length;c++)
+                    assertEquals(node.getName()+"["+b+","+c+"]", expected[c], counts[b*cls.size()+c], 1e-12);
+            }
+        }
+    }
+
+    public void testNullPrior()
+    {
+        KnownNeighborCache cache = new KnownNeighborCache(g, nodeType, clsIdx, cls.size(), edgeTypes, false);
+        for(Node node : g.getNodes(nodeType))
+        {
+            double[] counts = new double[cls.size()];
+            cache.addUnknownEstimates(node, null, counts, 0);
+            for(double c : counts)
+                assertEquals(0.0, c, 0.0);
+        }
+    }
+}
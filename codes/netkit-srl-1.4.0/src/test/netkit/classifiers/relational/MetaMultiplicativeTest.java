@@ -0,0 +1,186 @@
+/**
+ * MetaMultiplicativeTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.relational;
+
+import junit.framework.TestCase;
+import netkit.classifiers.DataSplit;
+import netkit.classifiers.DataView;
+import netkit.classifiers.Estimate;
+import netkit.classifiers.NetworkLearning;
+import netkit.graph.*;
+import netkit.util.Configuration;
+import netkit.util.NetKitEnv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * MetaMultiplicative Tester.
+ */
+public class MetaMultiplicativeTest extends TestCase
+{
+    private static final String nodeType = "MetaMultiplicativeTest";
+    private Graph g;
+    private AttributeCategorical cls;
+    private Node[] test;
+    private DataSplit split;
+    private Estimate prior;
+    private int numThreads;
+
+    public MetaMultiplicativeTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        numThreads = NetKitEnv.getNumThreads();
+        g = new Graph();
+        Attributes a = new Attributes(nodeType);
+        cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"A","B","C"}));
+        a.add(new AttributeKey("key"));
+        a.add(cls);
+        g.addAttributes(a);
+        EdgeType et = new EdgeType("link",nodeType,nodeType);
+        g.addEdgeType(et);
+
+        // the class of every fourth node is unknown
+        Random r = new Random(11);
+        Node[] nodes = new Node[200];
+        int[] truth = new int[nodes.length];
+        List<Node> train = new ArrayList<Node>();
+        List<Node> unknown = new ArrayList<Node>();
+        for(int i=0;i<nodes.length;i++)
+        {
+            truth[i] = r.nextInt(3);
+            nodes[i] = g.addNode("n"+i,a);
+            boolean known = (i%4 != 0);
+            nodes[i].setValues(new double[] { i, (known ? truth[i] : Double.NaN) });
+            (known ? train : unknown).add(nodes[i]);
+        }
+        for(int i=0;i<nodes.length;i++)
+        {
+            for(int j=0;j<3;j++)
+            {
+                int k = r.nextInt(nodes.length);
+                if(truth[k] != truth[i] && r.nextDouble() < 0.7)
+                    continue;
+                if(k != i)
+                {
+                    double w = 1+r.nextInt(3);
+                    g.addEdge(et, nodes[i], nodes[k], w);
+                    g.addEdge(et, nodes[k], nodes[i], w);
+                }
+            }
+        }
+        test = unknown.toArray(new Node[unknown.size()]);
+        DataView view = new DataView(g, nodeType, cls, 1, false, false, false, false, false);
+        split = new DataSplit(view, test, train.toArray(new Node[train.size()]));
+
+        prior = new Estimate(g, nodeType, cls);
+        for(Node n : test)
+        {
+            double[] d = new double[] { r.nextDouble(), r.nextDouble(), r.nextDouble() };
+            double sum = d[0]+d[1]+d[2];
+            for(int c=0;c<d.length;c++)
+                d[c] /= sum;
+            prior.estimate(n, d);
+        }
+    }
+
+    public void tearDown() throws Exception
+    {
+        NetKitEnv.setNumThreads(numThreads);
+        g = null;
+        split = null;
+        prior = null;
+        super.tearDown();
+    }
+
+    private MetaMultiplicative induce(boolean parallel)
+    {
+        MetaMultiplicative meta = new MetaMultiplicative();
+        Configuration conf = meta.getDefaultConfiguration();
+        conf.set(NetworkLearning.RC_PREFIX, "wvrn,nobayes,cdrn-norm-cos");
+        conf.set(NetworkLearning.LC_PREFIX, "classprior,uniform");
+        conf.set("parallel", parallel);
+        meta.configure(conf);
+        meta.induceModel(g, split);
+        return meta;
+    }
+
+    private double[][] estimate(boolean parallel)
+    {
+        MetaMultiplicative meta = induce(parallel);
+        double[][] result = new double[test.length][cls.size()];
+        for(int iter=0;iter<2;iter++)
+            for(int i=0;i<test.length;i++)
+                assertTrue(meta.estimate(test[i], prior, result[i], false));
+        return result;
+    }
+
+    public void testParallelMatchesSequential()
+    {
+        NetKitEnv.setNumThreads(4);
+        double[][] sequential = estimate(false);
+        double[][] parallel = estimate(true);
+        for(int i=0;i<test.length;i++)
+        {
+            double sum = 0;
+            for(int c=0;c<cls.size();c++)
+            {
+                assertEquals(test[i].getName()+"["+c+"]", sequential[i][c], parallel[i][c], 0.0);
+                sum += parallel[i][c];
+            }
+            assertEquals(1.0, sum, 1e-12);
+        }
+    }
+
+    // the members run over a block at a time must give the estimates of one node at a time
+    public void testBlockMatchesSingle()
+    {
+        NetKitEnv.setNumThreads(4);
+        double[][] single = estimate(false);
+        MetaMultiplicative meta = induce(true);
+        int blockSize = 17;
+        double[] block = new double[blockSize*cls.size()];
+        boolean[] estimated = new boolean[blockSize];
+        for(int iter=0;iter<2;iter++)
+        {
+            for(int from=0;from<test.length;from+=blockSize)
+            {
+                int to = Math.min(test.length, from+blockSize);
+                assertEquals(to-from, meta.estimateBlock(test, from, to, prior, block, estimated));
+                for(int i=from;i<to;i++)
+                {
+                    assertTrue(estimated[i-from]);
+                    for(int c=0;c<cls.size();c++)
+                        assertEquals(test[i].getName()+"["+c+"]", single[i][c], block[(i-from)*cls.size()+c], 0.0);
+                }
+            }
+        }
+    }
+}
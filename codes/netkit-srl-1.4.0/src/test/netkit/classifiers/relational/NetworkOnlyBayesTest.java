@@ -0,0 +1,134 @@
+/**
+ * NetworkOnlyBayesTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.relational;
+
+import junit.framework.TestCase;
+import netkit.classifiers.DataSplit;
+import netkit.classifiers.DataView;
+import netkit.classifiers.Estimate;
+import netkit.graph.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NetworkOnlyBayes Tester.
+ */
+public class NetworkOnlyBayesTest extends TestCase
+{
+    private static final String nodeType = "NetworkOnlyBayesTest";
+    private static final int size = 700;
+    private Graph g;
+    private AttributeCategorical cls;
+    private Node hub;
+    private Node unknown;
+    private DataSplit split;
+
+    public NetworkOnlyBayesTest(String name)
+    {
+        super(name);
+    }
+
+    private void link(EdgeType et, Node a, Node b, double w)
+    {
+        g.addEdge(et, a, b, w);
+        g.addEdge(et, b, a, w);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        g = new Graph();
+        Attributes a = new Attributes(nodeType);
+        cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"A","B"}));
+        a.add(new AttributeKey("key"));
+        a.add(cls);
+        g.addAttributes(a);
+        EdgeType et = new EdgeType("link",nodeType,nodeType);
+        g.addEdgeType(et);
+
+        // two homophilous chains of known nodes, with a few edges between them
+        List<Node> train = new ArrayList<Node>();
+        Node[][] chains = new Node[2][size];
+        for(int c=0;c<2;c++)
+        {
+            for(int i=0;i<size;i++)
+            {
+                chains[c][i] = g.addNode(cls.getToken(c)+i,a);
+                chains[c][i].setValues(new double[] { g.numNodes(), c });
+                train.add(chains[c][i]);
+                if(i>0)
+                    link(et, chains[c][i-1], chains[c][i], 1.0);
+            }
+        }
+        for(int i=0;i<size;i+=4)
+            link(et, chains[0][i], chains[1][i], 1.0);
+
+        // a hub with more than a thousand known neighbors and one unknown neighbor
+        hub = g.addNode("hub",a);
+        hub.setValues(new double[] { g.numNodes(), Double.NaN });
+        unknown = g.addNode("unknown",a);
+        unknown.setValues(new double[] { g.numNodes(), Double.NaN });
+        for(int i=0;i<size;i++)
+            link(et, hub, chains[0][i], 1.0);
+        for(int i=0;i<size-200;i++)
+            link(et, hub, chains[1][i], 1.0);
+        link(et, hub, unknown, 2.5);
+        link(et, unknown, chains[1][0], 1.0);
+
+        DataView view = new DataView(g, nodeType, cls, 1, false, false, false, false, false);
+        split = new DataSplit(view, new Node[] { hub, unknown }, train.toArray(new Node[train.size()]));
+    }
+
+    public void tearDown() throws Exception
+    {
+        g = null;
+        split = null;
+        super.tearDown();
+    }
+
+    public void testHighDegreeHub()
+    {
+        NetworkOnlyBayes nbc = new NetworkOnlyBayes();
+        nbc.configure(nbc.getDefaultConfiguration());
+        nbc.induceModel(g, split);
+
+        // the products of ~1200 probabilities underflow to 0 for both classes
+        Estimate prior = new Estimate(g, nodeType, cls);
+        prior.estimate(hub, new double[] { 0.5, 0.5 });
+        prior.estimate(unknown, new double[] { 0.3, 0.7 });
+        double[] result = new double[cls.size()];
+        assertTrue(nbc.estimate(hub, prior, result, false));
+        assertEquals(1.0, result[0]+result[1], 1e-12);
+        assertTrue("P(A)="+result[0], result[0] > 0.99);
+
+        // the same after the estimates of the known neighbors are cached
+        assertTrue(nbc.estimate(hub, prior, result, false));
+        assertTrue("P(A)="+result[0], result[0] > 0.99);
+
+        assertTrue(nbc.estimate(unknown, prior, result, false));
+        assertEquals(1.0, result[0]+result[1], 1e-12);
+        assertTrue("P(B)="+result[1], result[1] > result[0]);
+    }
+}
@@ -0,0 +1,457 @@
+/**
+ * SparseTransducerTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+
+/**
+ * $Id$
+ **/
+package netkit.classifiers.relational;
+
+import junit.framework.TestCase;
+import netkit.classifiers.DataSplit;
+import netkit.classifiers.DataView;
+import netkit.classifiers.Estimate;
+import netkit.graph.*;
+import netkit.util.Configuration;
+import netkit.util.Matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * LLGC, ZFL, SGL, CTK, RCTK, aNRL and bNRWR Tester, against dense versions of their MATLAB baselines.
+ */
+public class SparseTransducerTest extends TestCase
+{
+    private static final String nodeType = "SparseTransducerTest";
+    private static final int numNodes = 60;
+    private Graph g;
+    private AttributeCategorical cls;
+    private Node[] nodes;
+    private Node[] test;
+    private DataSplit split;
+    private double[][] W;
+    private double[][] Y;
+
+    public SparseTransducerTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        g = new Graph();
+        Attributes a = new Attributes(nodeType);
+        cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"A","B","C"}));
+        a.add(new AttributeKey("key"));
+        a.add(cls);
+        g.addAttributes(a);
+        EdgeType et = new EdgeType("link",nodeType,nodeType);
+        g.addEdgeType(et);
+
+        // the class of every third node is unknown, the last two nodes
+        // have no edges and a few more have no out-edges
+        Random r = new Random(23);
+        nodes = new Node[numNodes];
+        List<Node> train = new ArrayList<Node>();
+        List<Node> unknown = new ArrayList<Node>();
+        W = new double[numNodes][numNodes];
+        Y = new double[numNodes][cls.size()];
+        for(int i=0;i<numNodes;i++)
+        {
+            int truth = r.nextInt(3);
+            nodes[i] = g.addNode("n"+i,a);
+            boolean known = (i%3 != 0);
+            nodes[i].setValues(new double[] { i, (known ? truth : Double.NaN) });
+            (known ? train : unknown).add(nodes[i]);
+            if(known)
+                Y[i][truth] = 1;
+        }
+        for(int i=0;i<numNodes-2;i++)
+        {
+            if(i%7 == 5)
+                continue;
+            for(int j=0;j<3;j++)
+            {
+                int k = r.nextInt(numNodes-2);
+                if(k == i)
+                    continue;
+                double w = 1+r.nextInt(3);
+                g.addEdge(et, nodes[i], nodes[k], w);
+                W[i][k] += w;
+            }
+        }
+        test = unknown.toArray(new Node[unknown.size()]);
+        DataView view = new DataView(g, nodeType, cls, 1, false, false, false, false, false);
+        split = new DataSplit(view, test, train.toArray(new Node[train.size()]));
+    }
+
+    public void tearDown() throws Exception
+    {
+        g = null;
+        split = null;
+        super.tearDown();
+    }
+
+    private static double[][] multiply(double[][] A, double[][] B)
+    {
+        return new Matrix(A).multiply(new Matrix(B)).getMatrix();
+    }
+
+    private static double[][] transpose(double[][] A)
+    {
+        double[][] T = new double[A[0].length][A.length];
+        for(int i=0;i<A.length;i++)
+            for(int j=0;j<A[i].length;j++)
+                T[j][i] = A[i][j];
+        return T;
+    }
+
+    private static double[][] add(double[][] A, double[][] B, double b)
+    {
+        double[][] S = new double[A.length][A[0].length];
+        for(int i=0;i<A.length;i++)
+            for(int j=0;j<A[i].length;j++)
+                S[i][j] = A[i][j] + b*B[i][j];
+        return S;
+    }
+
+    private static double[][] identity(int n)
+    {
+        return new Matrix(n,n,true).getMatrix();
+    }
+
+    private static double[][] solve(double[][] M, double[][] B)
+    {
+        return multiply(new Matrix(M).invert().getMatrix(), B);
+    }
+
+    // the predictions of the unknown nodes must be their rows of F
+    private void check(SparseTransducer nc, Configuration conf, double[][] F)
+    {
+        nc.configure(conf);
+        nc.induceModel(g, split);
+        Estimate prior = new Estimate(g, nodeType, cls);
+        for(Node n : test)
+        {
+            double[] p = nc.estimate(n, prior, false);
+            double[] expected = F[n.getIndex()];
+            if(expected == null || (expected[0] == 0 && expected[1] == 0 && expected[2] == 0))
+            {
+                assertNull(n.getName(), p);
+                continue;
+            }
+            assertNotNull(n.getName(), p);
+            for(int c=0;c<p.length;c++)
+                assertEquals(n.getName()+"["+c+"]", expected[c], p[c], 1e-6);
+        }
+    }
+
+    public void testLLGC()
+    {
+        double alpha = 0.9;
+        double[] degree = new double[numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+                degree[j] += W[i][j];
+        double[][] S = new double[numNodes][numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+                S[i][j] = W[i][j]/Math.sqrt((degree[i] > 0 ? degree[i] : 1)*(degree[j] > 0 ? degree[j] : 1));
+        double[][] F = solve(add(identity(numNodes), S, -alpha), Y);
+
+        LLGC llgc = new LLGC();
+        Configuration conf = llgc.getDefaultConfiguration();
+        conf.set("alpha", alpha);
+        check(llgc, conf, F);
+    }
+
+    public void testZFL()
+    {
+        double alpha = 0.99;
+        double[] in = new double[numNodes];
+        double[] out = new double[numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+            {
+                out[i] += W[i][j];
+                in[j] += W[i][j];
+            }
+        double[][] A = new double[numNodes][numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+                A[i][j] = W[i][j]/Math.sqrt((out[i] > 0 ? out[i] : 1)*(in[j] > 0 ? in[j] : 1));
+        double[][] At = transpose(A);
+        double[][] A2 = multiply(A, A);
+        double[][] W2 = add(multiply(A, At), multiply(At, A), 1);
+        double[][] AAt = add(A, At, 1);
+        double[][] W3 = add(multiply(multiply(A, AAt), At), multiply(multiply(At, AAt), A), 1);
+        double[][] M1 = add(add(A2, transpose(A2), 1), multiply(A, At), 1);
+        double[][] M2 = add(add(A2, transpose(A2), 1), multiply(At, A), 1);
+        double[][] W4 = add(multiply(multiply(A, M1), At), multiply(multiply(At, M2), A), 1);
+        double[] offDiagonal = new double[3];
+        double[][][] Wk = { W2, W3, W4 };
+        for(int k=0;k<3;k++)
+            for(int i=0;i<numNodes;i++)
+                for(int j=0;j<numNodes;j++)
+                    if(i != j)
+                        offDiagonal[k] += Wk[k][i][j];
+        double[][] W1 = add(add(W2, W3, offDiagonal[0]/offDiagonal[1]), W4, offDiagonal[0]/offDiagonal[2]);
+
+        // the nodes without edges are left out of the system, but still
+        // count in the size of the graph that scales the rank-one term
+        List<Integer> active = new ArrayList<Integer>();
+        for(int i=0;i<numNodes;i++)
+            if(in[i]+out[i] > 0)
+                active.add(i);
+        assertTrue(active.size() < numNodes-2);
+        int n = active.size();
+        double[] d = new double[n];
+        double sum = 0;
+        for(int i=0;i<n;i++)
+        {
+            for(int j=0;j<numNodes;j++)
+                d[i] += W1[active.get(i)][j];
+            sum += d[i];
+        }
+        double[][] L = new double[n][n];
+        double[][] Yn = new double[n][];
+        for(int i=0;i<n;i++)
+        {
+            for(int j=0;j<n;j++)
+                L[i][j] = (i == j ? d[i] : 0) - alpha*W1[active.get(i)][active.get(j)] + sum/numNodes;
+            Yn[i] = Y[active.get(i)];
+        }
+        double[][] Fn = solve(L, Yn);
+        double[][] F = new double[numNodes][];
+        for(int i=0;i<n;i++)
+            F[active.get(i)] = Fn[i];
+
+        ZFL zfl = new ZFL();
+        check(zfl, zfl.getDefaultConfiguration(), F);
+        for(int i=0;i<n;i++)
+            assertEquals(d[i], zfl.getDegree()[active.get(i)], 1e-9);
+    }
+
+    // the transition matrix of the random walk with teleporting
+    private double[][] getTransitions(double eta)
+    {
+        double[][] P = new double[numNodes][numNodes];
+        for(int i=0;i<numNodes;i++)
+        {
+            double out = 0;
+            for(int j=0;j<numNodes;j++)
+                out += W[i][j];
+            for(int j=0;j<numNodes;j++)
+                P[i][j] = eta*(out > 0 ? W[i][j]/out : 1.0/numNodes) + (1-eta)/numNodes;
+        }
+        return P;
+    }
+
+    public void testSGL()
+    {
+        double eta = 0.5;
+        double alpha = 0.1;
+        double[][] P = getTransitions(eta);
+
+        SGL sgl = new SGL();
+        Configuration conf = sgl.getDefaultConfiguration();
+        conf.set("eta", eta);
+        conf.set("alpha", alpha);
+        conf.set("tolerance", 1e-12);
+        sgl.configure(conf);
+        sgl.induceModel(g, split);
+
+        // the stationary distribution
+        double[] pi = sgl.getStationary();
+        double total = 0;
+        for(int j=0;j<numNodes;j++)
+        {
+            double next = 0;
+            for(int i=0;i<numNodes;i++)
+                next += pi[i]*P[i][j];
+            assertEquals(pi[j], next, 1e-10);
+            total += pi[j];
+        }
+        assertEquals(1.0, total, 1e-10);
+
+        double[][] Theta = new double[numNodes][numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+                Theta[i][j] = 0.5*(Math.sqrt(pi[i]/pi[j])*P[i][j] + Math.sqrt(pi[j]/pi[i])*P[j][i]);
+        double[][] F = solve(add(identity(numNodes), Theta, -alpha), Y);
+        check(sgl, conf, F);
+    }
+
+    public void testCTK()
+    {
+        double eta = 0.3;
+        double[][] P = getTransitions(eta);
+        double[][] ones = new double[numNodes][numNodes];
+        for(double[] row : ones)
+            Arrays.fill(row, 1.0/numNodes);
+        double[][] L = add(add(identity(numNodes), P, -1), ones, -1);
+        double[][] K = add(new Matrix(L).invert().getMatrix(), ones, 1);
+        double[][] F = multiply(K, Y);
+
+        CTK ctk = new CTK();
+        Configuration conf = ctk.getDefaultConfiguration();
+        conf.set("eta", eta);
+        check(ctk, conf, F);
+    }
+
+    public void testRCTK()
+    {
+        double eta = 0.6;
+        double alpha = 0.5;
+        double[][] F = solve(add(identity(numNodes), transpose(getTransitions(eta)), -alpha), Y);
+
+        RCTK rctk = new RCTK();
+        Configuration conf = rctk.getDefaultConfiguration();
+        conf.set("eta", eta);
+        conf.set("alpha", alpha);
+        check(rctk, conf, F);
+    }
+
+    // the scores after the given number of steps of F = alpha*A*F + Y
+    private double[][] iterate(double[][] A, double alpha, int steps, double[][] B)
+    {
+        double[][] F = B;
+        for(int t=0;t<steps;t++)
+            F = add(B, multiply(A, F), alpha);
+        return F;
+    }
+
+    private double[] getOutDegree()
+    {
+        double[] out = new double[numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+                out[i] += W[i][j];
+        return out;
+    }
+
+    private double[][] getANRL(double alpha, int steps, double[][] B)
+    {
+        double[] d = getOutDegree();
+        double[][] L = new double[numNodes][numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+                L[i][j] = -W[i][j]/Math.sqrt((d[i] > 0 ? d[i] : 1)*(d[j] > 0 ? d[j] : 1));
+        return iterate(L, alpha, steps, B);
+    }
+
+    private double[][] getBNRWR(double alpha, int steps, double[][] B)
+    {
+        double[] d = getOutDegree();
+        double[][] P = new double[numNodes][numNodes];
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<numNodes;j++)
+                P[i][j] = (d[i] > 0 ? W[i][j]/d[i] : 0);
+        double[][] S = iterate(transpose(P), alpha, steps, B);
+        for(int i=0;i<numNodes;i++)
+            for(int c=0;c<S[i].length;c++)
+                S[i][c] /= (d[i] > 0 ? d[i] : 1);
+        return S;
+    }
+
+    public void testANRL()
+    {
+        ANRL anrl = new ANRL();
+        Configuration conf = anrl.getDefaultConfiguration();
+        conf.set("alpha", 0.7);
+        conf.set("maxiterations", 6);
+        check(anrl, conf, getANRL(0.7, 6, Y));
+    }
+
+    public void testBNRWR()
+    {
+        BNRWR bnrwr = new BNRWR();
+        Configuration conf = bnrwr.getDefaultConfiguration();
+        conf.set("alpha", 0.8);
+        conf.set("maxiterations", 9);
+        check(bnrwr, conf, getBNRWR(0.8, 9, Y));
+    }
+
+    // the accuracy on every fold, where the first highest score is predicted
+    private void checkSweep(IterativeTransducer nc, boolean anrl)
+    {
+        double[] alphas = { 0.3, 0.9, 0.6 };
+        int[] iterations = { 4, 0, 1, 10 };
+        int numFolds = 4;
+        ParameterSweep sweep = new ParameterSweep(nc, alphas, iterations, numFolds);
+        double[][] acc = sweep.run(g, split, 7);
+
+        Node[][] folds = sweep.getFolds();
+        assertEquals(numFolds, folds.length);
+        int numKnown = 0;
+        for(Node[] fold : folds)
+            numKnown += fold.length;
+        assertEquals(split.getTrainSetSize(), numKnown);
+        double best = -1;
+        int bestA = -1;
+        int bestK = -1;
+        for(int k=0;k<iterations.length;k++)
+            for(int a=0;a<alphas.length;a++)
+            {
+                double expected = 0;
+                for(Node[] fold : folds)
+                {
+                    double[][] B = new double[numNodes][];
+                    for(int i=0;i<numNodes;i++)
+                        B[i] = Y[i].clone();
+                    for(Node n : fold)
+                        Arrays.fill(B[n.getIndex()], 0);
+                    double[][] F = (anrl ? getANRL(alphas[a], iterations[k], B) : getBNRWR(alphas[a], iterations[k], B));
+                    int correct = 0;
+                    for(Node n : fold)
+                    {
+                        double[] p = F[n.getIndex()];
+                        int max = 0;
+                        for(int c=1;c<p.length;c++)
+                            if(p[c] > p[max])
+                                max = c;
+                        if(Y[n.getIndex()][max] == 1)
+                            correct++;
+                    }
+                    expected += (double)correct/fold.length;
+                }
+                expected /= folds.length;
+                assertEquals(alphas[a]+"/"+iterations[k], expected, acc[a][k], 1e-12);
+                if(expected > best)
+                {
+                    best = expected;
+                    bestA = a;
+                    bestK = k;
+                }
+            }
+        assertEquals(alphas[bestA], sweep.getBestAlpha(), 0);
+        assertEquals(iterations[bestK], sweep.getBestIterations());
+    }
+
+    public void testParameterSweep()
+    {
+        checkSweep(new ANRL(), true);
+        checkSweep(new BNRWR(), false);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * AUCTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.util;
+
+import netkit.graph.*;
+import netkit.classifiers.Classification;
+import netkit.classifiers.Estimate;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * AUC Tester.
+ */
+public class AUCTest extends TestCase
+{
+    private Graph graph;
+    private AttributeCategorical cls;
+    private Node[] nodes;
+
+    public AUCTest(String name)
+    {
+        super(name);
+    }
+
+    private void build(int numNodes, int numClasses)
+    {
+	graph = new Graph();
+	final Attributes attrs = new Attributes("myAttributes");
+	attrs.add(new AttributeKey("field0"));
+	String[] tokens = new String[numClasses];
+	for(int c=0;c<numClasses;c++)
+	    tokens[c] = "c"+c;
+	cls = new AttributeFixedCategorical("class", new FixedTokenSet(tokens));
+	attrs.add(cls);
+	graph.addAttributes(attrs);
+	nodes = new Node[numNodes];
+	for(int i=0;i<numNodes;i++)
+	{
+	    nodes[i] = graph.addNode("node"+i, attrs);
+	    nodes[i].setValues(new double[] { i, Double.NaN });
+	}
+    }
+
+    // random estimates, which take one of the given number of levels if levels>0
+    private Estimate randomEstimate(Random r, int levels)
+    {
+	Estimate e = new Estimate(graph, "myAttributes", cls);
+	for(Node n : nodes)
+	{
+	    n.setValue(1, r.nextInt(cls.size()));
+	    double[] p = new double[cls.size()];
+	    for(int c=0;c<p.length;c++)
+		p[c] = (levels > 0 ? r.nextInt(levels)/(double)levels : r.nextDouble());
+	    e.estimate(n, p);
+	}
+	return e;
+    }
+
+    // the fraction of (positive,negative) pairs in order, where ties count as half
+    private double getPairAUC(Estimate e, Classification truth, int c)
+    {
+	double ordered = 0;
+	long pairs = 0;
+	for(Node p : nodes)
+	    if(truth.getClassValue(p) == c)
+		for(Node n : nodes)
+		    if(truth.getClassValue(n) != c)
+		    {
+			pairs++;
+			if(e.getScore(p, c) > e.getScore(n, c))
+			    ordered++;
+			else if(e.getScore(p, c) == e.getScore(n, c))
+			    ordered += 0.5;
+		    }
+	return ordered/pairs;
+    }
+
+    public void testSmallExample()
+    {
+	build(7, 2);
+	double[] scores = { 0.9, 0.8, 0.4, 0.7, 0.3, 0.2, 0.1 };
+	Estimate e = new Estimate(graph, "myAttributes", cls);
+	for(int i=0;i<nodes.length;i++)
+	{
+	    nodes[i].setValue(1, (i < 3 ? 0 : 1));
+	    e.estimate(nodes[i], new double[] { scores[i], 1-scores[i] });
+	}
+	Classification truth = new Classification(graph, "myAttributes", cls);
+	assertEquals(11/12.0, AUC.getAUC(e, truth, 0), 1e-12);
+	assertEquals(11/12.0, AUC.getAUC(e, truth, 1), 1e-12);
+
+	// no positives
+	for(Node n : nodes)
+	    n.setValue(1, 1);
+	truth = new Classification(graph, "myAttributes", cls);
+	assertEquals(0.0, AUC.getAUC(e, truth, 0), 0);
+	assertEquals(0, new ROC(e, truth, 0).getPoints().length);
+    }
+
+    public void testMannWhitney()
+    {
+	build(300, 3);
+	Random r = new Random(13);
+	Estimate e = randomEstimate(r, 0);
+	Classification truth = new Classification(graph, "myAttributes", cls);
+	double[] auc = AUC.getAUCs(e, truth);
+	for(int c=0;c<cls.size();c++)
+	{
+	    // without ties, the AUC is the fraction of (positive,negative) pairs in order
+	    assertEquals(getPairAUC(e, truth, c), auc[c], 1e-12);
+	    assertEquals(auc[c], new ROC(e, truth, c).getAUC(), 0);
+	}
+    }
+
+    public void testTiesMatchROC()
+    {
+	build(500, 4);
+	Random r = new Random(17);
+	Estimate e = randomEstimate(r, 5);
+	Classification truth = new Classification(graph, "myAttributes", cls);
+	double[] auc = AUC.getAUCs(e, truth);
+	double[] binned = AUC.getAUCs(e, truth, 1000);
+	for(int c=0;c<cls.size();c++)
+	{
+	    ROC roc = new ROC(e, truth, c);
+	    assertEquals(roc.getAUC(), auc[c], 0);
+	    // every score level falls into its own bin, so the binned AUC
+	    // counts pairs with tied scores as half ordered
+	    assertEquals(getPairAUC(e, truth, c), binned[c], 1e-12);
+	    assertEquals(roc.getNumPos()+roc.getNumNeg(), nodes.length);
+	    assertEquals(0.0, roc.getPoints()[0].getX(), 0);
+	    assertEquals(1.0, roc.getPoints()[roc.getPoints().length-1].getY(), 0);
+	}
+    }
+
+    public void testLargeBinned()
+    {
+	// enough scores to do the classes in parallel
+	build(20000, 3);
+	Random r = new Random(19);
+	Estimate e = randomEstimate(r, 0);
+	for(int i=0;i<nodes.length;i++)
+	{
+	    // make class 0 somewhat predictable
+	    if(nodes[i].getValue(1) == 0)
+		e.estimate(nodes[i], new double[] { 0.5+0.5*r.nextDouble(), r.nextDouble(), r.nextDouble() });
+	}
+	Classification truth = new Classification(graph, "myAttributes", cls);
+	double[] auc = AUC.getAUCs(e, truth);
+	double[] binned = AUC.getAUCs(e, truth, 1000);
+	for(int c=0;c<cls.size();c++)
+	{
+	    assertEquals(AUC.getAUC(e, truth, c), auc[c], 0);
+	    assertEquals(auc[c], binned[c], 1e-3);
+	}
+	assertTrue(auc[0] > 0.7);
+    }
+}
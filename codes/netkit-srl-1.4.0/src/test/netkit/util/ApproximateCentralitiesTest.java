@@ -0,0 +1,131 @@
+/**
+ * ApproximateCentralitiesTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.util;
+
+import netkit.graph.*;
+import junit.framework.TestCase;
+
+/**
+ * ApproximateCentralities Tester.
+ */
+public class ApproximateCentralitiesTest extends TestCase
+{
+    private Graph graph;
+    private EdgeType et;
+    private Node[] nodes;
+
+    public ApproximateCentralitiesTest(String name)
+    {
+        super(name);
+    }
+
+    private void link(int i, int j, double w)
+    {
+	graph.addEdge(et, nodes[i], nodes[j], w);
+	graph.addEdge(et, nodes[j], nodes[i], w);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+	graph = new Graph();
+
+	final Attributes attrs = new Attributes("myAttributes");
+	attrs.add(new AttributeKey("field0"));
+	graph.addAttributes(attrs);
+
+	// A path 0-1-2-3 ending in the triangle 3-4-5
+	nodes = new Node[6];
+	for(int i=0;i<nodes.length;i++)
+	{
+	    nodes[i] = graph.addNode("node"+i, attrs);
+	    nodes[i].setValues(new double[] { i });
+	}
+
+	et = new EdgeType("myEdgeType", "myAttributes", "myAttributes");
+	graph.addEdgeType(et);
+	link(0, 1, 1.0);
+	link(1, 2, 2.0);
+	link(2, 3, 1.0);
+	link(3, 4, 1.0);
+	link(4, 5, 3.0);
+	link(5, 3, 1.0);
+    }
+
+    public void tearDown() throws Exception
+    {
+	graph = null;
+	nodes = null;
+        super.tearDown();
+    }
+
+    private ApproximateCentralities newCentralities()
+    {
+	final GraphMetrics gm = new GraphMetrics(graph);
+	gm.setAlphaCentralityAlpha(0.1);
+	gm.setAlphaCentralityDelta(0.001);
+	gm.setPagerankAlpha(0.9);
+	gm.setPagerankDelta(0.001);
+	return gm.getApproximateCentralities();
+    }
+
+    public void testPagerank()
+    {
+	final ApproximateCentralities ac = newCentralities();
+	final double pr3 = ac.pagerank.getCentrality(nodes[3]);
+	assertEquals(1.0, ac.pagerank.progress(), 1e-9);
+	for(Node n : nodes)
+	    assertTrue(ac.pagerank.getCentrality(n) <= pr3);
+	assertEquals(ac.pagerank.getCentrality(nodes[4]), ac.pagerank.getCentrality(nodes[5]), 1e-9);
+	assertTrue(ac.weightedPagerank.getCentrality(nodes[0]) > 0);
+    }
+
+    public void testParallelCentralities()
+    {
+	final int numThreads = NetKitEnv.getNumThreads();
+	try
+	{
+	    NetKitEnv.setNumThreads(1);
+	    final ApproximateCentralities ac1 = newCentralities();
+	    NetKitEnv.setNumThreads(3);
+	    final ApproximateCentralities ac3 = newCentralities();
+	    final ApproximateCentralities.ApproximateCentrality[] c1 = ac1.getCentralities();
+	    final ApproximateCentralities.ApproximateCentrality[] c3 = ac3.getCentralities();
+	    for(int i=0;i<c1.length;i++)
+	    {
+		for(Node n : nodes)
+		{
+		    final double expected = c1[i].getCentrality(n);
+		    assertFalse(c1[i].name(), Double.isNaN(expected));
+		    assertEquals(c1[i].name(), expected, c3[i].getCentrality(n), 1e-9);
+		}
+	    }
+	}
+	finally
+	{
+	    NetKitEnv.setNumThreads(numThreads);
+	}
+    }
+}
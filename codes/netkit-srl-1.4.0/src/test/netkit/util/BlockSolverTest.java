@@ -0,0 +1,244 @@
+/**
+ * BlockSolverTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+
+package netkit.util;
+
+import netkit.graph.*;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * BlockSolver Tester.
+ */
+public class BlockSolverTest extends TestCase
+{
+    private static final int numColumns = 4;
+    private CSRGraph graph;
+    private double[] degree;
+    private double[] normalized; // row-normalized weights
+    private double[] B;
+
+    public BlockSolverTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        // enough edges times columns to multiply in parallel
+        Graph g = new Graph();
+        Attributes attrs = new Attributes("nodes");
+        attrs.add(new AttributeKey("key"));
+        g.addAttributes(attrs);
+        EdgeType et = new EdgeType("link","nodes","nodes");
+        g.addEdgeType(et);
+        Random r = new Random(29);
+        int numNodes = 3000;
+        Node[] nodes = new Node[numNodes];
+        for(int i=0;i<numNodes;i++)
+        {
+            nodes[i] = g.addNode("n"+i, attrs);
+            nodes[i].setValues(new double[] { i });
+        }
+        for(int i=0;i<numNodes;i++)
+            for(int j=0;j<1+r.nextInt(8);j++)
+            {
+                int k = r.nextInt(numNodes);
+                if(k == i)
+                    continue;
+                double w = 1+r.nextDouble();
+                g.addEdge(et, nodes[i], nodes[k], w);
+                g.addEdge(et, nodes[k], nodes[i], w);
+            }
+        graph = new CSRGraph(g);
+        degree = new double[numNodes];
+        normalized = new double[graph.numEdges];
+        for(int i=0;i<numNodes;i++)
+        {
+            for(int k=graph.offsets[i];k<graph.offsets[i+1];k++)
+                degree[i] += graph.weights[k];
+            for(int k=graph.offsets[i];k<graph.offsets[i+1];k++)
+                normalized[k] = graph.weights[k]/degree[i];
+        }
+
+        // the last column is all zeros
+        B = new double[numNodes*numColumns];
+        for(int i=0;i<numNodes;i++)
+            B[i*numColumns+r.nextInt(numColumns-1)] = 1;
+    }
+
+    // (D+I) - W, which is symmetric positive definite
+    private BlockSolver.Operator laplacian()
+    {
+        return new BlockSolver.Operator() {
+            public void apply(double[] X, double[] result, int k) {
+                BlockSolver.multiply(graph, graph.weights, X, k, result);
+                for(int i=0;i<result.length;i++)
+                    result[i] = (degree[i/k]+1)*X[i] - result[i];
+            }
+        };
+    }
+
+    // I - 0.9Q, where Q is the row-normalized adjacency
+    private BlockSolver.Operator walk()
+    {
+        return new BlockSolver.Operator() {
+            public void apply(double[] X, double[] result, int k) {
+                BlockSolver.multiply(graph, normalized, X, k, result);
+                for(int i=0;i<result.length;i++)
+                    result[i] = X[i] - 0.9*result[i];
+            }
+        };
+    }
+
+    private double[] column(double[] X, int c)
+    {
+        double[] x = new double[X.length/numColumns];
+        for(int i=0;i<x.length;i++)
+            x[i] = X[i*numColumns+c];
+        return x;
+    }
+
+    // the panel solve must match solving every column on its own, and solve the system
+    private void checkColumns(BlockSolver.Operator op, double[] X, String method)
+    {
+        BlockSolver solver = new BlockSolver(1e-10, 1000);
+        double[] MX = new double[X.length];
+        op.apply(X, MX, numColumns);
+        for(int c=0;c<numColumns;c++)
+        {
+            double[] b = column(B, c);
+            double[] x = new double[b.length];
+            int iter;
+            if(method.equals("cg"))
+                iter = solver.cg(op, b, x, 1);
+            else
+                iter = solver.bicgstab(op, b, x, 1);
+            assertTrue(iter <= 1000);
+            double[] xc = column(X, c);
+            double[] mx = column(MX, c);
+            for(int i=0;i<b.length;i++)
+            {
+                assertEquals(x[i], xc[i], 1e-8);
+                assertEquals(b[i], mx[i], 1e-8);
+            }
+        }
+    }
+
+    public void testMultiply()
+    {
+        double[] X = new double[graph.numNodes*numColumns];
+        Random r = new Random(31);
+        for(int i=0;i<X.length;i++)
+            X[i] = r.nextDouble();
+        double[] result = new double[X.length];
+        BlockSolver.multiply(graph, graph.weights, X, numColumns, result);
+        for(int c=0;c<numColumns;c++)
+        {
+            double[] x = column(X, c);
+            double[] y = new double[x.length];
+            BlockSolver.multiply(graph, graph.weights, x, 1, y);
+            for(int i=0;i<graph.numNodes;i++)
+            {
+                double expected = 0;
+                for(int k=graph.offsets[i];k<graph.offsets[i+1];k++)
+                    expected += graph.weights[k]*x[graph.targets[k]];
+                assertEquals(expected, y[i], 1e-12);
+                assertEquals(expected, result[i*numColumns+c], 1e-12);
+            }
+        }
+    }
+
+    public void testCG()
+    {
+        double[] X = new double[B.length];
+        BlockSolver.Operator op = laplacian();
+        assertTrue(new BlockSolver(1e-10, 1000).cg(op, B, X, numColumns) <= 1000);
+        checkColumns(op, X, "cg");
+        for(double x : column(X, numColumns-1))
+            assertEquals(0.0, x, 0);
+    }
+
+    // the all ones column is solved by the first step and dropped from the later products
+    public void testDropConvergedColumns()
+    {
+        for(int i=0;i<graph.numNodes;i++)
+            B[i*numColumns] = 1;
+        final BlockSolver.Operator op = laplacian();
+        final List<Integer> widths = new ArrayList<Integer>();
+        BlockSolver.Operator counting = new BlockSolver.Operator() {
+            public void apply(double[] X, double[] result, int k) {
+                assertEquals(graph.numNodes*k, X.length);
+                widths.add(k);
+                op.apply(X, result, k);
+            }
+        };
+        double[] X = new double[B.length];
+        assertTrue(new BlockSolver(1e-10, 1000).cg(counting, B, X, numColumns) <= 1000);
+        checkColumns(op, X, "cg");
+        // the zero column is dropped before the first product
+        assertEquals(numColumns-1, (int)widths.get(0));
+        assertEquals(numColumns-2, (int)widths.get(widths.size()-1));
+        for(int i=0;i<graph.numNodes;i++)
+        {
+            assertEquals(1.0, X[i*numColumns], 1e-8);
+            assertEquals(0.0, X[i*numColumns+numColumns-1], 0);
+        }
+    }
+
+    public void testBiCGSTAB()
+    {
+        double[] X = new double[B.length];
+        BlockSolver.Operator op = walk();
+        assertTrue(new BlockSolver(1e-10, 1000).bicgstab(op, B, X, numColumns) <= 1000);
+        checkColumns(op, X, "bicgstab");
+    }
+
+    public void testIterate()
+    {
+        final BlockSolver.Operator op = walk();
+        double[] X = new double[B.length];
+        // X = B + 0.9QX
+        int iter = new BlockSolver(1e-10, 1000).iterate(new BlockSolver.Operator() {
+            public void apply(double[] X, double[] result, int k) {
+                op.apply(X, result, k);
+                for(int i=0;i<result.length;i++)
+                    result[i] = X[i] - result[i];
+            }
+        }, B, X, numColumns);
+        assertTrue(iter <= 1000);
+        double[] MX = new double[X.length];
+        op.apply(X, MX, numColumns);
+        for(int i=0;i<B.length;i++)
+            assertEquals(B[i], MX[i], 1e-7);
+
+        // too few iterations to converge
+        assertTrue(new BlockSolver(1e-10, 5).iterate(op, B, X, numColumns) > 5);
+    }
+}
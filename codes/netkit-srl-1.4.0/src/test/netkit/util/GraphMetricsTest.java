@@ -0,0 +1,469 @@
+/**
+ * GraphMetricsTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.util;
+
+import netkit.graph.*;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * GraphMetrics Tester.
+ */
+public class GraphMetricsTest extends TestCase
+{
+    private Graph graph;
+    private EdgeType et;
+    private Node[] nodes;
+
+    public GraphMetricsTest(String name)
+    {
+        super(name);
+    }
+
+    private void link(int i, int j)
+    {
+	link(i, j, 1.0);
+    }
+
+    private void link(int i, int j, double w)
+    {
+	graph.addEdge(et, nodes[i], nodes[j], w);
+	graph.addEdge(et, nodes[j], nodes[i], w);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+	graph = new Graph();
+
+	final Attributes attrs = new Attributes("myAttributes");
+	attrs.add(new AttributeKey("field0"));
+	graph.addAttributes(attrs);
+
+	// A path 0-1-2-3 ending in the triangle 3-4-5
+	nodes = new Node[6];
+	for(int i=0;i<nodes.length;i++)
+	{
+	    nodes[i] = graph.addNode("node"+i, attrs);
+	    nodes[i].setValues(new double[] { i });
+	}
+
+	et = new EdgeType("myEdgeType", "myAttributes", "myAttributes");
+	graph.addEdgeType(et);
+	link(0, 1);
+	link(1, 2);
+	link(2, 3);
+	link(3, 4);
+	link(4, 5);
+	link(5, 3);
+    }
+
+    public void tearDown() throws Exception
+    {
+	graph = null;
+	nodes = null;
+        super.tearDown();
+    }
+
+    public void testBetweennessCentrality()
+    {
+	final GraphMetrics gm = graph.getMetrics();
+	final double[] expected = new double[] { 0, 8, 12, 12, 0, 0 };
+	for(int i=0;i<nodes.length;i++)
+	    assertEquals(expected[i], gm.getBetweennessCentrality(nodes[i]), 1e-9);
+    }
+
+    public void testDist()
+    {
+	final GraphMetrics gm = graph.getMetrics();
+	assertEquals(0.0, gm.getDist(nodes[0], nodes[0]), 1e-9);
+	assertEquals(3.0, gm.getDist(nodes[0], nodes[3]), 1e-9);
+	assertEquals(4.0, gm.getDist(nodes[5], nodes[0]), 1e-9);
+	assertEquals(4.0, gm.getMaxDist(), 1e-9);
+	assertEquals(1.0/8.0, gm.getClosenessCentrality(nodes[3]), 1e-9);
+    }
+
+    public void testWeightedShortestPaths()
+    {
+	// a light edge 0-2 is longer than the 2-hop path 0-1-2
+	link(0, 2, 0.25);
+	final GraphMetrics gm = graph.getMetrics();
+	assertEquals(1.0, gm.getDist(nodes[0], nodes[2]), 1e-9);
+	assertEquals(2.0, gm.getWeightedDist(nodes[0], nodes[2]), 1e-9);
+	assertEquals(4.0, gm.getWeightedDist(nodes[5], nodes[0]), 1e-9);
+
+	// 0 and 2 reach each other through 1 only when using the weights
+	assertEquals(0.0, gm.getBetweennessCentrality(nodes[1]), 1e-9);
+	assertEquals(8.0, gm.getWeightedBetweennessCentrality(nodes[1]), 1e-9);
+	assertEquals(1.0/(1+2+3+4+4), gm.getWeightedClosenessCentrality(nodes[0]), 1e-9);
+    }
+
+    public void testCentralityPivots()
+    {
+	final GraphMetrics gm = graph.getMetrics();
+	final double[][] exact = new double[nodes.length][nodes.length];
+	for(int i=0;i<nodes.length;i++)
+	    for(int j=0;j<nodes.length;j++)
+		exact[i][j] = gm.getDist(nodes[i], nodes[j]);
+
+	gm.setCentralityPivots(nodes.length);
+	assertFalse(gm.isCentralityApproximate());
+
+	gm.setCentralityPivots(2);
+	assertTrue(gm.isCentralityApproximate());
+	assertEquals(2, gm.getCentralityPivots());
+	for(int i=0;i<nodes.length;i++)
+	    for(int j=0;j<nodes.length;j++)
+		assertEquals(exact[i][j], gm.getDist(nodes[i], nodes[j]), 1e-9);
+
+	double total = 0;
+	for(Node n : nodes)
+	    total += gm.getBetweennessCentrality(n);
+	assertTrue(total > 0);
+    }
+
+    public void testParallelCentrality()
+    {
+	final int numThreads = NetKitEnv.getNumThreads();
+	try
+	{
+	    NetKitEnv.setNumThreads(1);
+	    final GraphMetrics gm1 = new GraphMetrics(graph);
+	    NetKitEnv.setNumThreads(3);
+	    final GraphMetrics gm3 = new GraphMetrics(graph);
+	    for(Node n : nodes)
+	    {
+		assertEquals(gm1.getBetweennessCentrality(n), gm3.getBetweennessCentrality(n), 1e-9);
+		assertEquals(gm1.getWeightedBetweennessCentrality(n), gm3.getWeightedBetweennessCentrality(n), 1e-9);
+		assertEquals(gm1.getWeightedClosenessCentrality(n), gm3.getWeightedClosenessCentrality(n), 1e-9);
+	    }
+	    assertEquals(gm1.getCharacteristicPathLength(), gm3.getCharacteristicPathLength(), 1e-9);
+	    assertEquals(1.0, gm3.calcCentralityProgress(), 1e-9);
+	}
+	finally
+	{
+	    NetKitEnv.setNumThreads(numThreads);
+	}
+    }
+
+    public void testDistanceStorage()
+    {
+	final GraphMetrics gm = new GraphMetrics(graph);
+	gm.setDistanceStorage(DistanceStore.Storage.Memory);
+	final double[][] exact = new double[nodes.length][nodes.length];
+	for(int i=0;i<nodes.length;i++)
+	    for(int j=0;j<nodes.length;j++)
+		exact[i][j] = gm.getWeightedDist(nodes[i], nodes[j]);
+	final double closeness = gm.getClosenessCentrality(nodes[2]);
+
+	final DistanceStore.Storage[] storages = new DistanceStore.Storage[] {
+	    DistanceStore.Storage.Recompute, DistanceStore.Storage.Disk };
+	for(DistanceStore.Storage storage : storages)
+	{
+	    gm.setDistanceStorage(storage);
+	    assertEquals(closeness, gm.getClosenessCentrality(nodes[2]), 1e-9);
+	    for(int i=0;i<nodes.length;i++)
+		for(int j=0;j<nodes.length;j++)
+		    assertEquals(exact[i][j], gm.getWeightedDist(nodes[i], nodes[j]), 1e-9);
+	}
+	gm.setDistanceStorage(DistanceStore.Storage.Auto);
+    }
+
+    // the paths of length two, counted by walking every one of them: {path2, triangles, sum of local coefficients}
+    private static double[] walkPaths(Graph g, String nodeType)
+    {
+	final Node[] all = (nodeType == null ? g.getNodes() : g.getNodes(nodeType));
+	final java.util.Map<Node,Integer> idx = new java.util.HashMap<Node,Integer>();
+	for(Node n : all)
+	    idx.put(n, idx.size());
+	final int[] center = new int[all.length];
+	final int[] triple = new int[all.length];
+	int path2 = 0;
+	int triangles = 0;
+	for(Node node1 : all)
+	{
+	    for(Edge e1 : (nodeType == null ? node1.getEdges() : node1.getEdgesToNeighbor(nodeType)))
+	    {
+		Node node2 = e1.getDest();
+		for(Edge e2 : (nodeType == null ? node2.getEdges() : node2.getEdgesToNeighbor(nodeType)))
+		{
+		    Node node3 = e2.getDest();
+		    if(node1 == node3)
+			continue;
+		    path2++;
+		    center[idx.get(node2)]++;
+		    if(node1.getEdgesToNeighbor(node3).length == 0 || node3.getEdgesToNeighbor(node1).length == 0)
+			continue;
+		    triple[idx.get(node2)]++;
+		    triangles++;
+		}
+	    }
+	}
+	double local = 0;
+	for(int i=0;i<all.length;i++)
+	    if(center[i] != 0 && triple[i] != 0)
+		local += (double)triple[i]/(double)center[i];
+	return new double[] { path2, triangles, local/all.length };
+    }
+
+    private static void checkClusterStat(Graph g, String nodeType)
+    {
+	final double[] expected = walkPaths(g, nodeType);
+	final int numThreads = NetKitEnv.getNumThreads();
+	try
+	{
+	    for(int t : new int[] { 1, 3 })
+	    {
+		NetKitEnv.setNumThreads(t);
+		final GraphMetrics gm = (nodeType == null ? new GraphMetrics(g) : new GraphMetrics(g, nodeType));
+		assertEquals((int)expected[0], gm.getNumPath2());
+		assertEquals((int)expected[1], gm.getNumtriangles());
+		assertEquals(expected[1]/expected[0], gm.getGlobalClusterCoeff(), 1e-12);
+		assertEquals(expected[2], gm.getLocalClusterCoeff(), 1e-12);
+		assertEquals(1.0, gm.calcClusterProgress(), 0.0);
+	    }
+	}
+	finally
+	{
+	    NetKitEnv.setNumThreads(numThreads);
+	}
+    }
+
+    public void testClusterStat()
+    {
+	final GraphMetrics gm = new GraphMetrics(graph);
+	// every node on the triangle closes two of its paths
+	assertEquals(6, gm.getNumtriangles());
+	assertEquals(6+2+2+2+2, gm.getNumPath2());
+	checkClusterStat(graph, null);
+    }
+
+    public void testClusterStatDirected()
+    {
+	// directed edges of two edge types between two node types, with self loops and parallel edges
+	final Graph g = new Graph();
+	final Attributes a1 = new Attributes("typeA");
+	a1.add(new AttributeKey("key"));
+	g.addAttributes(a1);
+	final Attributes a2 = new Attributes("typeB");
+	a2.add(new AttributeKey("key"));
+	g.addAttributes(a2);
+	final EdgeType[] types = new EdgeType[] {
+	    new EdgeType("aa1", "typeA", "typeA"), new EdgeType("aa2", "typeA", "typeA"),
+	    new EdgeType("ab", "typeA", "typeB"), new EdgeType("ba", "typeB", "typeA") };
+	for(EdgeType t : types)
+	    g.addEdgeType(t);
+	final Node[] na = new Node[40];
+	final Node[] nb = new Node[15];
+	for(int i=0;i<na.length;i++)
+	    na[i] = g.addNode("a"+i, a1);
+	for(int i=0;i<nb.length;i++)
+	    nb[i] = g.addNode("b"+i, a2);
+
+	final Random r = new Random(3);
+	for(int k=0;k<400;k++)
+	{
+	    // hubs at the low indices
+	    int i = (int)(na.length*Math.pow(r.nextDouble(),2));
+	    int j = r.nextInt(na.length);
+	    g.addEdge(types[r.nextInt(2)], na[i], na[j], 1);
+	    if(r.nextDouble() < 0.5)
+		g.addEdge(types[r.nextInt(2)], na[j], na[i], 1);
+	}
+	for(int k=0;k<60;k++)
+	{
+	    g.addEdge(types[2], na[r.nextInt(na.length)], nb[r.nextInt(nb.length)], 1);
+	    g.addEdge(types[3], nb[r.nextInt(nb.length)], na[r.nextInt(na.length)], 1);
+	}
+	checkClusterStat(g, null);
+	checkClusterStat(g, "typeA");
+    }
+
+    public void testComponents()
+    {
+	final Node loner = graph.addNode("loner", graph.getAttributes("myAttributes"));
+	final Node a = graph.addNode("a", graph.getAttributes("myAttributes"));
+	final Node b = graph.addNode("b", graph.getAttributes("myAttributes"));
+	// a directed edge still joins its nodes
+	graph.addEdge(et, a, b, 1);
+
+	final GraphMetrics gm = graph.getMetrics();
+	assertEquals(3, gm.getNumComponents());
+	assertEquals(1, gm.getNumSingletons());
+	assertEquals(6, gm.getMaxComponentSize());
+	assertEquals(0, gm.getMaxComponentIdx());
+	for(Node n : nodes)
+	    assertEquals(0, gm.getComponent(n));
+	assertEquals(1, gm.getComponent(loner));
+	assertEquals(2, gm.getComponent(a));
+	assertEquals(2, gm.getComponent(b));
+	assertEquals(2, gm.getComponentSize(2));
+
+	// adding edges keeps the components of later versions up to date
+	graph.addEdge(et, b, nodes[2], 1);
+	final GraphMetrics gm2 = graph.getMetrics();
+	assertNotSame(gm, gm2);
+	assertNotNull(graph.getTrackedComponents());
+	assertEquals(2, gm2.getNumComponents());
+	assertEquals(8, gm2.getMaxComponentSize());
+	assertEquals(0, gm2.getComponent(a));
+	assertEquals(1, gm2.getComponent(loner));
+	// while the metrics of the earlier version stay as they were
+	assertEquals(3, gm.getNumComponents());
+
+	// removing edges drops them
+	graph.removeEdge(et.getName(), b, nodes[2]);
+	assertNull(graph.getTrackedComponents());
+	assertEquals(3, graph.getMetrics().getNumComponents());
+    }
+
+    public void testParallelComponents()
+    {
+	final Random r = new Random(5);
+	final Components expected = new Components(nodes.length+200);
+	for(int i=1;i<nodes.length;i++)
+	    expected.union(i-1, i);
+	for(int i=0;i<200;i++)
+	    graph.addNode("extra"+i, graph.getAttributes("myAttributes"));
+	final Node[] all = graph.getNodes();
+	for(int k=0;k<150;k++)
+	{
+	    int i = r.nextInt(all.length);
+	    int j = r.nextInt(all.length);
+	    graph.addEdge(et, all[i], all[j], 1);
+	    expected.union(i, j);
+	}
+	final int numThreads = NetKitEnv.getNumThreads();
+	try
+	{
+	    NetKitEnv.setNumThreads(4);
+	    final Components c = new Components(new CSRGraph(graph));
+	    assertEquals(expected.getNumComponents(), c.getNumComponents());
+	    assertEquals(expected.getNumSingletons(), c.getNumSingletons());
+	    assertEquals(expected.getMaxComponentIdx(), c.getMaxComponentIdx());
+	    for(int i=0;i<all.length;i++)
+		assertEquals(expected.getComponent(i), c.getComponent(i));
+	}
+	finally
+	{
+	    NetKitEnv.setNumThreads(numThreads);
+	}
+    }
+
+    public void testMetricsFollowGraphVersion()
+    {
+	final GraphMetrics gm = graph.getMetrics();
+	final long version = graph.getVersion();
+	assertSame(gm, graph.getMetrics());
+	assertEquals(4.0, gm.getMaxDist(), 1e-9);
+
+	link(0, 5);
+	assertTrue(graph.getVersion() > version);
+	final GraphMetrics gm2 = graph.getMetrics();
+	assertNotSame(gm, gm2);
+	assertEquals(3.0, gm2.getMaxDist(), 1e-9);
+    }
+
+    public void testMetricsFollowEdgeWeights()
+    {
+	final GraphMetrics gm = graph.getMetrics();
+	final Edge e = graph.getEdge(et.getName(), nodes[0], nodes[1]);
+	final long version = graph.getVersion();
+	e.setWeight(e.getWeight());
+	assertEquals(version, graph.getVersion());
+	assertSame(gm, graph.getMetrics());
+
+	e.setWeight(2*e.getWeight());
+	assertTrue(graph.getVersion() > version);
+	assertNotSame(gm, graph.getMetrics());
+
+	// an edge outside of any graph does not bump a version
+	final long reweighted = graph.getVersion();
+	new Edge(e).setWeight(3);
+	assertEquals(reweighted, graph.getVersion());
+    }
+
+    public void testMetricsPerPivots()
+    {
+	final GraphMetrics exact = graph.getMetrics(0);
+	final GraphMetrics approx = graph.getMetrics(2);
+	assertNotSame(exact, approx);
+	assertSame(exact, graph.getMetrics(0));
+	assertSame(exact, graph.getMetrics(nodes.length));
+	assertSame(approx, graph.getMetrics(2));
+	assertFalse(exact.isCentralityApproximate());
+	assertEquals(2, approx.getCentralityPivots());
+
+	// setting the pivots of the shared metrics leaves the others alone
+	graph.getMetrics().setCentralityPivots(3);
+	assertFalse(exact.isCentralityApproximate());
+	assertEquals(2, approx.getCentralityPivots());
+
+	link(0, 5);
+	assertNotSame(approx, graph.getMetrics(2));
+    }
+
+    public void testDirectedPivots()
+    {
+	// a directed path 0->1->...->7, where 7 reaches no other node
+	final Graph dg = new Graph();
+	final Attributes attrs = new Attributes("myAttributes");
+	attrs.add(new AttributeKey("field0"));
+	dg.addAttributes(attrs);
+	final EdgeType det = new EdgeType("myEdgeType", "myAttributes", "myAttributes");
+	dg.addEdgeType(det);
+	final Node[] path = new Node[8];
+	for(int i=0;i<path.length;i++)
+	{
+	    path[i] = dg.addNode("node"+i, attrs);
+	    path[i].setValues(new double[] { i });
+	}
+	for(int i=1;i<path.length;i++)
+	    dg.addEdge(det, path[i-1], path[i], 1.0);
+
+	final GraphMetrics exact = dg.getMetrics(0);
+	assertEquals(1.0/28.0, exact.getClosenessCentrality(path[0]), 1e-9);
+	assertEquals(1.0/7.0, exact.getGraphCentrality(path[0]), 1e-9);
+
+	for(int pivots : new int[] { 0, 3 })
+	{
+	    final GraphMetrics gm = dg.getMetrics(pivots);
+	    assertEquals(0.0, gm.getClosenessCentrality(path[7]), 0.0);
+	    assertEquals(0.0, gm.getGraphCentrality(path[7]), 0.0);
+	    assertEquals(0.0, gm.getWeightedClosenessCentrality(path[7]), 0.0);
+	    // 0 reaches every pivot, but is reached by none of them
+	    assertTrue(gm.getClosenessCentrality(path[0]) > 0);
+	    assertTrue(gm.getGraphCentrality(path[0]) > 0);
+	    for(int i=0;i<path.length;i++)
+	    {
+		final double c = gm.getClosenessCentrality(path[i]);
+		assertTrue(pivots+": "+i+"="+c, c >= 0 && !Double.isInfinite(c));
+		final double gc = gm.getGraphCentrality(path[i]);
+		assertTrue(pivots+": "+i+"="+gc, gc >= 0 && !Double.isInfinite(gc));
+	    }
+	}
+    }
+}
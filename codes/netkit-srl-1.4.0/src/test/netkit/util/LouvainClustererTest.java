@@ -0,0 +1,197 @@
+/**
+ * LouvainClustererTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.util;
+
+import netkit.graph.*;
+import netkit.util.ModularityClusterer.Cluster;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * LouvainClusterer Tester.
+ */
+public class LouvainClustererTest extends TestCase
+{
+    private Graph graph;
+    private EdgeType et;
+    private Node[] nodes;
+
+    public LouvainClustererTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Build a graph of numGroups groups of groupSize nodes, where two nodes
+     * are linked (in both directions) with probability pIn within a group
+     * and pOut across groups.
+     */
+    private void plant(int numGroups, int groupSize, double pIn, double pOut, long seed)
+    {
+	graph = new Graph();
+	final Attributes attrs = new Attributes("myAttributes");
+	attrs.add(new AttributeKey("field0"));
+	graph.addAttributes(attrs);
+	et = new EdgeType("myEdgeType", "myAttributes", "myAttributes");
+	graph.addEdgeType(et);
+
+	nodes = new Node[numGroups*groupSize];
+	for(int i=0;i<nodes.length;i++)
+	{
+	    nodes[i] = graph.addNode("node"+i, attrs);
+	    nodes[i].setValues(new double[] { i });
+	}
+	Random r = new Random(seed);
+	for(int i=0;i<nodes.length;i++)
+	    for(int j=i+1;j<nodes.length;j++)
+		if(r.nextDouble() < ((i/groupSize == j/groupSize) ? pIn : pOut))
+		{
+		    graph.addEdge(et, nodes[i], nodes[j], 1);
+		    graph.addEdge(et, nodes[j], nodes[i], 1);
+		}
+    }
+
+    private int[] cluster(int numThreads)
+    {
+	int threads = NetKitEnv.getNumThreads();
+	try
+	{
+	    NetKitEnv.setNumThreads(numThreads);
+	    LouvainClusterer lc = new LouvainClusterer(new CSRGraph(graph));
+	    assertTrue(lc.cluster());
+	    return lc.getCommunities();
+	}
+	finally
+	{
+	    NetKitEnv.setNumThreads(threads);
+	}
+    }
+
+    public void testPlantedPartition()
+    {
+	plant(4, 25, 0.5, 0.01, 7);
+	LouvainClusterer lc = new LouvainClusterer(new CSRGraph(graph));
+	assertTrue(lc.cluster());
+	assertEquals(4, lc.getNumCommunities());
+	int[] c = lc.getCommunities();
+	for(int i=0;i<nodes.length;i++)
+	    assertEquals(i/25, c[i]);
+	for(int k=0;k<4;k++)
+	    assertTrue(lc.isConnected(k));
+    }
+
+    public void testModularity()
+    {
+	plant(5, 40, 0.2, 0.02, 11);
+	CSRGraph csr = new CSRGraph(graph);
+	LouvainClusterer lc = new LouvainClusterer(csr);
+	assertTrue(lc.cluster());
+	int[] c = lc.getCommunities();
+
+	// Q = sum over communities of (internal/m - out*in/m^2)
+	double m = csr.numEdges;
+	double[] out = new double[lc.getNumCommunities()];
+	double[] in = new double[lc.getNumCommunities()];
+	double internal = 0;
+	for(int v=0;v<csr.numNodes;v++)
+	{
+	    for(int k=csr.offsets[v];k<csr.offsets[v+1];k++)
+	    {
+		int t = csr.targets[k];
+		out[c[v]]++;
+		in[c[t]]++;
+		if(c[v] == c[t])
+		    internal++;
+	    }
+	}
+	double q = internal/m;
+	for(int k=0;k<out.length;k++)
+	    q -= out[k]*in[k]/(m*m);
+	assertEquals(q, lc.getModularity(), 1e-9);
+	assertTrue(q > 0.5);
+
+	// the levels nest into each other and into the final communities
+	for(int l=0;l<lc.getNumLevels();l++)
+	{
+	    int[] level = lc.getLevel(l);
+	    int[] next = (l+1 < lc.getNumLevels() ? lc.getLevel(l+1) : null);
+	    for(int v=0;v<csr.numNodes;v++)
+		for(int w=0;w<csr.numNodes;w++)
+		    if(level[v] == level[w] && next != null)
+			assertEquals(next[v], next[w]);
+	}
+    }
+
+    public void testParallelClustering()
+    {
+	// more nodes than in one batch
+	plant(30, 50, 0.1, 0.002, 3);
+	int[] expected = cluster(1);
+	assertTrue(Arrays.equals(expected, cluster(4)));
+    }
+
+    public void testModularityClusterer()
+    {
+	plant(3, 20, 0.5, 0.02, 5);
+	Node loner = graph.addNode("loner", graph.getAttributes("myAttributes"));
+	loner.setValues(new double[] { nodes.length });
+
+	GraphMetrics gm = graph.getMetrics();
+	gm.setClusterMethod(ModularityClusterer.Method.Louvain);
+	ModularityClusterer mc = gm.getClusterer();
+	assertEquals(ModularityClusterer.Method.Louvain, mc.getMethod());
+	mc.startClustering();
+	assertEquals(1.0, mc.percentDone(), 0);
+
+	assertEquals(3, mc.getNumConnectedClusters());
+	assertEquals(1, mc.getNumIsolatedClusters());
+	assertEquals(1, mc.getNumSingletons());
+	assertEquals(graph.numNodes(), mc.getNumClusterNodes());
+	assertEquals(3, gm.getNumClusters());
+
+	for(Set<Node> nodeSet : mc.getConnectedClusterNodeSets())
+	{
+	    assertEquals(20, nodeSet.size());
+	    for(Node n : nodeSet)
+		assertEquals(gm.getCluster(n), gm.getCluster(nodes[Integer.parseInt(n.getName().substring(4))/20*20]));
+	}
+	for(int k=0;k<gm.getNumClusters();k++)
+	{
+	    Cluster c = gm.getCluster(k);
+	    assertEquals(c.getSize(), c.getChildCluster1().getSize()+c.getChildCluster2().getSize());
+	    int size = 0;
+	    for(Node n : c)
+	    {
+		assertEquals(k, gm.getCluster(n));
+		size++;
+	    }
+	    assertEquals(c.getSize(), size);
+	}
+	assertEquals(loner, mc.getIsolatedClusters().iterator().next().getNode());
+    }
+}
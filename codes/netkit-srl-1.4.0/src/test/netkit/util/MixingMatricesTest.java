@@ -0,0 +1,192 @@
+/**
+ * MixingMatricesTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.util;
+
+import netkit.graph.*;
+import netkit.classifiers.Classification;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * MixingMatrices Tester.
+ */
+public class MixingMatricesTest extends TestCase
+{
+    private Graph graph;
+    private AttributeCategorical cls;
+    private Node[] nodes;
+    private EdgeType[] ets;
+    private Random r;
+
+    public MixingMatricesTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+	graph = new Graph();
+	r = new Random(17);
+
+	final Attributes attrs = new Attributes("person");
+	attrs.add(new AttributeKey("id"));
+	cls = new AttributeFixedCategorical("class", new FixedTokenSet(new String[]{"a","b","c"}));
+	attrs.add(cls);
+	graph.addAttributes(attrs);
+	final Attributes other = new Attributes("page");
+	other.add(new AttributeKey("id"));
+	graph.addAttributes(other);
+
+	nodes = new Node[60];
+	for(int i=0;i<nodes.length;i++)
+	{
+	    nodes[i] = graph.addNode("p"+i, attrs);
+	    nodes[i].setValues(new double[] { i, r.nextInt(3) });
+	}
+	Node page = graph.addNode("page0", other);
+	page.setValues(new double[] { 0 });
+
+	// two edge types between persons, one of them directed and with self-loops, and one to pages
+	ets = new EdgeType[] { new EdgeType("friend","person","person"),
+			       new EdgeType("cites","person","person"),
+			       new EdgeType("likes","person","page") };
+	for(EdgeType et : ets)
+	    graph.addEdgeType(et);
+	for(int k=0;k<150;k++)
+	{
+	    int i = r.nextInt(nodes.length);
+	    int j = r.nextInt(nodes.length);
+	    if(i != j)
+	    {
+		double w = 1+r.nextInt(4);
+		graph.addEdge(ets[0], nodes[i], nodes[j], w);
+		graph.addEdge(ets[0], nodes[j], nodes[i], w);
+	    }
+	    graph.addEdge(ets[1], nodes[r.nextInt(nodes.length)], nodes[r.nextInt(nodes.length)], 0.5+r.nextDouble());
+	}
+	for(int i=0;i<nodes.length;i+=3)
+	    graph.addEdge(ets[2], nodes[i], page, 1);
+    }
+
+    private Classification randomLabels(double pKnown)
+    {
+	Classification known = new Classification(graph, "person", cls);
+	known.clear();
+	for(Node n : nodes)
+	    if(r.nextDouble() < pKnown)
+		known.set(n, r.nextInt(3));
+	return known;
+    }
+
+    private static void assertCoeffs(double[] expected, double[] actual)
+    {
+	for(int p=0;p<expected.length;p++)
+	{
+	    if(Double.isNaN(expected[p]))
+		assertTrue(Double.isNaN(actual[p]));
+	    else
+		assertEquals(expected[p], actual[p], 1e-9);
+	}
+    }
+
+    private void check(MixingMatrices mm, Classification known)
+    {
+	assertCoeffs(GraphMetrics.calculateEdgeBasedAssortativityCoeff(known), mm.getEdgeBasedAssortativity(null));
+	assertCoeffs(GraphMetrics.calculateNodeBasedAssortativityCoeff(known), mm.getNodeBasedAssortativity(null));
+	for(EdgeType et : ets)
+	{
+	    assertCoeffs(GraphMetrics.calculateEdgeBasedAssortativityCoeff(known, et), mm.getEdgeBasedAssortativity(et));
+	    assertCoeffs(GraphMetrics.calculateNodeBasedAssortativityCoeff(known, et), mm.getNodeBasedAssortativity(et));
+	}
+    }
+
+    public void testSetKnown()
+    {
+	MixingMatrices mm = new MixingMatrices(graph, "person", cls);
+	assertEquals(2, mm.getEdgeTypes().length);
+	assertTrue(Double.isNaN(mm.getEdgeBasedAssortativity(null)[0]));
+
+	Classification known = new Classification(graph, "person", cls);
+	mm.setKnown(known);
+	assertEquals(nodes.length, mm.getNumKnown());
+	check(mm, known);
+
+	known = randomLabels(0.5);
+	mm.setKnown(known);
+	check(mm, known);
+    }
+
+    public void testIncrementalUpdates()
+    {
+	MixingMatrices mm = new MixingMatrices(graph, "person", cls);
+	Classification known = randomLabels(0.7);
+	mm.setKnown(known);
+
+	// reveal, hide and relabel a few nodes at a time, as between splits
+	for(int round=0;round<20;round++)
+	{
+	    for(int k=0;k<5;k++)
+	    {
+		Node n = nodes[r.nextInt(nodes.length)];
+		int c = r.nextInt(4)-1;
+		known.set(n, c);
+		if(k%2 == 0)
+		    mm.set(n, c);
+	    }
+	    mm.setKnown(known);
+	    for(Node n : nodes)
+		assertEquals(known.getClassValue(n), mm.getClassValue(n));
+	    check(mm, known);
+	}
+    }
+
+    public void testGraphMetricsCache()
+    {
+	GraphMetrics gm = graph.getMetrics();
+	MixingMatrices mm = gm.getMixingMatrices("person", cls);
+	MixingMatrices other = gm.getMixingMatrices("person", cls);
+	assertNotSame(mm, other);
+	Classification truth = new Classification(graph, "person", cls);
+	assertCoeffs(GraphMetrics.calculateNodeBasedAssortativityCoeff(truth, ets[1]),
+		   gm.calculateNodeBasedAssortativityCoeff("person", cls, ets[1]));
+
+	// each caller keeps its own known labels
+	Classification known = randomLabels(0.3);
+	mm.setKnown(known);
+	assertEquals(0, other.getNumKnown());
+	assertCoeffs(GraphMetrics.calculateEdgeBasedAssortativityCoeff(truth, ets[1]),
+		   gm.calculateEdgeBasedAssortativityCoeff("person", cls, ets[1]));
+	check(mm, known);
+
+	// a new edge makes for new matrices
+	graph.addEdge(ets[1], nodes[0], nodes[1], 1);
+	assertEquals(graph.getVersion(), gm.getMixingMatrices("person", cls).graphVersion);
+	truth = new Classification(graph, "person", cls);
+	assertCoeffs(GraphMetrics.calculateEdgeBasedAssortativityCoeff(truth, ets[1]),
+		   gm.calculateEdgeBasedAssortativityCoeff("person", cls, ets[1]));
+    }
+}
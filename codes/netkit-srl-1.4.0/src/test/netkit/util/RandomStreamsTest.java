@@ -0,0 +1,168 @@
+/**
+ * RandomStreamsTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * RandomStreams Tester.
+ */
+public class RandomStreamsTest extends TestCase
+{
+    private long seed;
+
+    public RandomStreamsTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        seed = VectorMath.getSeed();
+        VectorMath.setSeed(42);
+    }
+
+    public void tearDown() throws Exception
+    {
+        VectorMath.setSeed(seed);
+        super.tearDown();
+    }
+
+    private static long[] draw(Random r, int n)
+    {
+        long[] v = new long[n];
+        for(int i=0;i<n;i++)
+            v[i] = r.nextLong();
+        return v;
+    }
+
+    public void testReproducible()
+    {
+        long[] a = draw(RandomStreams.get("test", 1, 2), 100);
+        assertTrue(java.util.Arrays.equals(a, draw(RandomStreams.get("test", 1, 2), 100)));
+        assertFalse(java.util.Arrays.equals(a, draw(RandomStreams.get("test", 2, 1), 100)));
+        assertFalse(java.util.Arrays.equals(a, draw(RandomStreams.get("other", 1, 2), 100)));
+        VectorMath.setSeed(43);
+        assertFalse(java.util.Arrays.equals(a, draw(RandomStreams.get("test", 1, 2), 100)));
+    }
+
+    public void testRange()
+    {
+        Random r = RandomStreams.get("range");
+        int[] counts = new int[10];
+        for(int i=0;i<100000;i++)
+        {
+            double d = r.nextDouble();
+            assertTrue(d >= 0 && d < 1);
+            counts[r.nextInt(counts.length)]++;
+        }
+        for(int c : counts)
+            assertTrue("count="+c, c > 9000 && c < 11000);
+    }
+
+    public void testParallelMatchesSequential()
+    {
+        final int numStreams = 8;
+        final long[][] parallel = new long[numStreams][];
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for(int i=0;i<numStreams;i++)
+        {
+            final int id = i;
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    parallel[id] = draw(RandomStreams.get("parallel", id), 1000);
+                    return true;
+                }
+            });
+        }
+        assertTrue(ParallelUtil.invokeAll(tasks));
+        for(int i=0;i<numStreams;i++)
+            assertTrue(java.util.Arrays.equals(draw(RandomStreams.get("parallel", i), 1000), parallel[i]));
+    }
+
+    // the tie-breaks of a task draw from its bound stream, whichever thread runs it
+    public void testBoundTieBreaks()
+    {
+        final double[] tied = new double[] { 1, 3, 3, 3, 0, 3 };
+        final int numTasks = 6;
+        final int[][] parallel = new int[numTasks][200];
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for(int i=0;i<numTasks;i++)
+        {
+            final int id = i;
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    Random old = RandomStreams.bind(RandomStreams.get("ties", id));
+                    try
+                    {
+                        for(int j=0;j<parallel[id].length;j++)
+                            parallel[id][j] = VectorMath.getMaxIdx(tied);
+                    }
+                    finally
+                    {
+                        RandomStreams.bind(old);
+                    }
+                    return true;
+                }
+            });
+        }
+        assertTrue(ParallelUtil.invokeAll(tasks));
+        assertSame(VectorMath.pickRandom, RandomStreams.current());
+        for(int i=0;i<numTasks;i++)
+        {
+            Random r = RandomStreams.get("ties", i);
+            assertNull(RandomStreams.bind(r));
+            assertSame(r, RandomStreams.current());
+            for(int j=0;j<parallel[i].length;j++)
+            {
+                assertEquals(parallel[i][j], VectorMath.getMaxIdx(tied));
+                assertEquals(3, tied[parallel[i][j]], 0);
+            }
+            assertSame(r, RandomStreams.bind(null));
+        }
+        assertSame(VectorMath.pickRandom, RandomStreams.current());
+    }
+
+    public void testSampleIdx()
+    {
+        double[] vals = new double[] { 0.1, 0, 0.5, 0.4 };
+        double[] cdf = new double[vals.length];
+        VectorMath.cumulative(vals, cdf);
+        Random r1 = RandomStreams.get("sample");
+        Random r2 = RandomStreams.get("sample");
+        for(int i=0;i<100;i++)
+        {
+            int idx = VectorMath.sampleIdx(vals, r1);
+            assertEquals(idx, VectorMath.sampleCumulativeIdx(cdf, r2));
+            assertTrue(vals[idx] > 0);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * VectorMathTest.java
+ *
+ * Part of the open-source Network Learning Toolkit
+ * http://netkit-srl.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **/
+
+/**
+ * $Id$
+ **/
+
+package netkit.util;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * VectorMath Tester.
+ */
+public class VectorMathTest extends TestCase
+{
+    private static final int numClasses = 5;
+    private static final int numRows = 40;
+    private double[][] rows;
+    private double[] flat;
+    private long seed;
+
+    public VectorMathTest(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        seed = VectorMath.getSeed();
+        Random r = new Random(17);
+        rows = new double[numRows][numClasses];
+        flat = new double[numRows*numClasses];
+        for(int i=0;i<numRows;i++)
+        {
+            for(int c=0;c<numClasses;c++)
+            {
+                // a few ties and an all-zero row
+                rows[i][c] = (i == 3 ? 0 : r.nextInt(4)*r.nextDouble());
+                flat[i*numClasses+c] = rows[i][c];
+            }
+        }
+    }
+
+    public void tearDown() throws Exception
+    {
+        VectorMath.setSeed(seed);
+        super.tearDown();
+    }
+
+    public void testMerge()
+    {
+        double[] old = new double[] { 0.2, 0.3, 0.1, 0.25, 0.15 };
+        for(double alpha : new double[] { 0, 0.3, 1 })
+        {
+            double[] block = flat.clone();
+            for(int i=0;i<numRows;i++)
+            {
+                double[] expected = VectorMath.merge(alpha, old, rows[i]);
+                VectorMath.merge(alpha, old, 0, block, i*numClasses, block, i*numClasses, numClasses);
+                for(int c=0;c<numClasses;c++)
+                    assertEquals(expected[c], block[i*numClasses+c], 0.0);
+            }
+        }
+        // alpha weighs the first array, also when allocating the result
+        assertEquals(old[0], VectorMath.merge(1, old, rows[0])[0], 0.0);
+        assertEquals(rows[0][0], VectorMath.merge(0, old, rows[0])[0], 0.0);
+    }
+
+    public void testNormalize()
+    {
+        double[] block = flat.clone();
+        VectorMath.normalizeBlock(block, numRows, numClasses);
+        for(int i=0;i<numRows;i++)
+        {
+            double[] expected = rows[i].clone();
+            VectorMath.normalize(expected);
+            double[] bySum = rows[i].clone();
+            VectorMath.normalizeBy(bySum, VectorMath.sum(bySum));
+            for(int c=0;c<numClasses;c++)
+            {
+                assertEquals(expected[c], block[i*numClasses+c], 0.0);
+                assertEquals(expected[c], bySum[c], 0.0);
+            }
+        }
+    }
+
+    public void testSampleIdx()
+    {
+        double[] cdf = new double[numClasses];
+        for(int i=0;i<numRows;i++)
+        {
+            if(i == 3)
+                continue;
+            VectorMath.cumulative(rows[i], cdf);
+            for(int k=0;k<20;k++)
+            {
+                VectorMath.setSeed(k);
+                int expected = VectorMath.sampleIdx(rows[i]);
+                VectorMath.setSeed(k);
+                assertEquals(expected, VectorMath.sampleIdx(rows[i], VectorMath.sum(rows[i])));
+                VectorMath.setSeed(k);
+                assertEquals(expected, VectorMath.sampleCumulativeIdx(cdf));
+                assertTrue(rows[i][expected] > 0);
+            }
+        }
+    }
+
+    public void testMaxIdx()
+    {
+        int[] block = new int[numRows];
+        for(int k=0;k<5;k++)
+        {
+            VectorMath.setSeed(k);
+            int[] expected = new int[numRows];
+            for(int i=0;i<numRows;i++)
+                expected[i] = VectorMath.getMaxIdx(rows[i]);
+            VectorMath.setSeed(k);
+            VectorMath.getMaxIdxBlock(flat, numRows, numClasses, block);
+            for(int i=0;i<numRows;i++)
+            {
+                assertEquals(expected[i], block[i]);
+                assertEquals(VectorMath.getMaxValue(rows[i]), flat[i*numClasses+block[i]], 0.0);
+            }
+        }
+    }
+}